@@ -17,6 +17,181 @@ public interface QubPublish
             .setDescription("The folder to publish. Defaults to the current folder.");
     }
 
+    static CommandLineParameter<Integer> addWorkersParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addInteger("workers")
+            .setValueName("<count>")
+            .setDescription("The number of workers to use for parallel qub folder operations. Defaults to the number of processors.");
+    }
+
+    static CommandLineParameterBoolean addVirtualThreadsParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("virtualthreads", false)
+            .setDescription("Whether or not to run the workers on virtual threads, so that --workers can be set much higher than the number of processors when the qub folder is on a high-latency file system. Platform threads are used if the Java runtime doesn't support virtual threads. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addBlobStoreParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("blobstore", false)
+            .setDescription("Whether or not to store published jar files in a content-addressed blob store that version folders hard-link to. With --prune, also delete the blobs that no remaining version folder links to. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addAppCDSParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("appcds", false)
+            .setDescription("Whether or not to do a training run of the published shortcut that creates a class data sharing archive for it to start with. Defaults to false.");
+    }
+
+    static CommandLineParameter<String> addAppCDSArgumentsParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addString("appcdsargs")
+            .setValueName("<arguments>")
+            .setDescription("The space-separated arguments to pass to the published shortcut during the --appcds training run. Defaults to \"--help\".");
+    }
+
+    static CommandLineParameterBoolean addBatchParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("batch", false)
+            .setDescription("Whether or not to publish every project folder in the folder to publish, in dependency order. Defaults to false.");
+    }
+
+    static CommandLineParameter<String> addTraceParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addString("trace")
+            .setValueName("<file>")
+            .setDescription("The file to write a Chrome trace-event JSON file of the publish's phases to.");
+    }
+
+    static CommandLineParameterBoolean addLauncherJarParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("launcherjar", false)
+            .setDescription("Whether or not to launch the published shortcut with a launcher jar whose manifest lists the shortcut's classpath. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addUberJarParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("uberjar", false)
+            .setDescription("Whether or not to launch the published shortcut with a single stored jar that merges the project's compiled jar with all of its dependency jars. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addJlinkParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("jlink", false)
+            .setDescription("Whether or not to launch the published shortcut with a shared jlink runtime image that only contains the modules that the project needs. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addUpdateDependentsParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("updatedependents", false)
+            .setDescription("Whether or not to update, repack, and republish the projects that depend on the published project, in dependency order. Defaults to false.");
+    }
+
+    static CommandLineParameter<String> addSourceRootParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addString("sourceroot")
+            .setValueName("<folder>")
+            .setDescription("The folder that contains the source folders of the projects to republish with --updatedependents. Defaults to the parent folder of the folder to publish.");
+    }
+
+    static CommandLineParameterBoolean addWatchParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("watch", false)
+            .setDescription("Whether or not to keep running after the publish and republish a new version whenever the sources, tests, or project.json of the folder to publish change. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addStoredJarsParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("storedjars", false)
+            .setDescription("Whether or not to publish the compiled jars with stored (uncompressed) entries so that they don't need to be inflated when they're loaded. Sources jars stay compressed. Defaults to false.");
+    }
+
+    static CommandLineParameter<String> addMirrorParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addString("mirror")
+            .setValueName("<folders>")
+            .setDescription("A comma-separated list of qub folders to copy the published version folder and shortcut to after the publish. Jars are delta-synced against the mirror's previous version of the project.");
+    }
+
+    static CommandLineParameterBoolean addVerifyParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("verify", false)
+            .setDescription("Whether or not to verify the files of every published version folder against their recorded hashes instead of publishing. Defaults to false.");
+    }
+
+    static CommandLineParameter<Integer> addPruneParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addInteger("prune")
+            .setValueName("<count>")
+            .setDescription("Delete the published versions of each project except for the newest <count> versions, the versions that they depend on, and the versions that shortcuts use, instead of publishing.");
+    }
+
+    static CommandLineParameterBoolean addDryRunParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("dryrun", false)
+            .setDescription("Whether or not --prune will only report the versions that it would delete and the bytes that it would reclaim. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addDaemonParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("daemon", false)
+            .setDescription("Whether or not to keep running as a daemon that publishes the requests that --usedaemon sends to it. Defaults to false.");
+    }
+
+    static CommandLineParameterBoolean addUseDaemonParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addBoolean("usedaemon", false)
+            .setDescription("Whether or not to send the publish to a running daemon instead of publishing in this process. Defaults to false.");
+    }
+
+    static CommandLineParameter<Integer> addDaemonPortParameter(CommandLineParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return parameters.addInteger("daemonport")
+            .setValueName("<port>")
+            .setDescription("The local port that the daemon listens on. Defaults to " + QubPublishDaemon.defaultPort + ".");
+    }
+
     static QubPublishParameters getParameters(DesktopProcess process)
     {
         PreCondition.assertNotNull(process, "process");
@@ -30,6 +205,27 @@ public interface QubPublish
         final CommandLineParameter<Coverage> coverageParameter = QubTestRun.addCoverageParameter(parameters);
         final CommandLineParameterBoolean buildJsonParameter = QubBuildCompile.addBuildJsonParameter(parameters);
         final CommandLineParameter<Warnings> warningsParameter = QubBuildCompile.addWarningsParameter(parameters);
+        final CommandLineParameter<Integer> workersParameter = QubPublish.addWorkersParameter(parameters);
+        final CommandLineParameterBoolean virtualThreadsParameter = QubPublish.addVirtualThreadsParameter(parameters);
+        final CommandLineParameterBoolean blobStoreParameter = QubPublish.addBlobStoreParameter(parameters);
+        final CommandLineParameterBoolean appCDSParameter = QubPublish.addAppCDSParameter(parameters);
+        final CommandLineParameter<String> appCDSArgumentsParameter = QubPublish.addAppCDSArgumentsParameter(parameters);
+        final CommandLineParameterBoolean batchParameter = QubPublish.addBatchParameter(parameters);
+        final CommandLineParameter<String> traceParameter = QubPublish.addTraceParameter(parameters);
+        final CommandLineParameterBoolean launcherJarParameter = QubPublish.addLauncherJarParameter(parameters);
+        final CommandLineParameterBoolean uberJarParameter = QubPublish.addUberJarParameter(parameters);
+        final CommandLineParameterBoolean jlinkParameter = QubPublish.addJlinkParameter(parameters);
+        final CommandLineParameterBoolean updateDependentsParameter = QubPublish.addUpdateDependentsParameter(parameters);
+        final CommandLineParameter<String> sourceRootParameter = QubPublish.addSourceRootParameter(parameters);
+        final CommandLineParameterBoolean watchParameter = QubPublish.addWatchParameter(parameters);
+        final CommandLineParameterBoolean storedJarsParameter = QubPublish.addStoredJarsParameter(parameters);
+        final CommandLineParameter<String> mirrorParameter = QubPublish.addMirrorParameter(parameters);
+        final CommandLineParameterBoolean verifyParameter = QubPublish.addVerifyParameter(parameters);
+        final CommandLineParameter<Integer> pruneParameter = QubPublish.addPruneParameter(parameters);
+        final CommandLineParameterBoolean dryRunParameter = QubPublish.addDryRunParameter(parameters);
+        final CommandLineParameterBoolean daemonParameter = QubPublish.addDaemonParameter(parameters);
+        final CommandLineParameterBoolean useDaemonParameter = QubPublish.addUseDaemonParameter(parameters);
+        final CommandLineParameter<Integer> daemonPortParameter = QubPublish.addDaemonPortParameter(parameters);
         final CommandLineParameterVerbose verboseParameter = parameters.addVerbose(process);
         final CommandLineParameterProfiler profilerParameter = parameters.addProfiler(process, QubPublish.class);
         final CommandLineParameterHelp helpParameter = parameters.addHelp();
@@ -49,6 +245,12 @@ public interface QubPublish
             final String jvmClassPath = process.getJVMClasspath().await();
             final TypeLoader typeLoader = process.getTypeLoader();
             final QubFolder qubFolder = process.getQubFolder().await();
+            final Integer workers = workersParameter.removeValue().await();
+            final String appCDSArguments = appCDSArgumentsParameter.removeValue().await();
+            final String trace = traceParameter.removeValue().await();
+            final String sourceRoot = sourceRootParameter.removeValue().await();
+            final String mirror = mirrorParameter.removeValue().await();
+            final Integer daemonPort = daemonPortParameter.removeValue().await();
 
             result = new QubPublishParameters(output, error, folderToPublish, environmentVariables, processFactory, defaultApplicationLauncher, jvmClassPath, typeLoader, qubFolder)
                 .setPackJson(packJsonParameter.removeValue().await())
@@ -56,154 +258,669 @@ public interface QubPublish
                 .setCoverage(coverageParameter.removeValue().await())
                 .setBuildJson(buildJsonParameter.removeValue().await())
                 .setWarnings(warningsParameter.removeValue().await())
+                .setWorkers(workers != null ? workers : Runtime.getRuntime().availableProcessors())
+                .setVirtualThreads(virtualThreadsParameter.removeValue().await())
+                .setBlobStore(blobStoreParameter.removeValue().await())
+                .setAppCDS(appCDSParameter.removeValue().await())
+                .setBatch(batchParameter.removeValue().await())
+                .setLauncherJar(launcherJarParameter.removeValue().await())
+                .setUberJar(uberJarParameter.removeValue().await())
+                .setJlink(jlinkParameter.removeValue().await())
+                .setUpdateDependents(updateDependentsParameter.removeValue().await())
+                .setWatch(watchParameter.removeValue().await())
+                .setStoredJars(storedJarsParameter.removeValue().await())
+                .setVerify(verifyParameter.removeValue().await())
+                .setPrune(pruneParameter.removeValue().await())
+                .setDryRun(dryRunParameter.removeValue().await())
+                .setDaemon(daemonParameter.removeValue().await())
+                .setUseDaemon(useDaemonParameter.removeValue().await())
+                .setDaemonPort(daemonPort != null ? daemonPort : QubPublishDaemon.defaultPort)
                 .setVerbose(verboseParameter.getVerboseCharacterToByteWriteStream().await())
                 .setProfiler(profilerParameter.removeValue().await());
+
+            if (!Strings.isNullOrEmpty(appCDSArguments))
+            {
+                final List<String> appCDSArgumentList = List.create();
+                for (final String appCDSArgument : appCDSArguments.trim().split("\\s+"))
+                {
+                    if (!appCDSArgument.isEmpty())
+                    {
+                        appCDSArgumentList.add(appCDSArgument);
+                    }
+                }
+                result.setAppCDSArguments(appCDSArgumentList);
+            }
+
+            if (!Strings.isNullOrEmpty(trace))
+            {
+                final Path tracePath = Path.parse(trace);
+                result.setTrace(QubPublishTrace.create(tracePath.isRooted()
+                    ? process.getFileSystem().getFile(tracePath).await()
+                    : process.getCurrentFolder().getFile(tracePath).await()));
+            }
+
+            if (!Strings.isNullOrEmpty(sourceRoot))
+            {
+                final Path sourceRootPath = Path.parse(sourceRoot);
+                result.setSourceRoot(sourceRootPath.isRooted()
+                    ? process.getFileSystem().getFolder(sourceRootPath).await()
+                    : process.getCurrentFolder().getFolder(sourceRootPath).await());
+            }
+
+            if (!Strings.isNullOrEmpty(mirror))
+            {
+                final List<Folder> mirrors = List.create();
+                for (final String mirrorPathString : mirror.split(","))
+                {
+                    if (!Strings.isNullOrEmpty(mirrorPathString.trim()))
+                    {
+                        final Path mirrorPath = Path.parse(mirrorPathString.trim());
+                        mirrors.add(mirrorPath.isRooted()
+                            ? process.getFileSystem().getFolder(mirrorPath).await()
+                            : process.getCurrentFolder().getFolder(mirrorPath).await());
+                    }
+                }
+                result.setMirrors(mirrors);
+            }
         }
 
         return result;
     }
 
+    /**
+     * Reserve the version that the provided project will be published as, before it is packed. If
+     * the project's project.json file couldn't be parsed or doesn't name a publisher and project,
+     * then this fails before the project is packed, because publishing it would fail anyway.
+     * @param projectJsonFile The project.json file of the project.
+     * @param projectJSON The parsed project.json file of the project, or null if it couldn't be
+     *                    parsed.
+     * @param qubFolder The qub folder that the project will be published to.
+     * @param trace The trace that the reservation will be recorded in.
+     * @return The reservation.
+     */
+    static Result<QubPublishVersionReservation> reserveVersion(File projectJsonFile, ProjectJSON projectJSON, QubFolder qubFolder, QubPublishTrace trace)
+    {
+        PreCondition.assertNotNull(projectJsonFile, "projectJsonFile");
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(trace, "trace");
+
+        return Result.create(() ->
+        {
+            // Parse the project.json file again so that the error it couldn't be parsed with is
+            // reported.
+            final ProjectJSON parsedProjectJSON = projectJSON != null
+                ? projectJSON
+                : ProjectJSON.parse(projectJsonFile).await();
+            if (!QubPublish.hasSignature(parsedProjectJSON))
+            {
+                throw new NotFoundException("The project.json file at " + Strings.escapeAndQuote(projectJsonFile.toString()) + " must have a publisher and a project to be published.");
+            }
+
+            try (final QubPublishTrace.Span reserveSpan = trace.start("reserve version"))
+            {
+                final QubProjectFolder projectFolder = qubFolder.getProjectFolder(parsedProjectJSON.getPublisher(), parsedProjectJSON.getProject()).await();
+                return QubPublishVersionReservation.reserve(projectFolder, parsedProjectJSON.getVersion()).await();
+            }
+        });
+    }
+
+    /**
+     * Start resolving the transitive dependencies of the provided project in the background.
+     * @param projectJSON The parsed project.json file of the project, or null if it couldn't be
+     *                    parsed.
+     * @param qubFolderView The view of the qub folder that the dependencies will be resolved from.
+     * @param trace The trace that the resolution will be recorded in.
+     * @return The started resolution, or null if the project doesn't have java properties to
+     * resolve.
+     */
+    static QubPublishBackground<QubPublishLockFile> startResolveLockFile(ProjectJSON projectJSON, QubPublishQubFolderView qubFolderView, QubPublishTrace trace)
+    {
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+        PreCondition.assertNotNull(trace, "trace");
+
+        QubPublishBackground<QubPublishLockFile> result = null;
+        final ProjectJSONJava projectJsonJava = QubPublish.hasSignature(projectJSON) ? projectJSON.getJava() : null;
+        if (projectJsonJava != null)
+        {
+            result = QubPublishBackground.start(() ->
+            {
+                try (final QubPublishTrace.Span resolveSpan = trace.start("resolve transitive dependencies"))
+                {
+                    return qubFolderView.resolveLockFile(projectJsonJava.getDependencies()).await();
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Start loading the dependents index of the provided view in the background, so that the
+     * dependents of the provided project can be found as soon as it is published.
+     * @param projectJSON The parsed project.json file of the project, or null if it couldn't be
+     *                    parsed.
+     * @param qubFolderView The view of the qub folder whose dependents index will be loaded.
+     * @param trace The trace that the load will be recorded in.
+     * @return The started load, or null if the project doesn't have a publisher and project.
+     */
+    static QubPublishBackground<Iterable<ProjectSignature>> startLoadDependents(ProjectJSON projectJSON, QubPublishQubFolderView qubFolderView, QubPublishTrace trace)
+    {
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+        PreCondition.assertNotNull(trace, "trace");
+
+        QubPublishBackground<Iterable<ProjectSignature>> result = null;
+        if (QubPublish.hasSignature(projectJSON))
+        {
+            result = QubPublishBackground.start(() ->
+            {
+                try (final QubPublishTrace.Span loadSpan = trace.start("load dependents index"))
+                {
+                    return qubFolderView.getDependents(projectJSON.getPublisher(), projectJSON.getProject()).await();
+                }
+            });
+        }
+        return result;
+    }
+
+    private static boolean hasSignature(ProjectJSON projectJSON)
+    {
+        return projectJSON != null &&
+            !Strings.isNullOrEmpty(projectJSON.getPublisher()) &&
+            !Strings.isNullOrEmpty(projectJSON.getProject());
+    }
+
+    /**
+     * Pack the folder to publish, unless the jars in its outputs folder are already up to date
+     * with its sources, tests, project.json, and dependencies. Pack state is only read and written
+     * when the parameters allow a pack.json file.
+     * @param parameters The parameters of the publish.
+     * @param outputFolder The folder that the pack writes its outputs to.
+     * @param workers The workers that will hash the pack inputs and outputs.
+     * @return The exit code of the pack, or 0 if the pack was skipped.
+     */
+    static int pack(QubPublishParameters parameters, Folder outputFolder, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+        PreCondition.assertNotNull(outputFolder, "outputFolder");
+        PreCondition.assertNotNull(workers, "workers");
+
+        final Folder folderToPublish = parameters.getFolderToPublish();
+        final QubPublishTrace trace = parameters.getTrace();
+
+        QubPublishPackState packState = null;
+        String project = null;
+        File packStateFile = null;
+        QubPublishPackState previousPackState = null;
+        boolean upToDate = false;
+        try (final QubPublishTrace.Span checkSpan = trace.start("check pack state"))
+        {
+            if (parameters.getPackJson())
+            {
+                packState = QubPublishPackState.create(folderToPublish, parameters.getQubFolder(), QubPublishPackState.getSettings(parameters), workers)
+                    .catchError()
+                    .await();
+                if (packState != null)
+                {
+                    project = ProjectJSON.parse(folderToPublish.getFile("project.json").await())
+                        .then(ProjectJSON::getProject)
+                        .catchError()
+                        .await();
+                    packStateFile = QubPublishPackState.getStateFile(folderToPublish).await();
+                }
+            }
+
+            if (!Strings.isNullOrEmpty(project))
+            {
+                previousPackState = QubPublishPackState.parse(packStateFile).catchError().await();
+            }
+            upToDate = previousPackState != null &&
+                packState.isUpToDate(previousPackState, outputFolder, project, workers).catchError().await() == Boolean.TRUE;
+        }
+
+        int result;
+        if (upToDate)
+        {
+            parameters.getOutputWriteStream().writeLine("Outputs are up to date.").await();
+            result = 0;
+        }
+        else
+        {
+            try (final QubPublishTrace.Span packSpan = trace.start("compile, test, and jar"))
+            {
+                result = QubPack.run(parameters);
+            }
+            if (result == 0 && !Strings.isNullOrEmpty(project))
+            {
+                try (final QubPublishTrace.Span recordSpan = trace.start("record pack state"))
+                {
+                    packState.setOutputs(outputFolder, project, workers).await();
+                    packState.save(packStateFile).await();
+                }
+            }
+        }
+        return result;
+    }
+
     static int run(QubPublishParameters parameters)
     {
         PreCondition.assertNotNull(parameters, "parameters");
 
+        final QubPublishTrace trace = parameters.getTrace();
+
+        // A publish that a daemon runs is recorded in this process's trace file by the daemon.
+        boolean saveTrace = true;
+        int exitCode;
+        try (final QubPublishWorkers workers = QubPublishWorkers.create(parameters.getWorkers(), parameters.getVirtualThreads());
+             final QubPublishTrace.Span publishSpan = trace.start("qub-publish"))
+        {
+            if (parameters.getVirtualThreads() && workers.getWorkerCount() > 1 && !workers.getVirtualThreads())
+            {
+                parameters.getOutputWriteStream().writeLine("WARNING: This Java runtime doesn't support virtual threads, so the workers will use platform threads.").await();
+            }
+
+            final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(parameters.getQubFolder(), workers);
+            Integer modeExitCode = null;
+            if (parameters.getVerify())
+            {
+                try (final QubPublishTrace.Span verifySpan = trace.start("verify"))
+                {
+                    modeExitCode = QubPublishVerify.get(parameters.getQubFolder()).await()
+                        .run(parameters.getOutputWriteStream(), workers);
+                }
+            }
+            else if (parameters.getDryRun() && parameters.getPrune() == null)
+            {
+                parameters.getOutputWriteStream().writeLine("ERROR: --dryrun can only be used with --prune.").await();
+                modeExitCode = 1;
+            }
+            else if (parameters.getPrune() != null)
+            {
+                try (final QubPublishTrace.Span pruneSpan = trace.start("prune"))
+                {
+                    modeExitCode = QubPublishPrune.create(parameters.getQubFolder(), parameters.getPrune())
+                        .setDryRun(parameters.getDryRun())
+                        .setBlobStore(parameters.getBlobStore() ? QubPublishBlobStore.get(parameters.getQubFolder()).await() : null)
+                        .run(parameters.getOutputWriteStream(), workers);
+                }
+            }
+            else if (parameters.getDaemon() && (parameters.getBatch() || parameters.getWatch() || parameters.getUseDaemon()))
+            {
+                parameters.getOutputWriteStream().writeLine("ERROR: --daemon can't be used with --batch, --watch, or --usedaemon.").await();
+                modeExitCode = 1;
+            }
+            else if (parameters.getUseDaemon() && parameters.getWatch())
+            {
+                parameters.getOutputWriteStream().writeLine("ERROR: --watch can't be used with --usedaemon.").await();
+                modeExitCode = 1;
+            }
+            else if (parameters.getUseDaemon() && parameters.getUpdateDependents())
+            {
+                parameters.getOutputWriteStream().writeLine("ERROR: --updatedependents can't be used with --usedaemon.").await();
+                modeExitCode = 1;
+            }
+            else if (parameters.getDaemon())
+            {
+                try (final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, qubFolderView, parameters.getDaemonPort()).await())
+                {
+                    daemon.run().await();
+                    modeExitCode = 0;
+                }
+                catch (Throwable error)
+                {
+                    final Throwable unwrappedError = Exceptions.unwrap(error);
+                    if (unwrappedError instanceof PreConditionFailure ||
+                        unwrappedError instanceof PostConditionFailure ||
+                        unwrappedError instanceof NullPointerException)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                    parameters.getOutputWriteStream().writeLine("ERROR: " + unwrappedError.getMessage()).await();
+                    modeExitCode = 1;
+                }
+            }
+            else if (parameters.getUseDaemon())
+            {
+                try (final QubPublishTrace.Span daemonSpan = trace.start("send to daemon"))
+                {
+                    modeExitCode = QubPublishDaemon.send(parameters, parameters.getDaemonPort()).await();
+                    saveTrace = false;
+                }
+                catch (Throwable error)
+                {
+                    final Throwable unwrappedError = Exceptions.unwrap(error);
+                    if (!(unwrappedError instanceof java.net.ConnectException))
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                    parameters.getOutputWriteStream().writeLine("No publish daemon is listening on port " + parameters.getDaemonPort() + ", so the folder will be published by this process.").await();
+                }
+            }
+
+            if (modeExitCode != null)
+            {
+                exitCode = modeExitCode;
+            }
+            else if (parameters.getBatch() && parameters.getWatch())
+            {
+                parameters.getOutputWriteStream().writeLine("ERROR: --watch can't be used with --batch.").await();
+                exitCode = 1;
+            }
+            else if (parameters.getBatch())
+            {
+                exitCode = QubPublishBatch.create(parameters)
+                    .addProjectFolders(parameters.getFolderToPublish())
+                    .run(qubFolderView);
+            }
+            else if (parameters.getWatch())
+            {
+                exitCode = QubPublish.run(parameters, qubFolderView);
+                try (final QubPublishWatch watch = QubPublishWatch.create(parameters.getFolderToPublish()).await())
+                {
+                    trace.save().catchError().await();
+                    exitCode = watch.run(parameters, qubFolderView);
+                }
+                catch (Throwable error)
+                {
+                    final Throwable unwrappedError = Exceptions.unwrap(error);
+                    if (unwrappedError instanceof PreConditionFailure ||
+                        unwrappedError instanceof PostConditionFailure ||
+                        unwrappedError instanceof NullPointerException)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                    parameters.getOutputWriteStream().writeLine("ERROR: " + unwrappedError.getMessage()).await();
+                    ++exitCode;
+                }
+            }
+            else
+            {
+                exitCode = QubPublish.run(parameters, qubFolderView);
+            }
+        }
+
+        if (saveTrace)
+        {
+            try
+            {
+                trace.save().await();
+            }
+            catch (Throwable error)
+            {
+                parameters.getOutputWriteStream().writeLine("ERROR: " + Exceptions.unwrap(error).getMessage()).await();
+                ++exitCode;
+            }
+        }
+
+        return exitCode;
+    }
+
+    /**
+     * Publish the folder in the provided parameters.
+     * @param parameters The parameters of the publish.
+     * @param qubFolderView The view of the qub folder that the folder will be published to.
+     * @return The exit code of the publish.
+     */
+    static int run(QubPublishParameters parameters, QubPublishQubFolderView qubFolderView)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+
         final CharacterWriteStream output = parameters.getOutputWriteStream();
         final Folder folderToPublish = parameters.getFolderToPublish();
-        final QubFolder qubFolder = parameters.getQubFolder();
+        final QubFolder qubFolder = qubFolderView.getQubFolder();
+        final QubPublishWorkers workers = qubFolderView.getWorkers();
+        final QubPublishTrace trace = parameters.getTrace();
+
+        // Everything that only needs project.json is started before the pack, and the qub folder
+        // scans then run in the background while the project is compiled, tested, and jarred.
+        final File projectJsonFile = folderToPublish.getFile("project.json").await();
+        final ProjectJSON parsedProjectJSON = ProjectJSON.parse(projectJsonFile).catchError().await();
 
         int exitCode = 0;
-        try
+        try (final QubPublishTrace.Span publishSpan = trace.start("publish " + folderToPublish);
+             final QubPublishVersionReservation reservation = QubPublish.reserveVersion(projectJsonFile, parsedProjectJSON, qubFolder, trace).await();
+             final QubPublishBackground<QubPublishLockFile> lockFileStage = QubPublish.startResolveLockFile(parsedProjectJSON, qubFolderView, trace);
+             final QubPublishBackground<Iterable<ProjectSignature>> dependentsStage = QubPublish.startLoadDependents(parsedProjectJSON, qubFolderView, trace))
         {
-            exitCode = QubPack.run(parameters);
-            if (exitCode == 0)
+            final Folder outputFolder = folderToPublish.getFolder("outputs").await();
+            try (final QubPublishTrace.Span packSpan = trace.start("pack"))
             {
-                final Folder outputFolder = folderToPublish.getFolder("outputs").await();
+                exitCode = QubPublish.pack(parameters, outputFolder, workers);
+            }
 
-                final File projectJsonFile = folderToPublish.getFile("project.json").await();
-                final ProjectJSON projectJSON = ProjectJSON.parse(projectJsonFile).await();
+            if (exitCode == 0)
+            {
+                // The reservation succeeded, so project.json was parsed and names a publisher and
+                // project.
+                final ProjectJSON projectJSON = parsedProjectJSON;
                 final String publisher = projectJSON.getPublisher();
                 final String project = projectJSON.getProject();
-                VersionNumber version = projectJSON.getVersion();
-                final QubProjectFolder projectFolder = qubFolder.getProjectFolder(publisher, project).await();
-                if (version == null || !version.any())
+                final QubProjectFolder projectFolder = reservation.getProjectFolder();
+                final VersionNumber version = reservation.getVersion();
+                final QubProjectVersionFolder versionFolder = reservation.getVersionFolder().await();
+
+                File compiledSourcesJarFile = outputFolder.getFile(project + ".jar").await();
+                final File sourcesJarFile = outputFolder.getFile(project + ".sources.jar").await();
+                File compiledTestsJarFile = outputFolder.getFile(project + ".tests.jar").await();
+
+                if (parameters.getStoredJars())
                 {
-                    final QubProjectVersionFolder latestVersionFolder = projectFolder.getLatestProjectVersionFolder().catchError().await();
-                    if (latestVersionFolder != null)
+                    try (final QubPublishTrace.Span storeSpan = trace.start("store compiled jars"))
                     {
-                        final VersionNumber latestVersion = latestVersionFolder.getVersion().catchError().await();
-                        if (latestVersion != null && latestVersion.hasMajor())
+                        final Folder storedJarsFolder = outputFolder.getFolder("stored").await();
+                        compiledSourcesJarFile = QubPublishStoredJar.store(compiledSourcesJarFile, storedJarsFolder).await();
+                        final File storedCompiledTestsJarFile = QubPublishStoredJar.store(compiledTestsJarFile, storedJarsFolder)
+                            .catchError(FileNotFoundException.class)
+                            .await();
+                        if (storedCompiledTestsJarFile != null)
                         {
-                            version = VersionNumber.create().setMajor(latestVersion.getMajor() + 1);
+                            compiledTestsJarFile = storedCompiledTestsJarFile;
                         }
                     }
-                    if (version == null || !version.any())
-                    {
-                        version = VersionNumber.create().setMajor(1);
-                    }
                 }
 
-                final QubProjectVersionFolder versionFolder = projectFolder.getProjectVersionFolder(version).await();
-                if (versionFolder.exists().await())
+                output.writeLine("Publishing " + publisher + "/" + project + "@" + version + "...").await();
+
+                // Every file of the version folder is written into the staging folder and recorded
+                // in the hash manifest before the staging folder is committed, so that the version
+                // folder never exists without all of its files. Paths that other files refer to
+                // (like the shortcut's classpath) are the paths that the files will have once the
+                // version folder is committed.
+                final Folder stagingFolder = reservation.getStagingFolder().await();
+                final QubPublishHashManifest hashManifest = QubPublishHashManifest.create();
+                try (final QubPublishTrace.Span copySpan = trace.start("copy artifacts"))
                 {
-                    throw new AlreadyExistsException("This package (" + publisher + "/" + project + ":" + version + ") can't be published because a package with that signature already exists.");
+                    QubPublishTransfer.create(stagingFolder)
+                        .setBlobStore(parameters.getBlobStore() ? QubPublishBlobStore.get(qubFolder).await() : null)
+                        .setHashManifest(hashManifest)
+                        .add(projectJsonFile)
+                        .addArtifact(compiledSourcesJarFile)
+                        .addArtifact(sourcesJarFile)
+                        .addOptionalArtifact(compiledTestsJarFile)
+                        .run(workers)
+                        .await();
                 }
 
-                final File compiledSourcesJarFile = outputFolder.getFile(project + ".jar").await();
-                final File sourcesJarFile = outputFolder.getFile(project + ".sources.jar").await();
-                final File compiledTestsJarFile = outputFolder.getFile(project + ".tests.jar").await();
-
-                output.writeLine("Publishing " + publisher + "/" + project + "@" + version + "...").await();
-                projectJsonFile.copyToFolder(versionFolder).await();
-                compiledSourcesJarFile.copyToFolder(versionFolder).await();
-                sourcesJarFile.copyToFolder(versionFolder).await();
-                compiledTestsJarFile.copyToFolder(versionFolder)
-                    .catchError(FileNotFoundException.class)
-                    .await();
-
+                QubPublishLockFile lockFile = null;
+                QubPublishShortcut shortcut = null;
                 final ProjectJSONJava projectJsonJava = projectJSON.getJava();
                 if (projectJsonJava != null)
                 {
+                    try (final QubPublishTrace.Span lockFileSpan = trace.start("save lock file"))
+                    {
+                        lockFile = lockFileStage != null
+                            ? lockFileStage.join().await()
+                            : qubFolderView.resolveLockFile(projectJsonJava.getDependencies()).await();
+                        QubPublish.stageFile(stagingFolder, QubPublishLockFile.fileName, lockFile.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8), hashManifest).await();
+                    }
+
                     final String mainClass = projectJsonJava.getMainClass();
                     if (mainClass != null)
                     {
-                        String shortcutName = projectJsonJava.getShortcutName();
-                        if (Strings.isNullOrEmpty(shortcutName))
+                        try (final QubPublishTrace.Span shortcutSpan = trace.start("generate shortcut"))
                         {
-                            shortcutName = projectJSON.getProject();
-                        }
+                            String shortcutName = projectJsonJava.getShortcutName();
+                            if (Strings.isNullOrEmpty(shortcutName))
+                            {
+                                shortcutName = projectJSON.getProject();
+                            }
 
-                        final CharacterList classpath = CharacterList.create()
-                            .addAll("%~dp0").addAll(versionFolder.getCompiledSourcesFile().await().relativeTo(qubFolder).toString());
-                        Iterable<ProjectSignature> dependencies = projectJsonJava.getDependencies();
-                        if (!Iterable.isNullOrEmpty(dependencies))
-                        {
-                            dependencies = projectJsonJava.getTransitiveDependencies(qubFolder);
+                            shortcut = QubPublishShortcut.create(qubFolder, shortcutName, mainClass)
+                                .addClasspath(versionFolder.getCompiledSourcesFile().await().relativeTo(qubFolder).toString());
+                            for (final String dependencyCompiledSourcesPath : lockFile.getCompiledSourcesPaths())
+                            {
+                                shortcut.addClasspath(dependencyCompiledSourcesPath);
+                            }
+
+                            if (parameters.getUberJar())
+                            {
+                                try (final QubPublishTrace.Span uberJarSpan = trace.start("create uber jar"))
+                                {
+                                    output.writeLine("Creating uber jar...").await();
+                                    final QubPublishUberJar uberJar = QubPublishUberJar.create(mainClass);
+                                    for (final String classpathEntry : shortcut.getClasspath())
+                                    {
+                                        uberJar.addJar(classpathEntry, QubPublish.getStagedFile(qubFolder, versionFolder, stagingFolder, classpathEntry).await()).await();
+                                    }
+                                    for (final QubPublishUberJar.Collision collision : uberJar.getCollisions())
+                                    {
+                                        output.writeLine("WARNING: " + collision).await();
+                                    }
 
-                            for (final ProjectSignature dependency : dependencies)
+                                    final String uberJarFileName = QubPublishUberJar.getFileName(project);
+                                    QubPublish.stageFile(stagingFolder, uberJarFileName, uberJar.getBytes(), hashManifest).await();
+                                    shortcut.setLauncherJar(versionFolder.getFile(uberJarFileName).await().relativeTo(qubFolder).toString());
+                                }
+                            }
+                            else if (parameters.getLauncherJar())
                             {
-                                final File dependencyCompiledSourcesJarFile = qubFolder.getCompiledSourcesFile(
-                                    dependency.getPublisher(),
-                                    dependency.getProject(),
-                                    dependency.getVersion()).await();
-                                final Path dependencyCompiledSourcesJarFileRelativePath = dependencyCompiledSourcesJarFile.relativeTo(qubFolder);
-                                classpath.addAll(";%~dp0").addAll(dependencyCompiledSourcesJarFileRelativePath.toString());
+                                final String launcherJarFileName = QubPublishLauncherJar.getFileName(project);
+                                QubPublish.stageFile(stagingFolder, launcherJarFileName, QubPublishLauncherJar.getBytes(shortcut, versionFolder), hashManifest).await();
+                                shortcut.setLauncherJar(versionFolder.getFile(launcherJarFileName).await().relativeTo(qubFolder).toString());
                             }
-                        }
 
-                        final File shortcutFile = qubFolder.getFile(shortcutName + ".cmd").await();
-                        try (final CharacterWriteStream shortcutFileStream = shortcutFile.getContentsCharacterWriteStream().await())
-                        {
-                            shortcutFileStream.writeLine("@echo OFF").await();
-                            shortcutFileStream.writeLine("java -classpath " + classpath + " " + mainClass + " %*").await();
+                            if (parameters.getJlink())
+                            {
+                                try (final QubPublishTrace.Span runtimeImageSpan = trace.start("create runtime image"))
+                                {
+                                    output.writeLine("Creating runtime image...").await();
+                                    try
+                                    {
+                                        final List<File> jarFiles = List.create();
+                                        for (final String classpathEntry : shortcut.getClasspath())
+                                        {
+                                            jarFiles.add(QubPublish.getStagedFile(qubFolder, versionFolder, stagingFolder, classpathEntry).await());
+                                        }
+                                        final Iterable<String> modules = QubPublishRuntimeImage.getModules(parameters.getProcessFactory(), jarFiles).await();
+                                        final Folder runtimeImageFolder = QubPublishRuntimeImage.get(qubFolder).await()
+                                            .getOrCreate(parameters.getProcessFactory(), modules)
+                                            .await();
+                                        shortcut.setJavaRuntime(runtimeImageFolder.relativeTo(qubFolder).toString());
+                                    }
+                                    catch (Throwable error)
+                                    {
+                                        output.writeLine("WARNING: The runtime image couldn't be created, so the shortcut will use the java executable on the PATH: " + Exceptions.unwrap(error).getMessage()).await();
+                                    }
+                                }
+                            }
                         }
                     }
                 }
 
-                final List<String> projectsToUpdate = List.create();
-                final Iterable<QubPublisherFolder> publisherFolders = qubFolder.getPublisherFolders().await();
-                for (final QubPublisherFolder publisherFolder : publisherFolders)
+                try (final QubPublishTrace.Span commitSpan = trace.start("commit version folder"))
                 {
-                    final Iterable<QubProjectFolder> projectFolders = publisherFolder.getProjectFolders().await();
-                    for (final QubProjectFolder projectFolder2 : projectFolders)
+                    hashManifest.save(stagingFolder).await();
+                    reservation.commit().await();
+                    QubPublishLatestVersion.set(projectFolder, version).await();
+                }
+                if (lockFile != null)
+                {
+                    qubFolderView.setLockFile(versionFolder, lockFile);
+                }
+
+                File shortcutFile = null;
+                if (shortcut != null)
+                {
+                    if (parameters.getAppCDS())
                     {
-                        final QubProjectVersionFolder latestVersionFolder = projectFolder2.getLatestProjectVersionFolder().catchError().await();
-                        if (latestVersionFolder != null)
+                        // A class data sharing archive can only be used with the classpath that it
+                        // was dumped with, so it is dumped from the committed version folder and
+                        // is written next to the version folder instead of into it.
+                        try (final QubPublishTrace.Span sharedArchiveSpan = trace.start("create class data sharing archive"))
                         {
-                            final File publishedProjectJsonFile = latestVersionFolder.getProjectJSONFile().await();
-                            final ProjectJSON publishedProjectJson = ProjectJSON.parse(publishedProjectJsonFile)
-                                .catchError(FileNotFoundException.class)
-                                .await();
-                            if (publishedProjectJson != null)
+                            final File sharedArchiveFile = QubPublishShortcut.getSharedArchiveFile(projectFolder, version).await();
+                            output.writeLine("Creating class data sharing archive...").await();
+                            if (!shortcut.createSharedArchive(parameters.getProcessFactory(), sharedArchiveFile, parameters.getAppCDSArguments()).await())
                             {
-                                final ProjectJSONJava publishedProjectJsonJava = publishedProjectJson.getJava();
-                                if (publishedProjectJsonJava != null)
-                                {
-                                    final Iterable<ProjectSignature> dependencies = publishedProjectJsonJava.getDependencies();
-                                    if (!Iterable.isNullOrEmpty(dependencies))
-                                    {
-                                        final ProjectSignature dependency = dependencies.first((ProjectSignature d) ->
-                                            Comparer.equal(d.getPublisher(), publisher) &&
-                                            Comparer.equal(d.getProject(), project));
-                                        if (dependency != null)
-                                        {
-                                            final ProjectSignature publishedProjectSignature = ProjectSignature.create(
-                                                publishedProjectJson.getPublisher(),
-                                                publishedProjectJson.getProject(),
-                                                publishedProjectJson.getVersion());
-                                            projectsToUpdate.add(publishedProjectSignature.toString());
-                                        }
-                                    }
-                                }
+                                output.writeLine("WARNING: The training run didn't create a class data sharing archive.").await();
                             }
                         }
                     }
+
+                    try (final QubPublishTrace.Span shortcutSpan = trace.start("save shortcut"))
+                    {
+                        shortcutFile = shortcut.save().await();
+                    }
+                }
+
+                for (final Folder mirrorFolder : parameters.getMirrors())
+                {
+                    try (final QubPublishTrace.Span mirrorSpan = trace.start("mirror to " + mirrorFolder))
+                    {
+                        output.writeLine("Mirroring to " + mirrorFolder + "...").await();
+                        final QubPublishMirror.Summary mirrorSummary = QubPublishMirror.create(qubFolder, mirrorFolder)
+                            .sync(versionFolder, shortcutFile, workers)
+                            .await();
+                        output.writeLine("Wrote " + mirrorSummary.getWrittenByteCount() + " of " + mirrorSummary.getByteCount() + " bytes in " +
+                            mirrorSummary.getFileCount() + " " + (mirrorSummary.getFileCount() == 1 ? "file" : "files") + ".").await();
+                    }
+                    catch (Throwable error)
+                    {
+                        final Throwable unwrappedError = Exceptions.unwrap(error);
+                        if (unwrappedError instanceof PreConditionFailure ||
+                            unwrappedError instanceof PostConditionFailure ||
+                            unwrappedError instanceof NullPointerException)
+                        {
+                            throw error;
+                        }
+                        output.writeLine("ERROR: The publish couldn't be mirrored to " + mirrorFolder + ": " + unwrappedError.getMessage()).await();
+                        ++exitCode;
+                    }
+                }
+
+                final Iterable<ProjectSignature> projectsToUpdate;
+                try (final QubPublishTrace.Span dependentsSpan = trace.start("scan dependents"))
+                {
+                    // If the background load of the dependents index failed, then updating the
+                    // dependents loads the index again.
+                    if (dependentsStage != null)
+                    {
+                        dependentsStage.join().catchError().await();
+                    }
+                    projectsToUpdate = qubFolderView.updateDependents(
+                        publisher,
+                        project,
+                        version,
+                        projectJsonJava == null ? null : projectJsonJava.getDependencies()).await();
                 }
                 if (!Iterable.isNullOrEmpty(projectsToUpdate))
                 {
-                    output.writeLine("The following projects should be updated to use " + publisher + "/" + project + "@" + version + ":").await();
-                    for (final String projectToUpdate : projectsToUpdate)
+                    if (parameters.getUpdateDependents())
                     {
-                        output.writeLine("  " + projectToUpdate).await();
+                        Folder sourceRootFolder = parameters.getSourceRoot();
+                        if (sourceRootFolder == null)
+                        {
+                            sourceRootFolder = folderToPublish.getParentFolder().await();
+                        }
+                        exitCode += QubPublishDependentsUpdate.create(parameters, sourceRootFolder)
+                            .run(qubFolderView, publisher, project);
+                    }
+                    else
+                    {
+                        output.writeLine("The following projects should be updated to use " + publisher + "/" + project + "@" + version + ":").await();
+                        for (final ProjectSignature projectToUpdate : projectsToUpdate)
+                        {
+                            output.writeLine("  " + projectToUpdate).await();
+                        }
                     }
                 }
             }
@@ -224,4 +941,59 @@ public interface QubPublish
 
         return exitCode;
     }
+
+    /**
+     * Write the provided contents into the file with the provided name in the provided staging
+     * folder, and record the file's hash in the provided hash manifest.
+     * @param stagingFolder The staging folder of the version folder that is being published.
+     * @param fileName The name of the file within the version folder.
+     * @param contents The contents of the file.
+     * @param hashManifest The hash manifest of the version folder.
+     * @return The file that was written.
+     */
+    private static Result<File> stageFile(Folder stagingFolder, String fileName, byte[] contents, QubPublishHashManifest hashManifest)
+    {
+        PreCondition.assertNotNull(stagingFolder, "stagingFolder");
+        PreCondition.assertNotNullAndNotEmpty(fileName, "fileName");
+        PreCondition.assertNotNull(contents, "contents");
+        PreCondition.assertNotNull(hashManifest, "hashManifest");
+
+        return Result.create(() ->
+        {
+            final File result = stagingFolder.getFile(fileName).await();
+            result.setContents(contents).await();
+            hashManifest.set(fileName, QubPublishFiles.getSHA256(contents));
+            return result;
+        });
+    }
+
+    /**
+     * Get the file that the provided classpath entry refers to while the version folder that is
+     * being published is still in its staging folder. Entries within the version folder are read
+     * from the staging folder, and every other entry is read from the qub folder.
+     * @param qubFolder The qub folder that the version folder is being published to.
+     * @param versionFolder The version folder that is being published.
+     * @param stagingFolder The staging folder of the version folder.
+     * @param classpathEntry The classpath entry, relative to the qub folder.
+     * @return The file that the classpath entry refers to.
+     */
+    private static Result<File> getStagedFile(QubFolder qubFolder, QubProjectVersionFolder versionFolder, Folder stagingFolder, String classpathEntry)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(stagingFolder, "stagingFolder");
+        PreCondition.assertNotNullAndNotEmpty(classpathEntry, "classpathEntry");
+
+        return Result.create(() ->
+        {
+            String versionFolderPath = versionFolder.relativeTo(qubFolder).toString();
+            if (!versionFolderPath.endsWith("/"))
+            {
+                versionFolderPath += "/";
+            }
+            return classpathEntry.startsWith(versionFolderPath)
+                ? stagingFolder.getFile(classpathEntry.substring(versionFolderPath.length())).await()
+                : qubFolder.getFile(classpathEntry).await();
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package qub;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A stage of publish that runs on its own thread while the publish continues on the calling
+ * thread, so that qub folder scans can overlap with packing. Each stage gets a dedicated thread
+ * instead of running on the publish's workers, because a stage can fan work out to those workers
+ * itself and must not hold one of them while it waits. Disposing a stage waits for it to finish,
+ * so that no stage outlives the publish that started it.
+ * @param <T> The type of value that the stage produces.
+ */
+public class QubPublishBackground<T> implements Disposable
+{
+    private final FutureTask<T> task;
+    private boolean disposed;
+
+    private QubPublishBackground(Function0<T> function)
+    {
+        PreCondition.assertNotNull(function, "function");
+
+        this.task = new FutureTask<>(function::run);
+    }
+
+    /**
+     * Start running the provided function on a new background thread.
+     * @param function The function to run.
+     * @param <T> The type of value that the function produces.
+     * @return The started background stage.
+     */
+    public static <T> QubPublishBackground<T> start(Function0<T> function)
+    {
+        final QubPublishBackground<T> result = new QubPublishBackground<>(function);
+        final Thread thread = new Thread(result.task, "qub-publish-background");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Get whether or not this stage has finished running.
+     * @return Whether or not this stage has finished running.
+     */
+    public boolean isDone()
+    {
+        return this.task.isDone();
+    }
+
+    /**
+     * Wait for this stage to finish and get the value that it produced.
+     * @return The value that this stage produced, or the error that it failed with.
+     */
+    public Result<T> join()
+    {
+        return Result.create(() ->
+        {
+            try
+            {
+                return this.task.get();
+            }
+            catch (ExecutionException error)
+            {
+                throw Exceptions.asRuntime(error.getCause());
+            }
+            catch (InterruptedException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+        });
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    /**
+     * Wait for this stage to finish. Any error that the stage failed with is ignored, because it
+     * is reported by {@link #join()} to whoever needs the stage's value.
+     * @return Whether or not this call disposed this stage.
+     */
+    @Override
+    public Result<Boolean> dispose()
+    {
+        return Result.create(() ->
+        {
+            final boolean result = !this.disposed;
+            if (result)
+            {
+                this.disposed = true;
+                this.join().catchError().await();
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,415 @@
+package qub;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A set of project folders that are published together. The projects are ordered by the
+ * java.dependencies in their project.json files, and projects that don't depend on each other
+ * are published in parallel. A project is only published after every project in the batch that
+ * it depends on has been published, and it is skipped if any of them failed to publish.
+ */
+public class QubPublishBatch
+{
+    private final QubPublishParameters parameters;
+    private final List<Folder> projectFolders;
+    private Action1<Folder> beforePublish;
+
+    private QubPublishBatch(QubPublishParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        this.parameters = parameters;
+        this.projectFolders = List.create();
+    }
+
+    /**
+     * Create a new empty QubPublishBatch.
+     * @param parameters The parameters that each project in the batch will be published with.
+     * @return The new QubPublishBatch.
+     */
+    public static QubPublishBatch create(QubPublishParameters parameters)
+    {
+        return new QubPublishBatch(parameters);
+    }
+
+    /**
+     * Set the action that will be run on each project folder right before it is published. The
+     * action runs after every project in the batch that the project depends on has been
+     * published. If the action throws, then the project is not published and counts as failed.
+     * @param beforePublish The action that will be run on each project folder before it is
+     *                      published, or null.
+     * @return This object for method chaining.
+     */
+    public QubPublishBatch setBeforePublish(Action1<Folder> beforePublish)
+    {
+        this.beforePublish = beforePublish;
+
+        return this;
+    }
+
+    /**
+     * Add a project folder to this batch.
+     * @param projectFolder The project folder to add.
+     * @return This object for method chaining.
+     */
+    public QubPublishBatch addProjectFolder(Folder projectFolder)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+
+        if (!this.projectFolders.contains(projectFolder))
+        {
+            this.projectFolders.add(projectFolder);
+        }
+
+        return this;
+    }
+
+    /**
+     * Add the project folders in the provided root folder to this batch. If the root folder has
+     * a project.json file, then the root folder itself is added. Otherwise each of the root
+     * folder's child folders that has a project.json file is added.
+     * @param rootFolder The folder to add the project folders of.
+     * @return This object for method chaining.
+     */
+    public QubPublishBatch addProjectFolders(Folder rootFolder)
+    {
+        PreCondition.assertNotNull(rootFolder, "rootFolder");
+
+        if (QubPublishBatch.isProjectFolder(rootFolder))
+        {
+            this.addProjectFolder(rootFolder);
+        }
+        else
+        {
+            final Iterable<Folder> childFolders = rootFolder.getFolders()
+                .catchError(FolderNotFoundException.class)
+                .await();
+            if (childFolders != null)
+            {
+                for (final Folder childFolder : childFolders)
+                {
+                    if (QubPublishBatch.isProjectFolder(childFolder))
+                    {
+                        this.addProjectFolder(childFolder);
+                    }
+                }
+            }
+        }
+
+        return this;
+    }
+
+    private static boolean isProjectFolder(Folder folder)
+    {
+        return folder.getFile("project.json").await().exists().await();
+    }
+
+    /**
+     * Get the project folders in this batch, in the order that they were added.
+     * @return The project folders in this batch.
+     */
+    public Iterable<Folder> getProjectFolders()
+    {
+        return this.projectFolders;
+    }
+
+    private static class BatchProject
+    {
+        private final Folder folder;
+        private final String key;
+        private final List<BatchProject> dependencies;
+        private boolean started;
+        private boolean finished;
+        private boolean failed;
+        private InMemoryCharacterToByteStream output;
+        private InMemoryCharacterToByteStream error;
+        private int exitCode;
+
+        private BatchProject(Folder folder, String key)
+        {
+            this.folder = folder;
+            this.key = key;
+            this.dependencies = List.create();
+        }
+    }
+
+    /**
+     * Get the project folders in this batch in an order where every project comes after the
+     * projects in the batch that it depends on. Projects that don't depend on each other stay in
+     * the order that they were added.
+     * @return The project folders in this batch in dependency order.
+     */
+    public Result<Iterable<Folder>> getPublishOrder()
+    {
+        return Result.create(() ->
+        {
+            final List<Folder> result = List.create();
+            for (final BatchProject project : this.getProjects().await())
+            {
+                result.add(project.folder);
+            }
+            return result;
+        });
+    }
+
+    private Result<List<BatchProject>> getProjects()
+    {
+        return Result.create(() ->
+        {
+            final List<BatchProject> projects = List.create();
+            final Map<String,BatchProject> projectsByKey = Map.create();
+            final Map<String,Iterable<ProjectSignature>> projectDependencies = Map.create();
+            for (final Folder projectFolder : this.projectFolders)
+            {
+                final ProjectJSON projectJson = ProjectJSON.parse(projectFolder.getFile("project.json").await()).await();
+                final String publisher = projectJson.getPublisher();
+                final String project = projectJson.getProject();
+                if (Strings.isNullOrEmpty(publisher) || Strings.isNullOrEmpty(project))
+                {
+                    throw new ParseException("The project.json file in " + projectFolder + " must have a publisher and a project.");
+                }
+
+                final String key = QubPublishDependentsIndex.getKey(publisher, project);
+                if (projectsByKey.containsKey(key))
+                {
+                    throw new AlreadyExistsException("The project " + key + " is in the batch more than once (" + projectsByKey.get(key).await().folder + " and " + projectFolder + ").");
+                }
+
+                final BatchProject batchProject = new BatchProject(projectFolder, key);
+                projects.add(batchProject);
+                projectsByKey.set(key, batchProject);
+
+                final ProjectJSONJava projectJsonJava = projectJson.getJava();
+                if (projectJsonJava != null && !Iterable.isNullOrEmpty(projectJsonJava.getDependencies()))
+                {
+                    projectDependencies.set(key, projectJsonJava.getDependencies());
+                }
+            }
+
+            for (final BatchProject project : projects)
+            {
+                final Iterable<ProjectSignature> dependencies = projectDependencies.get(project.key).catchError().await();
+                if (dependencies != null)
+                {
+                    for (final ProjectSignature dependency : dependencies)
+                    {
+                        final BatchProject dependencyProject = projectsByKey.get(QubPublishDependentsIndex.getKey(dependency.getPublisher(), dependency.getProject()))
+                            .catchError()
+                            .await();
+                        if (dependencyProject != null && dependencyProject != project && !project.dependencies.contains(dependencyProject))
+                        {
+                            project.dependencies.add(dependencyProject);
+                        }
+                    }
+                }
+            }
+
+            final List<BatchProject> result = List.create();
+            while (result.getCount() < projects.getCount())
+            {
+                boolean added = false;
+                for (final BatchProject project : projects)
+                {
+                    if (!result.contains(project) && QubPublishBatch.containsAll(result, project.dependencies))
+                    {
+                        result.add(project);
+                        added = true;
+                    }
+                }
+
+                if (!added)
+                {
+                    final CharacterList cycleProjects = CharacterList.create();
+                    for (final BatchProject project : projects)
+                    {
+                        if (!result.contains(project))
+                        {
+                            if (cycleProjects.any())
+                            {
+                                cycleProjects.addAll(", ");
+                            }
+                            cycleProjects.addAll(project.key);
+                        }
+                    }
+                    throw new IllegalStateException("The following projects in the batch have circular dependencies: " + cycleProjects.toString());
+                }
+            }
+            return result;
+        });
+    }
+
+    private static boolean containsAll(List<BatchProject> projects, Iterable<BatchProject> values)
+    {
+        boolean result = true;
+        for (final BatchProject value : values)
+        {
+            if (!projects.contains(value))
+            {
+                result = false;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Publish the projects in this batch. Each project's output is buffered while it is being
+     * published and is written to the batch's output when the project finishes, so the output of
+     * projects that are published in parallel doesn't interleave.
+     * @param qubFolderView The view of the qub folder that is shared by all of the publishes in
+     *                      this batch.
+     * @return The exit code of the batch, which is the number of projects that failed or were
+     * skipped.
+     */
+    public int run(QubPublishQubFolderView qubFolderView)
+    {
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+
+        final CharacterToByteWriteStream output = this.parameters.getOutputWriteStream();
+        final CharacterToByteWriteStream error = this.parameters.getErrorWriteStream();
+
+        int exitCode = 0;
+        try
+        {
+            final List<BatchProject> projects = this.getProjects().await();
+            if (!projects.any())
+            {
+                output.writeLine("No projects found to publish in " + this.parameters.getFolderToPublish() + ".").await();
+            }
+            else
+            {
+                // Projects are published on their own threads instead of on the qub folder view's
+                // workers, because each publish fans out its own operations to those workers and
+                // waits for them.
+                final ExecutorService executorService = Executors.newFixedThreadPool(this.parameters.getWorkers(), (Runnable runnable) ->
+                {
+                    final Thread thread = new Thread(runnable, "qub-publish-batch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try
+                {
+                    final ExecutorCompletionService<BatchProject> completionService = new ExecutorCompletionService<>(executorService);
+                    int running = 0;
+                    int finished = 0;
+                    while (finished < projects.getCount())
+                    {
+                        for (final BatchProject project : projects)
+                        {
+                            if (!project.started)
+                            {
+                                BatchProject failedDependency = null;
+                                boolean dependenciesFinished = true;
+                                for (final BatchProject dependency : project.dependencies)
+                                {
+                                    if (dependency.failed)
+                                    {
+                                        failedDependency = dependency;
+                                        break;
+                                    }
+                                    else if (!dependency.finished)
+                                    {
+                                        dependenciesFinished = false;
+                                    }
+                                }
+
+                                if (failedDependency != null)
+                                {
+                                    project.started = true;
+                                    project.finished = true;
+                                    project.failed = true;
+                                    ++finished;
+                                    ++exitCode;
+                                    output.writeLine("Skipping " + project.key + " because " + failedDependency.key + " wasn't published.").await();
+                                }
+                                else if (dependenciesFinished)
+                                {
+                                    project.started = true;
+                                    project.output = InMemoryCharacterToByteStream.create();
+                                    project.error = InMemoryCharacterToByteStream.create();
+                                    final QubPublishParameters projectParameters = this.parameters.createProjectParameters(project.folder, project.output, project.error);
+                                    completionService.submit(() ->
+                                    {
+                                        boolean prepared = true;
+                                        if (this.beforePublish != null)
+                                        {
+                                            try
+                                            {
+                                                this.beforePublish.run(project.folder);
+                                            }
+                                            catch (Throwable e)
+                                            {
+                                                final Throwable unwrappedError = Exceptions.unwrap(e);
+                                                if (unwrappedError instanceof PreConditionFailure ||
+                                                    unwrappedError instanceof PostConditionFailure ||
+                                                    unwrappedError instanceof NullPointerException)
+                                                {
+                                                    throw e;
+                                                }
+                                                project.output.writeLine("ERROR: " + unwrappedError.getMessage()).await();
+                                                project.exitCode = 1;
+                                                prepared = false;
+                                            }
+                                        }
+
+                                        if (prepared)
+                                        {
+                                            project.exitCode = QubPublish.run(projectParameters, qubFolderView);
+                                        }
+                                        return project;
+                                    });
+                                    ++running;
+                                }
+                            }
+                        }
+
+                        if (running > 0)
+                        {
+                            final BatchProject project;
+                            try
+                            {
+                                project = completionService.take().get();
+                            }
+                            catch (ExecutionException e)
+                            {
+                                throw Exceptions.asRuntime(e.getCause());
+                            }
+                            --running;
+                            ++finished;
+                            project.finished = true;
+                            project.failed = (project.exitCode != 0);
+                            if (project.failed)
+                            {
+                                ++exitCode;
+                            }
+
+                            output.write(project.output.getText().await()).await();
+                            error.write(project.error.getText().await()).await();
+                        }
+                    }
+                }
+                finally
+                {
+                    executorService.shutdownNow();
+                }
+            }
+        }
+        catch (Throwable e)
+        {
+            final Throwable unwrappedError = Exceptions.unwrap(e);
+            if (unwrappedError instanceof PreConditionFailure ||
+                unwrappedError instanceof PostConditionFailure ||
+                unwrappedError instanceof NullPointerException)
+            {
+                throw Exceptions.asRuntime(e);
+            }
+            output.writeLine("ERROR: " + unwrappedError.getMessage()).await();
+            ++exitCode;
+        }
+
+        return exitCode;
+    }
+}
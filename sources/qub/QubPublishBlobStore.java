@@ -0,0 +1,362 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A content-addressed store of published files, keyed by the SHA-256 hash of their contents.
+ * Version folders hard-link to the files in the store, so publishing a file that is byte-identical
+ * to a previously published file doesn't cost any extra disk space or copy time. Linking to a blob
+ * and deleting an unused blob both hold the store's lock, so a prune can't delete a blob between
+ * a publish finding it and linking to it.
+ */
+public class QubPublishBlobStore
+{
+    private final Folder blobsFolder;
+
+    private QubPublishBlobStore(Folder blobsFolder)
+    {
+        PreCondition.assertNotNull(blobsFolder, "blobsFolder");
+
+        this.blobsFolder = blobsFolder;
+    }
+
+    /**
+     * Create a new QubPublishBlobStore that stores its blobs in the provided folder.
+     * @param blobsFolder The folder that the blobs will be stored in.
+     * @return The new QubPublishBlobStore.
+     */
+    public static QubPublishBlobStore create(Folder blobsFolder)
+    {
+        return new QubPublishBlobStore(blobsFolder);
+    }
+
+    /**
+     * Get the QubPublishBlobStore that belongs to the provided qub folder.
+     * @param qubFolder The qub folder to get the blob store for.
+     * @return The QubPublishBlobStore that belongs to the provided qub folder.
+     */
+    public static Result<QubPublishBlobStore> get(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            final QubProjectFolder publishProjectFolder = qubFolder.getProjectFolder("qub", "publish-java").await();
+            final Folder publishDataFolder = publishProjectFolder.getProjectDataFolder().await();
+            return QubPublishBlobStore.create(publishDataFolder.getFolder("blobs").await());
+        });
+    }
+
+    /**
+     * Get the folder that this store's blobs are stored in.
+     * @return The folder that this store's blobs are stored in.
+     */
+    public Folder getBlobsFolder()
+    {
+        return this.blobsFolder;
+    }
+
+    /**
+     * Get the lock file that guards linking to and deleting this store's blobs. The lock file is
+     * next to the blobs folder, so it is never mistaken for a blob.
+     * @return The lock file that guards linking to and deleting this store's blobs.
+     */
+    public Result<File> getLockFile()
+    {
+        return Result.create(() ->
+        {
+            final Folder parentFolder = this.blobsFolder.getParentFolder().await();
+            return parentFolder.getFile(this.blobsFolder.getName() + ".lock").await();
+        });
+    }
+
+    /**
+     * Get the file that the blob with the provided hash is stored in.
+     * @param hash The SHA-256 hash of the blob.
+     * @return The file that the blob with the provided hash is stored in.
+     */
+    public Result<File> getBlobFile(String hash)
+    {
+        PreCondition.assertNotNullAndNotEmpty(hash, "hash");
+        PreCondition.assertGreaterThan(hash.length(), 2, "hash.length()");
+
+        return this.blobsFolder.getFile(hash.substring(0, 2) + "/" + hash);
+    }
+
+    /**
+     * Add the contents of the provided file to this store if they aren't already in it.
+     * @param file The file to add.
+     * @param hash The SHA-256 hash of the file's contents.
+     * @return The blob file that holds the provided file's contents.
+     */
+    public Result<File> add(File file, String hash)
+    {
+        PreCondition.assertNotNull(file, "file");
+        PreCondition.assertNotNullAndNotEmpty(hash, "hash");
+
+        return Result.create(() ->
+        {
+            final File result = this.getBlobFile(hash).await();
+            if (!result.exists().await())
+            {
+                final java.nio.file.Path sourcePath = QubPublishFiles.getJavaPath(file);
+                final java.nio.file.Path blobPath = QubPublishFiles.getJavaPath(result);
+                if (sourcePath == null || blobPath == null)
+                {
+                    file.copyTo(result).await();
+                }
+                else
+                {
+                    // Copy to a temporary file first so that a crash or a concurrent publish can
+                    // never leave a partially written blob under its final name.
+                    try
+                    {
+                        Files.createDirectories(blobPath.getParent());
+                        final java.nio.file.Path temporaryPath = Files.createTempFile(blobPath.getParent(), hash, ".tmp");
+                        try
+                        {
+                            Files.copy(sourcePath, temporaryPath, StandardCopyOption.REPLACE_EXISTING);
+                            Files.move(temporaryPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+                        }
+                        finally
+                        {
+                            Files.deleteIfExists(temporaryPath);
+                        }
+                    }
+                    catch (FileAlreadyExistsException ignored)
+                    {
+                        // Another publish added the same blob first.
+                    }
+                    catch (IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Publish the provided file to the provided folder through this store. The file's contents are
+     * added to this store if they aren't already in it, and then the published file is created as
+     * a hard link to the blob. If the file system doesn't support hard links, then the file is
+     * copied instead.
+     * @param file The file to publish.
+     * @param targetFolder The folder to publish the file to.
+     * @return The published file.
+     */
+    public Result<File> link(File file, Folder targetFolder)
+    {
+        PreCondition.assertNotNull(file, "file");
+        PreCondition.assertNotNull(targetFolder, "targetFolder");
+
+        return Result.create(() ->
+        {
+            final String hash = QubPublishFiles.getSHA256(file).await();
+            return this.link(file, hash, targetFolder).await();
+        });
+    }
+
+    /**
+     * Publish the provided file to the provided folder through this store, using a hash of the
+     * file's contents that the caller already computed.
+     * @param file The file to publish.
+     * @param hash The SHA-256 hash of the file's contents.
+     * @param targetFolder The folder to publish the file to.
+     * @return The published file.
+     */
+    public Result<File> link(File file, String hash, Folder targetFolder)
+    {
+        PreCondition.assertNotNull(file, "file");
+        PreCondition.assertNotNullAndNotEmpty(hash, "hash");
+        PreCondition.assertNotNull(targetFolder, "targetFolder");
+
+        return Result.create(() ->
+        {
+            // A new blob is copied into the store before the lock is taken, so publishes that
+            // add different blobs don't wait on each other's copies.
+            this.add(file, hash).await();
+
+            final File result = targetFolder.getFile(file.getName()).await();
+            boolean linked = false;
+            try (final QubPublishFileLock lock = QubPublishFileLock.acquire(this.getLockFile().await()).await())
+            {
+                // A prune may have deleted the blob since it was added, so it is added again.
+                final File blobFile = this.add(file, hash).await();
+
+                final java.nio.file.Path blobPath = QubPublishFiles.getJavaPath(blobFile);
+                final java.nio.file.Path resultPath = QubPublishFiles.getJavaPath(result);
+                if (blobPath != null && resultPath != null)
+                {
+                    try
+                    {
+                        Files.createDirectories(resultPath.getParent());
+                        Files.createLink(resultPath, blobPath);
+                        linked = true;
+                    }
+                    catch (FileAlreadyExistsException error)
+                    {
+                        throw new AlreadyExistsException("The file at " + Strings.escapeAndQuote(result.toString()) + " already exists.");
+                    }
+                    catch (UnsupportedOperationException | IOException error)
+                    {
+                        // The blob store and the target folder may be on different volumes, or the
+                        // volume may not support hard links. Fall back to a normal copy.
+                    }
+                }
+            }
+
+            if (!linked)
+            {
+                // The file has the same contents as the blob, and unlike the blob it can't be
+                // deleted by a prune, so it is copied without holding the lock.
+                file.copyTo(result).await();
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Get the blobs in this store that no file will link to once the provided folders are deleted.
+     * A blob is unused when every hard link to it other than its own name is inside one of the
+     * provided folders. Only stores on a local Java file system that reports link counts can have
+     * unused blobs, because other file systems can't tell which blobs are still linked to.
+     * @param deletedFolders The folders that are about to be deleted.
+     * @return The blobs in this store that will be unused, ordered by hash.
+     */
+    public Result<Iterable<File>> getUnusedBlobs(Iterable<? extends Folder> deletedFolders)
+    {
+        PreCondition.assertNotNull(deletedFolders, "deletedFolders");
+
+        return Result.create(() ->
+        {
+            final List<File> result = List.create();
+            final java.nio.file.Path blobsPath = QubPublishFiles.getJavaPath(this.blobsFolder);
+            try
+            {
+                if (blobsPath != null && Files.isDirectory(blobsPath) && QubPublishFiles.hasLinkCounts(blobsPath))
+                {
+                    // The names of the blobs that may be unused, ordered by hash.
+                    final java.util.TreeSet<String> unusedBlobNames = new java.util.TreeSet<>();
+
+                    // The links of each blob other than its own name that aren't in the deleted
+                    // folders yet, keyed by the blob's file key so that links in the deleted
+                    // folders can be matched to the blob that they share contents with.
+                    final java.util.HashMap<Object,Integer> remainingLinkCounts = new java.util.HashMap<>();
+                    final java.util.HashMap<Object,String> blobNames = new java.util.HashMap<>();
+                    try (final java.util.stream.Stream<java.nio.file.Path> paths = Files.walk(blobsPath))
+                    {
+                        final java.util.Iterator<java.nio.file.Path> pathIterator = paths.iterator();
+                        while (pathIterator.hasNext())
+                        {
+                            final java.nio.file.Path path = pathIterator.next();
+                            final String name = path.getFileName().toString();
+                            if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) && !name.endsWith(".tmp"))
+                            {
+                                final int remainingLinkCount = QubPublishFiles.getLinkCount(path) - 1;
+                                final Object fileKey = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+                                if (remainingLinkCount <= 0)
+                                {
+                                    unusedBlobNames.add(name);
+                                }
+                                else if (fileKey != null)
+                                {
+                                    remainingLinkCounts.put(fileKey, remainingLinkCount);
+                                    blobNames.put(fileKey, name);
+                                    unusedBlobNames.add(name);
+                                }
+                            }
+                        }
+                    }
+
+                    for (final Folder deletedFolder : deletedFolders)
+                    {
+                        final java.nio.file.Path deletedFolderPath = QubPublishFiles.getJavaPath(deletedFolder);
+                        if (deletedFolderPath != null && Files.isDirectory(deletedFolderPath))
+                        {
+                            try (final java.util.stream.Stream<java.nio.file.Path> paths = Files.walk(deletedFolderPath))
+                            {
+                                final java.util.Iterator<java.nio.file.Path> pathIterator = paths.iterator();
+                                while (pathIterator.hasNext())
+                                {
+                                    final java.nio.file.Path path = pathIterator.next();
+                                    if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) && QubPublishFiles.getLinkCount(path) > 1)
+                                    {
+                                        final Object fileKey = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+                                        final Integer remainingLinkCount = fileKey == null ? null : remainingLinkCounts.get(fileKey);
+                                        if (remainingLinkCount != null)
+                                        {
+                                            remainingLinkCounts.put(fileKey, remainingLinkCount - 1);
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+
+                    for (final java.util.Map.Entry<Object,Integer> entry : remainingLinkCounts.entrySet())
+                    {
+                        if (entry.getValue() > 0)
+                        {
+                            unusedBlobNames.remove(blobNames.get(entry.getKey()));
+                        }
+                    }
+
+                    for (final String name : unusedBlobNames)
+                    {
+                        result.add(this.getBlobFile(name).await());
+                    }
+                }
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Delete the provided blob if no file links to it anymore. The blob's links are counted again
+     * while holding the store's lock right before it is deleted, so a blob that a publish has
+     * linked to since it was found to be unused is kept, and a publish can't link to the blob
+     * while it is being deleted.
+     * @param blobFile The blob to delete.
+     * @return Whether or not the blob was deleted.
+     */
+    public Result<Boolean> deleteIfUnused(File blobFile)
+    {
+        PreCondition.assertNotNull(blobFile, "blobFile");
+
+        return Result.create(() ->
+        {
+            boolean result = false;
+            final java.nio.file.Path blobPath = QubPublishFiles.getJavaPath(blobFile);
+            if (blobPath != null)
+            {
+                try (final QubPublishFileLock lock = QubPublishFileLock.acquire(this.getLockFile().await()).await())
+                {
+                    if (QubPublishFiles.hasLinkCounts(blobPath) && QubPublishFiles.getLinkCount(blobPath) == 1)
+                    {
+                        result = Files.deleteIfExists(blobPath);
+                    }
+                }
+                catch (java.nio.file.NoSuchFileException ignored)
+                {
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+}
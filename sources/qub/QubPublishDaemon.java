@@ -0,0 +1,722 @@
+package qub;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A long-lived publish process that accepts publish requests from thin clients over a local
+ * socket. The daemon keeps the JVM, its workers, and the cached qub folder view warm between
+ * publishes, so a publish through the daemon doesn't pay for JVM startup or for re-reading the
+ * qub folder's lock files and dependents index. The daemon only listens on the loopback address,
+ * and it only publishes requests that include the secret token that it writes to a token file in
+ * the qub folder when it starts. The token file can only be read by the user that started the
+ * daemon, so other users on the same machine can't use the daemon to publish as that user.
+ *
+ * Each request is published on its own thread, and its output is streamed back to the client as
+ * it is written. Publishes that conflict are serialized: a publish holds an exclusive lock on its
+ * folder and on its publisher/project, and a shared lock on each of its dependencies. This lets
+ * independent projects (including projects that share dependencies) publish concurrently, while a
+ * project can't be published at the same time as itself or as a project that depends on it. The
+ * projects that --updatedependents would republish aren't known until the publish finishes, so
+ * the daemon rejects requests that use --updatedependents instead of publishing them unlocked.
+ *
+ * The protocol is a sequence of frames, where each frame is a one byte type, a four byte big-endian
+ * length, and then that many bytes. No frame may be longer than {@link #maximumFrameLength}
+ * bytes. The client sends one token frame that contains the daemon's token, and then one request
+ * frame that contains the JSON form of its parameters. The daemon responds with any number of output and error frames that
+ * contain UTF-8 text, followed by one exit code frame that contains the four byte exit code.
+ */
+public class QubPublishDaemon implements Disposable
+{
+    /**
+     * The port that the daemon listens on if no port is specified.
+     */
+    public static final int defaultPort = 24721;
+
+    /**
+     * The maximum number of bytes in one frame. Longer writes are split across multiple frames.
+     */
+    static final int maximumFrameLength = 1024 * 1024;
+
+    /**
+     * The maximum number of bytes in a token frame.
+     */
+    static final int maximumTokenFrameLength = 1024;
+
+    static final byte tokenFrameType = 'T';
+    static final byte requestFrameType = 'R';
+    static final byte outputFrameType = 'O';
+    static final byte errorFrameType = 'E';
+    static final byte exitCodeFrameType = 'X';
+
+    private static final String folderPropertyName = "folder";
+    private static final String packJsonPropertyName = "packJson";
+    private static final String testJsonPropertyName = "testJson";
+    private static final String coveragePropertyName = "coverage";
+    private static final String buildJsonPropertyName = "buildJson";
+    private static final String warningsPropertyName = "warnings";
+    private static final String blobStorePropertyName = "blobStore";
+    private static final String appCDSPropertyName = "appCDS";
+    private static final String appCDSArgumentsPropertyName = "appCDSArguments";
+    private static final String batchPropertyName = "batch";
+    private static final String launcherJarPropertyName = "launcherJar";
+    private static final String uberJarPropertyName = "uberJar";
+    private static final String jlinkPropertyName = "jlink";
+    private static final String storedJarsPropertyName = "storedJars";
+    private static final String updateDependentsPropertyName = "updateDependents";
+    private static final String sourceRootPropertyName = "sourceRoot";
+    private static final String mirrorsPropertyName = "mirrors";
+    private static final String pathPropertyName = "path";
+    private static final String argumentPropertyName = "argument";
+    private static final String verbosePropertyName = "verbose";
+    private static final String tracePropertyName = "trace";
+
+    private final QubPublishParameters parameters;
+    private final QubPublishQubFolderView qubFolderView;
+    private final ServerSocket serverSocket;
+    private final byte[] token;
+    private final File tokenFile;
+    private final ExecutorService executorService;
+    private final Map<String,ReentrantReadWriteLock> locks;
+    private boolean disposed;
+
+    private QubPublishDaemon(QubPublishParameters parameters, QubPublishQubFolderView qubFolderView, ServerSocket serverSocket, byte[] token, File tokenFile)
+    {
+        this.parameters = parameters;
+        this.qubFolderView = qubFolderView;
+        this.serverSocket = serverSocket;
+        this.token = token;
+        this.tokenFile = tokenFile;
+        this.executorService = Executors.newCachedThreadPool((Runnable runnable) ->
+        {
+            final Thread thread = new Thread(runnable, "qub-publish-daemon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.locks = Map.create();
+    }
+
+    /**
+     * Create a new QubPublishDaemon that listens on the provided port of the loopback address, and
+     * write a new secret token to the daemon's token file.
+     * @param parameters The parameters of the daemon. Each request's publish uses these
+     *                   parameters' qub folder, process factory, and environment.
+     * @param qubFolderView The view of the qub folder that is shared by all of the publishes.
+     * @param port The port to listen on, or 0 to listen on any free port.
+     * @return The new QubPublishDaemon.
+     */
+    public static Result<QubPublishDaemon> create(QubPublishParameters parameters, QubPublishQubFolderView qubFolderView, int port)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+        PreCondition.assertBetween(0, port, 65535, "port");
+
+        return Result.create(() ->
+        {
+            final ServerSocket serverSocket;
+            try
+            {
+                serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+
+            try
+            {
+                final byte[] tokenBytes = new byte[32];
+                new SecureRandom().nextBytes(tokenBytes);
+                final String token = QubPublishFiles.toHexString(tokenBytes);
+                final File tokenFile = QubPublishDaemon.getTokenFile(parameters.getQubFolder(), serverSocket.getLocalPort()).await();
+                QubPublishFiles.setPrivateContents(tokenFile, token).await();
+                return new QubPublishDaemon(parameters, qubFolderView, serverSocket, token.getBytes(StandardCharsets.UTF_8), tokenFile);
+            }
+            catch (RuntimeException error)
+            {
+                QubPublishDaemon.close(serverSocket);
+                throw error;
+            }
+        });
+    }
+
+    /**
+     * Get the file that the daemon that listens on the provided port writes its secret token to.
+     * @param qubFolder The qub folder that the daemon publishes to.
+     * @param port The port that the daemon listens on.
+     * @return The file that the daemon writes its secret token to.
+     */
+    public static Result<File> getTokenFile(QubFolder qubFolder, int port)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertBetween(1, port, 65535, "port");
+
+        return Result.create(() ->
+        {
+            final QubProjectFolder publishProjectFolder = qubFolder.getProjectFolder("qub", "publish-java").await();
+            final Folder publishDataFolder = publishProjectFolder.getProjectDataFolder().await();
+            return publishDataFolder.getFile("daemon-" + port + ".token").await();
+        });
+    }
+
+    /**
+     * Get the file that this daemon wrote its secret token to.
+     * @return The file that this daemon wrote its secret token to.
+     */
+    public File getTokenFile()
+    {
+        return this.tokenFile;
+    }
+
+    /**
+     * Get the port that this daemon is listening on.
+     * @return The port that this daemon is listening on.
+     */
+    public int getPort()
+    {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Get the JSON request that asks a daemon to publish with the provided parameters.
+     * @param parameters The parameters to publish with.
+     * @return The JSON request.
+     */
+    public static JSONObject createRequest(QubPublishParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        final JSONObject result = JSONObject.create()
+            .setString(QubPublishDaemon.folderPropertyName, parameters.getFolderToPublish().toString())
+            .setBoolean(QubPublishDaemon.packJsonPropertyName, parameters.getPackJson())
+            .setBoolean(QubPublishDaemon.testJsonPropertyName, parameters.getTestJson())
+            .setString(QubPublishDaemon.coveragePropertyName, parameters.getCoverage().toString())
+            .setBoolean(QubPublishDaemon.buildJsonPropertyName, parameters.getBuildJson())
+            .setString(QubPublishDaemon.warningsPropertyName, parameters.getWarnings().toString())
+            .setBoolean(QubPublishDaemon.blobStorePropertyName, parameters.getBlobStore())
+            .setBoolean(QubPublishDaemon.appCDSPropertyName, parameters.getAppCDS())
+            .setBoolean(QubPublishDaemon.batchPropertyName, parameters.getBatch())
+            .setBoolean(QubPublishDaemon.launcherJarPropertyName, parameters.getLauncherJar())
+            .setBoolean(QubPublishDaemon.uberJarPropertyName, parameters.getUberJar())
+            .setBoolean(QubPublishDaemon.jlinkPropertyName, parameters.getJlink())
+            .setBoolean(QubPublishDaemon.storedJarsPropertyName, parameters.getStoredJars())
+            .setBoolean(QubPublishDaemon.updateDependentsPropertyName, parameters.getUpdateDependents());
+        final Folder sourceRoot = parameters.getSourceRoot();
+        if (sourceRoot != null)
+        {
+            result.setString(QubPublishDaemon.sourceRootPropertyName, sourceRoot.toString());
+        }
+        final JSONArray mirrorsJson = JSONArray.create();
+        for (final Folder mirror : parameters.getMirrors())
+        {
+            mirrorsJson.add(JSONObject.create()
+                .setString(QubPublishDaemon.pathPropertyName, mirror.toString()));
+        }
+        result.setArray(QubPublishDaemon.mirrorsPropertyName, mirrorsJson);
+        final JSONArray appCDSArgumentsJson = JSONArray.create();
+        for (final String appCDSArgument : parameters.getAppCDSArguments())
+        {
+            appCDSArgumentsJson.add(JSONObject.create()
+                .setString(QubPublishDaemon.argumentPropertyName, appCDSArgument));
+        }
+        result.setArray(QubPublishDaemon.appCDSArgumentsPropertyName, appCDSArgumentsJson);
+        final VerboseCharacterToByteWriteStream verbose = parameters.getVerbose();
+        result.setBoolean(QubPublishDaemon.verbosePropertyName, verbose != null && verbose.isVerbose());
+        final QubPublishTrace trace = parameters.getTrace();
+        if (trace.isEnabled())
+        {
+            result.setString(QubPublishDaemon.tracePropertyName, trace.getTraceFile().toString());
+        }
+        return result;
+    }
+
+    /**
+     * Get the parameters that the provided request should be published with. The folders in the
+     * request are resolved against the file system of this daemon's folder to publish. The
+     * publish's verbose logs are written to the provided output stream if the client asked for
+     * them. If the client has a trace file, then the publish is recorded in a new trace that is
+     * written to the client's trace file. Otherwise it is recorded in the daemon's trace.
+     * @param request The JSON request.
+     * @param outputWriteStream The stream that the publish's output will be written to.
+     * @param errorWriteStream The stream that the publish's errors will be written to.
+     * @return The parameters that the provided request should be published with.
+     */
+    public Result<QubPublishParameters> getRequestParameters(JSONObject request, CharacterToByteWriteStream outputWriteStream, CharacterToByteWriteStream errorWriteStream)
+    {
+        PreCondition.assertNotNull(request, "request");
+        PreCondition.assertNotNull(outputWriteStream, "outputWriteStream");
+        PreCondition.assertNotNull(errorWriteStream, "errorWriteStream");
+
+        return Result.create(() ->
+        {
+            final FileSystem fileSystem = this.parameters.getFolderToPublish().getFileSystem();
+            final Folder folderToPublish = fileSystem.getFolder(request.getString(QubPublishDaemon.folderPropertyName).await()).await();
+            final QubPublishParameters result = this.parameters.createProjectParameters(folderToPublish, outputWriteStream, errorWriteStream)
+                .setPackJson(request.getBoolean(QubPublishDaemon.packJsonPropertyName).await())
+                .setTestJson(request.getBoolean(QubPublishDaemon.testJsonPropertyName).await())
+                .setCoverage(Coverage.valueOf(request.getString(QubPublishDaemon.coveragePropertyName).await()))
+                .setBuildJson(request.getBoolean(QubPublishDaemon.buildJsonPropertyName).await())
+                .setWarnings(Warnings.valueOf(request.getString(QubPublishDaemon.warningsPropertyName).await()))
+                .setBlobStore(request.getBoolean(QubPublishDaemon.blobStorePropertyName).await())
+                .setAppCDS(request.getBoolean(QubPublishDaemon.appCDSPropertyName).await())
+                .setBatch(request.getBoolean(QubPublishDaemon.batchPropertyName).await())
+                .setLauncherJar(request.getBoolean(QubPublishDaemon.launcherJarPropertyName).await())
+                .setUberJar(request.getBoolean(QubPublishDaemon.uberJarPropertyName).await())
+                .setJlink(request.getBoolean(QubPublishDaemon.jlinkPropertyName).await())
+                .setStoredJars(request.getBoolean(QubPublishDaemon.storedJarsPropertyName).await())
+                .setUpdateDependents(request.getBoolean(QubPublishDaemon.updateDependentsPropertyName).await())
+                .setSourceRoot(null);
+
+            final String sourceRoot = request.getString(QubPublishDaemon.sourceRootPropertyName).catchError().await();
+            if (!Strings.isNullOrEmpty(sourceRoot))
+            {
+                result.setSourceRoot(fileSystem.getFolder(sourceRoot).await());
+            }
+
+            final List<Folder> mirrors = List.create();
+            final JSONArray mirrorsJson = request.getArray(QubPublishDaemon.mirrorsPropertyName).catchError().await();
+            if (mirrorsJson != null)
+            {
+                for (final JSONSegment mirrorSegment : mirrorsJson)
+                {
+                    final JSONObject mirrorJson = (JSONObject)mirrorSegment;
+                    mirrors.add(fileSystem.getFolder(mirrorJson.getString(QubPublishDaemon.pathPropertyName).await()).await());
+                }
+            }
+            result.setMirrors(mirrors);
+
+            final JSONArray appCDSArgumentsJson = request.getArray(QubPublishDaemon.appCDSArgumentsPropertyName).catchError().await();
+            if (appCDSArgumentsJson != null)
+            {
+                final List<String> appCDSArguments = List.create();
+                for (final JSONSegment appCDSArgumentSegment : appCDSArgumentsJson)
+                {
+                    final JSONObject appCDSArgumentJson = (JSONObject)appCDSArgumentSegment;
+                    appCDSArguments.add(appCDSArgumentJson.getString(QubPublishDaemon.argumentPropertyName).await());
+                }
+                result.setAppCDSArguments(appCDSArguments);
+            }
+
+            // The daemon's own verbose stream writes to the daemon's console, so each request gets
+            // a verbose stream that writes to the client instead.
+            final Boolean verbose = request.getBoolean(QubPublishDaemon.verbosePropertyName).catchError().await();
+            result.setVerbose(VerboseCharacterToByteWriteStream.create(outputWriteStream)
+                .setIsVerbose(verbose == Boolean.TRUE));
+
+            final String trace = request.getString(QubPublishDaemon.tracePropertyName).catchError().await();
+            if (!Strings.isNullOrEmpty(trace))
+            {
+                result.setTrace(QubPublishTrace.create(fileSystem.getFile(trace).await()));
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Get the locks that a publish with the provided parameters must hold. The keys of the
+     * returned map are the names of the locks, and the values are whether or not the lock must be
+     * held exclusively. The locks don't cover the dependents that --updatedependents republishes,
+     * which is why the daemon rejects requests that use it.
+     * @param parameters The parameters of the publish.
+     * @return The locks that the publish must hold.
+     */
+    static Result<Map<String,Boolean>> getLocks(QubPublishParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return Result.create(() ->
+        {
+            final Iterable<Folder> projectFolders = parameters.getBatch()
+                ? QubPublishBatch.create(parameters).addProjectFolders(parameters.getFolderToPublish()).getProjectFolders()
+                : Iterable.create(parameters.getFolderToPublish());
+
+            final Map<String,Boolean> result = Map.create();
+            result.set("folder:" + parameters.getFolderToPublish(), true);
+            for (final Folder projectFolder : projectFolders)
+            {
+                result.set("folder:" + projectFolder, true);
+
+                final QubPublishProjectJSONSummary summary = QubPublishProjectJSONSummary.parse(projectFolder.getFile("project.json").await())
+                    .catchError()
+                    .await();
+                if (summary != null)
+                {
+                    if (!Strings.isNullOrEmpty(summary.getPublisher()) && !Strings.isNullOrEmpty(summary.getProject()))
+                    {
+                        result.set("project:" + QubPublishDependentsIndex.getKey(summary.getPublisher(), summary.getProject()), true);
+                    }
+                    for (final ProjectSignature dependency : summary.getDependencies())
+                    {
+                        final String dependencyLock = "project:" + QubPublishDependentsIndex.getKey(dependency.getPublisher(), dependency.getProject());
+                        if (!result.containsKey(dependencyLock))
+                        {
+                            result.set(dependencyLock, false);
+                        }
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Run the provided publish while holding the provided locks. The locks are always acquired in
+     * the same order so that two publishes can't deadlock.
+     * @param lockNames The locks to hold, mapped to whether or not each lock is held exclusively.
+     * @param publish The publish to run.
+     * @return The exit code of the publish.
+     */
+    int runLocked(Map<String,Boolean> lockNames, Function0<Integer> publish)
+    {
+        final java.util.TreeSet<String> sortedLockNames = new java.util.TreeSet<>();
+        for (final String lockName : lockNames.getKeys())
+        {
+            sortedLockNames.add(lockName);
+        }
+
+        final List<Lock> heldLocks = List.create();
+        try
+        {
+            for (final String lockName : sortedLockNames)
+            {
+                ReentrantReadWriteLock lock;
+                synchronized (this.locks)
+                {
+                    lock = this.locks.get(lockName).catchError().await();
+                    if (lock == null)
+                    {
+                        lock = new ReentrantReadWriteLock();
+                        this.locks.set(lockName, lock);
+                    }
+                }
+
+                final Lock heldLock = lockNames.get(lockName).await() ? lock.writeLock() : lock.readLock();
+                heldLock.lock();
+                heldLocks.add(heldLock);
+            }
+
+            return publish.run();
+        }
+        finally
+        {
+            for (final Lock heldLock : heldLocks)
+            {
+                heldLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Accept and handle publish requests until this daemon is disposed.
+     * @return The result of running this daemon.
+     */
+    public Result<Void> run()
+    {
+        return Result.create(() ->
+        {
+            final CharacterWriteStream output = this.parameters.getOutputWriteStream();
+            output.writeLine("Listening for publish requests on port " + this.getPort() + "...").await();
+            try
+            {
+                while (!this.isDisposed())
+                {
+                    final Socket socket = this.serverSocket.accept();
+                    this.executorService.submit(() -> this.handle(socket));
+                }
+            }
+            catch (SocketException error)
+            {
+                // The server socket was closed because this daemon was disposed.
+                if (!this.isDisposed())
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+        });
+    }
+
+    private void handle(Socket socket)
+    {
+        try (final Socket requestSocket = socket)
+        {
+            final DataInputStream input = new DataInputStream(requestSocket.getInputStream());
+            final DataOutputStream frameOutput = new DataOutputStream(requestSocket.getOutputStream());
+            final CharacterToByteWriteStream output = CharacterToByteWriteStream.create(
+                OutputStreamToByteWriteStream.create(new FrameOutputStream(frameOutput, QubPublishDaemon.outputFrameType)));
+            final CharacterToByteWriteStream error = CharacterToByteWriteStream.create(
+                OutputStreamToByteWriteStream.create(new FrameOutputStream(frameOutput, QubPublishDaemon.errorFrameType)));
+
+            int exitCode;
+            try
+            {
+                final byte[] token = QubPublishDaemon.readFrame(input, QubPublishDaemon.tokenFrameType, QubPublishDaemon.maximumTokenFrameLength);
+                if (!MessageDigest.isEqual(this.token, token))
+                {
+                    output.writeLine("ERROR: The publish request didn't have the daemon's token.").await();
+                    exitCode = 1;
+                }
+                else
+                {
+                    final byte[] request = QubPublishDaemon.readFrame(input, QubPublishDaemon.requestFrameType, QubPublishDaemon.maximumFrameLength);
+                    final JSONObject requestJson = JSON.parseObject(new String(request, StandardCharsets.UTF_8)).await();
+                    final QubPublishParameters requestParameters = this.getRequestParameters(requestJson, output, error).await();
+                    if (requestParameters.getUpdateDependents())
+                    {
+                        output.writeLine("ERROR: --updatedependents can't be used with --usedaemon.").await();
+                        exitCode = 1;
+                    }
+                    else
+                    {
+                        exitCode = this.runLocked(QubPublishDaemon.getLocks(requestParameters).await(), () ->
+                        {
+                            final int publishExitCode = requestParameters.getBatch()
+                                ? QubPublishBatch.create(requestParameters)
+                                    .addProjectFolders(requestParameters.getFolderToPublish())
+                                    .run(this.qubFolderView)
+                                : QubPublish.run(requestParameters, this.qubFolderView);
+                            requestParameters.getTrace().save().await();
+                            return publishExitCode;
+                        });
+                    }
+                }
+            }
+            catch (Throwable publishError)
+            {
+                final Throwable unwrappedError = Exceptions.unwrap(publishError);
+                if (unwrappedError instanceof IOException)
+                {
+                    throw unwrappedError;
+                }
+                output.writeLine("ERROR: " + unwrappedError.getMessage()).await();
+                exitCode = 1;
+            }
+
+            synchronized (frameOutput)
+            {
+                frameOutput.writeByte(QubPublishDaemon.exitCodeFrameType);
+                frameOutput.writeInt(4);
+                frameOutput.writeInt(exitCode);
+                frameOutput.flush();
+            }
+        }
+        catch (Throwable error)
+        {
+            // The client disconnected before its publish finished. The publish itself can't be
+            // interrupted safely, so the rest of its output is dropped.
+        }
+    }
+
+    /**
+     * Read a frame of the provided type from the provided stream.
+     * @param input The stream to read the frame from.
+     * @param expectedFrameType The type of frame to read.
+     * @param maximumLength The maximum number of bytes that the frame may have.
+     * @return The bytes of the frame.
+     */
+    static byte[] readFrame(DataInputStream input, byte expectedFrameType, int maximumLength) throws IOException
+    {
+        final byte frameType = input.readByte();
+        if (frameType != expectedFrameType)
+        {
+            throw new IOException("Expected a '" + (char)expectedFrameType + "' frame, but found a '" + (char)frameType + "' frame.");
+        }
+        return QubPublishDaemon.readFrameBytes(input, frameType, maximumLength);
+    }
+
+    /**
+     * Read the length and then the bytes of a frame whose type has already been read from the
+     * provided stream. The length is checked before anything is allocated, so a malformed or
+     * hostile frame can't make the reader allocate an unbounded array.
+     * @param input The stream to read the frame from.
+     * @param frameType The type of the frame.
+     * @param maximumLength The maximum number of bytes that the frame may have.
+     * @return The bytes of the frame.
+     */
+    private static byte[] readFrameBytes(DataInputStream input, byte frameType, int maximumLength) throws IOException
+    {
+        final int length = input.readInt();
+        if (length < 0 || maximumLength < length)
+        {
+            throw new IOException("The length of a '" + (char)frameType + "' frame must be between 0 and " + maximumLength + ", but it was " + length + ".");
+        }
+        final byte[] result = new byte[length];
+        input.readFully(result);
+        return result;
+    }
+
+    /**
+     * Write a frame of the provided type to the provided stream.
+     * @param output The stream to write the frame to.
+     * @param frameType The type of the frame.
+     * @param bytes The bytes of the frame.
+     */
+    static void writeFrame(DataOutputStream output, byte frameType, byte[] bytes) throws IOException
+    {
+        output.writeByte(frameType);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Send a publish request with the provided parameters to the daemon that is listening on the
+     * provided port of the loopback address, and write the daemon's output to the parameters'
+     * output and error streams as it arrives. The request is authorized with the token in the
+     * daemon's token file in the parameters' qub folder.
+     * @param parameters The parameters to publish with.
+     * @param port The port that the daemon is listening on.
+     * @return The exit code of the publish.
+     */
+    public static Result<Integer> send(QubPublishParameters parameters, int port)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+        PreCondition.assertBetween(1, port, 65535, "port");
+
+        return Result.create(() ->
+        {
+            final CharacterWriteStream output = parameters.getOutputWriteStream();
+            final CharacterWriteStream error = parameters.getErrorWriteStream();
+
+            Integer result = null;
+            try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+            {
+                final File tokenFile = QubPublishDaemon.getTokenFile(parameters.getQubFolder(), port).await();
+                final String token = tokenFile.getContentsAsString()
+                    .catchError(FileNotFoundException.class)
+                    .await();
+                if (token == null)
+                {
+                    throw new NotFoundException("The publish daemon on port " + port + " didn't write a token file at " + Strings.escapeAndQuote(tokenFile.toString()) + ".");
+                }
+
+                final DataOutputStream requestOutput = new DataOutputStream(socket.getOutputStream());
+                QubPublishDaemon.writeFrame(requestOutput, QubPublishDaemon.tokenFrameType, token.getBytes(StandardCharsets.UTF_8));
+                QubPublishDaemon.writeFrame(requestOutput, QubPublishDaemon.requestFrameType, QubPublishDaemon.createRequest(parameters).toString().getBytes(StandardCharsets.UTF_8));
+                requestOutput.flush();
+
+                final DataInputStream input = new DataInputStream(socket.getInputStream());
+                while (result == null)
+                {
+                    final byte frameType = input.readByte();
+                    final byte[] frame = QubPublishDaemon.readFrameBytes(input, frameType, QubPublishDaemon.maximumFrameLength);
+                    switch (frameType)
+                    {
+                        case QubPublishDaemon.outputFrameType:
+                            output.write(new String(frame, StandardCharsets.UTF_8)).await();
+                            break;
+
+                        case QubPublishDaemon.errorFrameType:
+                            error.write(new String(frame, StandardCharsets.UTF_8)).await();
+                            break;
+
+                        case QubPublishDaemon.exitCodeFrameType:
+                            result = new DataInputStream(new java.io.ByteArrayInputStream(frame)).readInt();
+                            break;
+
+                        default:
+                            throw new IOException("Unexpected '" + (char)frameType + "' frame from the publish daemon.");
+                    }
+                }
+            }
+            catch (IOException sendError)
+            {
+                throw Exceptions.asRuntime(sendError);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    @Override
+    public Result<Boolean> dispose()
+    {
+        return Result.create(() ->
+        {
+            final boolean result = !this.disposed;
+            if (result)
+            {
+                this.disposed = true;
+                this.executorService.shutdown();
+                QubPublishDaemon.close(this.serverSocket);
+                this.tokenFile.delete().catchError().await();
+            }
+            return result;
+        });
+    }
+
+    private static void close(ServerSocket serverSocket)
+    {
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    /**
+     * An OutputStream that writes each write to the provided stream as frames of the provided
+     * type, splitting writes that are longer than {@link QubPublishDaemon#maximumFrameLength}. The
+     * output and error streams of a request share one socket, so writes are synchronized on that
+     * socket's stream.
+     */
+    private static class FrameOutputStream extends OutputStream
+    {
+        private final DataOutputStream frameOutput;
+        private final byte frameType;
+
+        private FrameOutputStream(DataOutputStream frameOutput, byte frameType)
+        {
+            this.frameOutput = frameOutput;
+            this.frameType = frameType;
+        }
+
+        @Override
+        public void write(int value) throws IOException
+        {
+            this.write(new byte[] { (byte)value }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int startIndex, int length) throws IOException
+        {
+            synchronized (this.frameOutput)
+            {
+                int written = 0;
+                while (written < length)
+                {
+                    final int frameLength = Math.min(length - written, QubPublishDaemon.maximumFrameLength);
+                    this.frameOutput.writeByte(this.frameType);
+                    this.frameOutput.writeInt(frameLength);
+                    this.frameOutput.write(bytes, startIndex + written, frameLength);
+                    written += frameLength;
+                }
+                this.frameOutput.flush();
+            }
+        }
+    }
+}
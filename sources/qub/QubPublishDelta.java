@@ -0,0 +1,374 @@
+package qub;
+
+import java.security.MessageDigest;
+
+/**
+ * A block-level delta that describes how to build a target file from the blocks of a basis file,
+ * using the same rolling-checksum matching as rsync. The basis is split into fixed-size blocks
+ * that are each summarized by a cheap rolling checksum and a strong hash. The target is then
+ * scanned one byte at a time, and every window whose rolling checksum and strong hash match a
+ * basis block is copied from the basis instead of being written as literal bytes. Because the
+ * rolling checksum can be slid forward by one byte in constant time, blocks are still found after
+ * bytes are inserted or removed earlier in the file.
+ */
+public class QubPublishDelta
+{
+    /**
+     * The default number of bytes in each basis block.
+     */
+    public static final int defaultBlockSize = 4096;
+
+    /**
+     * The modulus of the two halves of the rolling checksum.
+     */
+    private static final int checksumModulus = 1 << 16;
+
+    /**
+     * A range of the target that is either copied from the basis or written as literal bytes.
+     */
+    public static class Operation
+    {
+        private final int targetOffset;
+        private final int length;
+        private final int basisOffset;
+        private final byte[] literal;
+
+        private Operation(int targetOffset, int length, int basisOffset, byte[] literal)
+        {
+            this.targetOffset = targetOffset;
+            this.length = length;
+            this.basisOffset = basisOffset;
+            this.literal = literal;
+        }
+
+        /**
+         * Get the offset in the target where this operation's bytes go.
+         * @return The offset in the target where this operation's bytes go.
+         */
+        public int getTargetOffset()
+        {
+            return this.targetOffset;
+        }
+
+        /**
+         * Get the number of bytes in this operation.
+         * @return The number of bytes in this operation.
+         */
+        public int getLength()
+        {
+            return this.length;
+        }
+
+        /**
+         * Get whether or not this operation's bytes are copied from the basis.
+         * @return Whether or not this operation's bytes are copied from the basis.
+         */
+        public boolean isCopy()
+        {
+            return this.literal == null;
+        }
+
+        /**
+         * Get the offset in the basis that this operation's bytes are copied from.
+         * @return The offset in the basis that this operation's bytes are copied from, or -1 if
+         * this operation writes literal bytes.
+         */
+        public int getBasisOffset()
+        {
+            return this.basisOffset;
+        }
+
+        /**
+         * Get whether or not this operation's bytes are already at the same offset in the basis, so
+         * a target that starts as a copy of the basis doesn't need them to be written.
+         * @return Whether or not this operation's bytes are already in place in the basis.
+         */
+        public boolean isInPlace()
+        {
+            return this.isCopy() && this.basisOffset == this.targetOffset;
+        }
+
+        /**
+         * Get the literal bytes of this operation.
+         * @return The literal bytes of this operation, or null if this operation's bytes are
+         * copied from the basis.
+         */
+        public byte[] getLiteral()
+        {
+            return this.literal;
+        }
+    }
+
+    private final int blockSize;
+    private final int targetLength;
+    private final List<Operation> operations;
+
+    private QubPublishDelta(int blockSize, int targetLength)
+    {
+        this.blockSize = blockSize;
+        this.targetLength = targetLength;
+        this.operations = List.create();
+    }
+
+    /**
+     * Create the delta that builds the provided target from the provided basis using the default
+     * block size.
+     * @param basis The bytes of the basis file.
+     * @param target The bytes of the target file.
+     * @return The delta that builds the target from the basis.
+     */
+    public static QubPublishDelta create(byte[] basis, byte[] target)
+    {
+        return QubPublishDelta.create(basis, target, QubPublishDelta.defaultBlockSize);
+    }
+
+    /**
+     * Create the delta that builds the provided target from the provided basis.
+     * @param basis The bytes of the basis file.
+     * @param target The bytes of the target file.
+     * @param blockSize The number of bytes in each basis block.
+     * @return The delta that builds the target from the basis.
+     */
+    public static QubPublishDelta create(byte[] basis, byte[] target, int blockSize)
+    {
+        PreCondition.assertNotNull(basis, "basis");
+        PreCondition.assertNotNull(target, "target");
+        PreCondition.assertGreaterThanOrEqualTo(blockSize, 1, "blockSize");
+
+        final QubPublishDelta result = new QubPublishDelta(blockSize, target.length);
+
+        // Index the basis's full blocks by their rolling checksum. A trailing partial block is
+        // never matched, so its bytes are written as literals if they're still in the target.
+        final java.util.HashMap<Integer,List<Integer>> basisBlocks = new java.util.HashMap<>();
+        final int basisBlockCount = basis.length / blockSize;
+        for (int blockIndex = 0; blockIndex < basisBlockCount; ++blockIndex)
+        {
+            final int checksum = QubPublishDelta.getChecksum(basis, blockIndex * blockSize, blockSize);
+            basisBlocks.computeIfAbsent(checksum, (Integer key) -> List.create()).add(blockIndex);
+        }
+        final java.util.HashMap<Integer,String> basisBlockHashes = new java.util.HashMap<>();
+
+        int literalStart = 0;
+        int offset = 0;
+        int a = 0;
+        int b = 0;
+        boolean windowIsValid = false;
+        while (offset + blockSize <= target.length)
+        {
+            if (!windowIsValid)
+            {
+                a = QubPublishDelta.getChecksumA(target, offset, blockSize);
+                b = QubPublishDelta.getChecksumB(target, offset, blockSize);
+                windowIsValid = true;
+            }
+
+            final int matchedBlockIndex = QubPublishDelta.findBlock(basis, target, offset, blockSize, (b << 16) | a, basisBlocks, basisBlockHashes);
+            if (matchedBlockIndex != -1)
+            {
+                result.addLiteral(target, literalStart, offset);
+                result.addCopy(offset, blockSize, matchedBlockIndex * blockSize);
+                offset += blockSize;
+                literalStart = offset;
+                windowIsValid = false;
+            }
+            else
+            {
+                if (offset + blockSize < target.length)
+                {
+                    final int removedByte = target[offset] & 0xFF;
+                    final int addedByte = target[offset + blockSize] & 0xFF;
+                    a = Math.floorMod(a - removedByte + addedByte, QubPublishDelta.checksumModulus);
+                    b = Math.floorMod(b - blockSize * removedByte + a, QubPublishDelta.checksumModulus);
+                }
+                ++offset;
+            }
+        }
+        result.addLiteral(target, literalStart, target.length);
+
+        return result;
+    }
+
+    /**
+     * Get the rolling checksum of the provided range of bytes.
+     * @param bytes The bytes to get the checksum of.
+     * @param offset The offset of the first byte in the range.
+     * @param length The number of bytes in the range.
+     * @return The rolling checksum of the provided range of bytes.
+     */
+    static int getChecksum(byte[] bytes, int offset, int length)
+    {
+        PreCondition.assertNotNull(bytes, "bytes");
+
+        return (QubPublishDelta.getChecksumB(bytes, offset, length) << 16) | QubPublishDelta.getChecksumA(bytes, offset, length);
+    }
+
+    private static int getChecksumA(byte[] bytes, int offset, int length)
+    {
+        int result = 0;
+        for (int i = 0; i < length; ++i)
+        {
+            result += bytes[offset + i] & 0xFF;
+        }
+        return result % QubPublishDelta.checksumModulus;
+    }
+
+    private static int getChecksumB(byte[] bytes, int offset, int length)
+    {
+        long result = 0;
+        for (int i = 0; i < length; ++i)
+        {
+            result += (long)(length - i) * (bytes[offset + i] & 0xFF);
+        }
+        return (int)(result % QubPublishDelta.checksumModulus);
+    }
+
+    private static String getStrongHash(byte[] bytes, int offset, int length)
+    {
+        final MessageDigest digest = QubPublishFiles.createSHA256Digest();
+        digest.update(bytes, offset, length);
+        return QubPublishFiles.toHexString(digest.digest());
+    }
+
+    /**
+     * Find the basis block that matches the target window at the provided offset. When several
+     * basis blocks match, the block at the same offset as the window is preferred because it
+     * doesn't need to be written into a target that starts as a copy of the basis.
+     */
+    private static int findBlock(byte[] basis, byte[] target, int offset, int blockSize, int checksum, java.util.HashMap<Integer,List<Integer>> basisBlocks, java.util.HashMap<Integer,String> basisBlockHashes)
+    {
+        int result = -1;
+        final List<Integer> candidateBlockIndexes = basisBlocks.get(checksum);
+        if (candidateBlockIndexes != null)
+        {
+            final String windowHash = QubPublishDelta.getStrongHash(target, offset, blockSize);
+            for (final Integer candidateBlockIndex : candidateBlockIndexes)
+            {
+                final String candidateHash = basisBlockHashes.computeIfAbsent(candidateBlockIndex,
+                    (Integer blockIndex) -> QubPublishDelta.getStrongHash(basis, blockIndex * blockSize, blockSize));
+                if (candidateHash.equals(windowHash))
+                {
+                    if (result == -1 || candidateBlockIndex * blockSize == offset)
+                    {
+                        result = candidateBlockIndex;
+                    }
+                    if (result * blockSize == offset)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addLiteral(byte[] target, int startOffset, int endOffset)
+    {
+        if (startOffset < endOffset)
+        {
+            this.operations.add(new Operation(startOffset, endOffset - startOffset, -1, java.util.Arrays.copyOfRange(target, startOffset, endOffset)));
+        }
+    }
+
+    private void addCopy(int targetOffset, int length, int basisOffset)
+    {
+        final Operation lastOperation = this.operations.any() ? this.operations.last() : null;
+        if (lastOperation != null &&
+            lastOperation.isCopy() &&
+            lastOperation.basisOffset + lastOperation.length == basisOffset &&
+            lastOperation.targetOffset + lastOperation.length == targetOffset)
+        {
+            this.operations.set(this.operations.getCount() - 1, new Operation(lastOperation.targetOffset, lastOperation.length + length, lastOperation.basisOffset, null));
+        }
+        else
+        {
+            this.operations.add(new Operation(targetOffset, length, basisOffset, null));
+        }
+    }
+
+    /**
+     * Get the number of bytes in each basis block.
+     * @return The number of bytes in each basis block.
+     */
+    public int getBlockSize()
+    {
+        return this.blockSize;
+    }
+
+    /**
+     * Get the number of bytes in the target.
+     * @return The number of bytes in the target.
+     */
+    public int getTargetLength()
+    {
+        return this.targetLength;
+    }
+
+    /**
+     * Get the operations that build the target, in target order.
+     * @return The operations that build the target.
+     */
+    public Iterable<Operation> getOperations()
+    {
+        return this.operations;
+    }
+
+    /**
+     * Get the number of target bytes that are copied from the basis.
+     * @return The number of target bytes that are copied from the basis.
+     */
+    public long getCopiedByteCount()
+    {
+        long result = 0;
+        for (final Operation operation : this.operations)
+        {
+            if (operation.isCopy())
+            {
+                result += operation.length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of bytes that must be written to turn a copy of the basis into the target.
+     * This is every byte that isn't already at the same offset in the basis.
+     * @return The number of bytes that must be written to turn a copy of the basis into the
+     * target.
+     */
+    public long getChangedByteCount()
+    {
+        long result = 0;
+        for (final Operation operation : this.operations)
+        {
+            if (!operation.isInPlace())
+            {
+                result += operation.length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Build the target by applying this delta to the provided basis.
+     * @param basis The bytes of the basis file that this delta was created from.
+     * @return The bytes of the target file.
+     */
+    public byte[] apply(byte[] basis)
+    {
+        PreCondition.assertNotNull(basis, "basis");
+
+        final byte[] result = new byte[this.targetLength];
+        for (final Operation operation : this.operations)
+        {
+            if (operation.isCopy())
+            {
+                System.arraycopy(basis, operation.basisOffset, result, operation.targetOffset, operation.length);
+            }
+            else
+            {
+                System.arraycopy(operation.literal, 0, result, operation.targetOffset, operation.length);
+            }
+        }
+        return result;
+    }
+}
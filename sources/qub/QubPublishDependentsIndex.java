@@ -0,0 +1,729 @@
+package qub;
+
+/**
+ * An on-disk reverse-dependency index of the projects in a qub folder. The index is keyed by
+ * publisher/project and lists the signatures of the projects whose latest published version
+ * depends on that project. Publishes that change the index file hold its lock while they read,
+ * modify, and save it, so that concurrent publishes don't drop each other's changes.
+ *
+ * Checking whether the index is stale must not require walking the qub folder, so each change to
+ * the qub folder's published versions bumps a generation number that is stored in a small file
+ * next to the index. Publishes bump the generation when they record themselves in the index, and
+ * prunes bump it after they delete version folders. Both do so while holding the index's lock.
+ * The index records the generation that it matches, and it is stale when that no longer matches
+ * the generation file. Changes that are made without qub-publish aren't detected; deleting the
+ * index file forces it to be rebuilt.
+ */
+public class QubPublishDependentsIndex
+{
+    private static final int currentFormat = 1;
+    private static final String formatPropertyName = "format";
+    private static final String generationPropertyName = "generation";
+    private static final String projectsPropertyName = "projects";
+    private static final String dependentsPropertyName = "dependents";
+    private static final String publisherPropertyName = "publisher";
+    private static final String projectPropertyName = "project";
+    private static final String versionPropertyName = "version";
+
+    /**
+     * The latest published version of each project folder in the qub folder, keyed by
+     * publisher/project. Projects that don't have a published version map to an empty string.
+     */
+    private final Map<String,String> projects;
+    private final Map<String,List<ProjectSignature>> dependents;
+
+    /**
+     * The generation of the qub folder that this index matches, or -1 if it doesn't match any
+     * generation.
+     */
+    private long generation;
+
+    /**
+     * The text of the index file that this index was last parsed from or saved to, or null if it
+     * hasn't been read from or written to a file.
+     */
+    private String fileText;
+
+    private QubPublishDependentsIndex()
+    {
+        this.projects = Map.create();
+        this.dependents = Map.create();
+    }
+
+    /**
+     * Create a new empty QubPublishDependentsIndex.
+     * @return A new empty QubPublishDependentsIndex.
+     */
+    public static QubPublishDependentsIndex create()
+    {
+        return new QubPublishDependentsIndex();
+    }
+
+    /**
+     * Get the file that the dependents index for the provided qub folder is stored in.
+     * @param qubFolder The qub folder to get the dependents index file for.
+     * @return The file that the dependents index for the provided qub folder is stored in.
+     */
+    public static Result<File> getIndexFile(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            final QubProjectFolder publishProjectFolder = qubFolder.getProjectFolder("qub", "publish-java").await();
+            final Folder publishDataFolder = publishProjectFolder.getProjectDataFolder().await();
+            return publishDataFolder.getFile("dependents.json").await();
+        });
+    }
+
+    /**
+     * Get the key that the provided project is stored under in this index.
+     * @param publisher The publisher of the project.
+     * @param project The name of the project.
+     * @return The key that the provided project is stored under in this index.
+     */
+    static String getKey(String publisher, String project)
+    {
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        return publisher + "/" + project;
+    }
+
+    /**
+     * Get the lock file that guards the dependents index for the provided qub folder.
+     * @param qubFolder The qub folder to get the dependents index lock file for.
+     * @return The lock file that guards the dependents index for the provided qub folder.
+     */
+    public static Result<File> getLockFile(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            return QubPublishFileLock.getLockFile(QubPublishDependentsIndex.getIndexFile(qubFolder).await()).await();
+        });
+    }
+
+    /**
+     * Get the file that the generation of the dependents index for the provided qub folder is
+     * stored in.
+     * @param qubFolder The qub folder to get the generation file for.
+     * @return The file that the generation of the dependents index is stored in.
+     */
+    public static Result<File> getGenerationFile(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+            return indexFile.getParentFolder().await().getFile("dependents.generation").await();
+        });
+    }
+
+    /**
+     * Get the current generation of the provided qub folder's published versions. A qub folder
+     * that doesn't have a generation file yet is at generation 0.
+     * @param qubFolder The qub folder to get the generation of.
+     * @return The current generation of the provided qub folder.
+     */
+    public static Result<Long> getGeneration(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            long result = 0;
+            final String generationText = QubPublishDependentsIndex.getGenerationFile(qubFolder).await()
+                .getContentsAsString()
+                .catchError(FileNotFoundException.class)
+                .await();
+            if (!Strings.isNullOrEmpty(generationText))
+            {
+                try
+                {
+                    result = Long.parseLong(generationText.trim());
+                }
+                catch (NumberFormatException error)
+                {
+                    // A corrupt generation file never matches an index, so the index is rebuilt.
+                    result = -2;
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Write the provided generation to the provided qub folder's generation file. The caller must
+     * hold the index's lock.
+     */
+    private static Result<Void> setGeneration(QubFolder qubFolder, long generation)
+    {
+        return Result.create(() ->
+        {
+            QubPublishFiles.setContentsAtomically(
+                QubPublishDependentsIndex.getGenerationFile(qubFolder).await(),
+                Long.toString(generation))
+                .await();
+        });
+    }
+
+    /**
+     * Record that the provided qub folder's published versions were changed by something other
+     * than a publish, such as a prune. This bumps the qub folder's generation while holding the
+     * index's lock, so the next publish that reads the index rebuilds it.
+     * @param qubFolder The qub folder whose published versions changed.
+     * @return The result of bumping the generation.
+     */
+    public static Result<Void> invalidate(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            try (final QubPublishFileLock lock = QubPublishFileLock.acquire(QubPublishDependentsIndex.getLockFile(qubFolder).await()).await())
+            {
+                final long generation = QubPublishDependentsIndex.getGeneration(qubFolder).await();
+                QubPublishDependentsIndex.setGeneration(qubFolder, Math.max(generation, 0) + 1).await();
+            }
+        });
+    }
+
+    /**
+     * Read the dependents index for the provided qub folder. If the index doesn't exist, can't be
+     * parsed, or is stale, then the index will be rebuilt from the project folders in the qub
+     * folder and written back to disk while holding the index's lock. Checking whether the index
+     * is stale only reads the generation file, so an up-to-date index is used without listing any
+     * project folders.
+     * @param qubFolder The qub folder to get the dependents index for.
+     * @param workers The workers that will be used to scan the qub folder if the index needs to
+     *                be rebuilt.
+     * @return The dependents index for the provided qub folder.
+     */
+    public static Result<QubPublishDependentsIndex> getOrBuild(QubFolder qubFolder, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+            QubPublishDependentsIndex result = QubPublishDependentsIndex.parse(indexFile)
+                .catchError()
+                .await();
+            if (result == null || result.isStale(qubFolder).await())
+            {
+                try (final QubPublishFileLock lock = QubPublishFileLock.acquire(QubPublishDependentsIndex.getLockFile(qubFolder).await()).await())
+                {
+                    // Another publish may have rebuilt the index while this one waited for the lock.
+                    result = QubPublishDependentsIndex.parse(indexFile)
+                        .catchError()
+                        .await();
+                    final long generation = QubPublishDependentsIndex.getGeneration(qubFolder).await();
+                    if (result == null || result.generation != generation)
+                    {
+                        result = QubPublishDependentsIndex.build(qubFolder, workers).await();
+                        result.generation = generation;
+                        result.save(indexFile).await();
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Record a newly published project in the dependents index for the provided qub folder and
+     * bump the qub folder's generation. The existing index is updated incrementally, unless it
+     * doesn't exist, can't be parsed, or is stale, in which case it will be rebuilt from the
+     * project folders in the qub folder. The index is read, updated, and written back to disk
+     * while holding the index's lock.
+     * @param qubFolder The qub folder that the project was published to.
+     * @param workers The workers that will be used to scan the qub folder if the index needs to
+     *                be rebuilt.
+     * @param publisher The publisher of the published project.
+     * @param project The name of the published project.
+     * @param version The version of the published project.
+     * @param dependencies The dependencies of the published project.
+     * @return The updated dependents index.
+     */
+    public static Result<QubPublishDependentsIndex> update(QubFolder qubFolder, QubPublishWorkers workers, String publisher, String project, VersionNumber version, Iterable<ProjectSignature> dependencies)
+    {
+        return QubPublishDependentsIndex.update(qubFolder, workers, null, publisher, project, version, dependencies);
+    }
+
+    /**
+     * Record a newly published project in the dependents index for the provided qub folder. If
+     * the index file hasn't changed since the provided cached index was parsed from or saved to
+     * it, then the cached index is updated and saved instead of parsing the file again. Otherwise
+     * another publish has changed the file, so it is parsed again and updated as in
+     * {@link #update(QubFolder, QubPublishWorkers, String, String, VersionNumber, Iterable)}.
+     * @param qubFolder The qub folder that the project was published to.
+     * @param workers The workers that will be used to scan the qub folder if the index needs to
+     *                be rebuilt.
+     * @param cachedIndex The index that the caller already has in memory, or null if it doesn't
+     *                    have one.
+     * @param publisher The publisher of the published project.
+     * @param project The name of the published project.
+     * @param version The version of the published project.
+     * @param dependencies The dependencies of the published project.
+     * @return The updated dependents index.
+     */
+    public static Result<QubPublishDependentsIndex> update(QubFolder qubFolder, QubPublishWorkers workers, QubPublishDependentsIndex cachedIndex, String publisher, String project, VersionNumber version, Iterable<ProjectSignature> dependencies)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(workers, "workers");
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+        PreCondition.assertNotNull(version, "version");
+
+        return Result.create(() ->
+        {
+            final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+            try (final QubPublishFileLock lock = QubPublishFileLock.acquire(QubPublishDependentsIndex.getLockFile(qubFolder).await()).await())
+            {
+                final String indexText = indexFile.getContentsAsString().catchError().await();
+                final boolean useCachedIndex = cachedIndex != null &&
+                    cachedIndex.fileText != null &&
+                    cachedIndex.fileText.equals(indexText);
+                QubPublishDependentsIndex result = useCachedIndex
+                    ? cachedIndex
+                    : QubPublishDependentsIndex.parse(indexFile, indexText).catchError().await();
+                final long generation = QubPublishDependentsIndex.getGeneration(qubFolder).await();
+                if (result == null || result.generation != generation)
+                {
+                    // The build scans the published project's version folder too, because it was
+                    // committed before the index was updated.
+                    result = QubPublishDependentsIndex.build(qubFolder, workers).await();
+                }
+                else
+                {
+                    result.setProject(publisher, project, version, dependencies);
+                }
+
+                // The index is saved before the generation is bumped, so a publish that fails in
+                // between leaves an index that doesn't match the generation and is rebuilt.
+                result.generation = Math.max(generation, 0) + 1;
+                result.save(indexFile).await();
+                QubPublishDependentsIndex.setGeneration(qubFolder, result.generation).await();
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Build a new dependents index by scanning the latest published version of every project in
+     * the provided qub folder on a single thread.
+     * @param qubFolder The qub folder to scan.
+     * @return The new dependents index.
+     */
+    public static Result<QubPublishDependentsIndex> build(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+            {
+                return QubPublishDependentsIndex.build(qubFolder, workers).await();
+            }
+        });
+    }
+
+    /**
+     * Build a new dependents index by scanning the latest published version of every project in
+     * the provided qub folder. The project folders are listed and scanned on the provided workers,
+     * and then merged into the index in the order that they were listed in.
+     * @param qubFolder The qub folder to scan.
+     * @param workers The workers that the scan will be fanned out to.
+     * @return The new dependents index.
+     */
+    public static Result<QubPublishDependentsIndex> build(QubFolder qubFolder, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final Iterable<QubPublisherFolder> publisherFolders = qubFolder.getPublisherFolders().await();
+            final Iterable<Iterable<QubProjectFolder>> projectFolderLists = workers.map(publisherFolders,
+                (QubPublisherFolder publisherFolder) -> publisherFolder.getProjectFolders().await())
+                .await();
+            final List<QubProjectFolder> projectFolders = List.create();
+            for (final Iterable<QubProjectFolder> projectFolderList : projectFolderLists)
+            {
+                projectFolders.addAll(projectFolderList);
+            }
+
+            final Iterable<ScannedProject> scannedProjects = workers.map(projectFolders, QubPublishDependentsIndex::scan).await();
+
+            final QubPublishDependentsIndex result = QubPublishDependentsIndex.create();
+            for (final ScannedProject scannedProject : scannedProjects)
+            {
+                result.setProject(
+                    scannedProject.publisher,
+                    scannedProject.project,
+                    scannedProject.latestVersion,
+                    scannedProject.dependencies);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * The parts of a project folder's latest published version that the dependents index needs.
+     */
+    private static class ScannedProject
+    {
+        private final String publisher;
+        private final String project;
+        private final VersionNumber latestVersion;
+        private final Iterable<ProjectSignature> dependencies;
+
+        private ScannedProject(String publisher, String project, VersionNumber latestVersion, Iterable<ProjectSignature> dependencies)
+        {
+            this.publisher = publisher;
+            this.project = project;
+            this.latestVersion = latestVersion;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private static ScannedProject scan(QubProjectFolder projectFolder)
+    {
+        VersionNumber latestVersion = null;
+        Iterable<ProjectSignature> dependencies = null;
+        final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).catchError().await();
+        if (latestVersionFolder != null)
+        {
+            final File publishedProjectJsonFile = latestVersionFolder.getProjectJSONFile().await();
+            final QubPublishProjectJSONSummary publishedProjectJson = QubPublishProjectJSONSummary.parse(publishedProjectJsonFile)
+                .catchError(FileNotFoundException.class)
+                .await();
+            if (publishedProjectJson != null)
+            {
+                latestVersion = QubPublishDependentsIndex.getPublishedVersion(latestVersionFolder, publishedProjectJson.getVersion()).await();
+                dependencies = publishedProjectJson.getDependencies();
+            }
+            else
+            {
+                latestVersion = latestVersionFolder.getVersion().catchError().await();
+            }
+        }
+        return new ScannedProject(
+            projectFolder.getPublisherName().await(),
+            projectFolder.getProjectName().await(),
+            latestVersion,
+            dependencies);
+    }
+
+    /**
+     * Get the version of a published project. Projects that were published without a version in
+     * their project.json file use the version of the folder that they were published to.
+     * @param versionFolder The version folder that the project was published to.
+     * @param publishedVersion The version in the published project.json file, or null if it
+     *                         doesn't have one.
+     * @return The version of the published project.
+     */
+    static Result<VersionNumber> getPublishedVersion(QubProjectVersionFolder versionFolder, String publishedVersion)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        return Result.create(() ->
+        {
+            VersionNumber result = Strings.isNullOrEmpty(publishedVersion)
+                ? null
+                : VersionNumber.parse(publishedVersion).await();
+            if (result == null || !result.any())
+            {
+                result = versionFolder.getVersion().await();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Parse a dependents index from the provided file.
+     * @param indexFile The file to parse.
+     * @return The parsed dependents index.
+     */
+    public static Result<QubPublishDependentsIndex> parse(File indexFile)
+    {
+        PreCondition.assertNotNull(indexFile, "indexFile");
+
+        return Result.create(() ->
+        {
+            return QubPublishDependentsIndex.parse(indexFile, indexFile.getContentsAsString().await()).await();
+        });
+    }
+
+    /**
+     * Parse a dependents index from the provided text that was read from the provided file.
+     */
+    private static Result<QubPublishDependentsIndex> parse(File indexFile, String indexText)
+    {
+        return Result.create(() ->
+        {
+            if (indexText == null)
+            {
+                throw new FileNotFoundException(indexFile.toString());
+            }
+            final JSONObject json = JSON.parseObject(indexText).await();
+            final QubPublishDependentsIndex result = QubPublishDependentsIndex.parse(json).await();
+            result.fileText = indexText;
+            return result;
+        });
+    }
+
+    /**
+     * Parse a dependents index from the provided JSON object.
+     * @param json The JSON object to parse.
+     * @return The parsed dependents index.
+     */
+    public static Result<QubPublishDependentsIndex> parse(JSONObject json)
+    {
+        PreCondition.assertNotNull(json, "json");
+
+        return Result.create(() ->
+        {
+            final double format = json.getNumber(QubPublishDependentsIndex.formatPropertyName).await();
+            if (format != QubPublishDependentsIndex.currentFormat)
+            {
+                throw new ParseException("Unsupported dependents index format: " + format);
+            }
+
+            final QubPublishDependentsIndex result = QubPublishDependentsIndex.create();
+
+            // Indexes that were saved before generations were recorded don't match any generation.
+            final Double generation = json.getNumber(QubPublishDependentsIndex.generationPropertyName).catchError().await();
+            result.generation = generation == null ? -1 : generation.longValue();
+
+            final JSONObject projectsJson = json.getObject(QubPublishDependentsIndex.projectsPropertyName).await();
+            for (final String key : projectsJson.getPropertyNames())
+            {
+                result.projects.set(key, projectsJson.getString(key).await());
+            }
+
+            final JSONObject dependentsJson = json.getObject(QubPublishDependentsIndex.dependentsPropertyName).await();
+            for (final String key : dependentsJson.getPropertyNames())
+            {
+                final List<ProjectSignature> keyDependents = List.create();
+                for (final JSONSegment dependentSegment : dependentsJson.getArray(key).await())
+                {
+                    final JSONObject dependentJson = (JSONObject)dependentSegment;
+                    keyDependents.add(ProjectSignature.create(
+                        dependentJson.getString(QubPublishDependentsIndex.publisherPropertyName).await(),
+                        dependentJson.getString(QubPublishDependentsIndex.projectPropertyName).await(),
+                        dependentJson.getString(QubPublishDependentsIndex.versionPropertyName).await()));
+                }
+                result.dependents.set(key, keyDependents);
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Get the generation of the qub folder that this index matches.
+     * @return The generation of the qub folder that this index matches, or -1 if it doesn't match
+     * any generation.
+     */
+    public long getGeneration()
+    {
+        return this.generation;
+    }
+
+    /**
+     * Get whether or not this index no longer matches the published versions in the provided qub
+     * folder. This only compares the generation that this index recorded with the qub folder's
+     * generation file, so it doesn't list or read any project folders.
+     * @param qubFolder The qub folder to compare this index against.
+     * @return Whether or not this index is stale.
+     */
+    public Result<Boolean> isStale(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            return this.generation != QubPublishDependentsIndex.getGeneration(qubFolder).await();
+        });
+    }
+
+    /**
+     * Record the latest published version of the project with the provided publisher and project
+     * name. Any dependents that were previously recorded for an older version of the project will
+     * be replaced.
+     * @param publisher The publisher of the project.
+     * @param project The name of the project.
+     * @param latestVersion The latest published version of the project, or null if the project
+     *                      doesn't have a published version.
+     * @param dependencies The dependencies of the latest published version of the project.
+     * @return This object for method chaining.
+     */
+    public QubPublishDependentsIndex setProject(String publisher, String project, VersionNumber latestVersion, Iterable<ProjectSignature> dependencies)
+    {
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        for (final List<ProjectSignature> keyDependents : this.dependents.getValues())
+        {
+            int index = 0;
+            while (index < keyDependents.getCount())
+            {
+                final ProjectSignature dependent = keyDependents.get(index);
+                if (Comparer.equal(dependent.getPublisher(), publisher) &&
+                    Comparer.equal(dependent.getProject(), project))
+                {
+                    keyDependents.removeAt(index);
+                }
+                else
+                {
+                    ++index;
+                }
+            }
+        }
+
+        String latestVersionString = "";
+        if (latestVersion != null && latestVersion.any())
+        {
+            latestVersionString = latestVersion.toString();
+            if (!Iterable.isNullOrEmpty(dependencies))
+            {
+                final ProjectSignature publishedProjectSignature = ProjectSignature.create(publisher, project, latestVersion);
+                for (final ProjectSignature dependency : dependencies)
+                {
+                    this.addDependent(
+                        QubPublishDependentsIndex.getKey(dependency.getPublisher(), dependency.getProject()),
+                        publishedProjectSignature);
+                }
+            }
+        }
+        this.projects.set(QubPublishDependentsIndex.getKey(publisher, project), latestVersionString);
+
+        return this;
+    }
+
+    private void addDependent(String key, ProjectSignature dependent)
+    {
+        List<ProjectSignature> keyDependents = this.dependents.get(key).catchError().await();
+        if (keyDependents == null)
+        {
+            keyDependents = List.create();
+            this.dependents.set(key, keyDependents);
+        }
+
+        // Keep each list ordered by signature so that reports are deterministic no matter which
+        // order the dependents were published in.
+        final String dependentString = dependent.toString();
+        int insertIndex = 0;
+        for (final ProjectSignature existingDependent : keyDependents)
+        {
+            final String existingDependentString = existingDependent.toString();
+            if (existingDependentString.equals(dependentString))
+            {
+                insertIndex = -1;
+                break;
+            }
+            else if (existingDependentString.compareTo(dependentString) > 0)
+            {
+                break;
+            }
+            ++insertIndex;
+        }
+
+        if (insertIndex >= 0)
+        {
+            keyDependents.insert(insertIndex, dependent);
+        }
+    }
+
+    /**
+     * Get the projects whose latest published version depends on the project with the provided
+     * publisher and project name.
+     * @param publisher The publisher of the project.
+     * @param project The name of the project.
+     * @return The signatures of the projects that depend on the provided project.
+     */
+    public Iterable<ProjectSignature> getDependents(String publisher, String project)
+    {
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        final List<ProjectSignature> result = List.create();
+        final List<ProjectSignature> keyDependents = this.dependents.get(QubPublishDependentsIndex.getKey(publisher, project))
+            .catchError()
+            .await();
+        if (keyDependents != null)
+        {
+            result.addAll(keyDependents);
+        }
+
+        PostCondition.assertNotNull(result, "result");
+
+        return result;
+    }
+
+    /**
+     * Write this index to the provided file. The file is replaced atomically, so publishes that
+     * read the index without holding its lock never see a partially written index.
+     * @param indexFile The file to write this index to.
+     * @return The result of writing this index.
+     */
+    public Result<Void> save(File indexFile)
+    {
+        PreCondition.assertNotNull(indexFile, "indexFile");
+
+        return Result.create(() ->
+        {
+            final String indexText = this.toString();
+            QubPublishFiles.setContentsAtomically(indexFile, indexText).await();
+            this.fileText = indexText;
+        });
+    }
+
+    /**
+     * Get the JSON representation of this index.
+     * @return The JSON representation of this index.
+     */
+    public JSONObject toJson()
+    {
+        final JSONObject projectsJson = JSONObject.create();
+        for (final String key : this.projects.getKeys())
+        {
+            projectsJson.setString(key, this.projects.get(key).await());
+        }
+
+        final JSONObject dependentsJson = JSONObject.create();
+        for (final String key : this.dependents.getKeys())
+        {
+            final List<ProjectSignature> keyDependents = this.dependents.get(key).await();
+            if (keyDependents.any())
+            {
+                final JSONArray keyDependentsJson = JSONArray.create();
+                for (final ProjectSignature dependent : keyDependents)
+                {
+                    keyDependentsJson.add(JSONObject.create()
+                        .setString(QubPublishDependentsIndex.publisherPropertyName, dependent.getPublisher())
+                        .setString(QubPublishDependentsIndex.projectPropertyName, dependent.getProject())
+                        .setString(QubPublishDependentsIndex.versionPropertyName, dependent.getVersion().toString()));
+                }
+                dependentsJson.setArray(key, keyDependentsJson);
+            }
+        }
+
+        return JSONObject.create()
+            .setNumber(QubPublishDependentsIndex.formatPropertyName, QubPublishDependentsIndex.currentFormat)
+            .setNumber(QubPublishDependentsIndex.generationPropertyName, this.generation)
+            .setObject(QubPublishDependentsIndex.projectsPropertyName, projectsJson)
+            .setObject(QubPublishDependentsIndex.dependentsPropertyName, dependentsJson);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toJson().toString();
+    }
+}
@@ -0,0 +1,239 @@
+package qub;
+
+/**
+ * Republishes the projects that are affected by a newly published project. The affected projects
+ * are the published project's dependents, their dependents, and so on. Each affected project's
+ * source folder is found in a source root folder, and the affected projects are then published
+ * together as a batch, so they are published in dependency order and in parallel where they don't
+ * depend on each other. Right before each affected project is published, its project.json file
+ * is updated to depend on the latest published versions of the projects that were republished
+ * before it.
+ */
+public class QubPublishDependentsUpdate
+{
+    private final QubPublishParameters parameters;
+    private final Folder sourceRootFolder;
+
+    private QubPublishDependentsUpdate(QubPublishParameters parameters, Folder sourceRootFolder)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+        PreCondition.assertNotNull(sourceRootFolder, "sourceRootFolder");
+
+        this.parameters = parameters;
+        this.sourceRootFolder = sourceRootFolder;
+    }
+
+    /**
+     * Create a new QubPublishDependentsUpdate.
+     * @param parameters The parameters that the affected projects will be published with.
+     * @param sourceRootFolder The folder that contains the source folders of the affected
+     *                         projects.
+     * @return The new QubPublishDependentsUpdate.
+     */
+    public static QubPublishDependentsUpdate create(QubPublishParameters parameters, Folder sourceRootFolder)
+    {
+        return new QubPublishDependentsUpdate(parameters, sourceRootFolder);
+    }
+
+    /**
+     * Get the folder that contains the source folders of the affected projects.
+     * @return The folder that contains the source folders of the affected projects.
+     */
+    public Folder getSourceRootFolder()
+    {
+        return this.sourceRootFolder;
+    }
+
+    /**
+     * Get the projects that are affected by a new version of the provided project. These are the
+     * project's dependents, their dependents, and so on, each listed once.
+     * @param qubFolderView The view of the qub folder to find the dependents in.
+     * @param publisher The publisher of the published project.
+     * @param project The name of the published project.
+     * @return The publisher/project keys of the affected projects.
+     */
+    public static Result<Iterable<String>> getAffectedProjects(QubPublishQubFolderView qubFolderView, String publisher, String project)
+    {
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        return Result.create(() ->
+        {
+            final String publishedKey = QubPublishDependentsIndex.getKey(publisher, project);
+            final List<String> result = List.create();
+            final List<ProjectSignature> projectsToVisit = List.create();
+            projectsToVisit.addAll(qubFolderView.getDependents(publisher, project).await());
+            while (projectsToVisit.any())
+            {
+                final ProjectSignature projectToVisit = projectsToVisit.removeAt(0);
+                final String projectToVisitKey = QubPublishDependentsIndex.getKey(projectToVisit.getPublisher(), projectToVisit.getProject());
+                if (!projectToVisitKey.equals(publishedKey) && !result.contains(projectToVisitKey))
+                {
+                    result.add(projectToVisitKey);
+                    projectsToVisit.addAll(qubFolderView.getDependents(projectToVisit.getPublisher(), projectToVisit.getProject()).await());
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get the source folders in the source root folder, keyed by the publisher/project of their
+     * project.json files. The source root folder itself is included if it has a project.json
+     * file.
+     * @return The source folders in the source root folder.
+     */
+    public Result<Map<String,Folder>> getSourceFolders()
+    {
+        return Result.create(() ->
+        {
+            final Map<String,Folder> result = Map.create();
+            for (final Folder sourceFolder : QubPublishBatch.create(this.parameters).addProjectFolders(this.sourceRootFolder).getProjectFolders())
+            {
+                final QubPublishProjectJSONSummary summary = QubPublishProjectJSONSummary.parse(sourceFolder.getFile("project.json").await())
+                    .catchError()
+                    .await();
+                if (summary != null && !Strings.isNullOrEmpty(summary.getPublisher()) && !Strings.isNullOrEmpty(summary.getProject()))
+                {
+                    final String key = QubPublishDependentsIndex.getKey(summary.getPublisher(), summary.getProject());
+                    if (!result.containsKey(key))
+                    {
+                        result.set(key, sourceFolder);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Update the project.json file in the provided source folder so that its dependencies on the
+     * provided projects use their latest published versions. If the project.json file has an
+     * explicit version that has already been published, then its version is also bumped to the
+     * next major version after its latest published version, the same way that a publish without
+     * an explicit version would be versioned.
+     * @param qubFolder The qub folder to get the latest published versions from.
+     * @param sourceFolder The source folder whose project.json file will be updated.
+     * @param updatedProjects The publisher/project keys of the projects whose latest published
+     *                        versions should be used.
+     * @return Whether or not the project.json file was changed.
+     */
+    public static Result<Boolean> updateProjectJson(QubFolder qubFolder, Folder sourceFolder, Iterable<String> updatedProjects)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(sourceFolder, "sourceFolder");
+        PreCondition.assertNotNull(updatedProjects, "updatedProjects");
+
+        return Result.create(() ->
+        {
+            boolean result = false;
+            final File projectJsonFile = sourceFolder.getFile("project.json").await();
+            final ProjectJSON projectJson = ProjectJSON.parse(projectJsonFile).await();
+
+            final ProjectJSONJava projectJsonJava = projectJson.getJava();
+            if (projectJsonJava != null && !Iterable.isNullOrEmpty(projectJsonJava.getDependencies()))
+            {
+                final List<ProjectSignature> dependencies = List.create();
+                for (final ProjectSignature dependency : projectJsonJava.getDependencies())
+                {
+                    ProjectSignature updatedDependency = dependency;
+                    if (updatedProjects.contains(QubPublishDependentsIndex.getKey(dependency.getPublisher(), dependency.getProject())))
+                    {
+                        final VersionNumber latestVersion = QubPublishDependentsUpdate.getLatestVersion(qubFolder, dependency.getPublisher(), dependency.getProject()).await();
+                        if (latestVersion != null && !latestVersion.equals(dependency.getVersion()))
+                        {
+                            updatedDependency = ProjectSignature.create(dependency.getPublisher(), dependency.getProject(), latestVersion);
+                            result = true;
+                        }
+                    }
+                    dependencies.add(updatedDependency);
+                }
+                projectJsonJava.setDependencies(dependencies);
+            }
+
+            final VersionNumber version = projectJson.getVersion();
+            if (version != null && version.any() &&
+                !Strings.isNullOrEmpty(projectJson.getPublisher()) &&
+                !Strings.isNullOrEmpty(projectJson.getProject()))
+            {
+                final VersionNumber latestVersion = QubPublishDependentsUpdate.getLatestVersion(qubFolder, projectJson.getPublisher(), projectJson.getProject()).await();
+                if (latestVersion != null && latestVersion.hasMajor() && version.compareTo(latestVersion) <= 0)
+                {
+                    projectJson.setVersion(VersionNumber.create().setMajor(latestVersion.getMajor() + 1).toString());
+                    result = true;
+                }
+            }
+
+            if (result)
+            {
+                projectJsonFile.setContentsAsString(projectJson.toString()).await();
+            }
+            return result;
+        });
+    }
+
+    private static Result<VersionNumber> getLatestVersion(QubFolder qubFolder, String publisher, String project)
+    {
+        return Result.create(() ->
+        {
+            final QubProjectFolder projectFolder = qubFolder.getProjectFolder(publisher, project).await();
+            final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).catchError().await();
+            return latestVersionFolder == null
+                ? null
+                : latestVersionFolder.getVersion().catchError().await();
+        });
+    }
+
+    /**
+     * Republish the projects that are affected by the provided newly published project.
+     * @param qubFolderView The view of the qub folder that the projects are published to.
+     * @param publisher The publisher of the published project.
+     * @param project The name of the published project.
+     * @return The exit code of the update, which is the number of affected projects that couldn't
+     * be republished.
+     */
+    public int run(QubPublishQubFolderView qubFolderView, String publisher, String project)
+    {
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        final CharacterWriteStream output = this.parameters.getOutputWriteStream();
+
+        int exitCode = 0;
+        final Iterable<String> affectedProjects = QubPublishDependentsUpdate.getAffectedProjects(qubFolderView, publisher, project).await();
+        if (affectedProjects.any())
+        {
+            output.writeLine("Updating the projects that depend on " + publisher + "/" + project + "...").await();
+
+            final Map<String,Folder> sourceFolders = this.getSourceFolders().await();
+            final QubPublishBatch batch = QubPublishBatch.create(this.parameters);
+            for (final String affectedProject : affectedProjects)
+            {
+                final Folder sourceFolder = sourceFolders.get(affectedProject).catchError().await();
+                if (sourceFolder == null)
+                {
+                    output.writeLine("ERROR: Couldn't find the source folder for " + affectedProject + " in " + this.sourceRootFolder + ".").await();
+                    ++exitCode;
+                }
+                else
+                {
+                    batch.addProjectFolder(sourceFolder);
+                }
+            }
+
+            if (batch.getProjectFolders().any())
+            {
+                final List<String> updatedProjects = List.create(QubPublishDependentsIndex.getKey(publisher, project));
+                updatedProjects.addAll(affectedProjects);
+                batch.setBeforePublish((Folder sourceFolder) ->
+                {
+                    QubPublishDependentsUpdate.updateProjectJson(qubFolderView.getQubFolder(), sourceFolder, updatedProjects).await();
+                });
+                exitCode += batch.run(qubFolderView);
+            }
+        }
+        return exitCode;
+    }
+}
@@ -0,0 +1,143 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock that serializes the read-modify-write of a file that concurrent publishes
+ * share, such as a project's latest-version pointer or the qub folder's dependents index. The
+ * lock is held on a separate lock file next to the shared file, so the shared file itself can
+ * still be replaced atomically. Threads in this process wait on an in-process lock first, because
+ * the operating system's file locks are held by the whole process. On the local Java file system
+ * other processes then wait on an operating system lock of the lock file. Lock files are never
+ * deleted, because deleting one would let two publishes lock different files with the same name.
+ */
+public class QubPublishFileLock implements Disposable
+{
+    private static final ConcurrentHashMap<String,ReentrantLock> processLocks = new ConcurrentHashMap<>();
+
+    private final File lockFile;
+    private final ReentrantLock processLock;
+    private final FileChannel channel;
+    private boolean disposed;
+
+    private QubPublishFileLock(File lockFile, ReentrantLock processLock, FileChannel channel)
+    {
+        this.lockFile = lockFile;
+        this.processLock = processLock;
+        this.channel = channel;
+    }
+
+    /**
+     * Get the lock file that guards the provided shared file.
+     * @param file The shared file.
+     * @return The lock file that guards the provided shared file.
+     */
+    public static Result<File> getLockFile(File file)
+    {
+        PreCondition.assertNotNull(file, "file");
+
+        return file.getParentFolder()
+            .then((Folder parentFolder) -> parentFolder.getFile(file.getName() + ".lock").await());
+    }
+
+    /**
+     * Wait until no other thread or process holds the provided lock file, and then lock it. The
+     * lock isn't reentrant, so a thread that already holds it must not acquire it again.
+     * @param lockFile The lock file to lock.
+     * @return The acquired lock, which is released when it is disposed.
+     */
+    public static Result<QubPublishFileLock> acquire(File lockFile)
+    {
+        PreCondition.assertNotNull(lockFile, "lockFile");
+
+        return Result.create(() ->
+        {
+            final ReentrantLock processLock = QubPublishFileLock.processLocks.computeIfAbsent(lockFile.toString(), (String path) -> new ReentrantLock());
+            processLock.lock();
+            try
+            {
+                FileChannel channel = null;
+                final java.nio.file.Path lockPath = QubPublishFiles.getJavaPath(lockFile);
+                if (lockPath != null)
+                {
+                    Files.createDirectories(lockPath.getParent());
+                    channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    try
+                    {
+                        channel.lock();
+                    }
+                    catch (IOException | RuntimeException error)
+                    {
+                        channel.close();
+                        throw error;
+                    }
+                }
+                return new QubPublishFileLock(lockFile, processLock, channel);
+            }
+            catch (IOException error)
+            {
+                processLock.unlock();
+                throw Exceptions.asRuntime(error);
+            }
+            catch (RuntimeException error)
+            {
+                processLock.unlock();
+                throw error;
+            }
+        });
+    }
+
+    /**
+     * Get the lock file that this lock holds.
+     * @return The lock file that this lock holds.
+     */
+    public File getLockFile()
+    {
+        return this.lockFile;
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    /**
+     * Release this lock. This must be called on the thread that acquired the lock.
+     * @return Whether or not this call released this lock.
+     */
+    @Override
+    public Result<Boolean> dispose()
+    {
+        return Result.create(() ->
+        {
+            final boolean result = !this.disposed;
+            if (result)
+            {
+                this.disposed = true;
+                try
+                {
+                    if (this.channel != null)
+                    {
+                        // Closing the channel also releases its file lock.
+                        this.channel.close();
+                    }
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+                finally
+                {
+                    this.processLock.unlock();
+                }
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,371 @@
+package qub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper functions for the file operations that publish needs but that the qub file system
+ * doesn't expose.
+ */
+public interface QubPublishFiles
+{
+    /**
+     * Get the java.nio path of the provided file system entry, or null if the entry doesn't
+     * belong to the local Java file system (such as an in-memory file system).
+     * @param entry The file system entry to get the java.nio path of.
+     * @return The java.nio path of the provided file system entry, or null.
+     */
+    static java.nio.file.Path getJavaPath(FileSystemEntry entry)
+    {
+        PreCondition.assertNotNull(entry, "entry");
+
+        return entry.getFileSystem() instanceof JavaFileSystem
+            ? Paths.get(entry.toString())
+            : null;
+    }
+
+    /**
+     * Create a new SHA-256 MessageDigest.
+     * @return A new SHA-256 MessageDigest.
+     */
+    static MessageDigest createSHA256Digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    /**
+     * Get the lowercase hexadecimal representation of the provided digest bytes.
+     * @param digest The digest bytes.
+     * @return The lowercase hexadecimal representation of the provided digest bytes.
+     */
+    static String toHexString(byte[] digest)
+    {
+        PreCondition.assertNotNull(digest, "digest");
+
+        final CharacterList result = CharacterList.create();
+        final String hexCharacters = "0123456789abcdef";
+        for (final byte digestByte : digest)
+        {
+            result.add(hexCharacters.charAt((digestByte >> 4) & 0xF));
+            result.add(hexCharacters.charAt(digestByte & 0xF));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Get the SHA-256 hash of the provided bytes as a lowercase hexadecimal string.
+     * @param bytes The bytes to hash.
+     * @return The SHA-256 hash of the provided bytes.
+     */
+    static String getSHA256(byte[] bytes)
+    {
+        PreCondition.assertNotNull(bytes, "bytes");
+
+        return QubPublishFiles.toHexString(QubPublishFiles.createSHA256Digest().digest(bytes));
+    }
+
+    /**
+     * Get the SHA-256 hash of the contents of the provided file as a lowercase hexadecimal
+     * string. Files on the local Java file system are streamed instead of being read into memory.
+     * @param file The file to hash.
+     * @return The SHA-256 hash of the contents of the provided file.
+     */
+    static Result<String> getSHA256(File file)
+    {
+        PreCondition.assertNotNull(file, "file");
+
+        return Result.create(() ->
+        {
+            String result;
+            final java.nio.file.Path javaPath = QubPublishFiles.getJavaPath(file);
+            if (javaPath == null)
+            {
+                result = QubPublishFiles.getSHA256(file.getContents().await());
+            }
+            else
+            {
+                final MessageDigest digest = QubPublishFiles.createSHA256Digest();
+                try (final InputStream stream = Files.newInputStream(javaPath))
+                {
+                    final byte[] buffer = new byte[64 * 1024];
+                    int bytesRead;
+                    while ((bytesRead = stream.read(buffer)) != -1)
+                    {
+                        digest.update(buffer, 0, bytesRead);
+                    }
+                }
+                catch (java.nio.file.NoSuchFileException error)
+                {
+                    throw new FileNotFoundException(file.toString());
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+                result = QubPublishFiles.toHexString(digest.digest());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Copy the source file to the target file channel-to-channel, so that the bytes never pass
+     * through a heap buffer. Where the platform supports it, this becomes a copy_file_range or
+     * sendfile call. The target file's parent folders are created if they don't exist, and the
+     * target file is replaced if it already exists. The target file is not synced to disk.
+     * @param source The file to copy.
+     * @param target The file to copy to.
+     * @throws IOException If the copy fails.
+     */
+    static void transfer(java.nio.file.Path source, java.nio.file.Path target) throws IOException
+    {
+        PreCondition.assertNotNull(source, "source");
+        PreCondition.assertNotNull(target, "target");
+
+        try (final FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ))
+        {
+            Files.createDirectories(target.getParent());
+            try (final FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+            {
+                final long size = sourceChannel.size();
+                long position = 0;
+                while (position < size)
+                {
+                    position += sourceChannel.transferTo(position, size - position, targetChannel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the contents of the provided file so that readers only ever see either the old
+     * contents or the new contents. On the local Java file system the new contents are written to
+     * a temporary file next to the provided file, which is then atomically moved over it. Other
+     * file systems fall back to writing the file directly.
+     * @param file The file to write.
+     * @param contents The new contents of the file.
+     * @return The result of writing the file.
+     */
+    static Result<Void> setContentsAtomically(File file, String contents)
+    {
+        PreCondition.assertNotNull(file, "file");
+        PreCondition.assertNotNull(contents, "contents");
+
+        return Result.create(() ->
+        {
+            final java.nio.file.Path filePath = QubPublishFiles.getJavaPath(file);
+            if (filePath == null)
+            {
+                file.setContentsAsString(contents).await();
+            }
+            else
+            {
+                try
+                {
+                    Files.createDirectories(filePath.getParent());
+                    final java.nio.file.Path temporaryPath = Files.createTempFile(filePath.getParent(), filePath.getFileName().toString(), ".tmp");
+                    try
+                    {
+                        Files.write(temporaryPath, contents.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                        Files.move(temporaryPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    finally
+                    {
+                        Files.deleteIfExists(temporaryPath);
+                    }
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replace the contents of the provided file with contents that only the current user may
+     * read, such as a secret token. On the local Java file system the new contents are written to
+     * a temporary file that is created with owner-only permissions (where the file system supports
+     * POSIX permissions, and otherwise with the permissions inherited from the file's folder),
+     * which is then atomically moved over the provided file. Other file systems fall back to
+     * writing the file directly.
+     * @param file The file to write.
+     * @param contents The new contents of the file.
+     * @return The result of writing the file.
+     */
+    static Result<Void> setPrivateContents(File file, String contents)
+    {
+        PreCondition.assertNotNull(file, "file");
+        PreCondition.assertNotNull(contents, "contents");
+
+        return Result.create(() ->
+        {
+            final java.nio.file.Path filePath = QubPublishFiles.getJavaPath(file);
+            if (filePath == null)
+            {
+                file.setContentsAsString(contents).await();
+            }
+            else
+            {
+                try
+                {
+                    Files.createDirectories(filePath.getParent());
+                    final java.nio.file.attribute.FileAttribute<?>[] attributes = Files.getFileStore(filePath.getParent()).supportsFileAttributeView("posix")
+                        ? new java.nio.file.attribute.FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) }
+                        : new java.nio.file.attribute.FileAttribute<?>[0];
+                    final java.nio.file.Path temporaryPath = Files.createTempFile(filePath.getParent(), filePath.getFileName().toString(), ".tmp", attributes);
+                    try
+                    {
+                        Files.write(temporaryPath, contents.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                        Files.move(temporaryPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    finally
+                    {
+                        Files.deleteIfExists(temporaryPath);
+                    }
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get whether or not the file system that holds the provided path reports how many hard links
+     * each file has.
+     * @param path The path to check.
+     * @return Whether or not the file system that holds the provided path reports link counts.
+     */
+    static boolean hasLinkCounts(java.nio.file.Path path) throws IOException
+    {
+        PreCondition.assertNotNull(path, "path");
+
+        return Files.getFileStore(path).supportsFileAttributeView("unix");
+    }
+
+    /**
+     * Get the number of hard links to the file at the provided path. File systems that don't
+     * report link counts are treated as if every file has exactly one link.
+     * @param path The path of the file.
+     * @return The number of hard links to the file at the provided path.
+     */
+    static int getLinkCount(java.nio.file.Path path) throws IOException
+    {
+        PreCondition.assertNotNull(path, "path");
+
+        int result = 1;
+        try
+        {
+            result = (Integer)Files.getAttribute(path, "unix:nlink", java.nio.file.LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException ignored)
+        {
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of bytes in the provided file. Files on the local Java file system are sized
+     * without being read.
+     * @param file The file to get the byte count of.
+     * @return The number of bytes in the provided file.
+     */
+    static Result<Long> getByteCount(File file)
+    {
+        PreCondition.assertNotNull(file, "file");
+
+        return Result.create(() ->
+        {
+            long result;
+            final java.nio.file.Path filePath = QubPublishFiles.getJavaPath(file);
+            if (filePath == null)
+            {
+                result = file.getContents().await().length;
+            }
+            else
+            {
+                try
+                {
+                    result = Files.size(filePath);
+                }
+                catch (java.nio.file.NoSuchFileException error)
+                {
+                    throw new FileNotFoundException(file.toString());
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get the number of bytes that deleting the provided folder would free. Folders on the local
+     * Java file system are walked without following symbolic links, so each file is only sized
+     * once rather than read. Files with more than one hard link, such as files that link to a
+     * blob store, are skipped, because deleting them doesn't free their bytes.
+     * @param folder The folder to get the byte count of.
+     * @return The number of bytes that deleting the provided folder would free.
+     */
+    static Result<Long> getByteCount(Folder folder)
+    {
+        PreCondition.assertNotNull(folder, "folder");
+
+        return Result.create(() ->
+        {
+            long result = 0;
+            final java.nio.file.Path folderPath = QubPublishFiles.getJavaPath(folder);
+            if (folderPath == null)
+            {
+                for (final File file : folder.getFilesRecursively().await())
+                {
+                    result += file.getContents().await().length;
+                }
+            }
+            else
+            {
+                try (final java.util.stream.Stream<java.nio.file.Path> paths = Files.walk(folderPath))
+                {
+                    final java.util.Iterator<java.nio.file.Path> pathIterator = paths.iterator();
+                    while (pathIterator.hasNext())
+                    {
+                        final java.nio.file.Path path = pathIterator.next();
+                        if (Files.isRegularFile(path, java.nio.file.LinkOption.NOFOLLOW_LINKS) &&
+                            QubPublishFiles.getLinkCount(path) == 1)
+                        {
+                            result += Files.size(path);
+                        }
+                    }
+                }
+                catch (java.nio.file.NoSuchFileException error)
+                {
+                    throw new FolderNotFoundException(folder.toString());
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+package qub;
+
+/**
+ * The SHA-256 hashes of the files that publish transferred into a version folder. Publish writes a
+ * hash manifest into every version folder so that a later verify can detect published files that
+ * were truncated or corrupted, for example by a crash in the middle of a copy.
+ */
+public class QubPublishHashManifest
+{
+    /**
+     * The name of the hash manifest file within a version folder.
+     */
+    public static final String fileName = "project.hashes.json";
+
+    private static final String filesPropertyName = "files";
+    private static final String namePropertyName = "name";
+    private static final String sha256PropertyName = "sha256";
+
+    private final List<String> fileNames;
+    private final Map<String,String> hashes;
+
+    private QubPublishHashManifest()
+    {
+        this.fileNames = List.create();
+        this.hashes = Map.create();
+    }
+
+    /**
+     * Create a new empty QubPublishHashManifest.
+     * @return A new empty QubPublishHashManifest.
+     */
+    public static QubPublishHashManifest create()
+    {
+        return new QubPublishHashManifest();
+    }
+
+    /**
+     * Get the hash manifest file of the provided version folder.
+     * @param versionFolder The version folder to get the hash manifest file of.
+     * @return The hash manifest file of the provided version folder.
+     */
+    public static Result<File> getManifestFile(QubProjectVersionFolder versionFolder)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        return versionFolder.getFile(QubPublishHashManifest.fileName);
+    }
+
+    /**
+     * Parse a QubPublishHashManifest from the provided file.
+     * @param manifestFile The file to parse.
+     * @return The parsed QubPublishHashManifest.
+     */
+    public static Result<QubPublishHashManifest> parse(File manifestFile)
+    {
+        PreCondition.assertNotNull(manifestFile, "manifestFile");
+
+        return Result.create(() ->
+        {
+            final JSONObject json = JSON.parseObject(manifestFile.getContentsAsString().await()).await();
+            return QubPublishHashManifest.parse(json).await();
+        });
+    }
+
+    /**
+     * Parse a QubPublishHashManifest from the provided JSON object.
+     * @param json The JSON object to parse.
+     * @return The parsed QubPublishHashManifest.
+     */
+    public static Result<QubPublishHashManifest> parse(JSONObject json)
+    {
+        PreCondition.assertNotNull(json, "json");
+
+        return Result.create(() ->
+        {
+            final QubPublishHashManifest result = QubPublishHashManifest.create();
+            for (final JSONSegment fileSegment : json.getArray(QubPublishHashManifest.filesPropertyName).await())
+            {
+                final JSONObject fileJson = (JSONObject)fileSegment;
+                result.set(
+                    fileJson.getString(QubPublishHashManifest.namePropertyName).await(),
+                    fileJson.getString(QubPublishHashManifest.sha256PropertyName).await());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Set the hash of the file with the provided name. Files are transferred concurrently, so
+     * this can be called from multiple threads.
+     * @param fileName The name of the file within the version folder.
+     * @param sha256 The SHA-256 hash of the file's contents.
+     * @return This object for method chaining.
+     */
+    public QubPublishHashManifest set(String fileName, String sha256)
+    {
+        PreCondition.assertNotNullAndNotEmpty(fileName, "fileName");
+        PreCondition.assertNotNullAndNotEmpty(sha256, "sha256");
+
+        synchronized (this.hashes)
+        {
+            if (!this.hashes.containsKey(fileName))
+            {
+                this.fileNames.add(fileName);
+            }
+            this.hashes.set(fileName, sha256);
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the names of the files in this manifest, in the order that they were added.
+     * @return The names of the files in this manifest.
+     */
+    public Iterable<String> getFileNames()
+    {
+        return this.fileNames;
+    }
+
+    /**
+     * Get the hash of the file with the provided name, or null if the file isn't in this
+     * manifest.
+     * @param fileName The name of the file within the version folder.
+     * @return The SHA-256 hash of the file's contents, or null.
+     */
+    public String getHash(String fileName)
+    {
+        PreCondition.assertNotNullAndNotEmpty(fileName, "fileName");
+
+        synchronized (this.hashes)
+        {
+            return this.hashes.get(fileName).catchError().await();
+        }
+    }
+
+    /**
+     * Write this manifest into the provided folder, which is either a version folder or the
+     * staging folder that will become one.
+     * @param folder The folder to write this manifest into.
+     * @return The result of writing this manifest.
+     */
+    public Result<Void> save(Folder folder)
+    {
+        PreCondition.assertNotNull(folder, "folder");
+
+        return Result.create(() ->
+        {
+            folder.getFile(QubPublishHashManifest.fileName).await()
+                .setContentsAsString(this.toString())
+                .await();
+        });
+    }
+
+    /**
+     * Get the JSON representation of this manifest. The files are sorted by name so that the
+     * same set of files always produces the same JSON, regardless of the order in which their
+     * concurrent transfers finished.
+     * @return The JSON representation of this manifest.
+     */
+    public JSONObject toJson()
+    {
+        final java.util.TreeSet<String> sortedFileNames = new java.util.TreeSet<>();
+        synchronized (this.hashes)
+        {
+            for (final String fileName : this.fileNames)
+            {
+                sortedFileNames.add(fileName);
+            }
+        }
+
+        final JSONArray filesJson = JSONArray.create();
+        for (final String fileName : sortedFileNames)
+        {
+            filesJson.add(JSONObject.create()
+                .setString(QubPublishHashManifest.namePropertyName, fileName)
+                .setString(QubPublishHashManifest.sha256PropertyName, this.getHash(fileName)));
+        }
+        return JSONObject.create()
+            .setArray(QubPublishHashManifest.filesPropertyName, filesJson);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toJson().toString();
+    }
+}
@@ -0,0 +1,163 @@
+package qub;
+
+/**
+ * Functions for the latest-version pointer file that publish keeps in each project folder.
+ * Finding a project's latest version folder normally means listing and comparing every one of
+ * its version folders, which gets expensive for projects with hundreds of published versions.
+ * The pointer file records the latest version so that lookups only need to read one small file.
+ * Lookups fall back to listing the version folders when the pointer file is missing, unreadable,
+ * or points at a version folder that no longer exists. Lookups never write, because they are made
+ * for other projects' folders, such as when the dependents of a project are found. The pointer
+ * file is only written by publish and by explicit maintenance steps such as prune.
+ */
+public interface QubPublishLatestVersion
+{
+    /**
+     * The name of the pointer file within a project folder.
+     */
+    String fileName = "latest.json";
+
+    /**
+     * The name of the pointer file's version property.
+     */
+    String versionPropertyName = "version";
+
+    /**
+     * Get the pointer file of the provided project folder.
+     * @param projectFolder The project folder to get the pointer file of.
+     * @return The pointer file of the provided project folder.
+     */
+    static Result<File> getPointerFile(QubProjectFolder projectFolder)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+
+        return projectFolder.getFile(QubPublishLatestVersion.fileName);
+    }
+
+    /**
+     * Get the version folder that the provided project folder's pointer file points at, without
+     * falling back to listing the version folders.
+     * @param projectFolder The project folder to read the pointer file of.
+     * @return The version folder that the pointer file points at, or null if the pointer file is
+     * missing, unreadable, or points at a version folder that doesn't exist.
+     */
+    static Result<QubProjectVersionFolder> getPointer(QubProjectFolder projectFolder)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+
+        return Result.create(() ->
+        {
+            QubProjectVersionFolder result = null;
+            final File pointerFile = QubPublishLatestVersion.getPointerFile(projectFolder).await();
+            final String pointerText = pointerFile.getContentsAsString().catchError().await();
+            final String version = Strings.isNullOrEmpty(pointerText)
+                ? null
+                : JSON.parseObject(pointerText)
+                    .then((JSONObject pointerJson) -> pointerJson.getString(QubPublishLatestVersion.versionPropertyName).await())
+                    .catchError()
+                    .await();
+            if (!Strings.isNullOrEmpty(version))
+            {
+                final QubProjectVersionFolder versionFolder = projectFolder.getProjectVersionFolder(version).await();
+                if (versionFolder.exists().await())
+                {
+                    result = versionFolder;
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get the latest version folder of the provided project folder. If the pointer file can't be
+     * used, then the version folders are listed instead. The pointer file is never written.
+     * @param projectFolder The project folder to get the latest version folder of.
+     * @return The latest version folder of the provided project folder.
+     */
+    static Result<QubProjectVersionFolder> get(QubProjectFolder projectFolder)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+
+        return Result.create(() ->
+        {
+            QubProjectVersionFolder result = QubPublishLatestVersion.getPointer(projectFolder).await();
+            if (result == null)
+            {
+                result = projectFolder.getLatestProjectVersionFolder().await();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Update the pointer file of the provided project folder after the provided version has been
+     * published. The pointer file is only updated if the provided version is newer than the
+     * version that it already points at. The pointer file is replaced atomically, so concurrent
+     * lookups never see a partially written pointer, and the comparison and replacement happen
+     * while holding the pointer file's lock, so concurrent publishes can't move the pointer back
+     * to an older version.
+     * @param projectFolder The project folder to update the pointer file of.
+     * @param version The version that was published.
+     * @return The result of updating the pointer file.
+     */
+    static Result<Void> set(QubProjectFolder projectFolder, VersionNumber version)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+        PreCondition.assertNotNull(version, "version");
+
+        return Result.create(() ->
+        {
+            final File pointerFile = QubPublishLatestVersion.getPointerFile(projectFolder).await();
+            try (final QubPublishFileLock lock = QubPublishFileLock.acquire(QubPublishFileLock.getLockFile(pointerFile).await()).await())
+            {
+                final QubProjectVersionFolder currentVersionFolder = QubPublishLatestVersion.getPointer(projectFolder).await();
+                final VersionNumber currentVersion = currentVersionFolder == null
+                    ? null
+                    : currentVersionFolder.getVersion().catchError().await();
+                if (currentVersion == null || version.compareTo(currentVersion) > 0)
+                {
+                    QubPublishFiles.setContentsAtomically(
+                        pointerFile,
+                        JSONObject.create()
+                            .setString(QubPublishLatestVersion.versionPropertyName, version.toString())
+                            .toString())
+                        .await();
+                }
+            }
+        });
+    }
+
+    /**
+     * Point the pointer file of the provided project folder at the latest of its version folders,
+     * even if the pointer file currently points at a newer version that no longer exists. The
+     * version folders are listed while holding the pointer file's lock, so a concurrent publish
+     * can't be moved back to an older version.
+     * @param projectFolder The project folder to repair the pointer file of.
+     * @return The latest version folder of the provided project folder.
+     */
+    static Result<QubProjectVersionFolder> repair(QubProjectFolder projectFolder)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+
+        return Result.create(() ->
+        {
+            final QubProjectVersionFolder result;
+            final File pointerFile = QubPublishLatestVersion.getPointerFile(projectFolder).await();
+            try (final QubPublishFileLock lock = QubPublishFileLock.acquire(QubPublishFileLock.getLockFile(pointerFile).await()).await())
+            {
+                result = projectFolder.getLatestProjectVersionFolder().await();
+                final VersionNumber latestVersion = result.getVersion().catchError().await();
+                if (latestVersion != null && !result.equals(QubPublishLatestVersion.getPointer(projectFolder).await()))
+                {
+                    QubPublishFiles.setContentsAtomically(
+                        pointerFile,
+                        JSONObject.create()
+                            .setString(QubPublishLatestVersion.versionPropertyName, latestVersion.toString())
+                            .toString())
+                        .await();
+                }
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package qub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Functions for the manifest-only launcher jar that publish can write into a version folder. The
+ * launcher jar contains no classes. Its manifest names the project's main class and lists the
+ * project's compiled jar and its resolved dependency jars in its Class-Path attribute, so a
+ * shortcut can launch the project with "java -jar" instead of passing a long -classpath.
+ */
+public interface QubPublishLauncherJar
+{
+    /**
+     * Get the name of the launcher jar file for the provided project.
+     * @param project The name of the project.
+     * @return The name of the launcher jar file for the provided project.
+     */
+    static String getFileName(String project)
+    {
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        return project + ".launcher.jar";
+    }
+
+    /**
+     * Get the value of the launcher jar's Class-Path manifest attribute. Class-Path entries are
+     * URLs relative to the launcher jar, so each qub folder relative path is prefixed with enough
+     * parent folder references to get from the version folder back to the qub folder.
+     * @param qubFolder The qub folder that the classpath entries are relative to.
+     * @param versionFolder The version folder that the launcher jar will be written to.
+     * @param classpath The classpath entries, relative to the qub folder.
+     * @return The value of the Class-Path manifest attribute.
+     */
+    static String getClassPathAttribute(QubFolder qubFolder, QubProjectVersionFolder versionFolder, Iterable<String> classpath)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(classpath, "classpath");
+
+        final CharacterList qubFolderPrefix = CharacterList.create();
+        for (final String segment : versionFolder.relativeTo(qubFolder).toString().split("/"))
+        {
+            if (!segment.isEmpty())
+            {
+                qubFolderPrefix.addAll("../");
+            }
+        }
+
+        final CharacterList result = CharacterList.create();
+        for (final String classpathEntry : classpath)
+        {
+            if (result.any())
+            {
+                result.add(' ');
+            }
+            result.addAll(QubPublishLauncherJar.encodePath(qubFolderPrefix.toString() + classpathEntry));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Encode the provided relative path so that it can be used as a Class-Path manifest entry.
+     * @param path The relative path to encode.
+     * @return The encoded path.
+     */
+    static String encodePath(String path)
+    {
+        PreCondition.assertNotNull(path, "path");
+
+        try
+        {
+            return new URI(null, null, path, null).toRawPath();
+        }
+        catch (URISyntaxException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    /**
+     * Get the bytes of a launcher jar with the provided main class and Class-Path attribute.
+     * @param mainClass The full name of the class that the launcher jar will run.
+     * @param classPathAttribute The value of the Class-Path manifest attribute.
+     * @return The bytes of the launcher jar.
+     */
+    static byte[] getBytes(String mainClass, String classPathAttribute)
+    {
+        PreCondition.assertNotNullAndNotEmpty(mainClass, "mainClass");
+        PreCondition.assertNotNull(classPathAttribute, "classPathAttribute");
+
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(Attributes.Name.MAIN_CLASS, mainClass);
+        attributes.put(Attributes.Name.CLASS_PATH, classPathAttribute);
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (final JarOutputStream jarStream = new JarOutputStream(result, manifest))
+        {
+            jarStream.flush();
+        }
+        catch (IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Get the contents of a launcher jar for the provided shortcut that will be published into
+     * the provided version folder. The launcher jar is written into the version folder's staging
+     * folder before the version folder exists, so its Class-Path is relative to where the
+     * version folder will be rather than to where the launcher jar is written.
+     * @param shortcut The shortcut whose main class and classpath the launcher jar will use.
+     * @param versionFolder The version folder that the launcher jar will be published into.
+     * @return The contents of the launcher jar.
+     */
+    static byte[] getBytes(QubPublishShortcut shortcut, QubProjectVersionFolder versionFolder)
+    {
+        PreCondition.assertNotNull(shortcut, "shortcut");
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        final String classPathAttribute = QubPublishLauncherJar.getClassPathAttribute(shortcut.getQubFolder(), versionFolder, shortcut.getClasspath());
+        return QubPublishLauncherJar.getBytes(shortcut.getMainClass(), classPathAttribute);
+    }
+}
@@ -0,0 +1,256 @@
+package qub;
+
+/**
+ * The fully resolved transitive dependencies of a published project, including the paths of their
+ * compiled sources jars. Publish writes a lock file into every version folder, so that later
+ * dependency resolutions can stop at any dependency that has a lock file instead of re-reading
+ * the project.json file of every project in its dependency tree.
+ */
+public class QubPublishLockFile
+{
+    /**
+     * The name of the lock file within a version folder.
+     */
+    public static final String fileName = "project.lock.json";
+
+    private static final String dependenciesPropertyName = "dependencies";
+    private static final String publisherPropertyName = "publisher";
+    private static final String projectPropertyName = "project";
+    private static final String versionPropertyName = "version";
+    private static final String compiledSourcesPropertyName = "compiledSources";
+
+    private final List<ProjectSignature> dependencies;
+    private final List<String> compiledSourcesPaths;
+
+    private QubPublishLockFile()
+    {
+        this.dependencies = List.create();
+        this.compiledSourcesPaths = List.create();
+    }
+
+    /**
+     * Create a new empty QubPublishLockFile.
+     * @return A new empty QubPublishLockFile.
+     */
+    public static QubPublishLockFile create()
+    {
+        return new QubPublishLockFile();
+    }
+
+    /**
+     * Get the lock file of the provided version folder.
+     * @param versionFolder The version folder to get the lock file of.
+     * @return The lock file of the provided version folder.
+     */
+    public static Result<File> getLockFile(QubProjectVersionFolder versionFolder)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        return versionFolder.getFile(QubPublishLockFile.fileName);
+    }
+
+    /**
+     * Resolve the transitive dependencies of a project with the provided direct dependencies. The
+     * dependencies are visited depth-first in the same order as
+     * ProjectJSONJava.getTransitiveDependencies(QubFolder). When a dependency's version folder
+     * contains a lock file, that dependency's subtree is taken from its lock file instead of
+     * being walked again.
+     * @param qubFolder The qub folder that the dependencies are published in.
+     * @param dependencies The direct dependencies of the project.
+     * @return The resolved lock file.
+     */
+    public static Result<QubPublishLockFile> resolve(QubFolder qubFolder, Iterable<ProjectSignature> dependencies)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return QubPublishLockFile.resolve(qubFolder, dependencies, (QubProjectVersionFolder dependencyVersionFolder) ->
+        {
+            return QubPublishLockFile.parse(QubPublishLockFile.getLockFile(dependencyVersionFolder).await())
+                .catchError(FileNotFoundException.class)
+                .await();
+        });
+    }
+
+    /**
+     * Resolve the transitive dependencies of a project with the provided direct dependencies,
+     * using the provided function to get the lock file of each dependency's version folder.
+     * @param qubFolder The qub folder that the dependencies are published in.
+     * @param dependencies The direct dependencies of the project.
+     * @param getLockFile The function that returns the lock file of a version folder, or null if
+     *                    the version folder doesn't have a lock file.
+     * @return The resolved lock file.
+     */
+    static Result<QubPublishLockFile> resolve(QubFolder qubFolder, Iterable<ProjectSignature> dependencies, Function1<QubProjectVersionFolder,QubPublishLockFile> getLockFile)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(getLockFile, "getLockFile");
+
+        return Result.create(() ->
+        {
+            final QubPublishLockFile result = QubPublishLockFile.create();
+            if (!Iterable.isNullOrEmpty(dependencies))
+            {
+                final List<ProjectSignature> toVisit = List.create();
+                toVisit.addAll(dependencies);
+                while (toVisit.any())
+                {
+                    final ProjectSignature dependency = toVisit.removeAt(toVisit.getCount() - 1);
+                    if (!result.dependencies.contains(dependency))
+                    {
+                        final QubProjectVersionFolder dependencyVersionFolder = qubFolder.getProjectVersionFolder(
+                            dependency.getPublisher(),
+                            dependency.getProject(),
+                            dependency.getVersion()).await();
+                        result.add(dependency, dependencyVersionFolder.getCompiledSourcesFile().await().relativeTo(qubFolder).toString());
+
+                        final QubPublishLockFile dependencyLockFile = getLockFile.run(dependencyVersionFolder);
+                        if (dependencyLockFile != null)
+                        {
+                            for (int i = 0; i < dependencyLockFile.dependencies.getCount(); ++i)
+                            {
+                                final ProjectSignature lockedDependency = dependencyLockFile.dependencies.get(i);
+                                if (!result.dependencies.contains(lockedDependency))
+                                {
+                                    result.add(lockedDependency, dependencyLockFile.compiledSourcesPaths.get(i));
+                                }
+                            }
+                        }
+                        else
+                        {
+                            final QubPublishProjectJSONSummary dependencyProjectJson = QubPublishProjectJSONSummary.parse(dependencyVersionFolder.getProjectJSONFile().await())
+                                .catchError(FileNotFoundException.class)
+                                .await();
+                            if (dependencyProjectJson != null)
+                            {
+                                toVisit.addAll(dependencyProjectJson.getDependencies());
+                            }
+                        }
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Parse a QubPublishLockFile from the provided file.
+     * @param lockFile The file to parse.
+     * @return The parsed QubPublishLockFile.
+     */
+    public static Result<QubPublishLockFile> parse(File lockFile)
+    {
+        PreCondition.assertNotNull(lockFile, "lockFile");
+
+        return Result.create(() ->
+        {
+            final JSONObject json = JSON.parseObject(lockFile.getContentsAsString().await()).await();
+            return QubPublishLockFile.parse(json).await();
+        });
+    }
+
+    /**
+     * Parse a QubPublishLockFile from the provided JSON object.
+     * @param json The JSON object to parse.
+     * @return The parsed QubPublishLockFile.
+     */
+    public static Result<QubPublishLockFile> parse(JSONObject json)
+    {
+        PreCondition.assertNotNull(json, "json");
+
+        return Result.create(() ->
+        {
+            final QubPublishLockFile result = QubPublishLockFile.create();
+            for (final JSONSegment dependencySegment : json.getArray(QubPublishLockFile.dependenciesPropertyName).await())
+            {
+                final JSONObject dependencyJson = (JSONObject)dependencySegment;
+                result.add(
+                    ProjectSignature.create(
+                        dependencyJson.getString(QubPublishLockFile.publisherPropertyName).await(),
+                        dependencyJson.getString(QubPublishLockFile.projectPropertyName).await(),
+                        dependencyJson.getString(QubPublishLockFile.versionPropertyName).await()),
+                    dependencyJson.getString(QubPublishLockFile.compiledSourcesPropertyName).await());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Add a resolved dependency to this lock file.
+     * @param dependency The signature of the dependency.
+     * @param compiledSourcesPath The path of the dependency's compiled sources jar, relative to
+     *                            the qub folder.
+     * @return This object for method chaining.
+     */
+    public QubPublishLockFile add(ProjectSignature dependency, String compiledSourcesPath)
+    {
+        PreCondition.assertNotNull(dependency, "dependency");
+        PreCondition.assertNotNullAndNotEmpty(compiledSourcesPath, "compiledSourcesPath");
+
+        this.dependencies.add(dependency);
+        this.compiledSourcesPaths.add(compiledSourcesPath);
+
+        return this;
+    }
+
+    /**
+     * Get the resolved transitive dependencies in this lock file.
+     * @return The resolved transitive dependencies in this lock file.
+     */
+    public Iterable<ProjectSignature> getDependencies()
+    {
+        return this.dependencies;
+    }
+
+    /**
+     * Get the paths of the resolved dependencies' compiled sources jars, relative to the qub
+     * folder. The paths are in the same order as the dependencies.
+     * @return The paths of the resolved dependencies' compiled sources jars.
+     */
+    public Iterable<String> getCompiledSourcesPaths()
+    {
+        return this.compiledSourcesPaths;
+    }
+
+    /**
+     * Write this lock file into the provided version folder.
+     * @param versionFolder The version folder to write this lock file into.
+     * @return The result of writing this lock file.
+     */
+    public Result<Void> save(QubProjectVersionFolder versionFolder)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        return Result.create(() ->
+        {
+            QubPublishLockFile.getLockFile(versionFolder).await()
+                .setContentsAsString(this.toString())
+                .await();
+        });
+    }
+
+    /**
+     * Get the JSON representation of this lock file.
+     * @return The JSON representation of this lock file.
+     */
+    public JSONObject toJson()
+    {
+        final JSONArray dependenciesJson = JSONArray.create();
+        for (int i = 0; i < this.dependencies.getCount(); ++i)
+        {
+            final ProjectSignature dependency = this.dependencies.get(i);
+            dependenciesJson.add(JSONObject.create()
+                .setString(QubPublishLockFile.publisherPropertyName, dependency.getPublisher())
+                .setString(QubPublishLockFile.projectPropertyName, dependency.getProject())
+                .setString(QubPublishLockFile.versionPropertyName, dependency.getVersion().toString())
+                .setString(QubPublishLockFile.compiledSourcesPropertyName, this.compiledSourcesPaths.get(i)));
+        }
+        return JSONObject.create()
+            .setArray(QubPublishLockFile.dependenciesPropertyName, dependenciesJson);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toJson().toString();
+    }
+}
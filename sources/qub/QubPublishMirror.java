@@ -0,0 +1,601 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * A secondary qub folder, such as a shared qub folder on a slow mounted volume, that publish
+ * copies each published version folder and shortcut to. Jars that have a counterpart in the
+ * mirror's previous version of the project are delta-synced: the mirror's new jar starts as a
+ * copy of the previous jar, and then only the blocks that a {@link QubPublishDelta} says have
+ * changed are written into it. The previous jar is never read over the mirror's volume to find
+ * the changed blocks. Mirrored files keep the modification times of their files in the qub folder,
+ * so when the previous jar in the mirror has the same size and modification time as the previous
+ * jar in the qub folder, the qub folder's copy is compared instead. Otherwise the new jar is
+ * copied in full. Every file is written to a temporary file and then moved into place, so the
+ * mirror never contains a partially written file. The version folder is synced
+ * before the project's latest-version pointer and the shortcut, so the mirror's shortcut never
+ * refers to a version that isn't completely mirrored.
+ */
+public class QubPublishMirror
+{
+    /**
+     * The end of the path that a shortcut refers to a runtime image's java executable with.
+     */
+    private static final String javaExecutableSuffix = "/bin/java";
+
+    private final QubFolder qubFolder;
+    private final Folder mirrorFolder;
+    private int blockSize;
+
+    private QubPublishMirror(QubFolder qubFolder, Folder mirrorFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(mirrorFolder, "mirrorFolder");
+
+        this.qubFolder = qubFolder;
+        this.mirrorFolder = mirrorFolder;
+        this.blockSize = QubPublishDelta.defaultBlockSize;
+    }
+
+    /**
+     * Create a new QubPublishMirror.
+     * @param qubFolder The qub folder that is published to.
+     * @param mirrorFolder The folder that the qub folder is mirrored to.
+     * @return The new QubPublishMirror.
+     */
+    public static QubPublishMirror create(QubFolder qubFolder, Folder mirrorFolder)
+    {
+        return new QubPublishMirror(qubFolder, mirrorFolder);
+    }
+
+    /**
+     * Get the qub folder that is published to.
+     * @return The qub folder that is published to.
+     */
+    public QubFolder getQubFolder()
+    {
+        return this.qubFolder;
+    }
+
+    /**
+     * Get the folder that the qub folder is mirrored to.
+     * @return The folder that the qub folder is mirrored to.
+     */
+    public Folder getMirrorFolder()
+    {
+        return this.mirrorFolder;
+    }
+
+    /**
+     * Get the number of bytes in each block that jars are compared in.
+     * @return The number of bytes in each block that jars are compared in.
+     */
+    public int getBlockSize()
+    {
+        return this.blockSize;
+    }
+
+    /**
+     * Set the number of bytes in each block that jars are compared in.
+     * @param blockSize The number of bytes in each block that jars are compared in.
+     * @return This object for method chaining.
+     */
+    public QubPublishMirror setBlockSize(int blockSize)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(blockSize, 1, "blockSize");
+
+        this.blockSize = blockSize;
+
+        return this;
+    }
+
+    /**
+     * The number of files and bytes that a sync copied to the mirror.
+     */
+    public static class Summary
+    {
+        private int fileCount;
+        private long byteCount;
+        private long writtenByteCount;
+
+        private Summary()
+        {
+        }
+
+        private synchronized void add(long byteCount, long writtenByteCount)
+        {
+            ++this.fileCount;
+            this.byteCount += byteCount;
+            this.writtenByteCount += writtenByteCount;
+        }
+
+        /**
+         * Get the number of files that were synced.
+         * @return The number of files that were synced.
+         */
+        public synchronized int getFileCount()
+        {
+            return this.fileCount;
+        }
+
+        /**
+         * Get the total number of bytes in the files that were synced.
+         * @return The total number of bytes in the files that were synced.
+         */
+        public synchronized long getByteCount()
+        {
+            return this.byteCount;
+        }
+
+        /**
+         * Get the number of bytes that were written to the mirror. Blocks of delta-synced jars
+         * that were unchanged from the mirror's previous version aren't counted.
+         * @return The number of bytes that were written to the mirror.
+         */
+        public synchronized long getWrittenByteCount()
+        {
+            return this.writtenByteCount;
+        }
+    }
+
+    /**
+     * Get the mirror's counterpart of the provided file system entry in the qub folder.
+     */
+    private String getRelativePath(FileSystemEntry entry)
+    {
+        return entry.relativeTo(this.qubFolder).toString();
+    }
+
+    /**
+     * Get the newest version folder in the mirror of the project that the provided version folder
+     * belongs to, other than the mirror's copy of the provided version folder. The mirror's
+     * latest-version pointer is used if it points at another version that exists in the mirror.
+     * Otherwise the names of the mirror's version folders are compared.
+     * @param versionFolder The version folder in the qub folder that is being synced.
+     * @return The newest other version folder of the project in the mirror, or null if the mirror
+     * doesn't have any other versions of the project.
+     */
+    Result<Folder> getPreviousVersionFolder(QubProjectVersionFolder versionFolder)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        return Result.create(() ->
+        {
+            final String excludedVersion = versionFolder.getName();
+            final Folder versionsFolder = versionFolder.getParentFolder().await();
+            final Folder projectFolder = versionsFolder.getParentFolder().await();
+            final Folder mirrorVersionsFolder = this.mirrorFolder.getFolder(this.getRelativePath(versionsFolder)).await();
+            final File mirrorPointerFile = this.mirrorFolder.getFile(this.getRelativePath(projectFolder.getFile(QubPublishLatestVersion.fileName).await())).await();
+
+            Folder result = null;
+            final String pointerText = mirrorPointerFile.getContentsAsString().catchError().await();
+            final String pointerVersion = Strings.isNullOrEmpty(pointerText)
+                ? null
+                : JSON.parseObject(pointerText)
+                    .then((JSONObject pointerJson) -> pointerJson.getString(QubPublishLatestVersion.versionPropertyName).await())
+                    .catchError()
+                    .await();
+            if (!Strings.isNullOrEmpty(pointerVersion) && !pointerVersion.equals(excludedVersion))
+            {
+                final Folder pointerVersionFolder = mirrorVersionsFolder.getFolder(pointerVersion).await();
+                if (pointerVersionFolder.exists().await())
+                {
+                    result = pointerVersionFolder;
+                }
+            }
+
+            if (result == null)
+            {
+                final Iterable<Folder> mirrorVersionFolders = mirrorVersionsFolder.getFolders()
+                    .catchError(FolderNotFoundException.class)
+                    .await();
+                if (mirrorVersionFolders != null)
+                {
+                    VersionNumber resultVersion = null;
+                    for (final Folder mirrorVersionFolder : mirrorVersionFolders)
+                    {
+                        final String versionName = mirrorVersionFolder.getName();
+                        final VersionNumber version = versionName.equals(excludedVersion)
+                            ? null
+                            : VersionNumber.parse(versionName).catchError().await();
+                        if (version != null && version.any() && (resultVersion == null || version.compareTo(resultVersion) > 0))
+                        {
+                            result = mirrorVersionFolder;
+                            resultVersion = version;
+                        }
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Copy the provided file from the qub folder to the mirror. If a basis file is provided and
+     * its contents are known without reading it over the mirror's volume, then the mirror's file
+     * starts as a copy of the basis and only the changed blocks are written into it.
+     * @param source The file in the qub folder.
+     * @param basis The file in the mirror that the new file is likely to share blocks with, or
+     *              null to copy the whole file.
+     * @return The number of bytes that were written to the mirror.
+     */
+    Result<Long> syncFile(File source, File basis)
+    {
+        PreCondition.assertNotNull(source, "source");
+
+        return Result.create(() ->
+        {
+            FileTime lastModified = null;
+            final java.nio.file.Path sourcePath = QubPublishFiles.getJavaPath(source);
+            if (sourcePath != null)
+            {
+                try
+                {
+                    lastModified = Files.getLastModifiedTime(sourcePath);
+                }
+                catch (java.nio.file.NoSuchFileException error)
+                {
+                    throw new FileNotFoundException(source.toString());
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            final byte[] basisBytes = this.getBasisContents(basis).await();
+            return this.syncContents(source, source.getContents().await(), basis, basisBytes, lastModified).await();
+        });
+    }
+
+    /**
+     * Get the contents of the provided basis file in the mirror. A basis on the local Java file
+     * system, such as a mounted volume, isn't read. Instead its size and modification time are
+     * compared with its counterpart in the qub folder, and the counterpart's contents are used if
+     * they match. A basis on another file system is read directly.
+     * @param basis The file in the mirror that a new file is likely to share blocks with.
+     * @return The contents of the basis, or null if they can't be known without reading the basis
+     * over the mirror's volume.
+     */
+    private Result<byte[]> getBasisContents(File basis)
+    {
+        return Result.create(() ->
+        {
+            byte[] result = null;
+            if (basis != null)
+            {
+                final java.nio.file.Path basisPath = QubPublishFiles.getJavaPath(basis);
+                if (basisPath == null)
+                {
+                    result = basis.getContents().catchError(FileNotFoundException.class).await();
+                }
+                else
+                {
+                    final File localBasis = this.qubFolder.getFile(basis.relativeTo(this.mirrorFolder)).await();
+                    final java.nio.file.Path localBasisPath = QubPublishFiles.getJavaPath(localBasis);
+                    if (localBasisPath != null)
+                    {
+                        try
+                        {
+                            final BasicFileAttributes basisAttributes = Files.readAttributes(basisPath, BasicFileAttributes.class);
+                            final BasicFileAttributes localBasisAttributes = Files.readAttributes(localBasisPath, BasicFileAttributes.class);
+                            if (basisAttributes.size() == localBasisAttributes.size() &&
+                                basisAttributes.lastModifiedTime().equals(localBasisAttributes.lastModifiedTime()))
+                            {
+                                result = Files.readAllBytes(localBasisPath);
+                            }
+                        }
+                        catch (java.nio.file.NoSuchFileException ignored)
+                        {
+                        }
+                        catch (IOException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Write the provided contents to the mirror's counterpart of the provided file in the qub
+     * folder. If the basis's contents are provided, then the mirror's file starts as a copy of the
+     * basis and only the changed blocks are written into it.
+     * @param source The file in the qub folder.
+     * @param sourceBytes The contents to write to the mirror's counterpart of the file.
+     * @param basis The file in the mirror that the new file is likely to share blocks with, or
+     *              null to copy the whole file.
+     * @param basisBytes The contents of the basis, or null to copy the whole file.
+     * @param lastModified The modification time to give the mirror's file, or null to use the
+     *                     time that it was written.
+     * @return The number of bytes that were written to the mirror.
+     */
+    private Result<Long> syncContents(File source, byte[] sourceBytes, File basis, byte[] basisBytes, FileTime lastModified)
+    {
+        PreCondition.assertNotNull(source, "source");
+        PreCondition.assertNotNull(sourceBytes, "sourceBytes");
+
+        return Result.create(() ->
+        {
+            final File target = this.mirrorFolder.getFile(this.getRelativePath(source)).await();
+
+            final long result;
+            final java.nio.file.Path targetPath = QubPublishFiles.getJavaPath(target);
+            if (basisBytes == null)
+            {
+                result = sourceBytes.length;
+                if (targetPath == null)
+                {
+                    target.setContents(sourceBytes).await();
+                }
+                else
+                {
+                    QubPublishMirror.writeAtomically(targetPath, null, lastModified, (FileChannel channel) ->
+                    {
+                        channel.write(java.nio.ByteBuffer.wrap(sourceBytes));
+                    });
+                }
+            }
+            else
+            {
+                final QubPublishDelta delta = QubPublishDelta.create(basisBytes, sourceBytes, this.blockSize);
+                result = delta.getChangedByteCount();
+                final java.nio.file.Path basisPath = QubPublishFiles.getJavaPath(basis);
+                if (targetPath == null || basisPath == null)
+                {
+                    target.setContents(delta.apply(basisBytes)).await();
+                }
+                else
+                {
+                    QubPublishMirror.writeAtomically(targetPath, basisPath, lastModified, (FileChannel channel) ->
+                    {
+                        for (final QubPublishDelta.Operation operation : delta.getOperations())
+                        {
+                            if (!operation.isInPlace())
+                            {
+                                channel.write(java.nio.ByteBuffer.wrap(sourceBytes, operation.getTargetOffset(), operation.getLength()), operation.getTargetOffset());
+                            }
+                        }
+                        channel.truncate(delta.getTargetLength());
+                    });
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * An action that writes to a temporary file's channel.
+     */
+    private interface ChannelWriter
+    {
+        void run(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Write a temporary file next to the provided target path, and then atomically move it over
+     * the target path. If a basis path is provided, the temporary file starts as a copy of the
+     * basis, which file systems that support server-side copies can make without sending the
+     * basis's bytes over the wire. If a modification time is provided, then the temporary file is
+     * given it before it is moved.
+     */
+    private static void writeAtomically(java.nio.file.Path targetPath, java.nio.file.Path basisPath, FileTime lastModified, ChannelWriter writer)
+    {
+        try
+        {
+            Files.createDirectories(targetPath.getParent());
+            final java.nio.file.Path temporaryPath = Files.createTempFile(targetPath.getParent(), targetPath.getFileName().toString(), ".tmp");
+            try
+            {
+                if (basisPath != null)
+                {
+                    Files.copy(basisPath, temporaryPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                try (final FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE))
+                {
+                    writer.run(channel);
+                }
+                if (lastModified != null)
+                {
+                    Files.setLastModifiedTime(temporaryPath, lastModified);
+                }
+                Files.move(temporaryPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally
+            {
+                Files.deleteIfExists(temporaryPath);
+            }
+        }
+        catch (IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    /**
+     * Get the files outside of the provided version folder that it needs in the mirror and that
+     * the mirror doesn't have yet. These are the compiled jars of the dependencies in the version
+     * folder's lock file (which a launcher jar only lists in its manifest), the other files that
+     * the shortcut refers to, and every file of the Java runtime image that the shortcut launches
+     * its JVM from.
+     * @param versionFolder The version folder in the qub folder that is being synced.
+     * @param shortcutText The text of the version folder's shortcut, or null if the project
+     *                     doesn't have a shortcut.
+     * @return The files in the qub folder that will be copied to the mirror.
+     */
+    Result<Iterable<File>> getReferencedFiles(QubProjectVersionFolder versionFolder, String shortcutText)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        return Result.create(() ->
+        {
+            final List<String> paths = List.create();
+            final QubPublishLockFile lockFile = QubPublishLockFile.parse(QubPublishLockFile.getLockFile(versionFolder).await())
+                .catchError(FileNotFoundException.class)
+                .await();
+            if (lockFile != null)
+            {
+                paths.addAll(lockFile.getCompiledSourcesPaths());
+            }
+
+            if (shortcutText != null)
+            {
+                for (final String shortcutPath : QubPublishPrune.getShortcutPaths(shortcutText))
+                {
+                    if (shortcutPath.endsWith(QubPublishMirror.javaExecutableSuffix))
+                    {
+                        // The shortcut names the runtime image's java executable without a file
+                        // extension, so the whole runtime image is copied instead.
+                        final Folder runtimeImageFolder = this.qubFolder.getFolder(shortcutPath.substring(0, shortcutPath.length() - QubPublishMirror.javaExecutableSuffix.length())).await();
+                        final Iterable<File> runtimeImageFiles = runtimeImageFolder.getFilesRecursively()
+                            .catchError(FolderNotFoundException.class)
+                            .await();
+                        if (runtimeImageFiles != null)
+                        {
+                            for (final File runtimeImageFile : runtimeImageFiles)
+                            {
+                                paths.add(this.getRelativePath(runtimeImageFile));
+                            }
+                        }
+                    }
+                    else
+                    {
+                        paths.add(shortcutPath);
+                    }
+                }
+            }
+
+            final String versionFolderPathPrefix = this.getRelativePath(versionFolder) + "/";
+            final Map<String,Boolean> visitedPaths = Map.create();
+            final List<File> result = List.create();
+            for (final String path : paths)
+            {
+                if (!path.startsWith(versionFolderPathPrefix) && !visitedPaths.containsKey(path))
+                {
+                    visitedPaths.set(path, true);
+                    final File referencedFile = this.qubFolder.getFile(path).await();
+                    if (referencedFile.exists().await() && !this.mirrorFolder.getFile(path).await().exists().await())
+                    {
+                        result.add(referencedFile);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Copy the provided file from the qub folder to the mirror without comparing it to anything.
+     * Files on the local Java file system keep their attributes, so the executables of a runtime
+     * image stay executable in the mirror.
+     * @param source The file in the qub folder.
+     * @return The number of bytes that were written to the mirror.
+     */
+    private Result<Long> copyFile(File source)
+    {
+        PreCondition.assertNotNull(source, "source");
+
+        return Result.create(() ->
+        {
+            final long result;
+            final java.nio.file.Path sourcePath = QubPublishFiles.getJavaPath(source);
+            final java.nio.file.Path targetPath = QubPublishFiles.getJavaPath(this.mirrorFolder.getFile(this.getRelativePath(source)).await());
+            if (sourcePath == null || targetPath == null)
+            {
+                result = this.syncFile(source, null).await();
+            }
+            else
+            {
+                try
+                {
+                    result = Files.size(sourcePath);
+                    Files.createDirectories(targetPath.getParent());
+                    final java.nio.file.Path temporaryPath = Files.createTempFile(targetPath.getParent(), targetPath.getFileName().toString(), ".tmp");
+                    try
+                    {
+                        Files.copy(sourcePath, temporaryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                        Files.move(temporaryPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    finally
+                    {
+                        Files.deleteIfExists(temporaryPath);
+                    }
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Sync a newly published version folder, its project's latest-version pointer, and the
+     * provided shortcut to the mirror. Jars are delta-synced against the same jar in the mirror's
+     * previous version of the project. Files outside of the version folder that the version
+     * folder needs, such as the jars of the project's dependencies and the runtime image that its
+     * shortcut launches, are copied if the mirror doesn't have them yet.
+     * @param versionFolder The version folder that was published.
+     * @param shortcutFile The shortcut that was published for the version folder, or null if the
+     *                     project doesn't have a shortcut.
+     * @param workers The workers that the files will be synced on.
+     * @return The number of files and bytes that were copied to the mirror.
+     */
+    public Result<Summary> sync(QubProjectVersionFolder versionFolder, File shortcutFile, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final Summary result = new Summary();
+            final Folder previousVersionFolder = this.getPreviousVersionFolder(versionFolder).await();
+
+            final Iterable<File> versionFolderFiles = versionFolder.getFilesRecursively().await();
+            workers.forEach(versionFolderFiles, (File file) ->
+            {
+                final File basis = previousVersionFolder == null || !file.getName().endsWith(".jar")
+                    ? null
+                    : previousVersionFolder.getFile(file.relativeTo(versionFolder)).await();
+                result.add(QubPublishFiles.getByteCount(file).await(), this.syncFile(file, basis).await());
+            }).await();
+
+            // A class data sharing archive only matches the paths of the qub folder that it was
+            // dumped in, so the mirror's shortcut doesn't use it.
+            final String shortcutText = shortcutFile == null
+                ? null
+                : QubPublishShortcut.removeSharedArchive(shortcutFile.getContentsAsString().await());
+            final Iterable<File> referencedFiles = this.getReferencedFiles(versionFolder, shortcutText).await();
+            workers.forEach(referencedFiles, (File referencedFile) ->
+            {
+                final long byteCount = this.copyFile(referencedFile).await();
+                result.add(byteCount, byteCount);
+            }).await();
+
+            final File pointerFile = versionFolder.getParentFolder().await()
+                .getParentFolder().await()
+                .getFile(QubPublishLatestVersion.fileName).await();
+            if (pointerFile.exists().await())
+            {
+                final long pointerByteCount = this.syncFile(pointerFile, null).await();
+                result.add(pointerByteCount, pointerByteCount);
+            }
+
+            if (shortcutText != null)
+            {
+                final long shortcutByteCount = this.syncContents(shortcutFile, shortcutText.getBytes(java.nio.charset.StandardCharsets.UTF_8), null, null, null).await();
+                result.add(shortcutByteCount, shortcutByteCount);
+            }
+
+            return result;
+        });
+    }
+}
@@ -0,0 +1,293 @@
+package qub;
+
+/**
+ * The content hashes of the inputs and outputs of a successful pack. Publish records this state
+ * after every pack so that a later publish of unchanged sources can skip straight to copying the
+ * existing jars.
+ */
+public class QubPublishPackState
+{
+    private static final String settingsPropertyName = "settings";
+    private static final String inputsPropertyName = "inputs";
+    private static final String outputsPropertyName = "outputs";
+
+    private final String settings;
+    private final Map<String,String> inputs;
+    private final Map<String,String> outputs;
+
+    private QubPublishPackState(String settings)
+    {
+        PreCondition.assertNotNull(settings, "settings");
+
+        this.settings = settings;
+        this.inputs = Map.create();
+        this.outputs = Map.create();
+    }
+
+    /**
+     * Create a new QubPublishPackState with no inputs or outputs.
+     * @param settings The pack settings that affect the outputs of the pack.
+     * @return The new QubPublishPackState.
+     */
+    public static QubPublishPackState create(String settings)
+    {
+        return new QubPublishPackState(settings);
+    }
+
+    /**
+     * Get the file that the pack state of the provided folder is stored in.
+     * @param folderToPublish The folder that is being published.
+     * @return The file that the pack state of the provided folder is stored in.
+     */
+    public static Result<File> getStateFile(Folder folderToPublish)
+    {
+        PreCondition.assertNotNull(folderToPublish, "folderToPublish");
+
+        return folderToPublish.getFile("outputs/publish.json");
+    }
+
+    /**
+     * Get the pack settings from the provided parameters that affect the outputs of a pack.
+     * @param parameters The parameters to get the pack settings from.
+     * @return The pack settings that affect the outputs of a pack.
+     */
+    public static String getSettings(QubPackParameters parameters)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+
+        return "coverage=" + parameters.getCoverage() +
+            ";warnings=" + parameters.getWarnings() +
+            ";pattern=" + Strings.escapeAndQuote(parameters.getPattern());
+    }
+
+    /**
+     * Compute the hashes of the pack inputs of the provided folder: its project.json file, the
+     * files in its sources and tests folders, and the compiled jars of its transitive
+     * dependencies. Dependency jars are keyed by their path relative to the qub folder.
+     * @param folderToPublish The folder that is being published.
+     * @param qubFolder The qub folder that the dependencies are published in.
+     * @param settings The pack settings that affect the outputs of the pack.
+     * @param workers The workers that will hash the input files.
+     * @return A new QubPublishPackState with the hashes of the pack inputs.
+     */
+    public static Result<QubPublishPackState> create(Folder folderToPublish, QubFolder qubFolder, String settings, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(folderToPublish, "folderToPublish");
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(settings, "settings");
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final List<String> inputKeys = List.create();
+            final List<File> inputFiles = List.create();
+
+            final File projectJsonFile = folderToPublish.getFile("project.json").await();
+            inputKeys.add(projectJsonFile.relativeTo(folderToPublish).toString());
+            inputFiles.add(projectJsonFile);
+
+            for (final String inputFolderName : Iterable.create("sources", "tests"))
+            {
+                final Folder inputFolder = folderToPublish.getFolder(inputFolderName).await();
+                final Iterable<File> inputFolderFiles = inputFolder.getFilesRecursively()
+                    .catchError(FolderNotFoundException.class)
+                    .await();
+                if (inputFolderFiles != null)
+                {
+                    for (final File inputFolderFile : inputFolderFiles)
+                    {
+                        inputKeys.add(inputFolderFile.relativeTo(folderToPublish).toString());
+                        inputFiles.add(inputFolderFile);
+                    }
+                }
+            }
+
+            final ProjectJSON projectJson = ProjectJSON.parse(projectJsonFile).await();
+            final ProjectJSONJava projectJsonJava = projectJson.getJava();
+            if (projectJsonJava != null)
+            {
+                final QubPublishLockFile lockFile = QubPublishLockFile.resolve(qubFolder, projectJsonJava.getDependencies()).await();
+                for (final String dependencyCompiledSourcesPath : lockFile.getCompiledSourcesPaths())
+                {
+                    inputKeys.add(dependencyCompiledSourcesPath);
+                    inputFiles.add(qubFolder.getFile(dependencyCompiledSourcesPath).await());
+                }
+            }
+
+            final List<String> inputHashes = workers.map(inputFiles, (File inputFile) -> QubPublishFiles.getSHA256(inputFile).await()).await();
+
+            final QubPublishPackState result = QubPublishPackState.create(settings);
+            for (int i = 0; i < inputKeys.getCount(); ++i)
+            {
+                result.inputs.set(inputKeys.get(i), inputHashes.get(i));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Parse a QubPublishPackState from the provided file.
+     * @param stateFile The file to parse.
+     * @return The parsed QubPublishPackState.
+     */
+    public static Result<QubPublishPackState> parse(File stateFile)
+    {
+        PreCondition.assertNotNull(stateFile, "stateFile");
+
+        return Result.create(() ->
+        {
+            final JSONObject json = JSON.parseObject(stateFile.getContentsAsString().await()).await();
+            final QubPublishPackState result = QubPublishPackState.create(json.getString(QubPublishPackState.settingsPropertyName).await());
+            QubPublishPackState.parseHashes(json.getObject(QubPublishPackState.inputsPropertyName).await(), result.inputs);
+            QubPublishPackState.parseHashes(json.getObject(QubPublishPackState.outputsPropertyName).await(), result.outputs);
+            return result;
+        });
+    }
+
+    private static void parseHashes(JSONObject hashesJson, Map<String,String> hashes)
+    {
+        for (final String key : hashesJson.getPropertyNames())
+        {
+            hashes.set(key, hashesJson.getString(key).await());
+        }
+    }
+
+    /**
+     * Get the pack settings that this state was recorded with.
+     * @return The pack settings that this state was recorded with.
+     */
+    public String getSettings()
+    {
+        return this.settings;
+    }
+
+    /**
+     * Compute and record the hashes of the jars that the pack produced in the provided outputs
+     * folder.
+     * @param outputsFolder The folder that contains the pack outputs.
+     * @param project The name of the project that was packed.
+     * @param workers The workers that will hash the output files.
+     * @return This object for method chaining.
+     */
+    public Result<QubPublishPackState> setOutputs(Folder outputsFolder, String project, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(outputsFolder, "outputsFolder");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final List<String> outputFileNames = List.create(project + ".jar", project + ".sources.jar", project + ".tests.jar");
+            final List<String> outputHashes = workers.map(outputFileNames, (String outputFileName) ->
+                QubPublishFiles.getSHA256(outputsFolder.getFile(outputFileName).await())
+                    .catchError(FileNotFoundException.class)
+                    .await())
+                .await();
+
+            this.outputs.clear();
+            for (int i = 0; i < outputFileNames.getCount(); ++i)
+            {
+                final String outputHash = outputHashes.get(i);
+                if (outputHash != null)
+                {
+                    this.outputs.set(outputFileNames.get(i), outputHash);
+                }
+            }
+            return this;
+        });
+    }
+
+    /**
+     * Get whether or not the provided previously recorded state still describes the current pack
+     * inputs and whether the outputs that it recorded still exist unchanged in the provided
+     * outputs folder.
+     * @param previousState The previously recorded state.
+     * @param outputsFolder The folder that contains the pack outputs.
+     * @param project The name of the project.
+     * @param workers The workers that will hash the output files.
+     * @return Whether or not the existing outputs are up to date.
+     */
+    public Result<Boolean> isUpToDate(QubPublishPackState previousState, Folder outputsFolder, String project, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(previousState, "previousState");
+        PreCondition.assertNotNull(outputsFolder, "outputsFolder");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            boolean result = this.settings.equals(previousState.settings) &&
+                QubPublishPackState.hashesEqual(this.inputs, previousState.inputs) &&
+                previousState.outputs.containsKey(project + ".jar") &&
+                previousState.outputs.containsKey(project + ".sources.jar");
+            if (result)
+            {
+                final QubPublishPackState currentOutputs = QubPublishPackState.create(this.settings)
+                    .setOutputs(outputsFolder, project, workers)
+                    .await();
+                result = QubPublishPackState.hashesEqual(currentOutputs.outputs, previousState.outputs);
+            }
+            return result;
+        });
+    }
+
+    private static boolean hashesEqual(Map<String,String> lhs, Map<String,String> rhs)
+    {
+        boolean result = (lhs.getCount() == rhs.getCount());
+        if (result)
+        {
+            for (final String key : lhs.getKeys())
+            {
+                if (!Comparer.equal(lhs.get(key).await(), rhs.get(key).catchError().await()))
+                {
+                    result = false;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write this state to the provided file.
+     * @param stateFile The file to write this state to.
+     * @return The result of writing this state.
+     */
+    public Result<Void> save(File stateFile)
+    {
+        PreCondition.assertNotNull(stateFile, "stateFile");
+
+        return Result.create(() ->
+        {
+            stateFile.setContentsAsString(this.toString()).await();
+        });
+    }
+
+    /**
+     * Get the JSON representation of this state.
+     * @return The JSON representation of this state.
+     */
+    public JSONObject toJson()
+    {
+        return JSONObject.create()
+            .setString(QubPublishPackState.settingsPropertyName, this.settings)
+            .setObject(QubPublishPackState.inputsPropertyName, QubPublishPackState.toJson(this.inputs))
+            .setObject(QubPublishPackState.outputsPropertyName, QubPublishPackState.toJson(this.outputs));
+    }
+
+    private static JSONObject toJson(Map<String,String> hashes)
+    {
+        final JSONObject result = JSONObject.create();
+        for (final String key : hashes.getKeys())
+        {
+            result.setString(key, hashes.get(key).await());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toJson().toString();
+    }
+}
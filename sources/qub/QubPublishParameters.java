@@ -2,6 +2,28 @@ package qub;
 
 public class QubPublishParameters extends QubPackParameters
 {
+    private int workers;
+    private boolean virtualThreads;
+    private boolean blobStore;
+    private boolean appCDS;
+    private Iterable<String> appCDSArguments;
+    private boolean batch;
+    private QubPublishTrace trace;
+    private boolean launcherJar;
+    private boolean uberJar;
+    private boolean jlink;
+    private boolean updateDependents;
+    private Folder sourceRoot;
+    private boolean watch;
+    private boolean daemon;
+    private boolean useDaemon;
+    private int daemonPort;
+    private boolean storedJars;
+    private boolean verify;
+    private Integer prune;
+    private boolean dryRun;
+    private Iterable<Folder> mirrors;
+
     /**
      * Create a new QubPublishParameters object.
      * @param outputWriteStream      The ByteWriteStream that output should be written to.
@@ -14,6 +36,12 @@ public class QubPublishParameters extends QubPackParameters
     public QubPublishParameters(CharacterToByteWriteStream outputWriteStream, CharacterToByteWriteStream errorWriteStream, Folder folderToPack, EnvironmentVariables environmentVariables, ProcessFactory processFactory, DefaultApplicationLauncher defaultApplicationLauncher, String jvmClassPath, TypeLoader typeLoader, QubFolder qubFolder)
     {
         super(outputWriteStream, errorWriteStream, folderToPack, environmentVariables, processFactory, defaultApplicationLauncher, jvmClassPath, typeLoader, qubFolder);
+
+        this.workers = 1;
+        this.trace = QubPublishTrace.disabled();
+        this.daemonPort = QubPublishDaemon.defaultPort;
+        this.mirrors = Iterable.create();
+        this.appCDSArguments = Iterable.create("--help");
     }
 
     public Folder getFolderToPublish()
@@ -21,6 +49,47 @@ public class QubPublishParameters extends QubPackParameters
         return this.getFolderToPack();
     }
 
+    /**
+     * Create a copy of these parameters that publishes the provided folder and writes to the
+     * provided streams. This is used to publish each of the projects in a batch.
+     * @param folderToPublish The folder that the new parameters will publish.
+     * @param outputWriteStream The stream that output will be written to.
+     * @param errorWriteStream The stream that errors will be written to.
+     * @return The new parameters.
+     */
+    public QubPublishParameters createProjectParameters(Folder folderToPublish, CharacterToByteWriteStream outputWriteStream, CharacterToByteWriteStream errorWriteStream)
+    {
+        PreCondition.assertNotNull(folderToPublish, "folderToPublish");
+        PreCondition.assertNotNull(outputWriteStream, "outputWriteStream");
+        PreCondition.assertNotNull(errorWriteStream, "errorWriteStream");
+
+        final QubPublishParameters result = new QubPublishParameters(outputWriteStream, errorWriteStream, folderToPublish, this.getEnvironmentVariables(), this.getProcessFactory(), this.getDefaultApplicationLauncher(), this.getJvmClassPath(), this.getTypeLoader(), this.getQubFolder())
+            .setPackJson(this.getPackJson())
+            .setTestJson(this.getTestJson())
+            .setCoverage(this.getCoverage())
+            .setBuildJson(this.getBuildJson())
+            .setWarnings(this.getWarnings())
+            .setPattern(this.getPattern())
+            .setWorkers(this.getWorkers())
+            .setVirtualThreads(this.getVirtualThreads())
+            .setBlobStore(this.getBlobStore())
+            .setAppCDS(this.getAppCDS())
+            .setAppCDSArguments(this.getAppCDSArguments())
+            .setTrace(this.getTrace())
+            .setLauncherJar(this.getLauncherJar())
+            .setUberJar(this.getUberJar())
+            .setJlink(this.getJlink())
+            .setStoredJars(this.getStoredJars())
+            .setSourceRoot(this.getSourceRoot())
+            .setMirrors(this.getMirrors());
+        final VerboseCharacterToByteWriteStream verbose = this.getVerbose();
+        if (verbose != null)
+        {
+            result.setVerbose(verbose);
+        }
+        return result;
+    }
+
     @Override
     public QubPublishParameters setPackJson(boolean packJson)
     {
@@ -76,4 +145,518 @@ public class QubPublishParameters extends QubPackParameters
     {
         return (QubPublishParameters)super.setVerbose(verbose);
     }
-}
+
+    /**
+     * Get the number of workers that will be used for parallel qub folder operations.
+     * @return The number of workers that will be used for parallel qub folder operations.
+     */
+    public int getWorkers()
+    {
+        return this.workers;
+    }
+
+    /**
+     * Set the number of workers that will be used for parallel qub folder operations.
+     * @param workers The number of workers that will be used for parallel qub folder operations.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setWorkers(int workers)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(workers, 1, "workers");
+
+        this.workers = workers;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not published jar files will be stored in the qub folder's content-addressed
+     * blob store and hard-linked into the version folder.
+     * @return Whether or not published jar files will be stored in the blob store.
+     */
+    public boolean getBlobStore()
+    {
+        return this.blobStore;
+    }
+
+    /**
+     * Set whether or not published jar files will be stored in the qub folder's content-addressed
+     * blob store and hard-linked into the version folder.
+     * @param blobStore Whether or not published jar files will be stored in the blob store.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setBlobStore(boolean blobStore)
+    {
+        this.blobStore = blobStore;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not a class data sharing archive will be created for the published shortcut.
+     * @return Whether or not a class data sharing archive will be created for the published
+     * shortcut.
+     */
+    public boolean getAppCDS()
+    {
+        return this.appCDS;
+    }
+
+    /**
+     * Set whether or not a class data sharing archive will be created for the published shortcut.
+     * @param appCDS Whether or not a class data sharing archive will be created for the published
+     *               shortcut.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setAppCDS(boolean appCDS)
+    {
+        this.appCDS = appCDS;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not every project folder in the folder to publish will be published, in
+     * dependency order.
+     * @return Whether or not every project folder in the folder to publish will be published.
+     */
+    public boolean getBatch()
+    {
+        return this.batch;
+    }
+
+    /**
+     * Set whether or not every project folder in the folder to publish will be published, in
+     * dependency order.
+     * @param batch Whether or not every project folder in the folder to publish will be
+     *              published.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setBatch(boolean batch)
+    {
+        this.batch = batch;
+
+        return this;
+    }
+
+    /**
+     * Get the trace that the phases of the publish will be recorded to.
+     * @return The trace that the phases of the publish will be recorded to.
+     */
+    public QubPublishTrace getTrace()
+    {
+        return this.trace;
+    }
+
+    /**
+     * Set the trace that the phases of the publish will be recorded to.
+     * @param trace The trace that the phases of the publish will be recorded to.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setTrace(QubPublishTrace trace)
+    {
+        PreCondition.assertNotNull(trace, "trace");
+
+        this.trace = trace;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the published shortcut will launch its project with a launcher jar
+     * instead of passing its classpath on the command line.
+     * @return Whether or not the published shortcut will launch its project with a launcher jar.
+     */
+    public boolean getLauncherJar()
+    {
+        return this.launcherJar;
+    }
+
+    /**
+     * Set whether or not the published shortcut will launch its project with a launcher jar
+     * instead of passing its classpath on the command line.
+     * @param launcherJar Whether or not the published shortcut will launch its project with a
+     *                    launcher jar.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setLauncherJar(boolean launcherJar)
+    {
+        this.launcherJar = launcherJar;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the published shortcut will launch its project from a single uber jar
+     * that merges the project's compiled jar with all of its dependency jars.
+     * @return Whether or not the published shortcut will launch its project from an uber jar.
+     */
+    public boolean getUberJar()
+    {
+        return this.uberJar;
+    }
+
+    /**
+     * Set whether or not the published shortcut will launch its project from a single uber jar
+     * that merges the project's compiled jar with all of its dependency jars.
+     * @param uberJar Whether or not the published shortcut will launch its project from an uber
+     *                jar.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setUberJar(boolean uberJar)
+    {
+        this.uberJar = uberJar;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the published shortcut will launch its project with a jlink runtime image
+     * that only contains the modules that the project needs.
+     * @return Whether or not the published shortcut will launch its project with a jlink runtime
+     * image.
+     */
+    public boolean getJlink()
+    {
+        return this.jlink;
+    }
+
+    /**
+     * Set whether or not the published shortcut will launch its project with a jlink runtime image
+     * that only contains the modules that the project needs.
+     * @param jlink Whether or not the published shortcut will launch its project with a jlink
+     *              runtime image.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setJlink(boolean jlink)
+    {
+        this.jlink = jlink;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the projects that depend on the published project will be updated and
+     * republished after it is published.
+     * @return Whether or not the projects that depend on the published project will be updated
+     * and republished.
+     */
+    public boolean getUpdateDependents()
+    {
+        return this.updateDependents;
+    }
+
+    /**
+     * Set whether or not the projects that depend on the published project will be updated and
+     * republished after it is published. This setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)},
+     * so the projects that are republished don't start updates of their own.
+     * @param updateDependents Whether or not the projects that depend on the published project
+     *                         will be updated and republished.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setUpdateDependents(boolean updateDependents)
+    {
+        this.updateDependents = updateDependents;
+
+        return this;
+    }
+
+    /**
+     * Get the folder that contains the source folders of the projects that will be republished
+     * when dependents are updated, or null if the parent folder of the folder to publish should be
+     * used.
+     * @return The folder that contains the source folders of the projects that will be
+     * republished.
+     */
+    public Folder getSourceRoot()
+    {
+        return this.sourceRoot;
+    }
+
+    /**
+     * Set the folder that contains the source folders of the projects that will be republished
+     * when dependents are updated.
+     * @param sourceRoot The folder that contains the source folders of the projects that will be
+     *                   republished, or null to use the parent folder of the folder to publish.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setSourceRoot(Folder sourceRoot)
+    {
+        this.sourceRoot = sourceRoot;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not publish will keep running and republish the folder to publish whenever
+     * it changes.
+     * @return Whether or not publish will keep running and republish the folder to publish
+     * whenever it changes.
+     */
+    public boolean getWatch()
+    {
+        return this.watch;
+    }
+
+    /**
+     * Set whether or not publish will keep running and republish the folder to publish whenever
+     * it changes. This setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)}.
+     * @param watch Whether or not publish will keep running and republish the folder to publish
+     *              whenever it changes.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setWatch(boolean watch)
+    {
+        this.watch = watch;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not publish will keep running as a daemon that publishes the requests that
+     * clients send to it.
+     * @return Whether or not publish will keep running as a daemon.
+     */
+    public boolean getDaemon()
+    {
+        return this.daemon;
+    }
+
+    /**
+     * Set whether or not publish will keep running as a daemon that publishes the requests that
+     * clients send to it. This setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)}.
+     * @param daemon Whether or not publish will keep running as a daemon.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setDaemon(boolean daemon)
+    {
+        this.daemon = daemon;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the publish will be sent to a running daemon instead of being published
+     * by this process.
+     * @return Whether or not the publish will be sent to a running daemon.
+     */
+    public boolean getUseDaemon()
+    {
+        return this.useDaemon;
+    }
+
+    /**
+     * Set whether or not the publish will be sent to a running daemon instead of being published
+     * by this process. This setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)}.
+     * @param useDaemon Whether or not the publish will be sent to a running daemon.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setUseDaemon(boolean useDaemon)
+    {
+        this.useDaemon = useDaemon;
+
+        return this;
+    }
+
+    /**
+     * Get the local port that the daemon listens on.
+     * @return The local port that the daemon listens on.
+     */
+    public int getDaemonPort()
+    {
+        return this.daemonPort;
+    }
+
+    /**
+     * Set the local port that the daemon listens on.
+     * @param daemonPort The local port that the daemon listens on.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setDaemonPort(int daemonPort)
+    {
+        PreCondition.assertBetween(1, daemonPort, 65535, "daemonPort");
+
+        this.daemonPort = daemonPort;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the compiled jars will be published with stored (uncompressed) entries.
+     * @return Whether or not the compiled jars will be published with stored entries.
+     */
+    public boolean getStoredJars()
+    {
+        return this.storedJars;
+    }
+
+    /**
+     * Set whether or not the compiled jars will be published with stored (uncompressed) entries.
+     * Sources jars are always published compressed.
+     * @param storedJars Whether or not the compiled jars will be published with stored entries.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setStoredJars(boolean storedJars)
+    {
+        this.storedJars = storedJars;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not publish will verify the files of every published version folder
+     * against their recorded hashes instead of publishing.
+     * @return Whether or not publish will verify the qub folder instead of publishing.
+     */
+    public boolean getVerify()
+    {
+        return this.verify;
+    }
+
+    /**
+     * Set whether or not publish will verify the files of every published version folder
+     * against their recorded hashes instead of publishing. This setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)}.
+     * @param verify Whether or not publish will verify the qub folder instead of publishing.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setVerify(boolean verify)
+    {
+        this.verify = verify;
+
+        return this;
+    }
+
+    /**
+     * Get the number of newest versions of each project that publish will keep when it prunes the
+     * qub folder instead of publishing.
+     * @return The number of newest versions of each project to keep, or null if publish won't
+     * prune the qub folder.
+     */
+    public Integer getPrune()
+    {
+        return this.prune;
+    }
+
+    /**
+     * Set the number of newest versions of each project that publish will keep when it prunes the
+     * qub folder instead of publishing. This setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)}.
+     * @param prune The number of newest versions of each project to keep, or null to not prune the
+     *              qub folder.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setPrune(Integer prune)
+    {
+        if (prune != null)
+        {
+            PreCondition.assertGreaterThanOrEqualTo(prune, 1, "prune");
+        }
+
+        this.prune = prune;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not a prune will only report the version folders that it would delete.
+     * @return Whether or not a prune will only report the version folders that it would delete.
+     */
+    public boolean getDryRun()
+    {
+        return this.dryRun;
+    }
+
+    /**
+     * Set whether or not a prune will only report the version folders that it would delete. This
+     * setting isn't copied by
+     * {@link #createProjectParameters(Folder, CharacterToByteWriteStream, CharacterToByteWriteStream)}.
+     * @param dryRun Whether or not a prune will only report the version folders that it would
+     *               delete.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setDryRun(boolean dryRun)
+    {
+        this.dryRun = dryRun;
+
+        return this;
+    }
+
+    /**
+     * Get the qub folders that each published version folder and shortcut will be copied to.
+     * @return The qub folders that each published version folder and shortcut will be copied to.
+     */
+    public Iterable<Folder> getMirrors()
+    {
+        return this.mirrors;
+    }
+
+    /**
+     * Set the qub folders that each published version folder and shortcut will be copied to.
+     * @param mirrors The qub folders that each published version folder and shortcut will be
+     *                copied to.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setMirrors(Iterable<Folder> mirrors)
+    {
+        PreCondition.assertNotNull(mirrors, "mirrors");
+
+        this.mirrors = mirrors;
+
+        return this;
+    }
+
+    /**
+     * Get whether or not the workers will run on virtual threads.
+     * @return Whether or not the workers will run on virtual threads.
+     */
+    public boolean getVirtualThreads()
+    {
+        return this.virtualThreads;
+    }
+
+    /**
+     * Set whether or not the workers will run on virtual threads. The number of workers still
+     * caps how many operations run at the same time.
+     * @param virtualThreads Whether or not the workers will run on virtual threads.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setVirtualThreads(boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+
+        return this;
+    }
+
+    /**
+     * Get the arguments that will be passed to the published shortcut during the --appcds
+     * training run.
+     * @return The arguments that will be passed to the published shortcut during the --appcds
+     * training run.
+     */
+    public Iterable<String> getAppCDSArguments()
+    {
+        return this.appCDSArguments;
+    }
+
+    /**
+     * Set the arguments that will be passed to the published shortcut during the --appcds
+     * training run. The training run should exercise the classes that the shortcut usually
+     * starts with.
+     * @param appCDSArguments The arguments that will be passed to the published shortcut during
+     *                        the --appcds training run.
+     * @return This object for method chaining.
+     */
+    public QubPublishParameters setAppCDSArguments(Iterable<String> appCDSArguments)
+    {
+        PreCondition.assertNotNull(appCDSArguments, "appCDSArguments");
+
+        this.appCDSArguments = appCDSArguments;
+
+        return this;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,474 @@
+package qub;
+
+/**
+ * The publisher, project, version, and java.dependencies of a project.json file. Bulk scans of
+ * the qub folder only need these properties, so a summary is read with a streaming tokenizer
+ * that compares property names in place, skips every other value without allocating anything
+ * for it, and stops reading as soon as all of the needed properties have been found.
+ */
+public class QubPublishProjectJSONSummary
+{
+    private static final String[] topLevelPropertyNames = { "publisher", "project", "version", "java" };
+    private static final String[] javaPropertyNames = { "dependencies" };
+    private static final String[] dependencyPropertyNames = { "publisher", "project", "version" };
+
+    private String publisher;
+    private String project;
+    private String version;
+    private List<ProjectSignature> dependencies;
+
+    private QubPublishProjectJSONSummary()
+    {
+    }
+
+    /**
+     * Read a summary of the provided project.json file.
+     * @param projectJsonFile The project.json file to read.
+     * @return The summary of the provided project.json file.
+     */
+    public static Result<QubPublishProjectJSONSummary> parse(File projectJsonFile)
+    {
+        PreCondition.assertNotNull(projectJsonFile, "projectJsonFile");
+
+        return Result.create(() ->
+        {
+            return QubPublishProjectJSONSummary.parse(projectJsonFile.getContentsAsString().await()).await();
+        });
+    }
+
+    /**
+     * Read a summary of the provided project.json text.
+     * @param text The project.json text to read.
+     * @return The summary of the provided project.json text.
+     */
+    public static Result<QubPublishProjectJSONSummary> parse(String text)
+    {
+        PreCondition.assertNotNull(text, "text");
+
+        return Result.create(() ->
+        {
+            final QubPublishProjectJSONSummary result = new QubPublishProjectJSONSummary();
+            final Tokenizer tokenizer = new Tokenizer(text);
+            tokenizer.expect('{');
+            if (!tokenizer.tryConsume('}'))
+            {
+                boolean complete = false;
+                do
+                {
+                    switch (tokenizer.readPropertyName(QubPublishProjectJSONSummary.topLevelPropertyNames))
+                    {
+                        case 0:
+                            result.publisher = tokenizer.readStringOrSkip();
+                            break;
+
+                        case 1:
+                            result.project = tokenizer.readStringOrSkip();
+                            break;
+
+                        case 2:
+                            result.version = tokenizer.readStringOrSkip();
+                            break;
+
+                        case 3:
+                            result.readJava(tokenizer);
+                            break;
+
+                        default:
+                            tokenizer.skipValue();
+                            break;
+                    }
+                    complete = result.isComplete();
+                }
+                while (!complete && tokenizer.tryConsume(','));
+
+                if (!complete)
+                {
+                    tokenizer.expect('}');
+                }
+            }
+            return result;
+        });
+    }
+
+    private boolean isComplete()
+    {
+        return this.publisher != null &&
+            this.project != null &&
+            this.version != null &&
+            this.dependencies != null;
+    }
+
+    private void readJava(Tokenizer tokenizer)
+    {
+        if (tokenizer.peek() != '{')
+        {
+            tokenizer.skipValue();
+        }
+        else
+        {
+            tokenizer.expect('{');
+            if (!tokenizer.tryConsume('}'))
+            {
+                do
+                {
+                    if (tokenizer.readPropertyName(QubPublishProjectJSONSummary.javaPropertyNames) == 0)
+                    {
+                        this.readDependencies(tokenizer);
+                        if (this.isComplete())
+                        {
+                            // Nothing after this point is needed, so the rest of the text is
+                            // never tokenized.
+                            return;
+                        }
+                    }
+                    else
+                    {
+                        tokenizer.skipValue();
+                    }
+                }
+                while (tokenizer.tryConsume(','));
+                tokenizer.expect('}');
+            }
+        }
+
+        if (this.dependencies == null)
+        {
+            this.dependencies = List.create();
+        }
+    }
+
+    private void readDependencies(Tokenizer tokenizer)
+    {
+        this.dependencies = List.create();
+        if (tokenizer.peek() != '[')
+        {
+            tokenizer.skipValue();
+        }
+        else
+        {
+            tokenizer.expect('[');
+            if (!tokenizer.tryConsume(']'))
+            {
+                do
+                {
+                    if (tokenizer.peek() != '{')
+                    {
+                        tokenizer.skipValue();
+                    }
+                    else
+                    {
+                        String dependencyPublisher = null;
+                        String dependencyProject = null;
+                        String dependencyVersion = null;
+                        tokenizer.expect('{');
+                        if (!tokenizer.tryConsume('}'))
+                        {
+                            do
+                            {
+                                switch (tokenizer.readPropertyName(QubPublishProjectJSONSummary.dependencyPropertyNames))
+                                {
+                                    case 0:
+                                        dependencyPublisher = tokenizer.readStringOrSkip();
+                                        break;
+
+                                    case 1:
+                                        dependencyProject = tokenizer.readStringOrSkip();
+                                        break;
+
+                                    case 2:
+                                        dependencyVersion = tokenizer.readStringOrSkip();
+                                        break;
+
+                                    default:
+                                        tokenizer.skipValue();
+                                        break;
+                                }
+                            }
+                            while (tokenizer.tryConsume(','));
+                            tokenizer.expect('}');
+                        }
+
+                        if (!Strings.isNullOrEmpty(dependencyPublisher) &&
+                            !Strings.isNullOrEmpty(dependencyProject) &&
+                            !Strings.isNullOrEmpty(dependencyVersion))
+                        {
+                            this.dependencies.add(ProjectSignature.create(dependencyPublisher, dependencyProject, dependencyVersion));
+                        }
+                    }
+                }
+                while (tokenizer.tryConsume(','));
+                tokenizer.expect(']');
+            }
+        }
+    }
+
+    /**
+     * Get the publisher of the project, or null if the project.json file doesn't have one.
+     * @return The publisher of the project.
+     */
+    public String getPublisher()
+    {
+        return this.publisher;
+    }
+
+    /**
+     * Get the name of the project, or null if the project.json file doesn't have one.
+     * @return The name of the project.
+     */
+    public String getProject()
+    {
+        return this.project;
+    }
+
+    /**
+     * Get the version of the project, or null if the project.json file doesn't have one.
+     * @return The version of the project.
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * Get the java.dependencies of the project. This is empty if the project.json file doesn't
+     * have any.
+     * @return The java.dependencies of the project.
+     */
+    public Iterable<ProjectSignature> getDependencies()
+    {
+        return this.dependencies == null ? Iterable.create() : this.dependencies;
+    }
+
+    /**
+     * A minimal JSON tokenizer over a string that never allocates for values that it skips.
+     */
+    private static class Tokenizer
+    {
+        private final String text;
+        private final int length;
+        private int index;
+
+        private Tokenizer(String text)
+        {
+            this.text = text;
+            this.length = text.length();
+        }
+
+        private ParseException createParseException(String expected)
+        {
+            return new ParseException("Expected " + expected + " at index " + this.index + ".");
+        }
+
+        private void skipWhitespace()
+        {
+            while (this.index < this.length && Character.isWhitespace(this.text.charAt(this.index)))
+            {
+                ++this.index;
+            }
+        }
+
+        private char peek()
+        {
+            this.skipWhitespace();
+            return this.index < this.length ? this.text.charAt(this.index) : '\0';
+        }
+
+        private boolean tryConsume(char expected)
+        {
+            final boolean result = (this.peek() == expected);
+            if (result)
+            {
+                ++this.index;
+            }
+            return result;
+        }
+
+        private void expect(char expected)
+        {
+            if (!this.tryConsume(expected))
+            {
+                throw this.createParseException("'" + expected + "'");
+            }
+        }
+
+        /**
+         * Skip past a quoted string and return whether or not it contained any escape sequences.
+         * The tokenizer must be positioned just after the opening quote.
+         */
+        private boolean skipStringContents()
+        {
+            boolean escaped = false;
+            while (true)
+            {
+                if (this.index >= this.length)
+                {
+                    throw this.createParseException("'\"'");
+                }
+
+                final char c = this.text.charAt(this.index++);
+                if (c == '"')
+                {
+                    break;
+                }
+                else if (c == '\\')
+                {
+                    escaped = true;
+                    ++this.index;
+                }
+            }
+            return escaped;
+        }
+
+        private String decodeString(int startIndex, int endIndex)
+        {
+            final CharacterList result = CharacterList.create();
+            int i = startIndex;
+            while (i < endIndex)
+            {
+                char c = this.text.charAt(i++);
+                if (c == '\\' && i < endIndex)
+                {
+                    c = this.text.charAt(i++);
+                    switch (c)
+                    {
+                        case 'b': c = '\b'; break;
+                        case 'f': c = '\f'; break;
+                        case 'n': c = '\n'; break;
+                        case 'r': c = '\r'; break;
+                        case 't': c = '\t'; break;
+                        case 'u':
+                            if (i + 4 <= endIndex)
+                            {
+                                c = (char)Integer.parseInt(this.text.substring(i, i + 4), 16);
+                                i += 4;
+                            }
+                            break;
+                        default: break;
+                    }
+                }
+                result.add(c);
+            }
+            return result.toString();
+        }
+
+        /**
+         * Read a property name and its ':' separator and return the index of the matching
+         * expected property name, or -1 if it doesn't match any of them.
+         */
+        private int readPropertyName(String[] expectedPropertyNames)
+        {
+            this.expect('"');
+            final int startIndex = this.index;
+            final boolean escaped = this.skipStringContents();
+            final int endIndex = this.index - 1;
+
+            int result = -1;
+            if (!escaped)
+            {
+                final int propertyNameLength = endIndex - startIndex;
+                for (int i = 0; i < expectedPropertyNames.length; ++i)
+                {
+                    final String expectedPropertyName = expectedPropertyNames[i];
+                    if (expectedPropertyName.length() == propertyNameLength &&
+                        this.text.regionMatches(startIndex, expectedPropertyName, 0, propertyNameLength))
+                    {
+                        result = i;
+                        break;
+                    }
+                }
+            }
+            else
+            {
+                final String propertyName = this.decodeString(startIndex, endIndex);
+                for (int i = 0; i < expectedPropertyNames.length; ++i)
+                {
+                    if (expectedPropertyNames[i].equals(propertyName))
+                    {
+                        result = i;
+                        break;
+                    }
+                }
+            }
+
+            this.expect(':');
+            return result;
+        }
+
+        /**
+         * Read a string value, or skip the value and return null if it isn't a string.
+         */
+        private String readStringOrSkip()
+        {
+            String result = null;
+            if (this.peek() != '"')
+            {
+                this.skipValue();
+            }
+            else
+            {
+                ++this.index;
+                final int startIndex = this.index;
+                final boolean escaped = this.skipStringContents();
+                final int endIndex = this.index - 1;
+                result = escaped
+                    ? this.decodeString(startIndex, endIndex)
+                    : this.text.substring(startIndex, endIndex);
+            }
+            return result;
+        }
+
+        private void skipValue()
+        {
+            final char firstCharacter = this.peek();
+            if (firstCharacter == '"')
+            {
+                ++this.index;
+                this.skipStringContents();
+            }
+            else if (firstCharacter == '{' || firstCharacter == '[')
+            {
+                int depth = 0;
+                do
+                {
+                    if (this.index >= this.length)
+                    {
+                        throw this.createParseException("'" + (firstCharacter == '{' ? '}' : ']') + "'");
+                    }
+
+                    final char c = this.text.charAt(this.index++);
+                    if (c == '"')
+                    {
+                        this.skipStringContents();
+                    }
+                    else if (c == '{' || c == '[')
+                    {
+                        ++depth;
+                    }
+                    else if (c == '}' || c == ']')
+                    {
+                        --depth;
+                    }
+                }
+                while (depth > 0);
+            }
+            else
+            {
+                final int startIndex = this.index;
+                while (this.index < this.length)
+                {
+                    final char c = this.text.charAt(this.index);
+                    if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+                    {
+                        break;
+                    }
+                    ++this.index;
+                }
+
+                if (this.index == startIndex)
+                {
+                    throw this.createParseException("a value");
+                }
+            }
+        }
+    }
+}
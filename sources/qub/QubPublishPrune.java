@@ -0,0 +1,449 @@
+package qub;
+
+/**
+ * Deletes the old version folders of a qub folder. Qub folders only grow, so every publish makes
+ * later latest-version lookups and dependents scans a little slower. A prune keeps the newest
+ * versions of each project, along with every version that a kept version depends on (directly or
+ * through its resolved lock file) and every version that a shortcut in the qub folder refers to.
+ * Every other version folder is deleted in parallel. If the qub folder's blob store is pruned too,
+ * then the blobs that no remaining version folder links to are deleted as well.
+ */
+public class QubPublishPrune
+{
+    /**
+     * The prefix that shortcuts put in front of each path that is relative to the qub folder.
+     */
+    private static final String shortcutPathPrefix = "%~dp0";
+
+    private final QubFolder qubFolder;
+    private final int keepCount;
+    private boolean dryRun;
+    private QubPublishBlobStore blobStore;
+
+    private QubPublishPrune(QubFolder qubFolder, int keepCount)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertGreaterThanOrEqualTo(keepCount, 1, "keepCount");
+
+        this.qubFolder = qubFolder;
+        this.keepCount = keepCount;
+    }
+
+    /**
+     * Create a new QubPublishPrune.
+     * @param qubFolder The qub folder to prune.
+     * @param keepCount The number of newest versions of each project to keep.
+     * @return The new QubPublishPrune.
+     */
+    public static QubPublishPrune create(QubFolder qubFolder, int keepCount)
+    {
+        return new QubPublishPrune(qubFolder, keepCount);
+    }
+
+    /**
+     * Get the qub folder that will be pruned.
+     * @return The qub folder that will be pruned.
+     */
+    public QubFolder getQubFolder()
+    {
+        return this.qubFolder;
+    }
+
+    /**
+     * Get the number of newest versions of each project that will be kept.
+     * @return The number of newest versions of each project that will be kept.
+     */
+    public int getKeepCount()
+    {
+        return this.keepCount;
+    }
+
+    /**
+     * Get whether or not this prune will only report the version folders that it would delete.
+     * @return Whether or not this prune will only report the version folders that it would delete.
+     */
+    public boolean getDryRun()
+    {
+        return this.dryRun;
+    }
+
+    /**
+     * Set whether or not this prune will only report the version folders that it would delete.
+     * @param dryRun Whether or not this prune will only report the version folders that it would
+     *               delete.
+     * @return This object for method chaining.
+     */
+    public QubPublishPrune setDryRun(boolean dryRun)
+    {
+        this.dryRun = dryRun;
+
+        return this;
+    }
+
+    /**
+     * Get the blob store whose unused blobs will be deleted, or null if blobs won't be deleted.
+     * @return The blob store whose unused blobs will be deleted, or null.
+     */
+    public QubPublishBlobStore getBlobStore()
+    {
+        return this.blobStore;
+    }
+
+    /**
+     * Set the blob store whose unused blobs will be deleted after the version folders that link
+     * to them are deleted.
+     * @param blobStore The blob store whose unused blobs will be deleted, or null if blobs
+     *                  shouldn't be deleted.
+     * @return This object for method chaining.
+     */
+    public QubPublishPrune setBlobStore(QubPublishBlobStore blobStore)
+    {
+        this.blobStore = blobStore;
+
+        return this;
+    }
+
+    /**
+     * Get the paths relative to the qub folder that the provided shortcut text refers to. Paths
+     * that use backslashes are returned with forward slashes.
+     * @param shortcutText The text of a shortcut file.
+     * @return The paths that the provided shortcut text refers to.
+     */
+    static Iterable<String> getShortcutPaths(String shortcutText)
+    {
+        PreCondition.assertNotNull(shortcutText, "shortcutText");
+
+        final List<String> result = List.create();
+        int pathStartIndex = shortcutText.indexOf(QubPublishPrune.shortcutPathPrefix);
+        while (pathStartIndex != -1)
+        {
+            pathStartIndex += QubPublishPrune.shortcutPathPrefix.length();
+            int pathEndIndex = pathStartIndex;
+            while (pathEndIndex < shortcutText.length() && " ;\r\n\"".indexOf(shortcutText.charAt(pathEndIndex)) == -1)
+            {
+                ++pathEndIndex;
+            }
+            if (pathStartIndex < pathEndIndex)
+            {
+                result.add(shortcutText.substring(pathStartIndex, pathEndIndex).replace('\\', '/'));
+            }
+            pathStartIndex = shortcutText.indexOf(QubPublishPrune.shortcutPathPrefix, pathEndIndex);
+        }
+        return result;
+    }
+
+    /**
+     * Get the paths relative to the qub folder that the shortcuts in the qub folder refer to.
+     * @return The paths that the shortcuts in the qub folder refer to.
+     */
+    public Result<Iterable<String>> getShortcutPaths()
+    {
+        return Result.create(() ->
+        {
+            final List<String> result = List.create();
+            for (final File file : this.qubFolder.getFiles().await())
+            {
+                if (file.getName().endsWith(".cmd"))
+                {
+                    result.addAll(QubPublishPrune.getShortcutPaths(file.getContentsAsString().await()));
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get whether or not any of the provided shortcut paths are inside the version folder with the
+     * provided path.
+     */
+    private static boolean isReferenced(String versionFolderPath, Iterable<String> shortcutPaths)
+    {
+        final String versionFolderPathPrefix = versionFolderPath + "/";
+        boolean result = false;
+        for (final String shortcutPath : shortcutPaths)
+        {
+            if (shortcutPath.startsWith(versionFolderPathPrefix))
+            {
+                result = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the path of the provided version folder relative to the qub folder.
+     */
+    private String getPath(QubProjectVersionFolder versionFolder)
+    {
+        return versionFolder.relativeTo(this.qubFolder).toString();
+    }
+
+    /**
+     * Get the version folders of the provided project folder, newest first. Version folders whose
+     * names aren't version numbers are put first.
+     */
+    private static Iterable<QubProjectVersionFolder> getVersionFoldersNewestFirst(QubProjectFolder projectFolder)
+    {
+        final List<QubProjectVersionFolder> result = List.create();
+        final List<VersionNumber> versions = List.create();
+        for (final QubProjectVersionFolder versionFolder : projectFolder.getProjectVersionFolders().await())
+        {
+            final VersionNumber version = versionFolder.getVersion().catchError().await();
+            int insertIndex = 0;
+            if (version != null)
+            {
+                while (insertIndex < versions.getCount() &&
+                    (versions.get(insertIndex) == null || versions.get(insertIndex).compareTo(version) > 0))
+                {
+                    ++insertIndex;
+                }
+            }
+            result.insert(insertIndex, versionFolder);
+            versions.insert(insertIndex, version);
+        }
+        return result;
+    }
+
+    /**
+     * Get the versions that the provided version folder depends on. A version folder with a lock
+     * file depends on every version in its resolved closure. A version folder without a lock file
+     * depends on the direct dependencies in its project.json file, whose own dependencies are
+     * found when they are visited.
+     */
+    private static Iterable<ProjectSignature> getDependencies(QubProjectVersionFolder versionFolder)
+    {
+        Iterable<ProjectSignature> result;
+        final QubPublishLockFile lockFile = QubPublishLockFile.parse(QubPublishLockFile.getLockFile(versionFolder).await())
+            .catchError()
+            .await();
+        if (lockFile != null)
+        {
+            result = lockFile.getDependencies();
+        }
+        else
+        {
+            final QubPublishProjectJSONSummary projectJson = QubPublishProjectJSONSummary.parse(versionFolder.getProjectJSONFile().await())
+                .catchError()
+                .await();
+            result = projectJson == null ? Iterable.create() : projectJson.getDependencies();
+        }
+        return result;
+    }
+
+    /**
+     * Get the version folders that this prune will delete.
+     * @param workers The workers that the qub folder will be scanned on.
+     * @return The version folders that this prune will delete, in the order that they were listed
+     * in.
+     */
+    public Result<Iterable<QubProjectVersionFolder>> getVersionFoldersToDelete(QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final Iterable<QubPublisherFolder> publisherFolders = this.qubFolder.getPublisherFolders().await();
+            final Iterable<Iterable<QubProjectFolder>> projectFolderLists = workers.map(publisherFolders,
+                (QubPublisherFolder publisherFolder) -> publisherFolder.getProjectFolders().await())
+                .await();
+            final List<QubProjectFolder> projectFolders = List.create();
+            for (final Iterable<QubProjectFolder> projectFolderList : projectFolderLists)
+            {
+                projectFolders.addAll(projectFolderList);
+            }
+
+            final Iterable<Iterable<QubProjectVersionFolder>> versionFolderLists = workers.map(projectFolders,
+                QubPublishPrune::getVersionFoldersNewestFirst)
+                .await();
+
+            final Iterable<String> shortcutPaths = this.getShortcutPaths().await();
+            final List<QubProjectVersionFolder> candidates = List.create();
+            final Map<String,Boolean> keptPaths = Map.create();
+            List<QubProjectVersionFolder> toVisit = List.create();
+            for (final Iterable<QubProjectVersionFolder> versionFolderList : versionFolderLists)
+            {
+                int newerVersionCount = 0;
+                for (final QubProjectVersionFolder versionFolder : versionFolderList)
+                {
+                    // Version folders whose names aren't version numbers weren't published by a
+                    // normal publish, so they're always kept and don't count towards the newest
+                    // versions.
+                    final boolean isVersionNumber = versionFolder.getVersion().catchError().await() != null;
+                    final String path = this.getPath(versionFolder);
+                    if (!isVersionNumber || newerVersionCount < this.keepCount || QubPublishPrune.isReferenced(path, shortcutPaths))
+                    {
+                        keptPaths.set(path, true);
+                        toVisit.add(versionFolder);
+                    }
+                    else
+                    {
+                        candidates.add(versionFolder);
+                    }
+
+                    if (isVersionNumber)
+                    {
+                        ++newerVersionCount;
+                    }
+                }
+            }
+
+            // Keep everything that a kept version depends on. The version folders are visited one
+            // generation at a time so that each generation's lock files are read in parallel.
+            while (toVisit.any())
+            {
+                final Iterable<Iterable<ProjectSignature>> dependencyLists = workers.map(toVisit, QubPublishPrune::getDependencies).await();
+                toVisit = List.create();
+                for (final Iterable<ProjectSignature> dependencyList : dependencyLists)
+                {
+                    for (final ProjectSignature dependency : dependencyList)
+                    {
+                        final QubProjectVersionFolder dependencyVersionFolder = this.qubFolder.getProjectVersionFolder(
+                            dependency.getPublisher(),
+                            dependency.getProject(),
+                            dependency.getVersion()).await();
+                        final String dependencyPath = this.getPath(dependencyVersionFolder);
+                        if (!keptPaths.containsKey(dependencyPath))
+                        {
+                            keptPaths.set(dependencyPath, true);
+                            toVisit.add(dependencyVersionFolder);
+                        }
+                    }
+                }
+            }
+
+            final List<QubProjectVersionFolder> result = List.create();
+            for (final QubProjectVersionFolder candidate : candidates)
+            {
+                if (!keptPaths.containsKey(this.getPath(candidate)))
+                {
+                    result.add(candidate);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * A version folder that was (or would have been) deleted by this prune.
+     */
+    private static class PrunedFolder
+    {
+        private final String path;
+        private final long byteCount;
+
+        private PrunedFolder(String path, long byteCount)
+        {
+            this.path = path;
+            this.byteCount = byteCount;
+        }
+    }
+
+    /**
+     * Delete the version folders that aren't kept, or only report them if this is a dry run.
+     * @param output The stream that the pruned version folders and the summary will be written to.
+     * @param workers The workers that the qub folder will be scanned and deleted on.
+     * @return The exit code of the prune.
+     */
+    public int run(CharacterWriteStream output, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(output, "output");
+        PreCondition.assertNotNull(workers, "workers");
+
+        output.writeLine((this.dryRun ? "Checking " : "Pruning ") + this.qubFolder + ", keeping the newest " +
+            this.keepCount + " " + (this.keepCount == 1 ? "version" : "versions") + " of each project...").await();
+
+        final Iterable<QubProjectVersionFolder> versionFoldersToDelete = this.getVersionFoldersToDelete(workers).await();
+
+        // Blobs are found before the version folders are deleted, because the links in the
+        // version folders are how a blob is matched to the version folders that use it.
+        final Iterable<File> unusedBlobs = this.blobStore == null
+            ? Iterable.create()
+            : this.blobStore.getUnusedBlobs(versionFoldersToDelete).await();
+
+        final Iterable<PrunedFolder> prunedFolders = workers.map(versionFoldersToDelete, (QubProjectVersionFolder versionFolder) ->
+        {
+            final long byteCount = QubPublishFiles.getByteCount(versionFolder).await();
+            if (!this.dryRun)
+            {
+                versionFolder.delete().await();
+
+                // A version's class data sharing archive is kept next to its version folder.
+                final VersionNumber version = versionFolder.getVersion().catchError().await();
+                if (version != null)
+                {
+                    final QubProjectFolder projectFolder = this.qubFolder.getProjectFolder(
+                        versionFolder.getPublisherName().await(),
+                        versionFolder.getProjectName().await()).await();
+                    QubPublishShortcut.getSharedArchiveFile(projectFolder, version).await()
+                        .delete()
+                        .catchError(FileNotFoundException.class)
+                        .await();
+                }
+            }
+            return new PrunedFolder(this.getPath(versionFolder), byteCount);
+        }).await();
+
+        int folderCount = 0;
+        long byteCount = 0;
+        for (final PrunedFolder prunedFolder : prunedFolders)
+        {
+            output.writeLine((this.dryRun ? "Would delete " : "Deleted ") + prunedFolder.path + " (" + prunedFolder.byteCount + " bytes)").await();
+            ++folderCount;
+            byteCount += prunedFolder.byteCount;
+        }
+
+        if (!this.dryRun && folderCount > 0)
+        {
+            // Lookups of a project's latest version never write its pointer file, so prune
+            // repairs the pointer files of the projects that it deleted version folders from.
+            final Map<String,QubProjectFolder> prunedProjectFolders = Map.create();
+            for (final QubProjectVersionFolder versionFolder : versionFoldersToDelete)
+            {
+                final String publisherName = versionFolder.getPublisherName().await();
+                final String projectName = versionFolder.getProjectName().await();
+                prunedProjectFolders.set(publisherName + "/" + projectName,
+                    this.qubFolder.getProjectFolder(publisherName, projectName).await());
+            }
+            workers.forEach(prunedProjectFolders.getValues(), (QubProjectFolder projectFolder) ->
+            {
+                QubPublishLatestVersion.repair(projectFolder).await();
+            }).await();
+
+            // The dependents index doesn't watch the qub folder, so it is told that the published
+            // versions changed.
+            QubPublishDependentsIndex.invalidate(this.qubFolder).await();
+        }
+
+        if (this.blobStore != null)
+        {
+            final Iterable<Long> blobByteCounts = workers.map(unusedBlobs, (File blob) ->
+            {
+                long blobByteCount = QubPublishFiles.getByteCount(blob).await();
+                if (!this.dryRun && !this.blobStore.deleteIfUnused(blob).await())
+                {
+                    blobByteCount = -1;
+                }
+                return blobByteCount;
+            }).await();
+
+            int blobCount = 0;
+            long blobsByteCount = 0;
+            for (final Long blobByteCount : blobByteCounts)
+            {
+                if (blobByteCount >= 0)
+                {
+                    ++blobCount;
+                    blobsByteCount += blobByteCount;
+                }
+            }
+            output.writeLine((this.dryRun ? "Would delete " : "Deleted ") + blobCount + " unused " + (blobCount == 1 ? "blob" : "blobs") + " (" + blobsByteCount + " bytes)").await();
+            byteCount += blobsByteCount;
+        }
+
+        output.writeLine((this.dryRun ? "Would reclaim " : "Reclaimed ") + byteCount + " bytes from " +
+            folderCount + " version " + (folderCount == 1 ? "folder" : "folders") + ".").await();
+
+        return 0;
+    }
+}
@@ -0,0 +1,193 @@
+package qub;
+
+/**
+ * An in-memory view of the parts of a qub folder that publish reads and updates. A single view
+ * can be shared by all of the publishes in a batch, so that the dependents index is only loaded
+ * once and each dependency's lock file is only parsed once, no matter how many of the batch's
+ * projects depend on it. All of the methods of a view can be called from multiple threads.
+ */
+public class QubPublishQubFolderView
+{
+    private final QubFolder qubFolder;
+    private final QubPublishWorkers workers;
+    private final Map<String,QubPublishLockFile> lockFiles;
+    private final Object dependentsIndexLock;
+    private QubPublishDependentsIndex dependentsIndex;
+
+    private QubPublishQubFolderView(QubFolder qubFolder, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(workers, "workers");
+
+        this.qubFolder = qubFolder;
+        this.workers = workers;
+        this.lockFiles = Map.create();
+        this.dependentsIndexLock = new Object();
+    }
+
+    /**
+     * Create a new QubPublishQubFolderView.
+     * @param qubFolder The qub folder to view.
+     * @param workers The workers that will be used for parallel qub folder operations.
+     * @return The new QubPublishQubFolderView.
+     */
+    public static QubPublishQubFolderView create(QubFolder qubFolder, QubPublishWorkers workers)
+    {
+        return new QubPublishQubFolderView(qubFolder, workers);
+    }
+
+    /**
+     * Get the qub folder that this view is of.
+     * @return The qub folder that this view is of.
+     */
+    public QubFolder getQubFolder()
+    {
+        return this.qubFolder;
+    }
+
+    /**
+     * Get the workers that will be used for parallel qub folder operations.
+     * @return The workers that will be used for parallel qub folder operations.
+     */
+    public QubPublishWorkers getWorkers()
+    {
+        return this.workers;
+    }
+
+    /**
+     * Get the lock file of the provided version folder. Lock files are only read from disk the
+     * first time that they are requested.
+     * @param versionFolder The version folder to get the lock file of.
+     * @return The lock file of the provided version folder, or null if the version folder doesn't
+     * have a lock file.
+     */
+    public QubPublishLockFile getLockFile(QubProjectVersionFolder versionFolder)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+
+        final String key = versionFolder.toString();
+        boolean cached;
+        QubPublishLockFile result;
+        synchronized (this.lockFiles)
+        {
+            cached = this.lockFiles.containsKey(key);
+            result = cached ? this.lockFiles.get(key).await() : null;
+        }
+
+        if (!cached)
+        {
+            result = QubPublishLockFile.parse(QubPublishLockFile.getLockFile(versionFolder).await())
+                .catchError(FileNotFoundException.class)
+                .await();
+            synchronized (this.lockFiles)
+            {
+                this.lockFiles.set(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write the provided lock file into the provided version folder and remember it, so that
+     * later resolutions in this view don't have to read it from disk again.
+     * @param versionFolder The version folder to write the lock file into.
+     * @param lockFile The lock file to write.
+     * @return The result of writing the lock file.
+     */
+    public Result<Void> saveLockFile(QubProjectVersionFolder versionFolder, QubPublishLockFile lockFile)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(lockFile, "lockFile");
+
+        return Result.create(() ->
+        {
+            lockFile.save(versionFolder).await();
+            this.setLockFile(versionFolder, lockFile);
+        });
+    }
+
+    /**
+     * Remember the provided lock file as the lock file of the provided version folder without
+     * writing it. This is used when the lock file was already written into the version folder
+     * before the version folder was published.
+     * @param versionFolder The version folder that contains the lock file.
+     * @param lockFile The lock file of the version folder.
+     * @return This object for method chaining.
+     */
+    public QubPublishQubFolderView setLockFile(QubProjectVersionFolder versionFolder, QubPublishLockFile lockFile)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(lockFile, "lockFile");
+
+        synchronized (this.lockFiles)
+        {
+            this.lockFiles.set(versionFolder.toString(), lockFile);
+        }
+
+        return this;
+    }
+
+    /**
+     * Resolve the transitive dependencies of a project with the provided direct dependencies.
+     * @param dependencies The direct dependencies of the project.
+     * @return The resolved lock file.
+     */
+    public Result<QubPublishLockFile> resolveLockFile(Iterable<ProjectSignature> dependencies)
+    {
+        return QubPublishLockFile.resolve(this.qubFolder, dependencies, this::getLockFile);
+    }
+
+    /**
+     * Record that the provided version of the provided project was published with the provided
+     * dependencies, and get the projects that depend on an older version of it. The dependents
+     * index is loaded the first time that it is updated and is then kept in memory. Later updates
+     * only parse the index file again if another process has changed it since this view saved it.
+     * @param publisher The publisher of the published project.
+     * @param project The name of the published project.
+     * @param version The version that was published.
+     * @param dependencies The dependencies of the published version.
+     * @return The projects whose latest versions depend on an older version of the published
+     * project.
+     */
+    public Result<Iterable<ProjectSignature>> updateDependents(String publisher, String project, VersionNumber version, Iterable<ProjectSignature> dependencies)
+    {
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+        PreCondition.assertNotNull(version, "version");
+
+        return Result.create(() ->
+        {
+            synchronized (this.dependentsIndexLock)
+            {
+                this.dependentsIndex = QubPublishDependentsIndex.update(this.qubFolder, this.workers, this.dependentsIndex, publisher, project, version, dependencies).await();
+                return this.dependentsIndex.getDependents(publisher, project);
+            }
+        });
+    }
+
+    /**
+     * Get the projects whose latest published versions depend on any version of the project with
+     * the provided publisher and project name. The dependents index is loaded the first time that
+     * it is needed and is then kept in memory.
+     * @param publisher The publisher of the project.
+     * @param project The name of the project.
+     * @return The projects whose latest published versions depend on the provided project.
+     */
+    public Result<Iterable<ProjectSignature>> getDependents(String publisher, String project)
+    {
+        PreCondition.assertNotNullAndNotEmpty(publisher, "publisher");
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        return Result.create(() ->
+        {
+            synchronized (this.dependentsIndexLock)
+            {
+                if (this.dependentsIndex == null)
+                {
+                    this.dependentsIndex = QubPublishDependentsIndex.getOrBuild(this.qubFolder, this.workers).await();
+                }
+                return this.dependentsIndex.getDependents(publisher, project);
+            }
+        });
+    }
+}
@@ -0,0 +1,251 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The trimmed Java runtime images that published shortcuts can launch with. Each image is built
+ * by jlink with only the modules that jdeps reports a project's jars need, so it is smaller than
+ * the full system JDK and starts faster. Images are shared by every project that needs the same
+ * set of modules from the same JDK, and are stored uncompressed because decompressing the module
+ * image would cost startup time. An image is built in a staging folder and then moved into place
+ * atomically, so an image folder that exists is always complete.
+ */
+public class QubPublishRuntimeImage
+{
+    private final Folder runtimesFolder;
+
+    private QubPublishRuntimeImage(Folder runtimesFolder)
+    {
+        PreCondition.assertNotNull(runtimesFolder, "runtimesFolder");
+
+        this.runtimesFolder = runtimesFolder;
+    }
+
+    /**
+     * Create a new QubPublishRuntimeImage that stores its images in the provided folder.
+     * @param runtimesFolder The folder that the images will be stored in.
+     * @return The new QubPublishRuntimeImage.
+     */
+    public static QubPublishRuntimeImage create(Folder runtimesFolder)
+    {
+        return new QubPublishRuntimeImage(runtimesFolder);
+    }
+
+    /**
+     * Get the QubPublishRuntimeImage that belongs to the provided qub folder.
+     * @param qubFolder The qub folder to get the runtime images for.
+     * @return The QubPublishRuntimeImage that belongs to the provided qub folder.
+     */
+    public static Result<QubPublishRuntimeImage> get(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            final QubProjectFolder publishProjectFolder = qubFolder.getProjectFolder("qub", "publish-java").await();
+            final Folder publishDataFolder = publishProjectFolder.getProjectDataFolder().await();
+            return QubPublishRuntimeImage.create(publishDataFolder.getFolder("runtimes").await());
+        });
+    }
+
+    /**
+     * Get the folder that the runtime images are stored in.
+     * @return The folder that the runtime images are stored in.
+     */
+    public Folder getRuntimesFolder()
+    {
+        return this.runtimesFolder;
+    }
+
+    /**
+     * Parse the modules from the output of "jdeps --print-module-deps". The result is sorted,
+     * contains no duplicates, and always contains java.base.
+     * @param jdepsOutput The output of jdeps.
+     * @return The modules that jdeps reported.
+     */
+    static Iterable<String> parseModules(String jdepsOutput)
+    {
+        PreCondition.assertNotNull(jdepsOutput, "jdepsOutput");
+
+        final java.util.TreeSet<String> modules = new java.util.TreeSet<>();
+        modules.add("java.base");
+        for (final String line : Strings.getLines(jdepsOutput))
+        {
+            for (final String module : line.split(","))
+            {
+                final String trimmedModule = module.trim();
+                if (!trimmedModule.isEmpty())
+                {
+                    modules.add(trimmedModule);
+                }
+            }
+        }
+
+        final List<String> result = List.create();
+        for (final String module : modules)
+        {
+            result.add(module);
+        }
+        return result;
+    }
+
+    /**
+     * Get the key of the runtime image for the provided JDK version and modules. Images can only
+     * be shared between projects that need the same modules from the same JDK.
+     * @param jdkVersion The version of the JDK that builds the image.
+     * @param modules The sorted modules of the image.
+     * @return The key of the runtime image.
+     */
+    static String getKey(String jdkVersion, Iterable<String> modules)
+    {
+        PreCondition.assertNotNullAndNotEmpty(jdkVersion, "jdkVersion");
+        PreCondition.assertNotNull(modules, "modules");
+
+        final CharacterList keyText = CharacterList.create().addAll(jdkVersion.trim()).add('\n');
+        for (final String module : modules)
+        {
+            keyText.addAll(module).add(',');
+        }
+        return QubPublishFiles.getSHA256(keyText.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    /**
+     * Get the folder of the runtime image with the provided key.
+     * @param key The key of the runtime image.
+     * @return The folder of the runtime image with the provided key.
+     */
+    public Result<Folder> getImageFolder(String key)
+    {
+        PreCondition.assertNotNullAndNotEmpty(key, "key");
+
+        return this.runtimesFolder.getFolder(key);
+    }
+
+    /**
+     * Run a tool from the JDK and get its output.
+     * @param processFactory The factory that will create the tool's process.
+     * @param tool The name of the tool to run.
+     * @param arguments The arguments to pass to the tool.
+     * @return The output of the tool.
+     */
+    private static Result<String> runTool(ProcessFactory processFactory, String tool, Iterable<String> arguments)
+    {
+        return Result.create(() ->
+        {
+            final InMemoryCharacterToByteStream toolOutput = InMemoryCharacterToByteStream.create();
+            final InMemoryCharacterToByteStream toolError = InMemoryCharacterToByteStream.create();
+            final Integer exitCode = processFactory.getProcessBuilder(tool).await()
+                .addArguments(arguments)
+                .redirectOutput(toolOutput)
+                .redirectError(toolError)
+                .run()
+                .await();
+            if (exitCode == null || exitCode != 0)
+            {
+                final String errorText = toolError.getText().await().trim();
+                throw new RuntimeException(tool + " failed with exit code " + exitCode + (errorText.isEmpty() ? "." : ": " + errorText));
+            }
+            return toolOutput.getText().await();
+        });
+    }
+
+    /**
+     * Use jdeps to get the modules that the provided jar files need.
+     * @param processFactory The factory that will create the jdeps process.
+     * @param jarFiles The jar files to analyze.
+     * @return The sorted modules that the provided jar files need.
+     */
+    public static Result<Iterable<String>> getModules(ProcessFactory processFactory, Iterable<File> jarFiles)
+    {
+        PreCondition.assertNotNull(processFactory, "processFactory");
+        PreCondition.assertNotNull(jarFiles, "jarFiles");
+
+        return Result.create(() ->
+        {
+            final List<String> arguments = List.create("--print-module-deps", "--ignore-missing-deps", "--multi-release", "base");
+            for (final File jarFile : jarFiles)
+            {
+                arguments.add(jarFile.toString());
+            }
+            return QubPublishRuntimeImage.parseModules(QubPublishRuntimeImage.runTool(processFactory, "jdeps", arguments).await());
+        });
+    }
+
+    /**
+     * Get the runtime image that contains the provided modules, building it with jlink if it
+     * doesn't exist yet.
+     * @param processFactory The factory that will create the jlink processes.
+     * @param modules The sorted modules that the runtime image must contain.
+     * @return The folder of the runtime image.
+     */
+    public Result<Folder> getOrCreate(ProcessFactory processFactory, Iterable<String> modules)
+    {
+        PreCondition.assertNotNull(processFactory, "processFactory");
+        PreCondition.assertNotNull(modules, "modules");
+
+        return Result.create(() ->
+        {
+            final String jdkVersion = QubPublishRuntimeImage.runTool(processFactory, "jlink", Iterable.create("--version")).await();
+            final String key = QubPublishRuntimeImage.getKey(jdkVersion, modules);
+            final Folder result = this.getImageFolder(key).await();
+            if (!result.exists().await())
+            {
+                final CharacterList modulesText = CharacterList.create();
+                for (final String module : modules)
+                {
+                    if (modulesText.any())
+                    {
+                        modulesText.add(',');
+                    }
+                    modulesText.addAll(module);
+                }
+
+                final java.nio.file.Path imagePath = QubPublishFiles.getJavaPath(result);
+                final Folder outputFolder = imagePath == null
+                    ? result
+                    : this.runtimesFolder.getFolder(key + "." + System.nanoTime() + ".tmp").await();
+                try
+                {
+                    if (imagePath != null)
+                    {
+                        Files.createDirectories(imagePath.getParent());
+                    }
+                    QubPublishRuntimeImage.runTool(processFactory, "jlink", Iterable.create(
+                        "--add-modules", modulesText.toString(),
+                        "--strip-debug",
+                        "--no-man-pages",
+                        "--no-header-files",
+                        "--output", outputFolder.toString())).await();
+
+                    if (imagePath != null)
+                    {
+                        try
+                        {
+                            Files.move(QubPublishFiles.getJavaPath(outputFolder), imagePath, StandardCopyOption.ATOMIC_MOVE);
+                        }
+                        catch (FileAlreadyExistsException | DirectoryNotEmptyException error)
+                        {
+                            // Another publish built the same image first.
+                        }
+                    }
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+                finally
+                {
+                    if (outputFolder != result)
+                    {
+                        outputFolder.delete().catchError().await();
+                    }
+                }
+            }
+            return result;
+        });
+    }
+}
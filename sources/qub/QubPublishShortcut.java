@@ -0,0 +1,427 @@
+package qub;
+
+/**
+ * A command line shortcut file that publish writes into the root of the qub folder for projects
+ * that have a main class. All paths in the shortcut are relative to the qub folder, so the
+ * shortcut keeps working if the qub folder is moved.
+ */
+public class QubPublishShortcut
+{
+    private final QubFolder qubFolder;
+    private final String name;
+    private final String mainClass;
+    private final List<String> classpath;
+    private String sharedArchivePath;
+    private String launcherJarPath;
+    private String javaRuntimePath;
+
+    private QubPublishShortcut(QubFolder qubFolder, String name, String mainClass)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNullAndNotEmpty(name, "name");
+        PreCondition.assertNotNullAndNotEmpty(mainClass, "mainClass");
+
+        this.qubFolder = qubFolder;
+        this.name = name;
+        this.mainClass = mainClass;
+        this.classpath = List.create();
+    }
+
+    /**
+     * Create a new QubPublishShortcut.
+     * @param qubFolder The qub folder that the shortcut will be written to.
+     * @param name The name of the shortcut, without a file extension.
+     * @param mainClass The full name of the class that the shortcut will run.
+     * @return The new QubPublishShortcut.
+     */
+    public static QubPublishShortcut create(QubFolder qubFolder, String name, String mainClass)
+    {
+        return new QubPublishShortcut(qubFolder, name, mainClass);
+    }
+
+    /**
+     * Get the file that the class data sharing archive of the provided version of the provided
+     * project is dumped to. The archive is dumped after the version folder is published, because
+     * it records the paths of the files that it was dumped from, so it is kept next to the
+     * project's version folders instead of in one.
+     * @param projectFolder The folder of the project that the archive belongs to.
+     * @param version The version of the project that the archive belongs to.
+     * @return The file that the class data sharing archive is dumped to.
+     */
+    public static Result<File> getSharedArchiveFile(QubProjectFolder projectFolder, VersionNumber version)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+        PreCondition.assertNotNull(version, "version");
+
+        return projectFolder.getFile("archives/" + version + ".jsa");
+    }
+
+    /**
+     * Remove the class data sharing archive from the provided shortcut file contents. This is used
+     * when a shortcut is copied to another qub folder, where the archive wouldn't match the
+     * paths of the shortcut's classpath.
+     * @param shortcutText The contents of a shortcut file.
+     * @return The contents of the shortcut file without its class data sharing archive.
+     */
+    public static String removeSharedArchive(String shortcutText)
+    {
+        PreCondition.assertNotNull(shortcutText, "shortcutText");
+
+        return shortcutText.replaceAll(" -Xlog:cds=off -XX:SharedArchiveFile=\\S*", "");
+    }
+
+    /**
+     * Get the qub folder that this shortcut will be written to.
+     * @return The qub folder that this shortcut will be written to.
+     */
+    public QubFolder getQubFolder()
+    {
+        return this.qubFolder;
+    }
+
+    /**
+     * Get the name of this shortcut, without a file extension.
+     * @return The name of this shortcut.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Get the full name of the class that this shortcut runs.
+     * @return The full name of the class that this shortcut runs.
+     */
+    public String getMainClass()
+    {
+        return this.mainClass;
+    }
+
+    /**
+     * Add an entry to the end of this shortcut's classpath.
+     * @param path The path of the classpath entry, relative to the qub folder.
+     * @return This object for method chaining.
+     */
+    public QubPublishShortcut addClasspath(String path)
+    {
+        PreCondition.assertNotNullAndNotEmpty(path, "path");
+
+        this.classpath.add(path);
+
+        return this;
+    }
+
+    /**
+     * Get the entries of this shortcut's classpath, relative to the qub folder.
+     * @return The entries of this shortcut's classpath.
+     */
+    public Iterable<String> getClasspath()
+    {
+        return this.classpath;
+    }
+
+    /**
+     * Set the class data sharing archive that this shortcut will launch the JVM with.
+     * @param sharedArchivePath The path of the archive relative to the qub folder, or null to not
+     *                          use a class data sharing archive.
+     * @return This object for method chaining.
+     */
+    public QubPublishShortcut setSharedArchive(String sharedArchivePath)
+    {
+        this.sharedArchivePath = sharedArchivePath;
+
+        return this;
+    }
+
+    /**
+     * Get the class data sharing archive that this shortcut will launch the JVM with, relative to
+     * the qub folder.
+     * @return The class data sharing archive that this shortcut will launch the JVM with, or null.
+     */
+    public String getSharedArchive()
+    {
+        return this.sharedArchivePath;
+    }
+
+    /**
+     * Set the launcher jar that this shortcut will run with "java -jar" instead of passing its
+     * classpath on the command line. The launcher jar's manifest must name this shortcut's main
+     * class, and the launcher jar must either list this shortcut's classpath in its manifest or
+     * contain the classes from this shortcut's classpath itself (like an uber jar does).
+     * @param launcherJarPath The path of the launcher jar relative to the qub folder, or null to
+     *                        pass the classpath on the command line.
+     * @return This object for method chaining.
+     */
+    public QubPublishShortcut setLauncherJar(String launcherJarPath)
+    {
+        this.launcherJarPath = launcherJarPath;
+
+        return this;
+    }
+
+    /**
+     * Get the launcher jar that this shortcut runs, relative to the qub folder.
+     * @return The launcher jar that this shortcut runs, or null.
+     */
+    public String getLauncherJar()
+    {
+        return this.launcherJarPath;
+    }
+
+    /**
+     * Set the Java runtime image that this shortcut will launch its JVM from instead of the java
+     * executable on the PATH.
+     * @param javaRuntimePath The path of the runtime image folder relative to the qub folder, or
+     *                        null to use the java executable on the PATH.
+     * @return This object for method chaining.
+     */
+    public QubPublishShortcut setJavaRuntime(String javaRuntimePath)
+    {
+        this.javaRuntimePath = javaRuntimePath;
+
+        return this;
+    }
+
+    /**
+     * Get the Java runtime image that this shortcut launches its JVM from, relative to the qub
+     * folder.
+     * @return The Java runtime image that this shortcut launches its JVM from, or null.
+     */
+    public String getJavaRuntime()
+    {
+        return this.javaRuntimePath;
+    }
+
+    /**
+     * Get the file that this shortcut will be written to.
+     * @return The file that this shortcut will be written to.
+     */
+    public Result<File> getFile()
+    {
+        return this.qubFolder.getFile(this.name + ".cmd");
+    }
+
+    /**
+     * Get the command line that this shortcut runs.
+     * @return The command line that this shortcut runs.
+     */
+    public String getCommandLine()
+    {
+        final CharacterList result = CharacterList.create();
+        if (Strings.isNullOrEmpty(this.javaRuntimePath))
+        {
+            result.addAll("java");
+        }
+        else
+        {
+            // cmd.exe treats forward slashes in the command's path as switches, so the runtime's
+            // java executable is referenced with backslashes.
+            result.addAll("%~dp0").addAll(this.javaRuntimePath.replace('/', '\\')).addAll("\\bin\\java");
+        }
+        if (!Strings.isNullOrEmpty(this.sharedArchivePath))
+        {
+            // If the qub folder is moved or copied, then the archive no longer matches the
+            // classpath and the JVM starts without it. The JVM's warning about that is turned off
+            // so that the shortcut's output doesn't change.
+            result.addAll(" -Xlog:cds=off -XX:SharedArchiveFile=%~dp0").addAll(this.sharedArchivePath);
+        }
+        if (!Strings.isNullOrEmpty(this.launcherJarPath))
+        {
+            result.addAll(" -jar %~dp0").addAll(this.launcherJarPath);
+        }
+        else
+        {
+            result.addAll(" -classpath ");
+            boolean first = true;
+            for (final String classpathEntry : this.classpath)
+            {
+                if (first)
+                {
+                    first = false;
+                }
+                else
+                {
+                    result.add(';');
+                }
+                result.addAll("%~dp0").addAll(classpathEntry);
+            }
+            result.addAll(" ").addAll(this.mainClass);
+        }
+        result.addAll(" %*");
+        return result.toString();
+    }
+
+    /**
+     * Write this shortcut to its file in the qub folder.
+     * @return The file that this shortcut was written to.
+     */
+    public Result<File> save()
+    {
+        return Result.create(() ->
+        {
+            final File result = this.getFile().await();
+            try (final CharacterWriteStream shortcutFileStream = result.getContentsCharacterWriteStream().await())
+            {
+                shortcutFileStream.writeLine("@echo OFF").await();
+                shortcutFileStream.writeLine(this.getCommandLine()).await();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get the path that the provided path relative to the qub folder has when this shortcut runs.
+     * The shortcut prefixes each of its paths with %~dp0, which expands to the qub folder's path
+     * with the platform's separators and a trailing separator, so that is what this returns too.
+     * The JVM only uses a class data sharing archive with the classpath that it was dumped with,
+     * so the archive's training run has to spell each path exactly like the shortcut does.
+     * @param path The path relative to the qub folder.
+     * @return The path that the shortcut passes to the JVM.
+     */
+    public String getLaunchPath(String path)
+    {
+        PreCondition.assertNotNullAndNotEmpty(path, "path");
+
+        String qubFolderPath = this.qubFolder.toString().replace('/', java.io.File.separatorChar);
+        if (!qubFolderPath.endsWith(java.io.File.separator))
+        {
+            qubFolderPath += java.io.File.separator;
+        }
+        return qubFolderPath + path;
+    }
+
+    /**
+     * Get the arguments that this shortcut passes to the JVM to run its main class, other than
+     * the class data sharing archive, with each path spelled the way that the shortcut spells it.
+     * @return The arguments that this shortcut passes to the JVM.
+     */
+    private Iterable<String> getLaunchArguments()
+    {
+        final List<String> result = List.create();
+        if (!Strings.isNullOrEmpty(this.launcherJarPath))
+        {
+            result.addAll(Iterable.create(
+                "-jar",
+                this.getLaunchPath(this.launcherJarPath)));
+        }
+        else
+        {
+            final CharacterList launchClasspath = CharacterList.create();
+            for (final String classpathEntry : this.classpath)
+            {
+                if (launchClasspath.any())
+                {
+                    launchClasspath.addAll(java.io.File.pathSeparator);
+                }
+                launchClasspath.addAll(this.getLaunchPath(classpathEntry));
+            }
+            result.addAll(Iterable.create(
+                "-classpath",
+                launchClasspath.toString(),
+                this.mainClass));
+        }
+        return result;
+    }
+
+    /**
+     * Get the arguments of a training run that dumps a class data sharing archive for this
+     * shortcut's classpath. The classpath (or launcher jar) uses the same paths that the shortcut
+     * passes to the JVM, because an archive can only be used with the classpath that it was
+     * dumped with.
+     * @param archiveFile The file that the archive will be dumped to.
+     * @param trainingArguments The arguments to pass to the main class during the training run.
+     * @return The arguments of the training run.
+     */
+    public Result<Iterable<String>> getTrainingArguments(File archiveFile, Iterable<String> trainingArguments)
+    {
+        PreCondition.assertNotNull(archiveFile, "archiveFile");
+        PreCondition.assertNotNull(trainingArguments, "trainingArguments");
+
+        return Result.create(() ->
+        {
+            final List<String> result = List.create("-XX:ArchiveClassesAtExit=" + this.getLaunchPath(archiveFile.relativeTo(this.qubFolder).toString()));
+            result.addAll(this.getLaunchArguments());
+            result.addAll(trainingArguments);
+            return result;
+        });
+    }
+
+    /**
+     * Get the arguments of a run that checks whether the JVM maps the provided class data sharing
+     * archive when it is launched the way that this shortcut launches it. The run logs where each
+     * class is loaded from, and the archive is used if the main class was loaded from it.
+     * @param archiveFile The class data sharing archive to check.
+     * @param trainingArguments The arguments to pass to the main class during the run.
+     * @return The arguments of the run.
+     */
+    public Result<Iterable<String>> getVerificationArguments(File archiveFile, Iterable<String> trainingArguments)
+    {
+        PreCondition.assertNotNull(archiveFile, "archiveFile");
+        PreCondition.assertNotNull(trainingArguments, "trainingArguments");
+
+        return Result.create(() ->
+        {
+            final List<String> result = List.create(
+                "-Xlog:class+load=info",
+                "-XX:SharedArchiveFile=" + this.getLaunchPath(archiveFile.relativeTo(this.qubFolder).toString()));
+            result.addAll(this.getLaunchArguments());
+            result.addAll(trainingArguments);
+            return result;
+        });
+    }
+
+    /**
+     * Do a training run of this shortcut's main class that dumps a class data sharing archive for
+     * this shortcut's classpath, check that the JVM maps the archive when it is launched the way
+     * that this shortcut launches it, and then make this shortcut use the archive. If the training
+     * run doesn't produce an archive, or the archive isn't used, then the archive is deleted and
+     * this shortcut is left unchanged.
+     * @param processFactory The factory that will create the training run's process.
+     * @param archiveFile The file that the archive will be dumped to.
+     * @param trainingArguments The arguments to pass to the main class during the training run.
+     * @return Whether or not the archive was created.
+     */
+    public Result<Boolean> createSharedArchive(ProcessFactory processFactory, File archiveFile, Iterable<String> trainingArguments)
+    {
+        PreCondition.assertNotNull(processFactory, "processFactory");
+        PreCondition.assertNotNull(archiveFile, "archiveFile");
+        PreCondition.assertNotNull(trainingArguments, "trainingArguments");
+
+        return Result.create(() ->
+        {
+            final String javaExecutable = Strings.isNullOrEmpty(this.javaRuntimePath)
+                ? "java"
+                : this.qubFolder.getFile(this.javaRuntimePath + "/bin/java").await().toString();
+            processFactory.getProcessBuilder(javaExecutable).await()
+                .addArguments(this.getTrainingArguments(archiveFile, trainingArguments).await())
+                .setWorkingFolder(this.qubFolder)
+                .run()
+                .catchError()
+                .await();
+
+            boolean result = archiveFile.exists().await();
+            if (result)
+            {
+                final InMemoryCharacterToByteStream verificationOutput = InMemoryCharacterToByteStream.create();
+                processFactory.getProcessBuilder(javaExecutable).await()
+                    .addArguments(this.getVerificationArguments(archiveFile, trainingArguments).await())
+                    .setWorkingFolder(this.qubFolder)
+                    .redirectOutput(verificationOutput)
+                    .redirectError(InMemoryCharacterToByteStream.create())
+                    .run()
+                    .catchError()
+                    .await();
+                result = verificationOutput.getText().await().contains(" " + this.mainClass + " source: shared objects file");
+                if (result)
+                {
+                    this.setSharedArchive(archiveFile.relativeTo(this.qubFolder).toString());
+                }
+                else
+                {
+                    archiveFile.delete().catchError().await();
+                }
+            }
+            return result;
+        });
+    }
+}
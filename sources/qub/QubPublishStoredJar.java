@@ -0,0 +1,100 @@
+package qub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Functions for publishing jars whose entries are stored instead of compressed. Published jars
+ * only ever live on the local disk, so compressing them saves little and costs an inflate every
+ * time that a class or resource is loaded from them. Compiled jars are the ones that are read at
+ * launch, so they are the ones that are worth storing. Sources jars are only read by tools, and
+ * stay compressed.
+ */
+public interface QubPublishStoredJar
+{
+    /**
+     * Get whether or not every entry in the provided jar is already stored.
+     * @param jarBytes The bytes of the jar.
+     * @return Whether or not every entry in the provided jar is already stored.
+     */
+    static boolean isStored(byte[] jarBytes)
+    {
+        PreCondition.assertNotNull(jarBytes, "jarBytes");
+
+        boolean result = true;
+        try (final ZipInputStream jarStream = new ZipInputStream(new ByteArrayInputStream(jarBytes)))
+        {
+            ZipEntry zipEntry = jarStream.getNextEntry();
+            while (result && zipEntry != null)
+            {
+                result = (zipEntry.getMethod() == ZipEntry.STORED);
+                zipEntry = jarStream.getNextEntry();
+            }
+        }
+        catch (IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result;
+    }
+
+    /**
+     * Get the bytes of a jar that has the same entries as the provided jar, in the same order, but
+     * with every entry stored instead of compressed. If every entry of the provided jar is already
+     * stored, then the provided bytes are returned.
+     * @param jarBytes The bytes of the jar.
+     * @return The bytes of the stored jar.
+     */
+    static byte[] store(byte[] jarBytes)
+    {
+        PreCondition.assertNotNull(jarBytes, "jarBytes");
+
+        byte[] result = jarBytes;
+        if (!QubPublishStoredJar.isStored(jarBytes))
+        {
+            final ByteArrayOutputStream storedJarBytes = new ByteArrayOutputStream(jarBytes.length * 3);
+            try (final ZipInputStream jarStream = new ZipInputStream(new ByteArrayInputStream(jarBytes));
+                 final JarOutputStream storedJarStream = new JarOutputStream(storedJarBytes))
+            {
+                ZipEntry zipEntry = jarStream.getNextEntry();
+                while (zipEntry != null)
+                {
+                    final byte[] contents = zipEntry.isDirectory() ? new byte[0] : jarStream.readAllBytes();
+                    QubPublishUberJar.writeStoredEntry(storedJarStream, zipEntry.getName(), zipEntry.getTime(), contents);
+                    zipEntry = jarStream.getNextEntry();
+                }
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+            result = storedJarBytes.toByteArray();
+        }
+        return result;
+    }
+
+    /**
+     * Write a stored copy of the provided jar file to the provided folder. The copy has the same
+     * name as the provided jar file.
+     * @param jarFile The jar file to store.
+     * @param storedJarsFolder The folder to write the stored copy to.
+     * @return The stored copy of the jar file.
+     */
+    static Result<File> store(File jarFile, Folder storedJarsFolder)
+    {
+        PreCondition.assertNotNull(jarFile, "jarFile");
+        PreCondition.assertNotNull(storedJarsFolder, "storedJarsFolder");
+
+        return Result.create(() ->
+        {
+            final byte[] storedJarBytes = QubPublishStoredJar.store(jarFile.getContents().await());
+            final File result = storedJarsFolder.getFile(jarFile.getName()).await();
+            result.setContents(storedJarBytes).await();
+            return result;
+        });
+    }
+}
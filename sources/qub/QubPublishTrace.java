@@ -0,0 +1,203 @@
+package qub;
+
+/**
+ * A recorder of nested timing spans for the phases of a publish. The recorded spans are written
+ * as a Chrome trace-event JSON file that can be opened in chrome://tracing or ui.perfetto.dev.
+ * Spans that are started on the same thread while another span is open show up nested under that
+ * span. A disabled trace doesn't record anything.
+ */
+public class QubPublishTrace
+{
+    private static final String traceEventsPropertyName = "traceEvents";
+    private static final String displayTimeUnitPropertyName = "displayTimeUnit";
+
+    private final File traceFile;
+    private final long startNanoseconds;
+    private final long processId;
+    private final List<JSONObject> events;
+
+    private QubPublishTrace(File traceFile)
+    {
+        this.traceFile = traceFile;
+        this.startNanoseconds = System.nanoTime();
+        this.processId = ProcessHandle.current().pid();
+        this.events = List.create();
+    }
+
+    /**
+     * Create a new QubPublishTrace that will be written to the provided file.
+     * @param traceFile The file that the trace will be written to.
+     * @return The new QubPublishTrace.
+     */
+    public static QubPublishTrace create(File traceFile)
+    {
+        PreCondition.assertNotNull(traceFile, "traceFile");
+
+        return new QubPublishTrace(traceFile);
+    }
+
+    /**
+     * Create a new QubPublishTrace that doesn't record anything.
+     * @return The new QubPublishTrace.
+     */
+    public static QubPublishTrace disabled()
+    {
+        return new QubPublishTrace(null);
+    }
+
+    /**
+     * Get whether or not this trace records spans.
+     * @return Whether or not this trace records spans.
+     */
+    public boolean isEnabled()
+    {
+        return this.traceFile != null;
+    }
+
+    /**
+     * Get the file that this trace will be written to.
+     * @return The file that this trace will be written to, or null if this trace is disabled.
+     */
+    public File getTraceFile()
+    {
+        return this.traceFile;
+    }
+
+    /**
+     * Start a new span on the current thread. The span ends when it is disposed.
+     * @param name The name of the span.
+     * @return The new span.
+     */
+    public Span start(String name)
+    {
+        PreCondition.assertNotNullAndNotEmpty(name, "name");
+
+        return new Span(this, name);
+    }
+
+    /**
+     * Get the recorded spans.
+     * @return The recorded spans.
+     */
+    public Iterable<JSONObject> getEvents()
+    {
+        synchronized (this.events)
+        {
+            final List<JSONObject> result = List.create();
+            result.addAll(this.events);
+            return result;
+        }
+    }
+
+    private long getMicroseconds(long nanoseconds)
+    {
+        return (nanoseconds - this.startNanoseconds) / 1000;
+    }
+
+    private void addEvent(String name, long startNanoseconds, long endNanoseconds, long threadId)
+    {
+        final JSONObject event = JSONObject.create()
+            .setString("name", name)
+            .setString("cat", "publish")
+            .setString("ph", "X")
+            .setNumber("ts", this.getMicroseconds(startNanoseconds))
+            .setNumber("dur", (endNanoseconds - startNanoseconds) / 1000)
+            .setNumber("pid", this.processId)
+            .setNumber("tid", threadId);
+        synchronized (this.events)
+        {
+            this.events.add(event);
+        }
+    }
+
+    /**
+     * Write the recorded spans to this trace's file. Nothing is written if this trace is
+     * disabled.
+     * @return The result of writing the recorded spans.
+     */
+    public Result<Void> save()
+    {
+        return Result.create(() ->
+        {
+            if (this.isEnabled())
+            {
+                this.traceFile.setContentsAsString(this.toString()).await();
+            }
+        });
+    }
+
+    /**
+     * Get the Chrome trace-event JSON representation of this trace.
+     * @return The Chrome trace-event JSON representation of this trace.
+     */
+    public JSONObject toJson()
+    {
+        final JSONArray traceEventsJson = JSONArray.create();
+        for (final JSONObject event : this.getEvents())
+        {
+            traceEventsJson.add(event);
+        }
+        return JSONObject.create()
+            .setArray(QubPublishTrace.traceEventsPropertyName, traceEventsJson)
+            .setString(QubPublishTrace.displayTimeUnitPropertyName, "ms");
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toJson().toString();
+    }
+
+    /**
+     * A timed span within a QubPublishTrace.
+     */
+    public static class Span implements Disposable
+    {
+        private final QubPublishTrace trace;
+        private final String name;
+        private final long startNanoseconds;
+        private final long threadId;
+        private boolean disposed;
+
+        private Span(QubPublishTrace trace, String name)
+        {
+            this.trace = trace;
+            this.name = name;
+            this.startNanoseconds = System.nanoTime();
+            this.threadId = Thread.currentThread().getId();
+        }
+
+        /**
+         * Get the name of this span.
+         * @return The name of this span.
+         */
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public boolean isDisposed()
+        {
+            return this.disposed;
+        }
+
+        @Override
+        public Result<Boolean> dispose()
+        {
+            return Result.create(() ->
+            {
+                final boolean result = !this.disposed;
+                if (result)
+                {
+                    this.disposed = true;
+                    if (this.trace.isEnabled())
+                    {
+                        this.trace.addEvent(this.name, this.startNanoseconds, System.nanoTime(), this.threadId);
+                    }
+                }
+                return result;
+            });
+        }
+    }
+}
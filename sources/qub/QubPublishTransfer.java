@@ -0,0 +1,288 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The stage of publish that transfers the packaged files into a version folder. The files are
+ * transferred concurrently. On the local Java file system the bytes are moved channel-to-channel
+ * (which uses copy_file_range or sendfile where the platform supports it) so that they never pass
+ * through a heap buffer, and the transferred files are synced to disk once after every transfer
+ * has finished instead of after each file.
+ */
+public class QubPublishTransfer
+{
+    private final Folder targetFolder;
+    private final List<Item> items;
+    private QubPublishBlobStore blobStore;
+    private QubPublishHashManifest hashManifest;
+
+    private QubPublishTransfer(Folder targetFolder)
+    {
+        PreCondition.assertNotNull(targetFolder, "targetFolder");
+
+        this.targetFolder = targetFolder;
+        this.items = List.create();
+    }
+
+    /**
+     * Create a new QubPublishTransfer that will transfer files into the provided folder.
+     * @param targetFolder The folder that files will be transferred into.
+     * @return The new QubPublishTransfer.
+     */
+    public static QubPublishTransfer create(Folder targetFolder)
+    {
+        return new QubPublishTransfer(targetFolder);
+    }
+
+    /**
+     * The details of a single file to transfer.
+     */
+    private static class Item
+    {
+        private final File source;
+        private final boolean optional;
+        private final boolean artifact;
+
+        private Item(File source, boolean optional, boolean artifact)
+        {
+            this.source = source;
+            this.optional = optional;
+            this.artifact = artifact;
+        }
+    }
+
+    /**
+     * Get the folder that files will be transferred into.
+     * @return The folder that files will be transferred into.
+     */
+    public Folder getTargetFolder()
+    {
+        return this.targetFolder;
+    }
+
+    /**
+     * Set the blob store that artifacts will be published through. If the blob store is null,
+     * then artifacts will be copied the same way as other files.
+     * @param blobStore The blob store that artifacts will be published through.
+     * @return This object for method chaining.
+     */
+    public QubPublishTransfer setBlobStore(QubPublishBlobStore blobStore)
+    {
+        this.blobStore = blobStore;
+
+        return this;
+    }
+
+    /**
+     * Set the hash manifest that the hashes of the transferred files will be recorded in. Each
+     * file is hashed by the same worker that transfers it, so the hashing overlaps with the
+     * transfers of the other files. The source file is hashed right before its transfer, so the
+     * transfer reads it back from the page cache and the target file is never read again. The
+     * manifest therefore records what the target file should contain rather than what it ended
+     * up containing.
+     * @param hashManifest The hash manifest that the hashes of the transferred files will be
+     *                     recorded in, or null to not record hashes.
+     * @return This object for method chaining.
+     */
+    public QubPublishTransfer setHashManifest(QubPublishHashManifest hashManifest)
+    {
+        this.hashManifest = hashManifest;
+
+        return this;
+    }
+
+    /**
+     * Add a file that will be copied into the target folder.
+     * @param source The file to copy.
+     * @return This object for method chaining.
+     */
+    public QubPublishTransfer add(File source)
+    {
+        PreCondition.assertNotNull(source, "source");
+
+        this.items.add(new Item(source, false, false));
+
+        return this;
+    }
+
+    /**
+     * Add an artifact that will be published into the target folder. Artifacts are published
+     * through the blob store if one has been set.
+     * @param source The artifact to publish.
+     * @return This object for method chaining.
+     */
+    public QubPublishTransfer addArtifact(File source)
+    {
+        PreCondition.assertNotNull(source, "source");
+
+        this.items.add(new Item(source, false, true));
+
+        return this;
+    }
+
+    /**
+     * Add an artifact that will be published into the target folder if it exists.
+     * @param source The artifact to publish.
+     * @return This object for method chaining.
+     */
+    public QubPublishTransfer addOptionalArtifact(File source)
+    {
+        PreCondition.assertNotNull(source, "source");
+
+        this.items.add(new Item(source, true, true));
+
+        return this;
+    }
+
+    /**
+     * Transfer the added files into the target folder using the provided workers.
+     * @param workers The workers that will transfer the files.
+     * @return The files that were transferred into the target folder, in the order that they were
+     * added. Optional artifacts that didn't exist are not included.
+     */
+    public Result<Iterable<File>> run(QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final Iterable<File> transferredFiles = workers.map(this.items, this::transfer).await();
+            final List<File> result = List.create();
+            for (final File transferredFile : transferredFiles)
+            {
+                if (transferredFile != null)
+                {
+                    result.add(transferredFile);
+                }
+            }
+
+            QubPublishTransfer.sync(this.targetFolder, result);
+
+            return result;
+        });
+    }
+
+    private File transfer(Item item)
+    {
+        // Artifacts that are published through the blob store need their hash anyway, so it is
+        // computed once here and shared with the blob store.
+        final boolean hashed = this.hashManifest != null || (item.artifact && this.blobStore != null);
+        String hash = null;
+        if (hashed)
+        {
+            // The hash is streamed rather than memory-mapped, because a mapping keeps the file
+            // open until it is garbage collected, and on Windows that blocks later publishes in a
+            // long-lived --watch or --daemon process from replacing or deleting the file.
+            final Result<String> hashResult = QubPublishFiles.getSHA256(item.source);
+            hash = item.optional
+                ? hashResult.catchError(FileNotFoundException.class).await()
+                : hashResult.await();
+        }
+
+        // A missing optional file can't be hashed, so there is nothing to transfer.
+        File result = null;
+        if (!hashed || hash != null)
+        {
+            result = this.copy(item, hash);
+            if (result != null && this.hashManifest != null)
+            {
+                this.hashManifest.set(result.getName(), hash);
+            }
+        }
+        return result;
+    }
+
+    private File copy(Item item, String hash)
+    {
+        File result;
+        if (item.artifact && this.blobStore != null)
+        {
+            final Result<File> linkResult = this.blobStore.link(item.source, hash, this.targetFolder);
+            result = item.optional
+                ? linkResult.catchError(FileNotFoundException.class).await()
+                : linkResult.await();
+        }
+        else
+        {
+            result = this.targetFolder.getFile(item.source.getName()).await();
+            final java.nio.file.Path sourcePath = QubPublishFiles.getJavaPath(item.source);
+            final java.nio.file.Path resultPath = QubPublishFiles.getJavaPath(result);
+            if (sourcePath == null || resultPath == null)
+            {
+                final Result<?> copyResult = item.source.copyToFolder(this.targetFolder);
+                if (!item.optional)
+                {
+                    copyResult.await();
+                }
+                else
+                {
+                    copyResult.catchError(FileNotFoundException.class).await();
+                    if (!result.exists().await())
+                    {
+                        result = null;
+                    }
+                }
+            }
+            else
+            {
+                try
+                {
+                    QubPublishFiles.transfer(sourcePath, resultPath);
+                }
+                catch (NoSuchFileException error)
+                {
+                    if (!item.optional)
+                    {
+                        throw new FileNotFoundException(item.source.toString());
+                    }
+                    result = null;
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Flush the provided files and the folder that contains them to disk.
+     * @param folder The folder that contains the files.
+     * @param files The files to flush.
+     */
+    private static void sync(Folder folder, Iterable<File> files)
+    {
+        final java.nio.file.Path folderPath = QubPublishFiles.getJavaPath(folder);
+        if (folderPath != null)
+        {
+            try
+            {
+                for (final File file : files)
+                {
+                    try (final FileChannel channel = FileChannel.open(QubPublishFiles.getJavaPath(file), StandardOpenOption.WRITE))
+                    {
+                        channel.force(true);
+                    }
+                }
+
+                try (final FileChannel folderChannel = FileChannel.open(folderPath, StandardOpenOption.READ))
+                {
+                    folderChannel.force(true);
+                }
+                catch (IOException ignored)
+                {
+                    // Not every platform allows folders to be opened as channels (Windows
+                    // doesn't). The files themselves have already been flushed.
+                }
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+        }
+    }
+}
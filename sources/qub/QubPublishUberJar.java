@@ -0,0 +1,393 @@
+package qub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A single jar that merges a project's compiled jar with all of its dependency jars. The JVM
+ * opens and indexes every jar on its classpath when it starts, so launching a short-lived tool
+ * from one jar is faster than launching it from many. The merged entries are stored instead of
+ * compressed so that loading a class never has to inflate it. Entries that appear in more than
+ * one jar are only written once. When two jars contain different versions of the same class, the
+ * one from the jar that was added first wins (the same one that the JVM would load from the
+ * original classpath) and the collision is recorded so that it can be reported. If any of the
+ * merged jars is a multi-release jar, then the uber jar is one too, so that the JVM still loads
+ * the versioned classes under META-INF/versions/ that the merged jar was built with.
+ */
+public class QubPublishUberJar
+{
+    private static final String manifestEntryName = "META-INF/MANIFEST.MF";
+    private static final String servicesEntryNamePrefix = "META-INF/services/";
+
+    private final String mainClass;
+    private final List<String> entryNames;
+    private final Map<String,Entry> entries;
+    private final Map<String,List<String>> serviceProviders;
+    private final List<Collision> collisions;
+    private boolean multiRelease;
+
+    private QubPublishUberJar(String mainClass)
+    {
+        PreCondition.assertNotNullAndNotEmpty(mainClass, "mainClass");
+
+        this.mainClass = mainClass;
+        this.entryNames = List.create();
+        this.entries = Map.create();
+        this.serviceProviders = Map.create();
+        this.collisions = List.create();
+    }
+
+    /**
+     * Create a new empty QubPublishUberJar that will run the provided main class.
+     * @param mainClass The full name of the class that the uber jar will run.
+     * @return The new QubPublishUberJar.
+     */
+    public static QubPublishUberJar create(String mainClass)
+    {
+        return new QubPublishUberJar(mainClass);
+    }
+
+    /**
+     * Get the name of the uber jar file for the provided project.
+     * @param project The name of the project.
+     * @return The name of the uber jar file for the provided project.
+     */
+    public static String getFileName(String project)
+    {
+        PreCondition.assertNotNullAndNotEmpty(project, "project");
+
+        return project + ".uber.jar";
+    }
+
+    /**
+     * A single entry that has been merged into the uber jar.
+     */
+    private static class Entry
+    {
+        private final String jarName;
+        private final long time;
+        private final byte[] contents;
+
+        private Entry(String jarName, long time, byte[] contents)
+        {
+            this.jarName = jarName;
+            this.time = time;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * A class that appears with different contents in more than one of the merged jars.
+     */
+    public static class Collision
+    {
+        private final String entryName;
+        private final String usedJarName;
+        private final String ignoredJarName;
+
+        private Collision(String entryName, String usedJarName, String ignoredJarName)
+        {
+            this.entryName = entryName;
+            this.usedJarName = usedJarName;
+            this.ignoredJarName = ignoredJarName;
+        }
+
+        /**
+         * Get the name of the colliding jar entry.
+         * @return The name of the colliding jar entry.
+         */
+        public String getEntryName()
+        {
+            return this.entryName;
+        }
+
+        /**
+         * Get the name of the jar whose version of the entry was merged into the uber jar.
+         * @return The name of the jar whose version of the entry was merged into the uber jar.
+         */
+        public String getUsedJarName()
+        {
+            return this.usedJarName;
+        }
+
+        /**
+         * Get the name of the jar whose version of the entry was left out of the uber jar.
+         * @return The name of the jar whose version of the entry was left out of the uber jar.
+         */
+        public String getIgnoredJarName()
+        {
+            return this.ignoredJarName;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.entryName + " in " + this.ignoredJarName + " is different from the one in " + this.usedJarName + ", so it was ignored.";
+        }
+    }
+
+    /**
+     * Get the full name of the class that the uber jar will run.
+     * @return The full name of the class that the uber jar will run.
+     */
+    public String getMainClass()
+    {
+        return this.mainClass;
+    }
+
+    /**
+     * Get the names of the entries that will be written to the uber jar, in the order that they
+     * will be written. This doesn't include the manifest.
+     * @return The names of the entries that will be written to the uber jar.
+     */
+    public Iterable<String> getEntryNames()
+    {
+        return this.entryNames;
+    }
+
+    /**
+     * Get whether or not any of the merged jars is a multi-release jar, which makes the uber jar a
+     * multi-release jar too.
+     * @return Whether or not the uber jar will be a multi-release jar.
+     */
+    public boolean isMultiRelease()
+    {
+        return this.multiRelease;
+    }
+
+    /**
+     * Get the classes that appeared with different contents in more than one of the merged jars.
+     * @return The classes that appeared with different contents in more than one of the merged
+     * jars.
+     */
+    public Iterable<Collision> getCollisions()
+    {
+        return this.collisions;
+    }
+
+    /**
+     * Get whether or not the provided jar entry should be left out of the uber jar. Manifests,
+     * signatures, and module descriptors only describe the jar that they came from, and would be
+     * wrong (or in the case of signatures, would fail verification) in the uber jar.
+     * @param entryName The name of the jar entry.
+     * @return Whether or not the provided jar entry should be left out of the uber jar.
+     */
+    static boolean isExcluded(String entryName)
+    {
+        PreCondition.assertNotNull(entryName, "entryName");
+
+        final String upperEntryName = entryName.toUpperCase();
+        return upperEntryName.equals(QubPublishUberJar.manifestEntryName) ||
+            (upperEntryName.startsWith("META-INF/") && upperEntryName.indexOf('/', "META-INF/".length()) == -1 &&
+                (upperEntryName.endsWith(".SF") || upperEntryName.endsWith(".RSA") || upperEntryName.endsWith(".DSA") || upperEntryName.endsWith(".EC"))) ||
+            entryName.equals("module-info.class") ||
+            (entryName.startsWith("META-INF/versions/") && entryName.endsWith("/module-info.class"));
+    }
+
+    /**
+     * Merge the entries of the provided jar file into this uber jar.
+     * @param jarName The name of the jar to use when reporting collisions.
+     * @param jarFile The jar file to merge.
+     * @return The result of merging the jar file.
+     */
+    public Result<QubPublishUberJar> addJar(String jarName, File jarFile)
+    {
+        PreCondition.assertNotNullAndNotEmpty(jarName, "jarName");
+        PreCondition.assertNotNull(jarFile, "jarFile");
+
+        return Result.create(() ->
+        {
+            return this.addJar(jarName, jarFile.getContents().await()).await();
+        });
+    }
+
+    /**
+     * Merge the entries of the provided jar bytes into this uber jar.
+     * @param jarName The name of the jar to use when reporting collisions.
+     * @param jarBytes The bytes of the jar to merge.
+     * @return The result of merging the jar.
+     */
+    public Result<QubPublishUberJar> addJar(String jarName, byte[] jarBytes)
+    {
+        PreCondition.assertNotNullAndNotEmpty(jarName, "jarName");
+        PreCondition.assertNotNull(jarBytes, "jarBytes");
+
+        return Result.create(() ->
+        {
+            try (final ZipInputStream jarStream = new ZipInputStream(new ByteArrayInputStream(jarBytes)))
+            {
+                ZipEntry zipEntry = jarStream.getNextEntry();
+                while (zipEntry != null)
+                {
+                    final String entryName = zipEntry.getName();
+                    if (entryName.equalsIgnoreCase(QubPublishUberJar.manifestEntryName))
+                    {
+                        final Manifest manifest = new Manifest(new ByteArrayInputStream(jarStream.readAllBytes()));
+                        if ("true".equalsIgnoreCase(manifest.getMainAttributes().getValue(Attributes.Name.MULTI_RELEASE)))
+                        {
+                            this.multiRelease = true;
+                        }
+                    }
+                    else if (!QubPublishUberJar.isExcluded(entryName))
+                    {
+                        final byte[] contents = zipEntry.isDirectory() ? new byte[0] : jarStream.readAllBytes();
+                        if (!zipEntry.isDirectory() && entryName.startsWith(QubPublishUberJar.servicesEntryNamePrefix))
+                        {
+                            this.addServiceProviders(entryName, zipEntry.getTime(), contents);
+                        }
+                        else
+                        {
+                            this.addEntry(jarName, entryName, zipEntry.getTime(), contents);
+                        }
+                    }
+                    zipEntry = jarStream.getNextEntry();
+                }
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+            return this;
+        });
+    }
+
+    private void addEntry(String jarName, String entryName, long time, byte[] contents)
+    {
+        final Entry existingEntry = this.entries.get(entryName).catchError().await();
+        if (existingEntry == null)
+        {
+            this.entryNames.add(entryName);
+            this.entries.set(entryName, new Entry(jarName, time, contents));
+        }
+        else if (entryName.endsWith(".class") && !Arrays.equals(existingEntry.contents, contents))
+        {
+            this.collisions.add(new Collision(entryName, existingEntry.jarName, jarName));
+        }
+    }
+
+    /**
+     * Service provider configuration files list implementations of a service, so the providers
+     * from every jar are combined instead of only keeping the first jar's file.
+     */
+    private void addServiceProviders(String entryName, long time, byte[] contents)
+    {
+        List<String> providers = this.serviceProviders.get(entryName).catchError().await();
+        if (providers == null)
+        {
+            providers = List.create();
+            this.serviceProviders.set(entryName, providers);
+            this.entryNames.add(entryName);
+            this.entries.set(entryName, new Entry(null, time, null));
+        }
+
+        for (final String line : Strings.getLines(new String(contents, StandardCharsets.UTF_8)))
+        {
+            final int commentIndex = line.indexOf('#');
+            final String provider = (commentIndex == -1 ? line : line.substring(0, commentIndex)).trim();
+            if (!provider.isEmpty() && !providers.contains(provider))
+            {
+                providers.add(provider);
+            }
+        }
+    }
+
+    private byte[] getEntryContents(String entryName)
+    {
+        final Entry entry = this.entries.get(entryName).await();
+        byte[] result = entry.contents;
+        if (result == null)
+        {
+            final CharacterList providersText = CharacterList.create();
+            for (final String provider : this.serviceProviders.get(entryName).await())
+            {
+                providersText.addAll(provider).add('\n');
+            }
+            result = providersText.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    /**
+     * Get the bytes of the uber jar. Every entry is stored without compression.
+     * @return The bytes of the uber jar.
+     */
+    public byte[] getBytes()
+    {
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(Attributes.Name.MAIN_CLASS, this.mainClass);
+        if (this.multiRelease)
+        {
+            attributes.put(Attributes.Name.MULTI_RELEASE, "true");
+        }
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (final JarOutputStream jarStream = new JarOutputStream(result))
+        {
+            final ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+            manifest.write(manifestBytes);
+            QubPublishUberJar.writeStoredEntry(jarStream, QubPublishUberJar.manifestEntryName, -1, manifestBytes.toByteArray());
+
+            for (final String entryName : this.entryNames)
+            {
+                QubPublishUberJar.writeStoredEntry(jarStream, entryName, this.entries.get(entryName).await().time, this.getEntryContents(entryName));
+            }
+        }
+        catch (IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Write an entry to the provided jar stream without compressing it.
+     * @param jarStream The stream to write the entry to.
+     * @param entryName The name of the entry.
+     * @param time The modification time of the entry, or -1 to use the current time.
+     * @param contents The contents of the entry.
+     */
+    static void writeStoredEntry(JarOutputStream jarStream, String entryName, long time, byte[] contents) throws IOException
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(contents);
+
+        final ZipEntry zipEntry = new ZipEntry(entryName);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(contents.length);
+        zipEntry.setCompressedSize(contents.length);
+        zipEntry.setCrc(crc.getValue());
+        if (time != -1)
+        {
+            zipEntry.setTime(time);
+        }
+        jarStream.putNextEntry(zipEntry);
+        jarStream.write(contents);
+        jarStream.closeEntry();
+    }
+
+    /**
+     * Write the uber jar to the provided file.
+     * @param uberJarFile The file to write the uber jar to.
+     * @return The result of writing the uber jar.
+     */
+    public Result<Void> save(File uberJarFile)
+    {
+        PreCondition.assertNotNull(uberJarFile, "uberJarFile");
+
+        return Result.create(() ->
+        {
+            uberJarFile.setContents(this.getBytes()).await();
+        });
+    }
+}
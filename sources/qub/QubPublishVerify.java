@@ -0,0 +1,361 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Verifies that the files in every published version folder of a qub folder still match the
+ * hashes that publish recorded in their hash manifests. The version folders are verified in
+ * parallel, and their files are hashed with streamed reads. The version folders that verify
+ * successfully are recorded in a cache along with a fingerprint of their files' sizes and
+ * modification times, so a later verify only re-hashes the version folders whose files changed.
+ * Version folders that were published before hash manifests existed are skipped.
+ */
+public class QubPublishVerify
+{
+    private static final String foldersPropertyName = "folders";
+    private static final String pathPropertyName = "path";
+    private static final String fingerprintPropertyName = "fingerprint";
+
+    private final QubFolder qubFolder;
+    private final File cacheFile;
+
+    private QubPublishVerify(QubFolder qubFolder, File cacheFile)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertNotNull(cacheFile, "cacheFile");
+
+        this.qubFolder = qubFolder;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Create a new QubPublishVerify that verifies the provided qub folder.
+     * @param qubFolder The qub folder to verify.
+     * @param cacheFile The file that records the version folders that were verified successfully.
+     * @return The new QubPublishVerify.
+     */
+    public static QubPublishVerify create(QubFolder qubFolder, File cacheFile)
+    {
+        return new QubPublishVerify(qubFolder, cacheFile);
+    }
+
+    /**
+     * Get the QubPublishVerify for the provided qub folder, which keeps its cache in publish's
+     * data folder.
+     * @param qubFolder The qub folder to verify.
+     * @return The QubPublishVerify for the provided qub folder.
+     */
+    public static Result<QubPublishVerify> get(QubFolder qubFolder)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+
+        return Result.create(() ->
+        {
+            final QubProjectFolder publishProjectFolder = qubFolder.getProjectFolder("qub", "publish-java").await();
+            final Folder publishDataFolder = publishProjectFolder.getProjectDataFolder().await();
+            return QubPublishVerify.create(qubFolder, publishDataFolder.getFile("verify.json").await());
+        });
+    }
+
+    /**
+     * Get the qub folder that will be verified.
+     * @return The qub folder that will be verified.
+     */
+    public QubFolder getQubFolder()
+    {
+        return this.qubFolder;
+    }
+
+    /**
+     * Get the file that records the version folders that were verified successfully.
+     * @return The file that records the version folders that were verified successfully.
+     */
+    public File getCacheFile()
+    {
+        return this.cacheFile;
+    }
+
+    /**
+     * Get the fingerprint of the files in the provided version folder that are listed in the
+     * provided hash manifest. The fingerprint changes whenever the manifest or the size or
+     * modification time of any of its files changes. Only version folders on the local Java file
+     * system have a fingerprint.
+     * @param versionFolder The version folder to get the fingerprint of.
+     * @param hashManifest The hash manifest of the version folder.
+     * @return The fingerprint of the version folder, or null if the version folder isn't on the
+     * local Java file system.
+     */
+    static Result<String> getFingerprint(QubProjectVersionFolder versionFolder, QubPublishHashManifest hashManifest)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(hashManifest, "hashManifest");
+
+        return Result.create(() ->
+        {
+            String result = null;
+            final java.nio.file.Path versionFolderPath = QubPublishFiles.getJavaPath(versionFolder);
+            if (versionFolderPath != null)
+            {
+                final CharacterList fingerprintText = CharacterList.create().addAll(hashManifest.toString()).add('\n');
+                for (final String fileName : hashManifest.getFileNames())
+                {
+                    final java.nio.file.Path filePath = versionFolderPath.resolve(fileName);
+                    fingerprintText.addAll(fileName).add('|');
+                    try
+                    {
+                        fingerprintText.addAll(Long.toString(Files.size(filePath)))
+                            .add('|')
+                            .addAll(Long.toString(Files.getLastModifiedTime(filePath).toMillis()));
+                    }
+                    catch (IOException error)
+                    {
+                        fingerprintText.addAll("missing");
+                    }
+                    fingerprintText.add('\n');
+                }
+                result = QubPublishFiles.getSHA256(fingerprintText.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Re-hash the files of the provided version folder and compare them against the provided hash
+     * manifest.
+     * @param versionFolder The version folder to verify.
+     * @param hashManifest The hash manifest of the version folder.
+     * @return The problems that were found, or an empty Iterable if every file matches.
+     */
+    static Result<Iterable<String>> verify(QubProjectVersionFolder versionFolder, QubPublishHashManifest hashManifest)
+    {
+        PreCondition.assertNotNull(versionFolder, "versionFolder");
+        PreCondition.assertNotNull(hashManifest, "hashManifest");
+
+        return Result.create(() ->
+        {
+            final List<String> result = List.create();
+            for (final String fileName : hashManifest.getFileNames())
+            {
+                final File file = versionFolder.getFile(fileName).await();
+                final String hash = QubPublishFiles.getSHA256(file)
+                    .catchError(FileNotFoundException.class)
+                    .await();
+                if (hash == null)
+                {
+                    result.add(file + " is missing.");
+                }
+                else if (!hash.equals(hashManifest.getHash(fileName)))
+                {
+                    result.add(file + " doesn't match its recorded hash.");
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Read the fingerprints of the version folders that were verified successfully, keyed by the
+     * version folders' paths relative to the qub folder. A cache that doesn't exist or can't be
+     * parsed is treated as empty.
+     * @return The fingerprints of the version folders that were verified successfully.
+     */
+    public Result<Map<String,String>> readCache()
+    {
+        return Result.create(() ->
+        {
+            final Map<String,String> result = Map.create();
+            final String cacheText = this.cacheFile.getContentsAsString().catchError().await();
+            final JSONObject json = Strings.isNullOrEmpty(cacheText)
+                ? null
+                : JSON.parseObject(cacheText).catchError().await();
+            if (json != null)
+            {
+                final JSONArray foldersJson = json.getArray(QubPublishVerify.foldersPropertyName).catchError().await();
+                if (foldersJson != null)
+                {
+                    for (final JSONSegment folderSegment : foldersJson)
+                    {
+                        final JSONObject folderJson = (JSONObject)folderSegment;
+                        result.set(
+                            folderJson.getString(QubPublishVerify.pathPropertyName).await(),
+                            folderJson.getString(QubPublishVerify.fingerprintPropertyName).await());
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Replace the cache with the provided fingerprints.
+     * @param fingerprints The fingerprints of the version folders that were verified
+     *                     successfully, keyed by the version folders' paths relative to the qub
+     *                     folder.
+     * @return The result of writing the cache.
+     */
+    public Result<Void> writeCache(Map<String,String> fingerprints)
+    {
+        PreCondition.assertNotNull(fingerprints, "fingerprints");
+
+        return Result.create(() ->
+        {
+            final java.util.TreeSet<String> sortedPaths = new java.util.TreeSet<>();
+            for (final String path : fingerprints.getKeys())
+            {
+                sortedPaths.add(path);
+            }
+
+            final JSONArray foldersJson = JSONArray.create();
+            for (final String path : sortedPaths)
+            {
+                foldersJson.add(JSONObject.create()
+                    .setString(QubPublishVerify.pathPropertyName, path)
+                    .setString(QubPublishVerify.fingerprintPropertyName, fingerprints.get(path).await()));
+            }
+            QubPublishFiles.setContentsAtomically(this.cacheFile,
+                JSONObject.create()
+                    .setArray(QubPublishVerify.foldersPropertyName, foldersJson)
+                    .toString())
+                .await();
+        });
+    }
+
+    /**
+     * Get every version folder in the qub folder.
+     * @param workers The workers that the listing will be fanned out to.
+     * @return Every version folder in the qub folder.
+     */
+    public Result<Iterable<QubProjectVersionFolder>> getVersionFolders(QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(workers, "workers");
+
+        return Result.create(() ->
+        {
+            final Iterable<QubPublisherFolder> publisherFolders = this.qubFolder.getPublisherFolders().await();
+            final Iterable<Iterable<QubProjectFolder>> projectFolderLists = workers.map(publisherFolders,
+                (QubPublisherFolder publisherFolder) -> publisherFolder.getProjectFolders().await())
+                .await();
+            final List<QubProjectFolder> projectFolders = List.create();
+            for (final Iterable<QubProjectFolder> projectFolderList : projectFolderLists)
+            {
+                projectFolders.addAll(projectFolderList);
+            }
+
+            final Iterable<Iterable<QubProjectVersionFolder>> versionFolderLists = workers.map(projectFolders,
+                (QubProjectFolder projectFolder) -> projectFolder.getProjectVersionFolders().await())
+                .await();
+            final List<QubProjectVersionFolder> result = List.create();
+            for (final Iterable<QubProjectVersionFolder> versionFolderList : versionFolderLists)
+            {
+                result.addAll(versionFolderList);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * The result of verifying a single version folder.
+     */
+    private static class VerifiedFolder
+    {
+        private final String path;
+        private final boolean hasHashManifest;
+        private final boolean unchanged;
+        private final String fingerprint;
+        private final Iterable<String> problems;
+
+        private VerifiedFolder(String path, boolean hasHashManifest, boolean unchanged, String fingerprint, Iterable<String> problems)
+        {
+            this.path = path;
+            this.hasHashManifest = hasHashManifest;
+            this.unchanged = unchanged;
+            this.fingerprint = fingerprint;
+            this.problems = problems;
+        }
+    }
+
+    private VerifiedFolder verify(QubProjectVersionFolder versionFolder, Map<String,String> cachedFingerprints)
+    {
+        final String path = versionFolder.relativeTo(this.qubFolder).toString();
+        final QubPublishHashManifest hashManifest = QubPublishHashManifest.parse(QubPublishHashManifest.getManifestFile(versionFolder).await())
+            .catchError()
+            .await();
+
+        VerifiedFolder result;
+        if (hashManifest == null)
+        {
+            result = new VerifiedFolder(path, false, false, null, Iterable.create());
+        }
+        else
+        {
+            final String fingerprint = QubPublishVerify.getFingerprint(versionFolder, hashManifest).await();
+            final String cachedFingerprint = cachedFingerprints.get(path).catchError().await();
+            if (fingerprint != null && fingerprint.equals(cachedFingerprint))
+            {
+                result = new VerifiedFolder(path, true, true, fingerprint, Iterable.create());
+            }
+            else
+            {
+                result = new VerifiedFolder(path, true, false, fingerprint, QubPublishVerify.verify(versionFolder, hashManifest).await());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Verify every version folder in the qub folder, report any problems, and update the cache.
+     * @param output The stream that the problems and the summary will be written to.
+     * @param workers The workers that the version folders will be verified on.
+     * @return The exit code of the verify, which is the number of problems that were found.
+     */
+    public int run(CharacterWriteStream output, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(output, "output");
+        PreCondition.assertNotNull(workers, "workers");
+
+        output.writeLine("Verifying " + this.qubFolder + "...").await();
+
+        final Map<String,String> cachedFingerprints = this.readCache().await();
+        final Iterable<VerifiedFolder> verifiedFolders = workers.map(this.getVersionFolders(workers).await(),
+            (QubProjectVersionFolder versionFolder) -> this.verify(versionFolder, cachedFingerprints))
+            .await();
+
+        int folderCount = 0;
+        int unchangedCount = 0;
+        int withoutHashManifestCount = 0;
+        int problemCount = 0;
+        final Map<String,String> fingerprints = Map.create();
+        for (final VerifiedFolder verifiedFolder : verifiedFolders)
+        {
+            ++folderCount;
+            if (!verifiedFolder.hasHashManifest)
+            {
+                ++withoutHashManifestCount;
+            }
+            else if (verifiedFolder.unchanged)
+            {
+                ++unchangedCount;
+            }
+
+            for (final String problem : verifiedFolder.problems)
+            {
+                output.writeLine("ERROR: " + problem).await();
+                ++problemCount;
+            }
+
+            if (verifiedFolder.fingerprint != null && !verifiedFolder.problems.any())
+            {
+                fingerprints.set(verifiedFolder.path, verifiedFolder.fingerprint);
+            }
+        }
+        this.writeCache(fingerprints).await();
+
+        output.writeLine("Verified " + folderCount + " version " + (folderCount == 1 ? "folder" : "folders") + ": " +
+            unchangedCount + " unchanged since the last verify, " +
+            withoutHashManifestCount + " without a hash manifest, " +
+            problemCount + " " + (problemCount == 1 ? "problem" : "problems") + ".").await();
+
+        return problemCount;
+    }
+}
@@ -0,0 +1,479 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A version number that one publish has claimed within a project folder. The version is claimed
+ * before the project is packed by atomically creating a reservation file, so concurrent publishes
+ * of the same project never pick the same version and never pack a project that they can't
+ * publish. The version folder's files are written into a staging folder and then renamed into
+ * place in one atomic move, so other processes never see a partially written version folder.
+ * Reservation files that were left behind by a publish that died are taken over when their
+ * process no longer exists or when they are older than a day.
+ */
+public class QubPublishVersionReservation implements Disposable
+{
+    /**
+     * The name of the folder within a project folder that holds its reservation files.
+     */
+    public static final String reservationsFolderName = "reservations";
+
+    /**
+     * The name of the folder within a project folder that holds its staged version folders.
+     */
+    public static final String stagingFolderName = "staging";
+
+    /**
+     * The file extension of reservation files.
+     */
+    public static final String reservationFileExtension = ".reserved";
+
+    /**
+     * The number of milliseconds after which a reservation file is stale, even if the process
+     * that created it can't be checked.
+     */
+    static final long staleMilliseconds = 24L * 60 * 60 * 1000;
+
+    private static final String processIdPropertyName = "pid";
+    private static final String hostPropertyName = "host";
+    private static final String createdPropertyName = "created";
+
+    /**
+     * The lock that makes checking for and creating a reservation file atomic on file systems
+     * that don't belong to the local Java file system.
+     */
+    private static final Object inMemoryLock = new Object();
+
+    private final QubProjectFolder projectFolder;
+    private final VersionNumber version;
+    private final File reservationFile;
+    private Folder stagingFolder;
+    private boolean disposed;
+
+    private QubPublishVersionReservation(QubProjectFolder projectFolder, VersionNumber version, File reservationFile)
+    {
+        this.projectFolder = projectFolder;
+        this.version = version;
+        this.reservationFile = reservationFile;
+    }
+
+    /**
+     * Reserve a version of the provided project folder. If the requested version is null or
+     * empty, then the next major version after the project's latest version is reserved, skipping
+     * over any versions that are already published or reserved.
+     * @param projectFolder The project folder to reserve a version in.
+     * @param requestedVersion The version to reserve, or null to reserve the next version.
+     * @return The new reservation.
+     */
+    public static Result<QubPublishVersionReservation> reserve(QubProjectFolder projectFolder, VersionNumber requestedVersion)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+
+        return Result.create(() ->
+        {
+            QubPublishVersionReservation result = null;
+            if (requestedVersion != null && requestedVersion.any())
+            {
+                final String signature = projectFolder.getPublisherName().await() + "/" + projectFolder.getProjectName().await() + ":" + requestedVersion;
+                if (projectFolder.getProjectVersionFolder(requestedVersion).await().exists().await())
+                {
+                    throw new AlreadyExistsException("This package (" + signature + ") can't be published because a package with that signature already exists.");
+                }
+                result = QubPublishVersionReservation.tryReserve(projectFolder, requestedVersion).await();
+                if (result == null)
+                {
+                    throw new AlreadyExistsException("This package (" + signature + ") can't be published because another publish has already reserved that version.");
+                }
+            }
+            else
+            {
+                int major = QubPublishVersionReservation.getNextMajor(projectFolder).await();
+                while (result == null)
+                {
+                    result = QubPublishVersionReservation.tryReserve(projectFolder, VersionNumber.create().setMajor(major)).await();
+                    ++major;
+                }
+            }
+
+            PostCondition.assertNotNull(result, "result");
+
+            return result;
+        });
+    }
+
+    /**
+     * Get the major version that comes after the latest version of the provided project folder.
+     */
+    private static Result<Integer> getNextMajor(QubProjectFolder projectFolder)
+    {
+        return Result.create(() ->
+        {
+            int result = 1;
+            final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).catchError().await();
+            if (latestVersionFolder != null)
+            {
+                final VersionNumber latestVersion = latestVersionFolder.getVersion().catchError().await();
+                if (latestVersion != null && latestVersion.hasMajor())
+                {
+                    result = latestVersion.getMajor() + 1;
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Try to reserve the provided version of the provided project folder.
+     * @return The new reservation, or null if the version is already published or reserved.
+     */
+    private static Result<QubPublishVersionReservation> tryReserve(QubProjectFolder projectFolder, VersionNumber version)
+    {
+        return Result.create(() ->
+        {
+            QubPublishVersionReservation result = null;
+            final QubProjectVersionFolder versionFolder = projectFolder.getProjectVersionFolder(version).await();
+            if (!versionFolder.exists().await())
+            {
+                final File reservationFile = QubPublishVersionReservation.getReservationFile(projectFolder, version).await();
+                if (QubPublishVersionReservation.tryCreateReservationFile(reservationFile).await())
+                {
+                    result = new QubPublishVersionReservation(projectFolder, version, reservationFile);
+
+                    // The version folder may have been renamed into place by a publish that held
+                    // the reservation between the first check and the reservation file's creation.
+                    if (versionFolder.exists().await())
+                    {
+                        result.dispose().await();
+                        result = null;
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get the reservation file for the provided version of the provided project folder.
+     * @param projectFolder The project folder that the version belongs to.
+     * @param version The version to get the reservation file for.
+     * @return The reservation file for the provided version of the provided project folder.
+     */
+    static Result<File> getReservationFile(QubProjectFolder projectFolder, VersionNumber version)
+    {
+        PreCondition.assertNotNull(projectFolder, "projectFolder");
+        PreCondition.assertNotNull(version, "version");
+
+        return projectFolder.getFile(QubPublishVersionReservation.reservationsFolderName + "/" + version + QubPublishVersionReservation.reservationFileExtension);
+    }
+
+    /**
+     * Get the contents of a new reservation file for the current process.
+     * @return The contents of a new reservation file for the current process.
+     */
+    static JSONObject createReservationJson()
+    {
+        return JSONObject.create()
+            .setNumber(QubPublishVersionReservation.processIdPropertyName, ProcessHandle.current().pid())
+            .setString(QubPublishVersionReservation.hostPropertyName, QubPublishVersionReservation.getHostName())
+            .setNumber(QubPublishVersionReservation.createdPropertyName, System.currentTimeMillis());
+    }
+
+    private static String getHostName()
+    {
+        String result;
+        try
+        {
+            result = java.net.InetAddress.getLocalHost().getHostName();
+        }
+        catch (IOException error)
+        {
+            result = "";
+        }
+        return result;
+    }
+
+    /**
+     * Get whether or not the provided reservation file contents belong to a publish that can no
+     * longer finish. Contents that can't be parsed are never stale, because they may belong to a
+     * reservation file that is still being written.
+     * @param reservationText The contents of the reservation file.
+     * @return Whether or not the reservation is stale.
+     */
+    static boolean isStale(String reservationText)
+    {
+        boolean result = false;
+        final JSONObject reservationJson = Strings.isNullOrEmpty(reservationText)
+            ? null
+            : JSON.parseObject(reservationText).catchError().await();
+        if (reservationJson != null)
+        {
+            final Double created = reservationJson.getNumber(QubPublishVersionReservation.createdPropertyName).catchError().await();
+            final Double processId = reservationJson.getNumber(QubPublishVersionReservation.processIdPropertyName).catchError().await();
+            final String host = reservationJson.getString(QubPublishVersionReservation.hostPropertyName).catchError().await();
+            if (created != null && System.currentTimeMillis() - created.longValue() > QubPublishVersionReservation.staleMilliseconds)
+            {
+                result = true;
+            }
+            else if (processId != null &&
+                QubPublishVersionReservation.getHostName().equals(host) &&
+                !ProcessHandle.of(processId.longValue()).isPresent())
+            {
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Atomically create the provided reservation file, taking it over if it is stale.
+     * @param reservationFile The reservation file to create.
+     * @return Whether or not the reservation file was created by this call.
+     */
+    static Result<Boolean> tryCreateReservationFile(File reservationFile)
+    {
+        PreCondition.assertNotNull(reservationFile, "reservationFile");
+
+        return Result.create(() ->
+        {
+            final String reservationText = QubPublishVersionReservation.createReservationJson().toString();
+            final java.nio.file.Path reservationPath = QubPublishFiles.getJavaPath(reservationFile);
+            boolean result;
+            if (reservationPath == null)
+            {
+                synchronized (QubPublishVersionReservation.inMemoryLock)
+                {
+                    final String existingText = reservationFile.getContentsAsString().catchError(FileNotFoundException.class).await();
+                    result = existingText == null || QubPublishVersionReservation.isStale(existingText);
+                    if (result)
+                    {
+                        reservationFile.setContentsAsString(reservationText).await();
+                    }
+                }
+            }
+            else
+            {
+                try
+                {
+                    Files.createDirectories(reservationPath.getParent());
+                    result = QubPublishVersionReservation.tryCreate(reservationPath, reservationText);
+                    if (!result && QubPublishVersionReservation.takeOverStale(reservationPath))
+                    {
+                        result = QubPublishVersionReservation.tryCreate(reservationPath, reservationText);
+                    }
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+
+    private static boolean tryCreate(java.nio.file.Path reservationPath, String reservationText) throws IOException
+    {
+        boolean result;
+        try
+        {
+            Files.write(reservationPath, reservationText.getBytes(java.nio.charset.StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            result = true;
+        }
+        catch (FileAlreadyExistsException error)
+        {
+            result = false;
+        }
+        return result;
+    }
+
+    /**
+     * Remove the reservation file at the provided path if it is stale. The file is moved aside
+     * instead of deleted, and it is only discarded if the moved file is still the stale one that
+     * was read. Otherwise another publish took the stale reservation over first, and the file is
+     * moved back.
+     * @return Whether or not the stale reservation file was removed.
+     */
+    private static boolean takeOverStale(java.nio.file.Path reservationPath) throws IOException
+    {
+        boolean result = false;
+        final String staleText = QubPublishVersionReservation.readString(reservationPath);
+        if (staleText != null && QubPublishVersionReservation.isStale(staleText))
+        {
+            final java.nio.file.Path movedPath = reservationPath.resolveSibling(reservationPath.getFileName() + "." + System.nanoTime() + ".tmp");
+            try
+            {
+                Files.move(reservationPath, movedPath, StandardCopyOption.ATOMIC_MOVE);
+                if (staleText.equals(QubPublishVersionReservation.readString(movedPath)))
+                {
+                    Files.delete(movedPath);
+                    result = true;
+                }
+                else
+                {
+                    try
+                    {
+                        Files.move(movedPath, reservationPath, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    catch (FileAlreadyExistsException error)
+                    {
+                        Files.deleteIfExists(movedPath);
+                    }
+                }
+            }
+            catch (NoSuchFileException error)
+            {
+                // Another publish already removed the stale reservation file.
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    private static String readString(java.nio.file.Path path) throws IOException
+    {
+        String result;
+        try
+        {
+            result = new String(Files.readAllBytes(path), java.nio.charset.StandardCharsets.UTF_8);
+        }
+        catch (NoSuchFileException error)
+        {
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Get the project folder that this reservation belongs to.
+     * @return The project folder that this reservation belongs to.
+     */
+    public QubProjectFolder getProjectFolder()
+    {
+        return this.projectFolder;
+    }
+
+    /**
+     * Get the version that this reservation holds.
+     * @return The version that this reservation holds.
+     */
+    public VersionNumber getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * Get the reservation file that this reservation created.
+     * @return The reservation file that this reservation created.
+     */
+    public File getReservationFile()
+    {
+        return this.reservationFile;
+    }
+
+    /**
+     * Get the version folder of the reserved version.
+     * @return The version folder of the reserved version.
+     */
+    public Result<QubProjectVersionFolder> getVersionFolder()
+    {
+        return this.projectFolder.getProjectVersionFolder(this.version);
+    }
+
+    /**
+     * Get the folder that the reserved version folder's files should be written into. On the
+     * local Java file system this is a new folder in the project's staging folder that
+     * {@link #commit()} renames into place. On other file systems this is the version folder.
+     * @return The folder that the reserved version folder's files should be written into.
+     */
+    public Result<Folder> getStagingFolder()
+    {
+        PreCondition.assertFalse(this.isDisposed(), "this.isDisposed()");
+
+        return Result.create(() ->
+        {
+            if (this.stagingFolder == null)
+            {
+                final QubProjectVersionFolder versionFolder = this.getVersionFolder().await();
+                if (QubPublishFiles.getJavaPath(versionFolder) == null)
+                {
+                    this.stagingFolder = versionFolder;
+                }
+                else
+                {
+                    final Folder stagingFolder = this.projectFolder.getFolder(QubPublishVersionReservation.stagingFolderName + "/" + this.version + "." + System.nanoTime() + ".tmp").await();
+                    stagingFolder.create().await();
+                    this.stagingFolder = stagingFolder;
+                }
+            }
+            return this.stagingFolder;
+        });
+    }
+
+    /**
+     * Move the staging folder into place as the reserved version folder.
+     * @return The reserved version folder.
+     */
+    public Result<QubProjectVersionFolder> commit()
+    {
+        PreCondition.assertFalse(this.isDisposed(), "this.isDisposed()");
+
+        return Result.create(() ->
+        {
+            final QubProjectVersionFolder result = this.getVersionFolder().await();
+            final Folder stagingFolder = this.getStagingFolder().await();
+            if (!stagingFolder.equals(result))
+            {
+                final java.nio.file.Path versionPath = QubPublishFiles.getJavaPath(result);
+                try
+                {
+                    Files.createDirectories(versionPath.getParent());
+                    Files.move(QubPublishFiles.getJavaPath(stagingFolder), versionPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (FileAlreadyExistsException | DirectoryNotEmptyException error)
+                {
+                    throw new AlreadyExistsException("This package (" + this.projectFolder.getPublisherName().await() + "/" + this.projectFolder.getProjectName().await() + ":" + this.version + ") can't be published because a package with that signature already exists.");
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+                this.stagingFolder = result;
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    /**
+     * Release this reservation. A staging folder that was never committed is deleted.
+     * @return Whether or not this call released the reservation.
+     */
+    @Override
+    public Result<Boolean> dispose()
+    {
+        return Result.create(() ->
+        {
+            final boolean result = !this.disposed;
+            if (result)
+            {
+                this.disposed = true;
+                if (this.stagingFolder != null && !this.stagingFolder.equals(this.getVersionFolder().await()))
+                {
+                    this.stagingFolder.delete().catchError().await();
+                }
+                this.reservationFile.delete().catchError().await();
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,297 @@
+package qub;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the sources folder, tests folder, and project.json file of a folder to publish for
+ * changes. Watch mode keeps the JVM and the qub folder view warm between publishes, and relies on
+ * the pack state and the build.json file to only recompile what changed. Changes are debounced,
+ * so an editor that saves several files at once only causes one republish.
+ */
+public class QubPublishWatch implements Disposable
+{
+    private static final long defaultQuietMilliseconds = 200;
+
+    private final Folder folderToPublish;
+    private final java.nio.file.Path folderToPublishPath;
+    private final WatchService watchService;
+    private final Map<WatchKey,java.nio.file.Path> watchedFolders;
+    private long quietMilliseconds;
+    private boolean disposed;
+
+    private QubPublishWatch(Folder folderToPublish, java.nio.file.Path folderToPublishPath, WatchService watchService)
+    {
+        this.folderToPublish = folderToPublish;
+        this.folderToPublishPath = folderToPublishPath;
+        this.watchService = watchService;
+        this.watchedFolders = Map.create();
+        this.quietMilliseconds = QubPublishWatch.defaultQuietMilliseconds;
+    }
+
+    /**
+     * Start watching the provided folder to publish. The folder must be on the local Java file
+     * system.
+     * @param folderToPublish The folder to publish.
+     * @return The new QubPublishWatch.
+     */
+    public static Result<QubPublishWatch> create(Folder folderToPublish)
+    {
+        PreCondition.assertNotNull(folderToPublish, "folderToPublish");
+
+        return Result.create(() ->
+        {
+            final java.nio.file.Path folderToPublishPath = QubPublishFiles.getJavaPath(folderToPublish);
+            if (folderToPublishPath == null)
+            {
+                throw new UnsupportedOperationException("Only folders on the local file system can be watched.");
+            }
+
+            final QubPublishWatch result;
+            try
+            {
+                result = new QubPublishWatch(folderToPublish, folderToPublishPath, FileSystems.getDefault().newWatchService());
+                result.register(folderToPublishPath);
+                for (final String watchedFolderName : Iterable.create("sources", "tests"))
+                {
+                    final java.nio.file.Path watchedFolderPath = folderToPublishPath.resolve(watchedFolderName);
+                    if (Files.isDirectory(watchedFolderPath))
+                    {
+                        result.registerTree(watchedFolderPath);
+                    }
+                }
+            }
+            catch (IOException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get whether or not a change to the file or folder at the provided path, relative to the
+     * folder to publish, should cause a republish.
+     * @param relativePath The path of the changed file or folder relative to the folder to
+     *                     publish, with forward slashes.
+     * @return Whether or not the change should cause a republish.
+     */
+    static boolean isWatched(String relativePath)
+    {
+        PreCondition.assertNotNull(relativePath, "relativePath");
+
+        return relativePath.equals("project.json") ||
+            relativePath.equals("sources") ||
+            relativePath.startsWith("sources/") ||
+            relativePath.equals("tests") ||
+            relativePath.startsWith("tests/");
+    }
+
+    /**
+     * Get the folder that is being watched.
+     * @return The folder that is being watched.
+     */
+    public Folder getFolderToPublish()
+    {
+        return this.folderToPublish;
+    }
+
+    /**
+     * Get the number of milliseconds without any changes that must pass before a set of changes
+     * is reported.
+     * @return The number of milliseconds without any changes that must pass before a set of
+     * changes is reported.
+     */
+    public long getQuietMilliseconds()
+    {
+        return this.quietMilliseconds;
+    }
+
+    /**
+     * Set the number of milliseconds without any changes that must pass before a set of changes
+     * is reported.
+     * @param quietMilliseconds The number of milliseconds without any changes that must pass
+     *                          before a set of changes is reported.
+     * @return This object for method chaining.
+     */
+    public QubPublishWatch setQuietMilliseconds(long quietMilliseconds)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(quietMilliseconds, 0L, "quietMilliseconds");
+
+        this.quietMilliseconds = quietMilliseconds;
+
+        return this;
+    }
+
+    private void register(java.nio.file.Path folderPath) throws IOException
+    {
+        final WatchKey watchKey = folderPath.register(this.watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchedFolders.set(watchKey, folderPath);
+    }
+
+    /**
+     * The JDK's WatchService isn't recursive on every platform, so each folder in the tree is
+     * registered separately.
+     */
+    private void registerTree(java.nio.file.Path rootFolderPath) throws IOException
+    {
+        Files.walkFileTree(rootFolderPath, new SimpleFileVisitor<java.nio.file.Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(java.nio.file.Path folderPath, BasicFileAttributes attributes) throws IOException
+            {
+                QubPublishWatch.this.register(folderPath);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Record the changes from the provided watch key, and start watching any folders that were
+     * created inside the watched folders.
+     */
+    private void addChanges(WatchKey watchKey, List<String> changedPaths) throws IOException
+    {
+        final java.nio.file.Path folderPath = this.watchedFolders.get(watchKey).catchError().await();
+        if (folderPath != null)
+        {
+            for (final WatchEvent<?> event : watchKey.pollEvents())
+            {
+                if (event.kind() != StandardWatchEventKinds.OVERFLOW)
+                {
+                    final java.nio.file.Path changedPath = folderPath.resolve((java.nio.file.Path)event.context());
+                    final String relativePath = this.folderToPublishPath.relativize(changedPath).toString().replace('\\', '/');
+                    if (QubPublishWatch.isWatched(relativePath))
+                    {
+                        if (!changedPaths.contains(relativePath))
+                        {
+                            changedPaths.add(relativePath);
+                        }
+
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changedPath))
+                        {
+                            this.registerTree(changedPath);
+                        }
+                    }
+                }
+            }
+        }
+
+        watchKey.reset();
+    }
+
+    /**
+     * Block until at least one watched file or folder changes and no further changes have
+     * happened for the quiet period.
+     * @return The paths of the changed files and folders, relative to the folder to publish.
+     */
+    public Result<Iterable<String>> waitForChanges()
+    {
+        PreCondition.assertFalse(this.isDisposed(), "this.isDisposed()");
+
+        return Result.create(() ->
+        {
+            final List<String> result = List.create();
+            try
+            {
+                while (!result.any())
+                {
+                    this.addChanges(this.watchService.take(), result);
+                }
+
+                WatchKey watchKey = this.watchService.poll(this.quietMilliseconds, TimeUnit.MILLISECONDS);
+                while (watchKey != null)
+                {
+                    this.addChanges(watchKey, result);
+                    watchKey = this.watchService.poll(this.quietMilliseconds, TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (IOException | InterruptedException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    @Override
+    public Result<Boolean> dispose()
+    {
+        return Result.create(() ->
+        {
+            final boolean result = !this.disposed;
+            if (result)
+            {
+                this.disposed = true;
+                try
+                {
+                    this.watchService.close();
+                }
+                catch (IOException error)
+                {
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Republish the folder to publish every time that it changes, until this watch is disposed.
+     * @param parameters The parameters to publish with.
+     * @param qubFolderView The view of the qub folder that is shared by all of the publishes.
+     * @return The exit code of the last publish.
+     */
+    public int run(QubPublishParameters parameters, QubPublishQubFolderView qubFolderView)
+    {
+        PreCondition.assertNotNull(parameters, "parameters");
+        PreCondition.assertNotNull(qubFolderView, "qubFolderView");
+
+        final CharacterWriteStream output = parameters.getOutputWriteStream();
+
+        int exitCode = 0;
+        try
+        {
+            while (!this.isDisposed())
+            {
+                output.writeLine("Watching " + this.folderToPublish + " for changes...").await();
+                final Iterable<String> changedPaths = this.waitForChanges().await();
+                output.writeLine("Changed:").await();
+                for (final String changedPath : changedPaths)
+                {
+                    output.writeLine("  " + changedPath).await();
+                }
+                exitCode = QubPublish.run(parameters, qubFolderView);
+                parameters.getTrace().save().catchError().await();
+            }
+        }
+        catch (Throwable error)
+        {
+            // The watch was disposed while it was waiting for changes.
+            if (!(Exceptions.unwrap(error) instanceof ClosedWatchServiceException))
+            {
+                throw Exceptions.asRuntime(error);
+            }
+        }
+        return exitCode;
+    }
+}
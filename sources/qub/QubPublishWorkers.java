@@ -0,0 +1,263 @@
+package qub;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded set of workers that blocking qub folder operations can be fanned out to. Results are
+ * always returned in the same order as the values that produced them, so callers can merge them
+ * deterministically. A QubPublishWorkers object with a single worker runs everything on the
+ * calling thread. Workers can run on virtual threads, in which case each operation gets its own
+ * virtual thread and the worker count only caps how many of them run at the same time.
+ */
+public class QubPublishWorkers implements Disposable
+{
+    private final int workerCount;
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+    private boolean disposed;
+
+    private QubPublishWorkers(int workerCount, boolean virtualThreads)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(workerCount, 1, "workerCount");
+
+        this.workerCount = workerCount;
+        ExecutorService executorService = null;
+        Semaphore permits = null;
+        if (workerCount > 1)
+        {
+            if (virtualThreads)
+            {
+                executorService = QubPublishWorkers.createVirtualThreadExecutor();
+                if (executorService != null)
+                {
+                    permits = new Semaphore(workerCount);
+                }
+            }
+            if (executorService == null)
+            {
+                executorService = Executors.newFixedThreadPool(workerCount, (Runnable runnable) ->
+                {
+                    final Thread thread = new Thread(runnable, "qub-publish-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        this.executorService = executorService;
+        this.permits = permits;
+    }
+
+    /**
+     * Create a new QubPublishWorkers object with the provided number of workers.
+     * @param workerCount The maximum number of operations that can run at the same time.
+     * @return The new QubPublishWorkers object.
+     */
+    public static QubPublishWorkers create(int workerCount)
+    {
+        return QubPublishWorkers.create(workerCount, false);
+    }
+
+    /**
+     * Create a new QubPublishWorkers object with the provided number of workers.
+     * @param workerCount The maximum number of operations that can run at the same time.
+     * @param virtualThreads Whether or not the operations should run on virtual threads. If the
+     *                       Java runtime doesn't support virtual threads, then platform threads
+     *                       will be used.
+     * @return The new QubPublishWorkers object.
+     */
+    public static QubPublishWorkers create(int workerCount, boolean virtualThreads)
+    {
+        return new QubPublishWorkers(workerCount, virtualThreads);
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task. Virtual threads are
+     * looked up by reflection so that publish still runs on Java runtimes that don't have them.
+     * @return The new executor, or null if the Java runtime doesn't support virtual threads.
+     */
+    static ExecutorService createVirtualThreadExecutor()
+    {
+        ExecutorService result;
+        try
+        {
+            result = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | UnsupportedOperationException error)
+        {
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Get the maximum number of operations that can run at the same time.
+     * @return The maximum number of operations that can run at the same time.
+     */
+    public int getWorkerCount()
+    {
+        return this.workerCount;
+    }
+
+    /**
+     * Get whether or not the operations run on virtual threads.
+     * @return Whether or not the operations run on virtual threads.
+     */
+    public boolean getVirtualThreads()
+    {
+        return this.permits != null;
+    }
+
+    /**
+     * Run the provided function on each of the provided values and return the results in the same
+     * order as the values. If any of the functions fail, then the functions that haven't finished
+     * yet will be cancelled as soon as the failure happens, and the first error will be returned.
+     * The provided function must not wait on other operations that were scheduled on these
+     * workers.
+     * @param values The values to run the function on.
+     * @param function The function to run on each value.
+     * @param <T> The type of the values.
+     * @param <TResult> The type of the results.
+     * @return The results of running the function on each of the values.
+     */
+    public <T,TResult> Result<List<TResult>> map(Iterable<T> values, Function1<T,TResult> function)
+    {
+        PreCondition.assertNotNull(values, "values");
+        PreCondition.assertNotNull(function, "function");
+        PreCondition.assertFalse(this.isDisposed(), "this.isDisposed()");
+
+        return Result.create(() ->
+        {
+            final List<TResult> result = List.create();
+            if (this.executorService == null)
+            {
+                for (final T value : values)
+                {
+                    result.add(function.run(value));
+                }
+            }
+            else
+            {
+                // The futures are taken in the order that they finish, so the first failure
+                // cancels the unfinished operations right away instead of after every operation
+                // before it has finished.
+                final CompletionService<TResult> completionService = new ExecutorCompletionService<>(this.executorService);
+                final List<Future<TResult>> futures = List.create();
+                for (final T value : values)
+                {
+                    futures.add(completionService.submit(() -> this.runWithPermit(() -> function.run(value))));
+                }
+
+                try
+                {
+                    for (int i = 0; i < futures.getCount(); ++i)
+                    {
+                        completionService.take().get();
+                    }
+                    for (final Future<TResult> future : futures)
+                    {
+                        result.add(future.get());
+                    }
+                }
+                catch (ExecutionException error)
+                {
+                    QubPublishWorkers.cancel(futures);
+                    throw Exceptions.asRuntime(error.getCause());
+                }
+                catch (InterruptedException error)
+                {
+                    QubPublishWorkers.cancel(futures);
+                    throw Exceptions.asRuntime(error);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Run the provided action on each of the provided values. If any of the actions fail, then the
+     * actions that haven't finished yet will be cancelled and the first error will be returned.
+     * The provided action must not wait on other operations that were scheduled on these workers.
+     * @param values The values to run the action on.
+     * @param action The action to run on each value.
+     * @param <T> The type of the values.
+     * @return The result of running the action on each of the values.
+     */
+    public <T> Result<Void> forEach(Iterable<T> values, Action1<T> action)
+    {
+        PreCondition.assertNotNull(values, "values");
+        PreCondition.assertNotNull(action, "action");
+
+        return Result.create(() ->
+        {
+            this.map(values, (T value) ->
+            {
+                action.run(value);
+                return null;
+            }).await();
+        });
+    }
+
+    /**
+     * Run the provided function once a worker permit is available. Only virtual threads need
+     * permits, because a fixed thread pool already caps how many operations run at once.
+     */
+    private <TResult> TResult runWithPermit(Function0<TResult> function) throws InterruptedException
+    {
+        TResult result;
+        if (this.permits == null)
+        {
+            result = function.run();
+        }
+        else
+        {
+            this.permits.acquire();
+            try
+            {
+                result = function.run();
+            }
+            finally
+            {
+                this.permits.release();
+            }
+        }
+        return result;
+    }
+
+    private static <T> void cancel(Iterable<Future<T>> futures)
+    {
+        for (final Future<T> future : futures)
+        {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
+    @Override
+    public Result<Boolean> dispose()
+    {
+        return Result.create(() ->
+        {
+            final boolean result = !this.disposed;
+            if (result)
+            {
+                this.disposed = true;
+                if (this.executorService != null)
+                {
+                    this.executorService.shutdownNow();
+                }
+            }
+            return result;
+        });
+    }
+}
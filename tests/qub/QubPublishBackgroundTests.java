@@ -0,0 +1,86 @@
+package qub;
+
+public interface QubPublishBackgroundTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishBackground.class, () ->
+        {
+            runner.testGroup("start(Function0<T>)", () ->
+            {
+                runner.test("with null function", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishBackground.start(null),
+                        new PreConditionFailure("function cannot be null."));
+                });
+
+                runner.test("with function that returns a value", (Test test) ->
+                {
+                    final QubPublishBackground<String> stage = QubPublishBackground.start(() -> Thread.currentThread().getName());
+                    test.assertEqual("qub-publish-background", stage.join().await());
+                    test.assertTrue(stage.isDone());
+                });
+
+                runner.test("with function that throws", (Test test) ->
+                {
+                    final QubPublishBackground<String> stage = QubPublishBackground.start(() ->
+                    {
+                        throw new NotFoundException("abc");
+                    });
+                    test.assertThrows(() -> stage.join().await(),
+                        new NotFoundException("abc"));
+                });
+            });
+
+            runner.testGroup("dispose()", () ->
+            {
+                runner.test("with running stage", (Test test) ->
+                {
+                    final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
+                    final QubPublishBackground<Integer> stage = QubPublishBackground.start(() ->
+                    {
+                        try
+                        {
+                            latch.await();
+                        }
+                        catch (InterruptedException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                        return 5;
+                    });
+                    test.assertFalse(stage.isDisposed());
+
+                    final QubPublishBackground<Boolean> disposer = QubPublishBackground.start(() -> stage.dispose().await());
+                    try
+                    {
+                        Thread.sleep(100);
+                    }
+                    catch (InterruptedException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                    test.assertFalse(disposer.isDone());
+                    test.assertFalse(stage.isDone());
+
+                    latch.countDown();
+                    test.assertTrue(disposer.join().await());
+                    test.assertTrue(stage.isDisposed());
+                    test.assertTrue(stage.isDone());
+                    test.assertFalse(stage.dispose().await());
+                    test.assertEqual(5, stage.join().await());
+                });
+
+                runner.test("with failed stage", (Test test) ->
+                {
+                    final QubPublishBackground<String> stage = QubPublishBackground.start(() ->
+                    {
+                        throw new NotFoundException("abc");
+                    });
+                    test.assertTrue(stage.dispose().await());
+                    test.assertTrue(stage.isDone());
+                });
+            });
+        });
+    }
+}
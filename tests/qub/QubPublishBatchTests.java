@@ -0,0 +1,141 @@
+package qub;
+
+public interface QubPublishBatchTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishBatch.class, () ->
+        {
+            runner.test("create(QubPublishParameters)", (Test test) ->
+            {
+                test.assertThrows(() -> QubPublishBatch.create(null),
+                    new PreConditionFailure("parameters cannot be null."));
+            });
+
+            runner.testGroup("addProjectFolders(Folder)", () ->
+            {
+                runner.test("with root folder that is a project folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    QubPublishBatchTests.createProject(currentFolder, "me", "a");
+
+                    final QubPublishBatch batch = QubPublishBatch.create(QubPublishTests.getParameters(process))
+                        .addProjectFolders(currentFolder);
+                    test.assertEqual(Iterable.create(currentFolder), batch.getProjectFolders());
+                });
+
+                runner.test("with root folder that contains project folders",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final Folder aFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("a").await(), "me", "a");
+                    final Folder bFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("b").await(), "me", "b");
+                    currentFolder.getFolder("c").await().create().await();
+
+                    final QubPublishBatch batch = QubPublishBatch.create(QubPublishTests.getParameters(process))
+                        .addProjectFolders(currentFolder);
+                    test.assertEqual(Iterable.create(aFolder, bFolder), batch.getProjectFolders());
+                });
+            });
+
+            runner.testGroup("getPublishOrder()", () ->
+            {
+                runner.test("with dependencies in the batch",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final Folder aFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("a").await(), "me", "a",
+                        ProjectSignature.create("me", "c", "1"));
+                    final Folder bFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("b").await(), "me", "b",
+                        ProjectSignature.create("you", "stuff", "2"));
+                    final Folder cFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("c").await(), "me", "c",
+                        ProjectSignature.create("me", "b", "1"));
+
+                    final QubPublishBatch batch = QubPublishBatch.create(QubPublishTests.getParameters(process))
+                        .addProjectFolders(currentFolder);
+                    test.assertEqual(Iterable.create(bFolder, cFolder, aFolder), batch.getPublishOrder().await());
+                });
+
+                runner.test("with circular dependencies",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    QubPublishBatchTests.createProject(currentFolder.getFolder("a").await(), "me", "a",
+                        ProjectSignature.create("me", "b", "1"));
+                    QubPublishBatchTests.createProject(currentFolder.getFolder("b").await(), "me", "b",
+                        ProjectSignature.create("me", "a", "1"));
+
+                    final QubPublishBatch batch = QubPublishBatch.create(QubPublishTests.getParameters(process))
+                        .addProjectFolders(currentFolder);
+                    test.assertThrows(() -> batch.getPublishOrder().await(),
+                        new IllegalStateException("The following projects in the batch have circular dependencies: me/a, me/b"));
+                });
+            });
+
+            runner.testGroup("run(QubPublishQubFolderView)", () ->
+            {
+                runner.test("with no project folders",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(parameters.getQubFolder(), workers);
+                        test.assertEqual(0, QubPublishBatch.create(parameters).run(qubFolderView));
+                    }
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "No projects found to publish in " + process.getCurrentFolder() + "."),
+                        process.getOutputWriteStream());
+                });
+
+                runner.test("with failed and skipped projects",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    QubPublishBatchTests.createProject(currentFolder.getFolder("a").await(), "me", "a");
+                    QubPublishBatchTests.createProject(currentFolder.getFolder("b").await(), "me", "b",
+                        ProjectSignature.create("me", "a", "1"));
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(parameters.getQubFolder(), workers);
+                        final QubPublishBatch batch = QubPublishBatch.create(parameters)
+                            .addProjectFolders(currentFolder)
+                            .setBeforePublish((Folder projectFolder) ->
+                            {
+                                throw new NotFoundException("abc");
+                            });
+                        test.assertEqual(2, batch.run(qubFolderView));
+                    }
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "ERROR: abc",
+                            "Skipping me/b because me/a wasn't published."),
+                        process.getOutputWriteStream());
+                });
+            });
+        });
+    }
+
+    static Folder createProject(Folder projectFolder, String publisher, String project, ProjectSignature... dependencies)
+    {
+        projectFolder.getFile("project.json").await()
+            .setContentsAsString(
+                ProjectJSON.create()
+                    .setPublisher(publisher)
+                    .setProject(project)
+                    .setJava(ProjectJSONJava.create()
+                        .setDependencies(Iterable.create(dependencies)))
+                    .toString())
+            .await();
+        return projectFolder;
+    }
+}
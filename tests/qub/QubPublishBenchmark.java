@@ -0,0 +1,153 @@
+package qub;
+
+/**
+ * A single named benchmark that times an operation over a number of measured iterations after a
+ * number of warmup iterations. Each iteration runs the benchmark's setup action untimed before
+ * the timed operation, so that operations which consume their inputs (such as copying files into
+ * a new version folder) can be measured repeatedly.
+ */
+public class QubPublishBenchmark
+{
+    private final String name;
+    private int warmupIterations;
+    private int iterations;
+    private Action0 setup;
+    private Action0 operation;
+
+    private QubPublishBenchmark(String name)
+    {
+        PreCondition.assertNotNullAndNotEmpty(name, "name");
+
+        this.name = name;
+        this.warmupIterations = 3;
+        this.iterations = 10;
+    }
+
+    /**
+     * Create a new QubPublishBenchmark.
+     * @param name The name of the benchmark.
+     * @return The new QubPublishBenchmark.
+     */
+    public static QubPublishBenchmark create(String name)
+    {
+        return new QubPublishBenchmark(name);
+    }
+
+    /**
+     * Get the name of this benchmark.
+     * @return The name of this benchmark.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Set the number of untimed iterations that will run before the measured iterations.
+     * @param warmupIterations The number of untimed iterations.
+     * @return This object for method chaining.
+     */
+    public QubPublishBenchmark setWarmupIterations(int warmupIterations)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(warmupIterations, 0, "warmupIterations");
+
+        this.warmupIterations = warmupIterations;
+
+        return this;
+    }
+
+    /**
+     * Set the number of measured iterations.
+     * @param iterations The number of measured iterations.
+     * @return This object for method chaining.
+     */
+    public QubPublishBenchmark setIterations(int iterations)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(iterations, 1, "iterations");
+
+        this.iterations = iterations;
+
+        return this;
+    }
+
+    /**
+     * Set the untimed action that will run before each iteration.
+     * @param setup The untimed action that will run before each iteration.
+     * @return This object for method chaining.
+     */
+    public QubPublishBenchmark setSetup(Action0 setup)
+    {
+        PreCondition.assertNotNull(setup, "setup");
+
+        this.setup = setup;
+
+        return this;
+    }
+
+    /**
+     * Set the operation that will be timed.
+     * @param operation The operation that will be timed.
+     * @return This object for method chaining.
+     */
+    public QubPublishBenchmark setOperation(Action0 operation)
+    {
+        PreCondition.assertNotNull(operation, "operation");
+
+        this.operation = operation;
+
+        return this;
+    }
+
+    /**
+     * Run this benchmark and get a one line summary of its measured iterations.
+     * @return A one line summary of this benchmark's measured iterations.
+     */
+    public Result<String> run()
+    {
+        PreCondition.assertNotNull(this.operation, "this.operation");
+
+        return Result.create(() ->
+        {
+            for (int i = 0; i < this.warmupIterations; ++i)
+            {
+                this.runSetup();
+                this.operation.run();
+            }
+
+            long totalNanoseconds = 0;
+            long minimumNanoseconds = Long.MAX_VALUE;
+            long maximumNanoseconds = 0;
+            for (int i = 0; i < this.iterations; ++i)
+            {
+                this.runSetup();
+                final long startNanoseconds = System.nanoTime();
+                this.operation.run();
+                final long iterationNanoseconds = System.nanoTime() - startNanoseconds;
+
+                totalNanoseconds += iterationNanoseconds;
+                minimumNanoseconds = Math.min(minimumNanoseconds, iterationNanoseconds);
+                maximumNanoseconds = Math.max(maximumNanoseconds, iterationNanoseconds);
+            }
+
+            return String.format("%-60s %12.3f ms/op (min %.3f, max %.3f, %d iterations)",
+                this.name,
+                QubPublishBenchmark.toMilliseconds(totalNanoseconds / this.iterations),
+                QubPublishBenchmark.toMilliseconds(minimumNanoseconds),
+                QubPublishBenchmark.toMilliseconds(maximumNanoseconds),
+                this.iterations);
+        });
+    }
+
+    private void runSetup()
+    {
+        if (this.setup != null)
+        {
+            this.setup.run();
+        }
+    }
+
+    private static double toMilliseconds(long nanoseconds)
+    {
+        return nanoseconds / 1000000.0;
+    }
+}
@@ -0,0 +1,314 @@
+package qub;
+
+/**
+ * Benchmarks for the hot paths of a publish: parsing project.json files, resolving transitive
+ * dependencies, scanning the qub folder for dependents, copying artifacts into a new version
+ * folder, reading compressed and stored jars, and computing the delta that mirrors a changed jar.
+ * Every benchmark runs against both an in-memory file system and a temporary folder on disk. Pass
+ * one or more name filters as arguments to only run the benchmarks whose names contain one of
+ * them. The benchmarks live with the tests so that the regular build compiles them, and
+ * QubPublishBenchmarksTests runs a single iteration of the small benchmarks to keep them working.
+ */
+public interface QubPublishBenchmarks
+{
+    /**
+     * The number of synthetic projects that the dependents scan benchmarks create.
+     */
+    int[] qubFolderSizes = { 100, 1000, 10000 };
+
+    /**
+     * The number of dependencies that each synthetic project has.
+     */
+    int dependenciesPerProject = 3;
+
+    /**
+     * The number of entries in the jars that the stored jar benchmarks read.
+     */
+    int jarEntryCount = 500;
+
+    /**
+     * The size in bytes of each entry in the jars that the stored jar benchmarks read.
+     */
+    int jarEntrySize = 4096;
+
+    static void main(String[] args)
+    {
+        PreCondition.assertNotNull(args, "args");
+
+        final Iterable<String> filters = Iterable.create(args);
+        final java.nio.file.Path diskRootPath;
+        try
+        {
+            diskRootPath = java.nio.file.Files.createTempDirectory("qub-publish-benchmarks");
+        }
+        catch (java.io.IOException e)
+        {
+            throw Exceptions.asRuntime(e);
+        }
+        try (final QubPublishWorkers workers = QubPublishWorkers.create(Runtime.getRuntime().availableProcessors()))
+        {
+            final InMemoryFileSystem inMemoryFileSystem = InMemoryFileSystem.create();
+            inMemoryFileSystem.createRoot("/").await();
+            QubPublishBenchmarks.print(QubPublishBenchmarks.run("in-memory", inMemoryFileSystem.getFolder("/benchmarks/").await(), workers, filters, false));
+
+            final JavaFileSystem javaFileSystem = JavaFileSystem.create();
+            final Folder diskFolder = javaFileSystem.getFolder(diskRootPath.toString()).await();
+            try
+            {
+                QubPublishBenchmarks.print(QubPublishBenchmarks.run("disk", diskFolder, workers, filters, false));
+            }
+            finally
+            {
+                diskFolder.delete().catchError().await();
+            }
+        }
+    }
+
+    /**
+     * Run the benchmarks whose names match the provided filters.
+     * @param fileSystemName The name of the file system that the benchmarks run against.
+     * @param rootFolder The folder that the benchmarks will create their files in.
+     * @param workers The workers that the benchmarks will use.
+     * @param filters The name filters. If this is empty, then every benchmark will run.
+     * @param singleIteration Whether or not each benchmark will run only one iteration without
+     *                        any warmup iterations.
+     * @return The one line summaries of the benchmarks that ran.
+     */
+    static List<String> run(String fileSystemName, Folder rootFolder, QubPublishWorkers workers, Iterable<String> filters, boolean singleIteration)
+    {
+        PreCondition.assertNotNullAndNotEmpty(fileSystemName, "fileSystemName");
+        PreCondition.assertNotNull(rootFolder, "rootFolder");
+        PreCondition.assertNotNull(workers, "workers");
+        PreCondition.assertNotNull(filters, "filters");
+
+        final List<QubPublishBenchmark> benchmarks = List.create();
+
+        final File projectJsonFile = rootFolder.getFile("project.json").await();
+        projectJsonFile.setContentsAsString(QubPublishBenchmarks.createProjectJson(0, 1000).toString()).await();
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/ProjectJSON.parse")
+            .setIterations(1000)
+            .setOperation(() -> ProjectJSON.parse(projectJsonFile).await()));
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/QubPublishProjectJSONSummary.parse")
+            .setIterations(1000)
+            .setOperation(() -> QubPublishProjectJSONSummary.parse(projectJsonFile).await()));
+
+        for (final int qubFolderSize : QubPublishBenchmarks.qubFolderSizes)
+        {
+            final QubFolder qubFolder = QubFolder.get(rootFolder.getFolder("qub-" + qubFolderSize).await());
+            final String sizeName = "[" + qubFolderSize + " projects]";
+            final boolean[] created = { false };
+            final Action0 createQubFolder = () ->
+            {
+                if (!created[0])
+                {
+                    QubPublishBenchmarks.createQubFolder(qubFolder, qubFolderSize, workers);
+                    created[0] = true;
+                }
+            };
+
+            final Iterable<ProjectSignature> dependencies = Iterable.create(
+                QubPublishBenchmarks.getSignature(qubFolderSize - 1),
+                QubPublishBenchmarks.getSignature(qubFolderSize - 2));
+            benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/QubPublishLockFile.resolve" + sizeName)
+                .setSetup(createQubFolder)
+                .setOperation(() -> QubPublishLockFile.resolve(qubFolder, dependencies).await()));
+
+            benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/QubPublishDependentsIndex.build" + sizeName)
+                .setWarmupIterations(1)
+                .setIterations(3)
+                .setSetup(createQubFolder)
+                .setOperation(() -> QubPublishDependentsIndex.build(qubFolder, workers).await()));
+        }
+
+        final Folder outputsFolder = rootFolder.getFolder("outputs").await();
+        final Iterable<File> artifactFiles = Iterable.create(
+            outputsFolder.getFile("benchmark.jar").await(),
+            outputsFolder.getFile("benchmark.sources.jar").await(),
+            outputsFolder.getFile("benchmark.tests.jar").await());
+        for (final File artifactFile : artifactFiles)
+        {
+            artifactFile.setContents(new byte[1024 * 1024]).await();
+        }
+        final Folder versionFolder = rootFolder.getFolder("artifact-copy").await();
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/QubPublishTransfer.run[3 x 1 MB]")
+            .setSetup(() -> versionFolder.delete().catchError().await())
+            .setOperation(() ->
+            {
+                final QubPublishTransfer transfer = QubPublishTransfer.create(versionFolder);
+                for (final File artifactFile : artifactFiles)
+                {
+                    transfer.addArtifact(artifactFile);
+                }
+                transfer.run(workers).await();
+            }));
+
+        final File compressedJarFile = outputsFolder.getFile("compressed.jar").await();
+        final File storedJarFile = outputsFolder.getFile("stored.jar").await();
+        final byte[] compressedJarBytes = QubPublishBenchmarks.createJar(QubPublishBenchmarks.jarEntryCount, QubPublishBenchmarks.jarEntrySize);
+        compressedJarFile.setContents(compressedJarBytes).await();
+        storedJarFile.setContents(QubPublishStoredJar.store(compressedJarBytes)).await();
+        final String jarName = "[" + QubPublishBenchmarks.jarEntryCount + " entries]";
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/QubPublishStoredJar.store" + jarName)
+            .setOperation(() -> QubPublishStoredJar.store(compressedJarFile, versionFolder).await()));
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/read compressed jar" + jarName)
+            .setOperation(() -> QubPublishBenchmarks.readJar(compressedJarFile)));
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/read stored jar" + jarName)
+            .setOperation(() -> QubPublishBenchmarks.readJar(storedJarFile)));
+
+        // A republished stored jar where one class in the middle of the jar changed size, which
+        // shifts every block after it.
+        final byte[] storedJarBytes = QubPublishStoredJar.store(compressedJarBytes);
+        final int changeOffset = storedJarBytes.length / 2;
+        final byte[] changedStoredJarBytes = new byte[storedJarBytes.length + 100];
+        System.arraycopy(storedJarBytes, 0, changedStoredJarBytes, 0, changeOffset);
+        System.arraycopy(storedJarBytes, changeOffset, changedStoredJarBytes, changeOffset + 100, storedJarBytes.length - changeOffset);
+        benchmarks.add(QubPublishBenchmark.create(fileSystemName + "/QubPublishDelta.create" + jarName)
+            .setOperation(() -> QubPublishDelta.create(storedJarBytes, changedStoredJarBytes)));
+
+        final List<String> result = List.create();
+        for (final QubPublishBenchmark benchmark : benchmarks)
+        {
+            if (QubPublishBenchmarks.matches(benchmark.getName(), filters))
+            {
+                if (singleIteration)
+                {
+                    benchmark.setWarmupIterations(0).setIterations(1);
+                }
+                result.add(benchmark.run().await());
+            }
+        }
+        return result;
+    }
+
+    private static void print(Iterable<String> summaries)
+    {
+        for (final String summary : summaries)
+        {
+            System.out.println(summary);
+        }
+    }
+
+    /**
+     * Create the bytes of a compressed jar with class-like entries whose contents compress about
+     * as well as real class files do.
+     * @param entryCount The number of entries in the jar.
+     * @param entrySize The size of each entry in bytes.
+     * @return The bytes of the jar.
+     */
+    static byte[] createJar(int entryCount, int entrySize)
+    {
+        PreCondition.assertGreaterThanOrEqualTo(entryCount, 0, "entryCount");
+        PreCondition.assertGreaterThanOrEqualTo(entrySize, 0, "entrySize");
+
+        final java.util.Random random = new java.util.Random(entryCount);
+        final java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+        try (final java.util.jar.JarOutputStream jarStream = new java.util.jar.JarOutputStream(result))
+        {
+            for (int i = 0; i < entryCount; ++i)
+            {
+                final byte[] contents = new byte[entrySize];
+                for (int j = 0; j < entrySize; ++j)
+                {
+                    contents[j] = (byte)('a' + random.nextInt(16));
+                }
+                jarStream.putNextEntry(new java.util.zip.ZipEntry("benchmark/Class" + i + ".class"));
+                jarStream.write(contents);
+                jarStream.closeEntry();
+            }
+        }
+        catch (java.io.IOException e)
+        {
+            throw Exceptions.asRuntime(e);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Read every entry of the provided jar file the way that a class loader would.
+     * @param jarFile The jar file to read.
+     */
+    static void readJar(File jarFile)
+    {
+        PreCondition.assertNotNull(jarFile, "jarFile");
+
+        try (final java.util.zip.ZipInputStream jarStream = new java.util.zip.ZipInputStream(new java.io.ByteArrayInputStream(jarFile.getContents().await())))
+        {
+            while (jarStream.getNextEntry() != null)
+            {
+                jarStream.readAllBytes();
+            }
+        }
+        catch (java.io.IOException e)
+        {
+            throw Exceptions.asRuntime(e);
+        }
+    }
+
+    static boolean matches(String benchmarkName, Iterable<String> filters)
+    {
+        boolean result = !filters.any();
+        for (final String filter : filters)
+        {
+            if (benchmarkName.contains(filter))
+            {
+                result = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    static ProjectSignature getSignature(int projectIndex)
+    {
+        return ProjectSignature.create("benchmark", "project-" + projectIndex, "1");
+    }
+
+    static ProjectJSON createProjectJson(int projectIndex, int dependencyCount)
+    {
+        final List<ProjectSignature> dependencies = List.create();
+        for (int i = 1; i <= dependencyCount && projectIndex - i >= 0; ++i)
+        {
+            dependencies.add(QubPublishBenchmarks.getSignature(projectIndex - i));
+        }
+
+        final ProjectSignature signature = QubPublishBenchmarks.getSignature(projectIndex);
+        return ProjectJSON.create()
+            .setPublisher(signature.getPublisher())
+            .setProject(signature.getProject())
+            .setVersion(signature.getVersion().toString())
+            .setJava(ProjectJSONJava.create()
+                .setDependencies(dependencies));
+    }
+
+    /**
+     * Create a synthetic qub folder where each project depends on the projects that were created
+     * just before it.
+     * @param qubFolder The qub folder to create the projects in.
+     * @param projectCount The number of projects to create.
+     * @param workers The workers that will create the projects.
+     */
+    static void createQubFolder(QubFolder qubFolder, int projectCount, QubPublishWorkers workers)
+    {
+        PreCondition.assertNotNull(qubFolder, "qubFolder");
+        PreCondition.assertGreaterThanOrEqualTo(projectCount, 1, "projectCount");
+        PreCondition.assertNotNull(workers, "workers");
+
+        final List<Integer> projectIndexes = List.create();
+        for (int i = 0; i < projectCount; ++i)
+        {
+            projectIndexes.add(i);
+        }
+        workers.forEach(projectIndexes, (Integer projectIndex) ->
+        {
+            final ProjectSignature signature = QubPublishBenchmarks.getSignature(projectIndex);
+            final QubProjectVersionFolder versionFolder = qubFolder.getProjectVersionFolder(
+                signature.getPublisher(),
+                signature.getProject(),
+                signature.getVersion().toString()).await();
+            versionFolder.getProjectJSONFile().await()
+                .setContentsAsString(QubPublishBenchmarks.createProjectJson(projectIndex, QubPublishBenchmarks.dependenciesPerProject).toString())
+                .await();
+            versionFolder.getCompiledSourcesFile().await().create().await();
+        }).await();
+    }
+}
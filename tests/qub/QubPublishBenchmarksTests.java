@@ -0,0 +1,116 @@
+package qub;
+
+public interface QubPublishBenchmarksTests
+{
+    /**
+     * The filters that select the benchmarks that are small enough to run in a test.
+     */
+    Iterable<String> smallFilters = Iterable.create("parse", "[100 projects]", "[3 x 1 MB]", "[500 entries]");
+
+    /**
+     * Get the names of the small benchmarks that run against the provided file system.
+     * @param fileSystemName The name of the file system that the benchmarks run against.
+     * @return The names of the small benchmarks.
+     */
+    static Iterable<String> getSmallBenchmarkNames(String fileSystemName)
+    {
+        return Iterable.create(
+            fileSystemName + "/ProjectJSON.parse",
+            fileSystemName + "/QubPublishProjectJSONSummary.parse",
+            fileSystemName + "/QubPublishLockFile.resolve[100 projects]",
+            fileSystemName + "/QubPublishDependentsIndex.build[100 projects]",
+            fileSystemName + "/QubPublishTransfer.run[3 x 1 MB]",
+            fileSystemName + "/QubPublishStoredJar.store[500 entries]",
+            fileSystemName + "/read compressed jar[500 entries]",
+            fileSystemName + "/read stored jar[500 entries]",
+            fileSystemName + "/QubPublishDelta.create[500 entries]");
+    }
+
+    static void assertSummaries(Test test, Iterable<String> expectedNames, Iterable<String> summaries)
+    {
+        test.assertEqual(expectedNames.getCount(), summaries.getCount());
+        for (final String expectedName : expectedNames)
+        {
+            boolean found = false;
+            for (final String summary : summaries)
+            {
+                found = found || (summary.startsWith(expectedName + " ") && summary.endsWith(", 1 iterations)"));
+            }
+            test.assertTrue(found);
+        }
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishBenchmarks.class, () ->
+        {
+            runner.testGroup("matches(String,Iterable<String>)", () ->
+            {
+                final Action2<Iterable<String>,Boolean> matchesTest = (Iterable<String> filters, Boolean expected) ->
+                {
+                    runner.test("with " + filters, (Test test) ->
+                    {
+                        test.assertEqual(expected, QubPublishBenchmarks.matches("disk/ProjectJSON.parse", filters));
+                    });
+                };
+
+                matchesTest.run(Iterable.create(), true);
+                matchesTest.run(Iterable.create("parse"), true);
+                matchesTest.run(Iterable.create("resolve", "disk/"), true);
+                matchesTest.run(Iterable.create("in-memory"), false);
+            });
+
+            runner.testGroup("run(String,Folder,QubPublishWorkers,Iterable<String>,boolean)", () ->
+            {
+                runner.test("with in-memory file system",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        final List<String> summaries = QubPublishBenchmarks.run(
+                            "in-memory",
+                            process.getCurrentFolder().getFolder("benchmarks").await(),
+                            workers,
+                            QubPublishBenchmarksTests.smallFilters,
+                            true);
+                        QubPublishBenchmarksTests.assertSummaries(test, QubPublishBenchmarksTests.getSmallBenchmarkNames("in-memory"), summaries);
+                    }
+                });
+
+                runner.test("with filter that matches nothing",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        final List<String> summaries = QubPublishBenchmarks.run(
+                            "in-memory",
+                            process.getCurrentFolder().getFolder("benchmarks").await(),
+                            workers,
+                            Iterable.create("does-not-exist"),
+                            true);
+                        test.assertEqual(Iterable.create(), summaries);
+                    }
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                        {
+                            final List<String> summaries = QubPublishBenchmarks.run(
+                                "disk",
+                                temporaryFolder,
+                                workers,
+                                QubPublishBenchmarksTests.smallFilters,
+                                true);
+                            QubPublishBenchmarksTests.assertSummaries(test, QubPublishBenchmarksTests.getSmallBenchmarkNames("disk"), summaries);
+                        }
+                    });
+                });
+            });
+        });
+    }
+}
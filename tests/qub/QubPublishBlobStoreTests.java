@@ -0,0 +1,318 @@
+package qub;
+
+public interface QubPublishBlobStoreTests
+{
+    /**
+     * The SHA-256 hash of "abc".
+     */
+    String abcHash = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    /**
+     * Get the number of hard links to the provided file on the local Java file system.
+     */
+    static int getLinkCount(File file)
+    {
+        try
+        {
+            return QubPublishFiles.getLinkCount(QubPublishFiles.getJavaPath(file));
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    /**
+     * Get whether or not the file system that holds the provided folder reports link counts.
+     */
+    static boolean hasLinkCounts(Folder folder)
+    {
+        try
+        {
+            return QubPublishFiles.hasLinkCounts(QubPublishFiles.getJavaPath(folder));
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishBlobStore.class, () ->
+        {
+            runner.testGroup("create(Folder)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishBlobStore.create(null),
+                        new PreConditionFailure("blobsFolder cannot be null."));
+                });
+
+                runner.test("with folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder blobsFolder = process.getCurrentFolder().getFolder("blobs").await();
+                    test.assertSame(blobsFolder, QubPublishBlobStore.create(blobsFolder).getBlobsFolder());
+                });
+            });
+
+            runner.testGroup("get(QubFolder)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishBlobStore.get(null),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with qub folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    test.assertEqual(
+                        qubFolder.getProjectFolder("qub", "publish-java").await().getProjectDataFolder().await().getFolder("blobs").await(),
+                        QubPublishBlobStore.get(qubFolder).await().getBlobsFolder());
+                });
+            });
+
+            runner.testGroup("getBlobFile(String)", () ->
+            {
+                runner.test("with hash",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder blobsFolder = process.getCurrentFolder().getFolder("blobs").await();
+                    test.assertEqual(
+                        blobsFolder.getFile("ba/" + QubPublishBlobStoreTests.abcHash).await(),
+                        QubPublishBlobStore.create(blobsFolder).getBlobFile(QubPublishBlobStoreTests.abcHash).await());
+                });
+            });
+
+            runner.testGroup("add(File,String)", () ->
+            {
+                runner.test("with in-memory file system",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File file = currentFolder.getFile("a.jar").await();
+                    file.setContentsAsString("abc").await();
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.create(currentFolder.getFolder("blobs").await());
+
+                    final File blobFile = blobStore.add(file, QubPublishBlobStoreTests.abcHash).await();
+                    test.assertEqual(blobStore.getBlobFile(QubPublishBlobStoreTests.abcHash).await(), blobFile);
+                    test.assertEqual("abc", blobFile.getContentsAsString().await());
+
+                    file.setContentsAsString("changed").await();
+                    test.assertEqual(blobFile, blobStore.add(file, QubPublishBlobStoreTests.abcHash).await());
+                    test.assertEqual("abc", blobFile.getContentsAsString().await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("a.jar").await();
+                        file.setContentsAsString("abc").await();
+                        final QubPublishBlobStore blobStore = QubPublishBlobStore.create(temporaryFolder.getFolder("blobs").await());
+
+                        final File blobFile = blobStore.add(file, QubPublishBlobStoreTests.abcHash).await();
+                        test.assertEqual("abc", blobFile.getContentsAsString().await());
+                        test.assertEqual(
+                            Iterable.create(blobFile),
+                            blobStore.getBlobsFolder().getFilesRecursively().await());
+                    });
+                });
+            });
+
+            runner.testGroup("link(File,Folder)", () ->
+            {
+                runner.test("with in-memory file system",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File file = currentFolder.getFile("outputs/a.jar").await();
+                    file.setContentsAsString("abc").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.create(currentFolder.getFolder("blobs").await());
+
+                    final File linkedFile = blobStore.link(file, targetFolder).await();
+                    test.assertEqual(targetFolder.getFile("a.jar").await(), linkedFile);
+                    test.assertEqual("abc", linkedFile.getContentsAsString().await());
+                    test.assertEqual("abc", blobStore.getBlobFile(QubPublishBlobStoreTests.abcHash).await().getContentsAsString().await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("outputs/a.jar").await();
+                        file.setContentsAsString("abc").await();
+                        final QubPublishBlobStore blobStore = QubPublishBlobStore.create(temporaryFolder.getFolder("blobs").await());
+
+                        final File linkedFile1 = blobStore.link(file, temporaryFolder.getFolder("1").await()).await();
+                        final File linkedFile2 = blobStore.link(file, temporaryFolder.getFolder("2").await()).await();
+                        final File blobFile = blobStore.getBlobFile(QubPublishBlobStoreTests.abcHash).await();
+                        test.assertEqual("abc", linkedFile1.getContentsAsString().await());
+                        test.assertEqual("abc", linkedFile2.getContentsAsString().await());
+                        test.assertEqual(Iterable.create(blobFile), blobStore.getBlobsFolder().getFilesRecursively().await());
+                        if (QubPublishBlobStoreTests.hasLinkCounts(temporaryFolder))
+                        {
+                            test.assertEqual(3, QubPublishBlobStoreTests.getLinkCount(blobFile));
+                            test.assertEqual(1, QubPublishBlobStoreTests.getLinkCount(file));
+                        }
+                    });
+                });
+
+                runner.test("on disk with existing target file", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("outputs/a.jar").await();
+                        file.setContentsAsString("abc").await();
+                        final Folder targetFolder = temporaryFolder.getFolder("target").await();
+                        final File targetFile = targetFolder.getFile("a.jar").await();
+                        targetFile.setContentsAsString("old").await();
+                        final QubPublishBlobStore blobStore = QubPublishBlobStore.create(temporaryFolder.getFolder("blobs").await());
+
+                        test.assertThrows(() -> blobStore.link(file, targetFolder).await(),
+                            new AlreadyExistsException("The file at " + Strings.escapeAndQuote(targetFile.toString()) + " already exists."));
+                        test.assertEqual("old", targetFile.getContentsAsString().await());
+                    });
+                });
+            });
+
+            runner.testGroup("link(File,String,Folder)", () ->
+            {
+                runner.test("with blob deleted after it was added",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File file = currentFolder.getFile("outputs/a.jar").await();
+                    file.setContentsAsString("abc").await();
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.create(currentFolder.getFolder("blobs").await());
+                    final File blobFile = blobStore.add(file, QubPublishBlobStoreTests.abcHash).await();
+                    blobFile.delete().await();
+
+                    final File linkedFile = blobStore.link(file, QubPublishBlobStoreTests.abcHash, currentFolder.getFolder("target").await()).await();
+                    test.assertEqual("abc", linkedFile.getContentsAsString().await());
+                    test.assertEqual("abc", blobFile.getContentsAsString().await());
+                });
+
+                runner.test("waits for a prune's delete",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File file = currentFolder.getFile("outputs/a.jar").await();
+                    file.setContentsAsString("abc").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.create(currentFolder.getFolder("blobs").await());
+                    test.assertEqual(currentFolder.getFile("blobs.lock").await(), blobStore.getLockFile().await());
+
+                    final QubPublishBackground<File> link;
+                    try (final QubPublishFileLock lock = QubPublishFileLock.acquire(blobStore.getLockFile().await()).await())
+                    {
+                        link = QubPublishBackground.start(() -> blobStore.link(file, QubPublishBlobStoreTests.abcHash, targetFolder).await());
+                        QubPublishDaemonTests.sleep(100);
+                        test.assertFalse(link.isDone());
+                        test.assertFalse(targetFolder.getFile("a.jar").await().exists().await());
+                    }
+                    test.assertEqual("abc", link.join().await().getContentsAsString().await());
+                });
+            });
+
+            runner.testGroup("deleteIfUnused(File)", () ->
+            {
+                runner.test("waits for a publish's link", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("outputs/a.jar").await();
+                        file.setContentsAsString("abc").await();
+                        final QubPublishBlobStore blobStore = QubPublishBlobStore.create(temporaryFolder.getFolder("blobs").await());
+                        final File blobFile = blobStore.add(file, QubPublishBlobStoreTests.abcHash).await();
+
+                        final QubPublishBackground<Boolean> delete;
+                        try (final QubPublishFileLock lock = QubPublishFileLock.acquire(blobStore.getLockFile().await()).await())
+                        {
+                            delete = QubPublishBackground.start(() -> blobStore.deleteIfUnused(blobFile).await());
+                            QubPublishDaemonTests.sleep(100);
+                            test.assertFalse(delete.isDone());
+                            test.assertTrue(blobFile.exists().await());
+                        }
+                        test.assertEqual(QubPublishBlobStoreTests.hasLinkCounts(temporaryFolder), delete.join().await());
+                    });
+                });
+            });
+
+            runner.testGroup("getUnusedBlobs(Iterable<? extends Folder>)", () ->
+            {
+                runner.test("with in-memory file system",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File file = currentFolder.getFile("outputs/a.jar").await();
+                    file.setContentsAsString("abc").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.create(currentFolder.getFolder("blobs").await());
+                    blobStore.link(file, targetFolder).await();
+
+                    test.assertEqual(Iterable.create(), blobStore.getUnusedBlobs(Iterable.create(targetFolder)).await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubPublishBlobStore blobStore = QubPublishBlobStore.create(temporaryFolder.getFolder("blobs").await());
+                        final File sharedFile = temporaryFolder.getFile("outputs/shared.jar").await();
+                        sharedFile.setContentsAsString("abc").await();
+                        final File uniqueFile = temporaryFolder.getFile("outputs/unique.jar").await();
+                        uniqueFile.setContentsAsString("unique").await();
+                        final File unlinkedFile = temporaryFolder.getFile("outputs/unlinked.jar").await();
+                        unlinkedFile.setContentsAsString("unlinked").await();
+                        final Folder folder1 = temporaryFolder.getFolder("1").await();
+                        final Folder folder2 = temporaryFolder.getFolder("2").await();
+                        blobStore.link(sharedFile, folder1).await();
+                        blobStore.link(sharedFile, folder2).await();
+                        blobStore.link(uniqueFile, folder1).await();
+                        final File unlinkedBlob = blobStore.add(unlinkedFile, QubPublishFiles.getSHA256(unlinkedFile).await()).await();
+                        final File uniqueBlob = blobStore.getBlobFile(QubPublishFiles.getSHA256(uniqueFile).await()).await();
+                        final File sharedBlob = blobStore.getBlobFile(QubPublishBlobStoreTests.abcHash).await();
+
+                        if (QubPublishBlobStoreTests.hasLinkCounts(temporaryFolder))
+                        {
+                            test.assertEqual(
+                                uniqueBlob.getName().compareTo(unlinkedBlob.getName()) < 0
+                                    ? Iterable.create(uniqueBlob, unlinkedBlob)
+                                    : Iterable.create(unlinkedBlob, uniqueBlob),
+                                blobStore.getUnusedBlobs(Iterable.create(folder1)).await());
+                            test.assertEqual(Iterable.create(unlinkedBlob), blobStore.getUnusedBlobs(Iterable.create()).await());
+
+                            test.assertFalse(blobStore.deleteIfUnused(sharedBlob).await());
+                            test.assertFalse(blobStore.deleteIfUnused(uniqueBlob).await());
+                            test.assertTrue(blobStore.deleteIfUnused(unlinkedBlob).await());
+                            test.assertFalse(unlinkedBlob.exists().await());
+
+                            folder1.delete().await();
+                            test.assertEqual(Iterable.create(uniqueBlob), blobStore.getUnusedBlobs(Iterable.create()).await());
+                            test.assertTrue(blobStore.deleteIfUnused(uniqueBlob).await());
+                            test.assertTrue(sharedBlob.exists().await());
+                        }
+                        else
+                        {
+                            test.assertEqual(Iterable.create(), blobStore.getUnusedBlobs(Iterable.create(folder1)).await());
+                            test.assertFalse(blobStore.deleteIfUnused(unlinkedBlob).await());
+                        }
+                    });
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,645 @@
+package qub;
+
+public interface QubPublishDaemonTests
+{
+    /**
+     * Write the provided bytes to the daemon that listens on the provided port, and get the text
+     * of the output frames that the daemon responds with followed by its exit code. If the daemon
+     * disconnects without an exit code, then the text ends with "disconnected".
+     */
+    static String sendBytes(int port, byte[] bytes)
+    {
+        final StringBuilder result = new StringBuilder();
+        try (final java.net.Socket socket = new java.net.Socket(java.net.InetAddress.getLoopbackAddress(), port))
+        {
+            socket.getOutputStream().write(bytes);
+            socket.getOutputStream().flush();
+
+            final java.io.DataInputStream input = new java.io.DataInputStream(socket.getInputStream());
+            boolean done = false;
+            while (!done)
+            {
+                final byte frameType = input.readByte();
+                final byte[] frame = new byte[input.readInt()];
+                input.readFully(frame);
+                if (frameType == QubPublishDaemon.exitCodeFrameType)
+                {
+                    result.append("exit code: " + new java.io.DataInputStream(new java.io.ByteArrayInputStream(frame)).readInt());
+                    done = true;
+                }
+                else
+                {
+                    result.append(new String(frame, java.nio.charset.StandardCharsets.UTF_8));
+                }
+            }
+        }
+        catch (java.io.EOFException | java.net.SocketException error)
+        {
+            result.append("disconnected");
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Get the bytes of a frame with the provided type and contents.
+     */
+    static byte[] createFrame(byte frameType, String contents)
+    {
+        final java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+        try
+        {
+            QubPublishDaemon.writeFrame(new java.io.DataOutputStream(result), frameType, contents.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Wait the provided number of milliseconds.
+     */
+    static void sleep(long milliseconds)
+    {
+        try
+        {
+            Thread.sleep(milliseconds);
+        }
+        catch (InterruptedException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishDaemon.class, () ->
+        {
+            runner.testGroup("create(QubPublishParameters,QubPublishQubFolderView,int)", () ->
+            {
+                runner.test("with null parameters", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDaemon.create(null, null, 0),
+                        new PreConditionFailure("parameters cannot be null."));
+                });
+
+                runner.test("with null qubFolderView",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    test.assertThrows(() -> QubPublishDaemon.create(parameters, null, 0),
+                        new PreConditionFailure("qubFolderView cannot be null."));
+                });
+
+                runner.test("with any free port",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(parameters.getQubFolder(), workers);
+                        final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, qubFolderView, 0).await();
+                        test.assertNotEqual(0, daemon.getPort());
+                        test.assertFalse(daemon.isDisposed());
+                        final File tokenFile = daemon.getTokenFile();
+                        test.assertEqual(QubPublishDaemon.getTokenFile(parameters.getQubFolder(), daemon.getPort()).await(), tokenFile);
+                        test.assertEqual(64, tokenFile.getContentsAsString().await().length());
+
+                        test.assertTrue(daemon.dispose().await());
+                        test.assertTrue(daemon.isDisposed());
+                        test.assertFalse(tokenFile.exists().await());
+                        test.assertFalse(daemon.dispose().await());
+                    }
+                });
+            });
+
+            runner.testGroup("getTokenFile(QubFolder,int)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDaemon.getTokenFile(null, QubPublishDaemon.defaultPort),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with port",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    test.assertEqual(
+                        qubFolder.getProjectFolder("qub", "publish-java").await().getProjectDataFolder().await().getFile("daemon-24721.token").await(),
+                        QubPublishDaemon.getTokenFile(qubFolder, QubPublishDaemon.defaultPort).await());
+                });
+            });
+
+            runner.testGroup("readFrame(DataInputStream,byte,int)", () ->
+            {
+                final Action3<String,byte[],String> readFrameErrorTest = (String testName, byte[] bytes, String expectedMessage) ->
+                {
+                    runner.test(testName, (Test test) ->
+                    {
+                        final java.io.DataInputStream input = new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes));
+                        boolean failed = false;
+                        try
+                        {
+                            QubPublishDaemon.readFrame(input, QubPublishDaemon.requestFrameType, 10);
+                        }
+                        catch (java.io.IOException error)
+                        {
+                            failed = true;
+                            test.assertEqual(expectedMessage, error.getMessage());
+                        }
+                        test.assertTrue(failed);
+                    });
+                };
+
+                readFrameErrorTest.run("with negative length", new byte[] { 'R', -1, -1, -1, -1 },
+                    "The length of a 'R' frame must be between 0 and 10, but it was -1.");
+                readFrameErrorTest.run("with maximum integer length", new byte[] { 'R', 0x7F, -1, -1, -1 },
+                    "The length of a 'R' frame must be between 0 and 10, but it was 2147483647.");
+                readFrameErrorTest.run("with length one more than maximum", new byte[] { 'R', 0, 0, 0, 11 },
+                    "The length of a 'R' frame must be between 0 and 10, but it was 11.");
+                readFrameErrorTest.run("with unexpected frame type", new byte[] { 'T', 0, 0, 0, 0 },
+                    "Expected a 'R' frame, but found a 'T' frame.");
+
+                runner.test("with frame of maximum length", (Test test) ->
+                {
+                    final java.io.DataInputStream input = new java.io.DataInputStream(new java.io.ByteArrayInputStream(
+                        QubPublishDaemonTests.createFrame(QubPublishDaemon.requestFrameType, "0123456789")));
+                    try
+                    {
+                        test.assertEqual("0123456789", new String(QubPublishDaemon.readFrame(input, QubPublishDaemon.requestFrameType, 10), java.nio.charset.StandardCharsets.UTF_8));
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+            });
+
+            runner.testGroup("getRequestParameters(JSONObject,CharacterToByteWriteStream,CharacterToByteWriteStream)", () ->
+            {
+                runner.test("with request from createRequest()",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder sourceRoot = process.getCurrentFolder().getFolder("sources-root").await();
+                    final Folder folderToPublish = sourceRoot.getFolder("my-project").await();
+                    final QubPublishParameters clientParameters = QubPublishTests.getParameters(process)
+                        .createProjectParameters(folderToPublish, process.getOutputWriteStream(), process.getErrorWriteStream())
+                        .setPackJson(false)
+                        .setCoverage(Coverage.Sources)
+                        .setWarnings(Warnings.Error)
+                        .setBlobStore(true)
+                        .setAppCDSArguments(Iterable.create("--version", "--quiet"))
+                        .setUberJar(true)
+                        .setStoredJars(true)
+                        .setUpdateDependents(true)
+                        .setSourceRoot(sourceRoot)
+                        .setMirrors(Iterable.create(process.getCurrentFolder().getFolder("mirror").await()))
+                        .setVerbose(VerboseCharacterToByteWriteStream.create(process.getOutputWriteStream()).setIsVerbose(true))
+                        .setTrace(QubPublishTrace.create(process.getCurrentFolder().getFile("trace.json").await()));
+                    final JSONObject request = JSON.parseObject(QubPublishDaemon.createRequest(clientParameters).toString()).await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishParameters daemonParameters = QubPublishTests.getParameters(process);
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(daemonParameters.getQubFolder(), workers);
+                        try (final QubPublishDaemon daemon = QubPublishDaemon.create(daemonParameters, qubFolderView, 0).await())
+                        {
+                            final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+                            final InMemoryCharacterToByteStream error = InMemoryCharacterToByteStream.create();
+                            final QubPublishParameters requestParameters = daemon.getRequestParameters(request, output, error).await();
+                            test.assertEqual(folderToPublish, requestParameters.getFolderToPublish());
+                            test.assertSame(output, requestParameters.getOutputWriteStream());
+                            test.assertSame(error, requestParameters.getErrorWriteStream());
+                            test.assertFalse(requestParameters.getPackJson());
+                            test.assertTrue(requestParameters.getTestJson());
+                            test.assertEqual(Coverage.Sources, requestParameters.getCoverage());
+                            test.assertTrue(requestParameters.getBuildJson());
+                            test.assertEqual(Warnings.Error, requestParameters.getWarnings());
+                            test.assertTrue(requestParameters.getBlobStore());
+                            test.assertFalse(requestParameters.getAppCDS());
+                            test.assertEqual(Iterable.create("--version", "--quiet"), requestParameters.getAppCDSArguments());
+                            test.assertFalse(requestParameters.getBatch());
+                            test.assertFalse(requestParameters.getLauncherJar());
+                            test.assertTrue(requestParameters.getUberJar());
+                            test.assertFalse(requestParameters.getJlink());
+                            test.assertTrue(requestParameters.getStoredJars());
+                            test.assertTrue(requestParameters.getUpdateDependents());
+                            test.assertEqual(sourceRoot, requestParameters.getSourceRoot());
+                            test.assertEqual(Iterable.create(process.getCurrentFolder().getFolder("mirror").await()), requestParameters.getMirrors());
+                            test.assertFalse(requestParameters.getDaemon());
+                            test.assertFalse(requestParameters.getUseDaemon());
+                            test.assertTrue(requestParameters.getVerbose().isVerbose());
+                            test.assertEqual(process.getCurrentFolder().getFile("trace.json").await(), requestParameters.getTrace().getTraceFile());
+                        }
+                    }
+                });
+
+                runner.test("with request without verbose or trace",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters clientParameters = QubPublishTests.getParameters(process);
+                    final JSONObject request = QubPublishDaemon.createRequest(clientParameters);
+                    test.assertFalse(request.getBoolean("verbose").await());
+                    test.assertFalse(request.getPropertyNames().contains("trace"));
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishTrace daemonTrace = QubPublishTrace.create(process.getCurrentFolder().getFile("daemon-trace.json").await());
+                        final QubPublishParameters daemonParameters = QubPublishTests.getParameters(process)
+                            .setVerbose(VerboseCharacterToByteWriteStream.create(process.getOutputWriteStream()).setIsVerbose(true))
+                            .setTrace(daemonTrace);
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(daemonParameters.getQubFolder(), workers);
+                        try (final QubPublishDaemon daemon = QubPublishDaemon.create(daemonParameters, qubFolderView, 0).await())
+                        {
+                            final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+                            final InMemoryCharacterToByteStream error = InMemoryCharacterToByteStream.create();
+                            final QubPublishParameters requestParameters = daemon.getRequestParameters(request, output, error).await();
+                            test.assertFalse(requestParameters.getVerbose().isVerbose());
+                            test.assertSame(daemonTrace, requestParameters.getTrace());
+                        }
+                    }
+                });
+            });
+
+            runner.testGroup("getLocks(QubPublishParameters)", () ->
+            {
+                runner.test("with no project.json",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    final Map<String,Boolean> locks = QubPublishDaemon.getLocks(parameters).await();
+                    test.assertEqual(1, locks.getCount());
+                    test.assertTrue(locks.get("folder:" + process.getCurrentFolder()).await());
+                });
+
+                runner.test("with dependencies",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    QubPublishBatchTests.createProject(process.getCurrentFolder(), "me", "c",
+                        ProjectSignature.create("me", "a", "1"),
+                        ProjectSignature.create("me", "b", "2"));
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+
+                    final Map<String,Boolean> locks = QubPublishDaemon.getLocks(parameters).await();
+                    test.assertEqual(4, locks.getCount());
+                    test.assertTrue(locks.get("folder:" + process.getCurrentFolder()).await());
+                    test.assertTrue(locks.get("project:me/c").await());
+                    test.assertFalse(locks.get("project:me/a").await());
+                    test.assertFalse(locks.get("project:me/b").await());
+                });
+
+                runner.test("with batch",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final Folder aFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("a").await(), "me", "a");
+                    final Folder bFolder = QubPublishBatchTests.createProject(currentFolder.getFolder("b").await(), "me", "b",
+                        ProjectSignature.create("me", "a", "1"));
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process)
+                        .setBatch(true);
+
+                    final Map<String,Boolean> locks = QubPublishDaemon.getLocks(parameters).await();
+                    test.assertEqual(5, locks.getCount());
+                    test.assertTrue(locks.get("folder:" + currentFolder).await());
+                    test.assertTrue(locks.get("folder:" + aFolder).await());
+                    test.assertTrue(locks.get("folder:" + bFolder).await());
+                    test.assertTrue(locks.get("project:me/a").await());
+                    test.assertTrue(locks.get("project:me/b").await());
+                });
+            });
+
+            runner.testGroup("runLocked(Map<String,Boolean>,Function0<Integer>)", () ->
+            {
+                runner.test("with exclusive lock held by another publish",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, QubPublishQubFolderView.create(parameters.getQubFolder(), workers), 0).await())
+                    {
+                        final java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+                        final java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+                        final Map<String,Boolean> exclusiveLocks = Map.create();
+                        exclusiveLocks.set("project:me/a", true);
+                        final QubPublishBackground<Integer> first = QubPublishBackground.start(() -> daemon.runLocked(exclusiveLocks, () ->
+                        {
+                            started.countDown();
+                            try
+                            {
+                                release.await();
+                            }
+                            catch (InterruptedException error)
+                            {
+                                throw Exceptions.asRuntime(error);
+                            }
+                            return 1;
+                        }));
+                        try
+                        {
+                            started.await();
+                        }
+                        catch (InterruptedException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+
+                        final Map<String,Boolean> sharedLocks = Map.create();
+                        sharedLocks.set("project:me/b", true);
+                        sharedLocks.set("project:me/a", false);
+                        final QubPublishBackground<Integer> second = QubPublishBackground.start(() -> daemon.runLocked(sharedLocks, () -> 2));
+                        QubPublishDaemonTests.sleep(100);
+                        test.assertFalse(second.isDone());
+
+                        release.countDown();
+                        test.assertEqual(1, first.join().await());
+                        test.assertEqual(2, second.join().await());
+                    }
+                });
+
+                runner.test("with shared lock held by another publish",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, QubPublishQubFolderView.create(parameters.getQubFolder(), workers), 0).await())
+                    {
+                        final java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+                        final java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+                        final Map<String,Boolean> sharedLocks = Map.create();
+                        sharedLocks.set("project:me/a", false);
+                        final QubPublishBackground<Integer> first = QubPublishBackground.start(() -> daemon.runLocked(sharedLocks, () ->
+                        {
+                            started.countDown();
+                            try
+                            {
+                                release.await();
+                            }
+                            catch (InterruptedException error)
+                            {
+                                throw Exceptions.asRuntime(error);
+                            }
+                            return 1;
+                        }));
+                        try
+                        {
+                            started.await();
+                        }
+                        catch (InterruptedException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+
+                        test.assertEqual(2, daemon.runLocked(sharedLocks, () -> 2));
+                        test.assertFalse(first.isDone());
+
+                        release.countDown();
+                        test.assertEqual(1, first.join().await());
+                    }
+                });
+
+                runner.test("with the same locks listed in different orders",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, QubPublishQubFolderView.create(parameters.getQubFolder(), workers), 0).await())
+                    {
+                        final Map<String,Boolean> abLocks = Map.create();
+                        abLocks.set("project:me/a", true);
+                        abLocks.set("project:me/b", true);
+                        final Map<String,Boolean> baLocks = Map.create();
+                        baLocks.set("project:me/b", true);
+                        baLocks.set("project:me/a", true);
+                        final int[] running = { 0 };
+                        final int[] maximumRunning = { 0 };
+                        final Function0<Integer> publish = () ->
+                        {
+                            synchronized (running)
+                            {
+                                ++running[0];
+                                maximumRunning[0] = Math.max(maximumRunning[0], running[0]);
+                            }
+                            Thread.yield();
+                            synchronized (running)
+                            {
+                                --running[0];
+                            }
+                            return 0;
+                        };
+
+                        final QubPublishBackground<Integer> ab = QubPublishBackground.start(() ->
+                        {
+                            for (int i = 0; i < 1000; ++i)
+                            {
+                                daemon.runLocked(abLocks, publish);
+                            }
+                            return 0;
+                        });
+                        final QubPublishBackground<Integer> ba = QubPublishBackground.start(() ->
+                        {
+                            for (int i = 0; i < 1000; ++i)
+                            {
+                                daemon.runLocked(baLocks, publish);
+                            }
+                            return 0;
+                        });
+                        test.assertEqual(0, ab.join().await());
+                        test.assertEqual(0, ba.join().await());
+                        test.assertEqual(1, maximumRunning[0]);
+                    }
+                });
+            });
+
+            runner.testGroup("run()", () ->
+            {
+                runner.test("with request without the daemon's token",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, QubPublishQubFolderView.create(parameters.getQubFolder(), workers), 0).await())
+                    {
+                        final QubPublishBackground<Void> running = QubPublishBackground.start(() -> daemon.run().await());
+                        try
+                        {
+                            test.assertEqual(
+                                "ERROR: The publish request didn't have the daemon's token.\nexit code: 1",
+                                QubPublishDaemonTests.sendBytes(daemon.getPort(), QubPublishDaemonTests.createFrame(QubPublishDaemon.tokenFrameType, "not-the-token")));
+                        }
+                        finally
+                        {
+                            daemon.dispose().await();
+                            running.join().await();
+                        }
+                    }
+                });
+
+                runner.test("with frame that is too long",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, QubPublishQubFolderView.create(parameters.getQubFolder(), workers), 0).await())
+                    {
+                        final QubPublishBackground<Void> running = QubPublishBackground.start(() -> daemon.run().await());
+                        try
+                        {
+                            test.assertEqual(
+                                "disconnected",
+                                QubPublishDaemonTests.sendBytes(daemon.getPort(), new byte[] { QubPublishDaemon.tokenFrameType, 0x7F, -1, -1, -1 }));
+                            test.assertEqual(
+                                "disconnected",
+                                QubPublishDaemonTests.sendBytes(daemon.getPort(), new byte[] { QubPublishDaemon.tokenFrameType, -1, -1, -1, -1 }));
+                        }
+                        finally
+                        {
+                            daemon.dispose().await();
+                            running.join().await();
+                        }
+                    }
+                });
+            });
+
+            runner.testGroup("send(QubPublishParameters,int)", () ->
+            {
+                runner.test("with null parameters", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDaemon.send(null, QubPublishDaemon.defaultPort),
+                        new PreConditionFailure("parameters cannot be null."));
+                });
+
+                runner.test("with no daemon listening",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    final int port;
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(parameters.getQubFolder(), workers);
+                        try (final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, qubFolderView, 0).await())
+                        {
+                            port = daemon.getPort();
+                        }
+                    }
+
+                    try
+                    {
+                        QubPublishDaemon.send(parameters, port).await();
+                        throw new RuntimeException("Expected send() to fail.");
+                    }
+                    catch (Throwable error)
+                    {
+                        test.assertTrue(Exceptions.unwrap(error) instanceof java.net.ConnectException);
+                    }
+                });
+
+                runner.test("with running daemon",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString(
+                        ProjectJSON.create()
+                            .setProject("my-project")
+                            .setJava(ProjectJSONJava.create())
+                            .toString());
+                    final QubPublishParameters daemonParameters = QubPublishTests.getParameters(process);
+                    final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+                    final InMemoryCharacterToByteStream error = InMemoryCharacterToByteStream.create();
+                    final QubPublishParameters clientParameters = QubPublishTests.getParameters(process)
+                        .createProjectParameters(currentFolder, output, error);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(daemonParameters, QubPublishQubFolderView.create(daemonParameters.getQubFolder(), workers), 0).await())
+                    {
+                        final QubPublishBackground<Void> running = QubPublishBackground.start(() -> daemon.run().await());
+                        try
+                        {
+                            test.assertEqual(1, QubPublishDaemon.send(clientParameters, daemon.getPort()).await());
+                            test.assertLinesEqual(
+                                Iterable.create(
+                                    "ERROR: The project.json file at " + Strings.escapeAndQuote(projectJsonFile.toString()) + " must have a publisher and a project to be published."),
+                                output);
+                            test.assertLinesEqual(
+                                Iterable.create(),
+                                error);
+                            test.assertLinesEqual(
+                                Iterable.create(
+                                    "Listening for publish requests on port " + daemon.getPort() + "..."),
+                                process.getOutputWriteStream());
+                        }
+                        finally
+                        {
+                            daemon.dispose().await();
+                            running.join().await();
+                        }
+                    }
+                });
+
+                runner.test("with updateDependents",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters daemonParameters = QubPublishTests.getParameters(process);
+                    final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+                    final InMemoryCharacterToByteStream error = InMemoryCharacterToByteStream.create();
+                    final QubPublishParameters clientParameters = QubPublishTests.getParameters(process)
+                        .createProjectParameters(process.getCurrentFolder(), output, error)
+                        .setUpdateDependents(true);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(daemonParameters, QubPublishQubFolderView.create(daemonParameters.getQubFolder(), workers), 0).await())
+                    {
+                        final QubPublishBackground<Void> running = QubPublishBackground.start(() -> daemon.run().await());
+                        try
+                        {
+                            test.assertEqual(1, QubPublishDaemon.send(clientParameters, daemon.getPort()).await());
+                            test.assertLinesEqual(
+                                Iterable.create(
+                                    "ERROR: --updatedependents can't be used with --usedaemon."),
+                                output);
+                        }
+                        finally
+                        {
+                            daemon.dispose().await();
+                            running.join().await();
+                        }
+                    }
+                });
+
+                runner.test("with daemon that didn't write a token file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1);
+                         final QubPublishDaemon daemon = QubPublishDaemon.create(parameters, QubPublishQubFolderView.create(parameters.getQubFolder(), workers), 0).await())
+                    {
+                        daemon.getTokenFile().delete().await();
+                        test.assertThrows(() -> QubPublishDaemon.send(parameters, daemon.getPort()).await(),
+                            new NotFoundException("The publish daemon on port " + daemon.getPort() + " didn't write a token file at " + Strings.escapeAndQuote(daemon.getTokenFile().toString()) + "."));
+                    }
+                });
+            });
+        });
+    }
+}
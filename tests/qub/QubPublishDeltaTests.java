@@ -0,0 +1,114 @@
+package qub;
+
+public interface QubPublishDeltaTests
+{
+    static byte[] getBytes(String text)
+    {
+        return text.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    static String getString(byte[] bytes)
+    {
+        return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    static void createTest(TestRunner runner, String basisText, String targetText, int blockSize, long expectedCopiedByteCount, long expectedChangedByteCount)
+    {
+        runner.test("with " + Strings.escapeAndQuote(basisText) + ", " + Strings.escapeAndQuote(targetText) + ", and " + blockSize, (Test test) ->
+        {
+            final byte[] basis = QubPublishDeltaTests.getBytes(basisText);
+            final byte[] target = QubPublishDeltaTests.getBytes(targetText);
+            final QubPublishDelta delta = QubPublishDelta.create(basis, target, blockSize);
+            test.assertEqual(blockSize, delta.getBlockSize());
+            test.assertEqual(target.length, delta.getTargetLength());
+            test.assertEqual(expectedCopiedByteCount, delta.getCopiedByteCount());
+            test.assertEqual(expectedChangedByteCount, delta.getChangedByteCount());
+            test.assertEqual(targetText, QubPublishDeltaTests.getString(delta.apply(basis)));
+        });
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishDelta.class, () ->
+        {
+            runner.testGroup("create(byte[],byte[],int)", () ->
+            {
+                runner.test("with null basis", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDelta.create(null, new byte[0], 4),
+                        new PreConditionFailure("basis cannot be null."));
+                });
+
+                runner.test("with null target", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDelta.create(new byte[0], null, 4),
+                        new PreConditionFailure("target cannot be null."));
+                });
+
+                runner.test("with 0 blockSize", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDelta.create(new byte[0], new byte[0], 0),
+                        new PreConditionFailure("blockSize (0) must be greater than or equal to 1."));
+                });
+
+                QubPublishDeltaTests.createTest(runner, "", "", 4, 0L, 0L);
+                QubPublishDeltaTests.createTest(runner, "", "abcdefgh", 4, 0L, 8L);
+                QubPublishDeltaTests.createTest(runner, "abcdefgh", "", 4, 0L, 0L);
+                QubPublishDeltaTests.createTest(runner, "abcdefghij", "abcdefghij", 4, 8L, 2L);
+                QubPublishDeltaTests.createTest(runner, "abcdefghijkl", "abcdXXXXijkl", 4, 8L, 4L);
+                QubPublishDeltaTests.createTest(runner, "abcdefghijkl", "abcdijkl", 4, 8L, 4L);
+                QubPublishDeltaTests.createTest(runner, "abcdefgh", "XabcdefghY", 4, 8L, 10L);
+                QubPublishDeltaTests.createTest(runner, "abcdefgh", "efghabcd", 4, 8L, 8L);
+                QubPublishDeltaTests.createTest(runner, "abcdefgh", "abcdefgh", 100, 0L, 8L);
+            });
+
+            runner.test("getOperations()", (Test test) ->
+            {
+                final QubPublishDelta delta = QubPublishDelta.create(
+                    QubPublishDeltaTests.getBytes("abcdefghijkl"),
+                    QubPublishDeltaTests.getBytes("XabcdefghZZZ"),
+                    4);
+                final List<QubPublishDelta.Operation> operations = List.create();
+                operations.addAll(delta.getOperations());
+                test.assertEqual(3, operations.getCount());
+
+                final QubPublishDelta.Operation literal = operations.get(0);
+                test.assertFalse(literal.isCopy());
+                test.assertFalse(literal.isInPlace());
+                test.assertEqual(0, literal.getTargetOffset());
+                test.assertEqual(1, literal.getLength());
+                test.assertEqual(-1, literal.getBasisOffset());
+                test.assertEqual("X", QubPublishDeltaTests.getString(literal.getLiteral()));
+
+                final QubPublishDelta.Operation copy = operations.get(1);
+                test.assertTrue(copy.isCopy());
+                test.assertFalse(copy.isInPlace());
+                test.assertEqual(1, copy.getTargetOffset());
+                test.assertEqual(8, copy.getLength());
+                test.assertEqual(0, copy.getBasisOffset());
+                test.assertNull(copy.getLiteral());
+
+                final QubPublishDelta.Operation trailingLiteral = operations.get(2);
+                test.assertFalse(trailingLiteral.isCopy());
+                test.assertEqual(9, trailingLiteral.getTargetOffset());
+                test.assertEqual("ZZZ", QubPublishDeltaTests.getString(trailingLiteral.getLiteral()));
+            });
+
+            runner.testGroup("getChecksum(byte[],int,int)", () ->
+            {
+                runner.test("with rolled window", (Test test) ->
+                {
+                    // The checksum of each window must only depend on the window's bytes, so that
+                    // a rolled checksum matches the checksum of a basis block.
+                    final byte[] bytes = QubPublishDeltaTests.getBytes("xxabcdyy");
+                    test.assertEqual(
+                        QubPublishDelta.getChecksum(QubPublishDeltaTests.getBytes("abcd"), 0, 4),
+                        QubPublishDelta.getChecksum(bytes, 2, 4));
+                    test.assertNotEqual(
+                        QubPublishDelta.getChecksum(bytes, 1, 4),
+                        QubPublishDelta.getChecksum(bytes, 2, 4));
+                });
+            });
+        });
+    }
+}
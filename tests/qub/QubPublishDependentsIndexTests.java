@@ -0,0 +1,331 @@
+package qub;
+
+public interface QubPublishDependentsIndexTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishDependentsIndex.class, () ->
+        {
+            runner.test("create()", (Test test) ->
+            {
+                final QubPublishDependentsIndex index = QubPublishDependentsIndex.create();
+                test.assertNotNull(index);
+                test.assertEqual(Iterable.create(), index.getDependents("me", "my-project"));
+            });
+
+            runner.testGroup("setProject(String,String,VersionNumber,Iterable<ProjectSignature>)", () ->
+            {
+                runner.test("with null publisher", (Test test) ->
+                {
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create();
+                    test.assertThrows(() -> index.setProject(null, "my-project", VersionNumber.create().setMajor(1), null),
+                        new PreConditionFailure("publisher cannot be null."));
+                });
+
+                runner.test("with empty project", (Test test) ->
+                {
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create();
+                    test.assertThrows(() -> index.setProject("me", "", VersionNumber.create().setMajor(1), null),
+                        new PreConditionFailure("project cannot be empty."));
+                });
+
+                runner.test("with dependencies", (Test test) ->
+                {
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create();
+                    final QubPublishDependentsIndex setProjectResult = index.setProject("me", "b", VersionNumber.create().setMajor(2),
+                        Iterable.create(ProjectSignature.create("me", "a", "1")));
+                    test.assertSame(index, setProjectResult);
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "b", "2")),
+                        index.getDependents("me", "a"));
+                    test.assertEqual(Iterable.create(), index.getDependents("me", "b"));
+                });
+
+                runner.test("orders dependents by signature", (Test test) ->
+                {
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create()
+                        .setProject("me", "c", VersionNumber.create().setMajor(1), Iterable.create(ProjectSignature.create("me", "a", "1")))
+                        .setProject("me", "b", VersionNumber.create().setMajor(1), Iterable.create(ProjectSignature.create("me", "a", "1")));
+                    test.assertEqual(
+                        Iterable.create(
+                            ProjectSignature.create("me", "b", "1"),
+                            ProjectSignature.create("me", "c", "1")),
+                        index.getDependents("me", "a"));
+                });
+
+                runner.test("replaces the dependents of an older version", (Test test) ->
+                {
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create()
+                        .setProject("me", "b", VersionNumber.create().setMajor(1), Iterable.create(ProjectSignature.create("me", "a", "1")))
+                        .setProject("me", "b", VersionNumber.create().setMajor(2), Iterable.create(ProjectSignature.create("me", "c", "1")));
+                    test.assertEqual(Iterable.create(), index.getDependents("me", "a"));
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "b", "2")),
+                        index.getDependents("me", "c"));
+                });
+            });
+
+            runner.testGroup("parse(JSONObject)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDependentsIndex.parse((JSONObject)null),
+                        new PreConditionFailure("json cannot be null."));
+                });
+
+                runner.test("with unsupported format", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDependentsIndex.parse(JSONObject.create().setNumber("format", 50)).await(),
+                        new ParseException("Unsupported dependents index format: 50.0"));
+                });
+
+                runner.test("with toJson() result", (Test test) ->
+                {
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create()
+                        .setProject("me", "a", VersionNumber.create().setMajor(1), null)
+                        .setProject("me", "b", VersionNumber.create().setMajor(3), Iterable.create(ProjectSignature.create("me", "a", "1")));
+                    final QubPublishDependentsIndex parsedIndex = QubPublishDependentsIndex.parse(index.toJson()).await();
+                    test.assertEqual(index.toString(), parsedIndex.toString());
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "b", "3")),
+                        parsedIndex.getDependents("me", "a"));
+                });
+            });
+
+            runner.testGroup("isStale(QubFolder)", () ->
+            {
+                runner.test("with empty index and empty qub folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    test.assertFalse(QubPublishDependentsIndex.create().isStale(qubFolder).await());
+                });
+
+                runner.test("with project folders but no generation file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+                    test.assertEqual(0L, QubPublishDependentsIndex.getGeneration(qubFolder).await());
+                    test.assertFalse(QubPublishDependentsIndex.create().isStale(qubFolder).await());
+                });
+
+                runner.test("after invalidate()",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create();
+                    test.assertFalse(index.isStale(qubFolder).await());
+
+                    QubPublishDependentsIndex.invalidate(qubFolder).await();
+                    test.assertEqual(1L, QubPublishDependentsIndex.getGeneration(qubFolder).await());
+                    test.assertTrue(index.isStale(qubFolder).await());
+                });
+
+                runner.test("with index without a generation",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.parse(
+                        JSONObject.create()
+                            .setNumber("format", 1)
+                            .setObject("projects", JSONObject.create())
+                            .setObject("dependents", JSONObject.create()))
+                        .await();
+                    test.assertEqual(-1L, index.getGeneration());
+                    test.assertTrue(index.isStale(qubFolder).await());
+                });
+
+                runner.test("with corrupt generation file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    QubPublishDependentsIndex.getGenerationFile(qubFolder).await().setContentsAsString("spam").await();
+                    test.assertTrue(QubPublishDependentsIndex.create().isStale(qubFolder).await());
+                });
+
+                runner.test("with newer published version that wasn't published by qub-publish",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.create()
+                        .setProject("me", "a", VersionNumber.create().setMajor(1), null);
+
+                    // Staleness is only read from the generation file, so the project folders
+                    // aren't listed.
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "a").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    QubPublishLatestVersion.set(projectFolder, VersionNumber.create().setMajor(2)).await();
+                    test.assertFalse(index.isStale(qubFolder).await());
+                });
+            });
+
+            runner.testGroup("update(QubFolder,QubPublishWorkers,String,String,VersionNumber,Iterable<ProjectSignature>)", () ->
+            {
+                runner.test("with existing index",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+                    qubFolder.getProjectVersionFolder("me", "b", "1").await().create().await();
+                    final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+                    QubPublishDependentsIndex.create()
+                        .setProject("me", "a", VersionNumber.create().setMajor(1), null)
+                        .setProject("me", "b", VersionNumber.create().setMajor(1), null)
+                        .setProject("qub", "publish-java", null, null)
+                        .save(indexFile)
+                        .await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        QubPublishDependentsIndex.update(qubFolder, workers, "me", "b", VersionNumber.create().setMajor(1),
+                            Iterable.create(ProjectSignature.create("me", "a", "1")))
+                            .await();
+                    }
+
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "b", "1")),
+                        QubPublishDependentsIndex.parse(indexFile).await().getDependents("me", "a"));
+                    test.assertEqual(
+                        QubPublishFileLock.getLockFile(indexFile).await(),
+                        QubPublishDependentsIndex.getLockFile(qubFolder).await());
+                    test.assertEqual(1L, QubPublishDependentsIndex.getGeneration(qubFolder).await());
+                    test.assertEqual(1L, QubPublishDependentsIndex.parse(indexFile).await().getGeneration());
+                });
+
+                runner.test("doesn't list unrelated projects",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+                    qubFolder.getProjectVersionFolder("me", "z", "1").await().create().await();
+                    final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+                    QubPublishDependentsIndex.create()
+                        .setProject("me", "a", VersionNumber.create().setMajor(1), null)
+                        .setProject("me", "z", VersionNumber.create().setMajor(1), null)
+                        .save(indexFile)
+                        .await();
+
+                    // A newer version of me/z appears without going through the index. If the
+                    // publish of me/b listed the other projects' folders, then it would record it.
+                    final QubProjectFolder unrelatedProjectFolder = qubFolder.getProjectFolder("me", "z").await();
+                    unrelatedProjectFolder.getProjectVersionFolder("2").await().create().await();
+                    QubPublishLatestVersion.set(unrelatedProjectFolder, VersionNumber.create().setMajor(2)).await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        QubPublishDependentsIndex.update(qubFolder, workers, "me", "b", VersionNumber.create().setMajor(1),
+                            Iterable.create(ProjectSignature.create("me", "a", "1")))
+                            .await();
+                        QubPublishDependentsIndex.getOrBuild(qubFolder, workers).await();
+                    }
+
+                    final JSONObject projectsJson = QubPublishDependentsIndex.parse(indexFile).await()
+                        .toJson()
+                        .getObject("projects")
+                        .await();
+                    test.assertEqual("1", projectsJson.getString("me/z").await());
+                    test.assertEqual("1", projectsJson.getString("me/b").await());
+                });
+
+                runner.test("with stale index",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+                    final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+                    QubPublishDependentsIndex.create()
+                        .setProject("me", "a", VersionNumber.create().setMajor(1), null)
+                        .setProject("me", "z", VersionNumber.create().setMajor(1), null)
+                        .save(indexFile)
+                        .await();
+                    QubPublishDependentsIndex.invalidate(qubFolder).await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        QubPublishDependentsIndex.update(qubFolder, workers, "me", "a", VersionNumber.create().setMajor(1), null)
+                            .await();
+                    }
+
+                    // The rebuilt index no longer has me/z, because it has no project folder.
+                    final JSONObject projectsJson = QubPublishDependentsIndex.parse(indexFile).await()
+                        .toJson()
+                        .getObject("projects")
+                        .await();
+                    test.assertFalse(projectsJson.getPropertyNames().contains("me/z"));
+                    test.assertEqual(2L, QubPublishDependentsIndex.getGeneration(qubFolder).await());
+                });
+            });
+
+            runner.testGroup("build(QubFolder)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishDependentsIndex.build(null),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with dependent project",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await()
+                        .getProjectJSONFile().await()
+                        .setContentsAsString(
+                            ProjectJSON.create()
+                                .setPublisher("me")
+                                .setProject("a")
+                                .setVersion("1")
+                                .setJava(ProjectJSONJava.create())
+                                .toString())
+                        .await();
+                    qubFolder.getProjectVersionFolder("me", "b", "4").await()
+                        .getProjectJSONFile().await()
+                        .setContentsAsString(
+                            ProjectJSON.create()
+                                .setPublisher("me")
+                                .setProject("b")
+                                .setJava(ProjectJSONJava.create()
+                                    .setDependencies(Iterable.create(ProjectSignature.create("me", "a", "1"))))
+                                .toString())
+                        .await();
+
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.build(qubFolder).await();
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "b", "4")),
+                        index.getDependents("me", "a"));
+                    test.assertFalse(index.isStale(qubFolder).await());
+
+                    // Building the index only reads the project folders.
+                    for (final String project : Iterable.create("a", "b"))
+                    {
+                        final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", project).await();
+                        test.assertFalse(QubPublishLatestVersion.getPointerFile(projectFolder).await().exists().await());
+                    }
+                });
+
+                runner.test("with version folder without project.json",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+
+                    final QubPublishDependentsIndex index = QubPublishDependentsIndex.build(qubFolder).await();
+                    test.assertFalse(index.isStale(qubFolder).await());
+                });
+            });
+        });
+    }
+}
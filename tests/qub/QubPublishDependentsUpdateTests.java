@@ -0,0 +1,159 @@
+package qub;
+
+public interface QubPublishDependentsUpdateTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishDependentsUpdate.class, () ->
+        {
+            runner.testGroup("create(QubPublishParameters,Folder)", () ->
+            {
+                runner.test("with null parameters",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    test.assertThrows(() -> QubPublishDependentsUpdate.create(null, process.getCurrentFolder()),
+                        new PreConditionFailure("parameters cannot be null."));
+                });
+
+                runner.test("with null sourceRootFolder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                    test.assertThrows(() -> QubPublishDependentsUpdate.create(parameters, null),
+                        new PreConditionFailure("sourceRootFolder cannot be null."));
+                });
+            });
+
+            runner.test("getAffectedProjects(QubPublishQubFolderView,String,String)",
+                (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                (Test test, FakeDesktopProcess process) ->
+            {
+                final QubFolder qubFolder = process.getQubFolder().await();
+                try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                {
+                    final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(qubFolder, workers);
+                    qubFolderView.updateDependents("me", "a", VersionNumber.create().setMajor(1), null).await();
+                    qubFolderView.updateDependents("me", "b", VersionNumber.create().setMajor(1),
+                        Iterable.create(ProjectSignature.create("me", "a", "1"))).await();
+                    qubFolderView.updateDependents("me", "c", VersionNumber.create().setMajor(1),
+                        Iterable.create(ProjectSignature.create("me", "b", "1"))).await();
+                    qubFolderView.updateDependents("me", "d", VersionNumber.create().setMajor(1),
+                        Iterable.create(
+                            ProjectSignature.create("me", "a", "1"),
+                            ProjectSignature.create("me", "c", "1"))).await();
+                    qubFolderView.updateDependents("me", "e", VersionNumber.create().setMajor(1), null).await();
+
+                    test.assertEqual(
+                        Iterable.create("me/b", "me/d", "me/c"),
+                        QubPublishDependentsUpdate.getAffectedProjects(qubFolderView, "me", "a").await());
+                    test.assertEqual(
+                        Iterable.create("me/d"),
+                        QubPublishDependentsUpdate.getAffectedProjects(qubFolderView, "me", "c").await());
+                    test.assertEqual(
+                        Iterable.create(),
+                        QubPublishDependentsUpdate.getAffectedProjects(qubFolderView, "me", "e").await());
+                }
+            });
+
+            runner.test("getSourceFolders()",
+                (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                (Test test, FakeDesktopProcess process) ->
+            {
+                final Folder sourceRootFolder = process.getCurrentFolder().getFolder("sources").await();
+                final Folder aFolder = sourceRootFolder.getFolder("a-source").await();
+                aFolder.getFile("project.json").await().setContentsAsString(ProjectJSON.create().setPublisher("me").setProject("a").toString()).await();
+                final Folder bFolder = sourceRootFolder.getFolder("b-source").await();
+                bFolder.getFile("project.json").await().setContentsAsString(ProjectJSON.create().setPublisher("me").setProject("b").toString()).await();
+                sourceRootFolder.getFolder("not-a-project").await().create().await();
+
+                final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                final Map<String,Folder> sourceFolders = QubPublishDependentsUpdate.create(parameters, sourceRootFolder).getSourceFolders().await();
+                test.assertEqual(aFolder, sourceFolders.get("me/a").await());
+                test.assertEqual(bFolder, sourceFolders.get("me/b").await());
+                test.assertFalse(sourceFolders.containsKey("me/not-a-project"));
+            });
+
+            runner.testGroup("updateProjectJson(QubFolder,Folder,Iterable<String>)", () ->
+            {
+                runner.test("with dependencies to update",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "2").await().create().await();
+                    qubFolder.getProjectVersionFolder("you", "stuff", "8").await().create().await();
+
+                    final Folder sourceFolder = process.getCurrentFolder().getFolder("b-source").await();
+                    sourceFolder.getFile("project.json").await().setContentsAsString(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("b")
+                            .setJava(ProjectJSONJava.create()
+                                .setDependencies(Iterable.create(
+                                    ProjectSignature.create("me", "a", "1"),
+                                    ProjectSignature.create("you", "stuff", "7.3.1"))))
+                            .toString()).await();
+
+                    test.assertTrue(QubPublishDependentsUpdate.updateProjectJson(qubFolder, sourceFolder, Iterable.create("me/a")).await());
+
+                    final ProjectJSON projectJson = ProjectJSON.parse(sourceFolder.getFile("project.json").await()).await();
+                    test.assertNull(projectJson.getVersion());
+                    test.assertEqual(
+                        Iterable.create(
+                            ProjectSignature.create("me", "a", "2"),
+                            ProjectSignature.create("you", "stuff", "7.3.1")),
+                        projectJson.getJava().getDependencies());
+                });
+
+                runner.test("with explicit version that is already published",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "2").await().create().await();
+                    qubFolder.getProjectVersionFolder("me", "b", "4").await().create().await();
+
+                    final Folder sourceFolder = process.getCurrentFolder().getFolder("b-source").await();
+                    sourceFolder.getFile("project.json").await().setContentsAsString(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("b")
+                            .setVersion("4")
+                            .setJava(ProjectJSONJava.create()
+                                .setDependencies(Iterable.create(ProjectSignature.create("me", "a", "2"))))
+                            .toString()).await();
+
+                    test.assertTrue(QubPublishDependentsUpdate.updateProjectJson(qubFolder, sourceFolder, Iterable.create("me/a")).await());
+
+                    final ProjectJSON projectJson = ProjectJSON.parse(sourceFolder.getFile("project.json").await()).await();
+                    test.assertEqual(VersionNumber.create().setMajor(5), projectJson.getVersion());
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "a", "2")),
+                        projectJson.getJava().getDependencies());
+                });
+
+                runner.test("with nothing to update",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "2").await().create().await();
+
+                    final Folder sourceFolder = process.getCurrentFolder().getFolder("b-source").await();
+                    final String projectJsonText = ProjectJSON.create()
+                        .setPublisher("me")
+                        .setProject("b")
+                        .setJava(ProjectJSONJava.create()
+                            .setDependencies(Iterable.create(ProjectSignature.create("me", "a", "2"))))
+                        .toString();
+                    sourceFolder.getFile("project.json").await().setContentsAsString(projectJsonText).await();
+
+                    test.assertFalse(QubPublishDependentsUpdate.updateProjectJson(qubFolder, sourceFolder, Iterable.create("me/a")).await());
+                    test.assertEqual(projectJsonText, sourceFolder.getFile("project.json").await().getContentsAsString().await());
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package qub;
+
+public interface QubPublishFileLockTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishFileLock.class, () ->
+        {
+            runner.testGroup("getLockFile(File)", () ->
+            {
+                runner.test("with null file", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishFileLock.getLockFile(null),
+                        new PreConditionFailure("file cannot be null."));
+                });
+
+                runner.test("with file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder folder = process.getCurrentFolder();
+                    final File file = folder.getFile("latest.json").await();
+                    test.assertEqual(folder.getFile("latest.json.lock").await(), QubPublishFileLock.getLockFile(file).await());
+                });
+            });
+
+            runner.testGroup("acquire(File)", () ->
+            {
+                runner.test("with null lockFile", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishFileLock.acquire(null),
+                        new PreConditionFailure("lockFile cannot be null."));
+                });
+
+                runner.test("with unlocked file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File lockFile = process.getCurrentFolder().getFile("latest.json.lock").await();
+                    final QubPublishFileLock lock = QubPublishFileLock.acquire(lockFile).await();
+                    test.assertSame(lockFile, lock.getLockFile());
+                    test.assertFalse(lock.isDisposed());
+
+                    test.assertTrue(lock.dispose().await());
+                    test.assertTrue(lock.isDisposed());
+                    test.assertFalse(lock.dispose().await());
+
+                    try (final QubPublishFileLock lock2 = QubPublishFileLock.acquire(lockFile).await())
+                    {
+                        test.assertFalse(lock2.isDisposed());
+                    }
+                });
+
+                runner.test("with file locked by another thread",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File lockFile = process.getCurrentFolder().getFile("latest.json.lock").await();
+                    final java.util.concurrent.CountDownLatch acquired = new java.util.concurrent.CountDownLatch(1);
+                    final QubPublishFileLock lock = QubPublishFileLock.acquire(lockFile).await();
+                    final Thread thread = new Thread(() ->
+                    {
+                        try (final QubPublishFileLock lock2 = QubPublishFileLock.acquire(lockFile).await())
+                        {
+                            acquired.countDown();
+                        }
+                    });
+                    thread.start();
+                    try
+                    {
+                        test.assertFalse(acquired.await(100, java.util.concurrent.TimeUnit.MILLISECONDS));
+
+                        lock.dispose().await();
+                        test.assertTrue(acquired.await(10, java.util.concurrent.TimeUnit.SECONDS));
+                        thread.join();
+                    }
+                    catch (InterruptedException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,334 @@
+package qub;
+
+public interface QubPublishFilesTests
+{
+    /**
+     * Run the provided action with a new empty folder on the local Java file system, and then
+     * delete the folder.
+     */
+    static void withTemporaryFolder(Action1<Folder> action)
+    {
+        PreCondition.assertNotNull(action, "action");
+
+        final java.nio.file.Path temporaryPath;
+        try
+        {
+            temporaryPath = java.nio.file.Files.createTempDirectory("qub-publish-tests");
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        final Folder temporaryFolder = JavaFileSystem.create().getFolder(temporaryPath.toString()).await();
+        try
+        {
+            action.run(temporaryFolder);
+        }
+        finally
+        {
+            temporaryFolder.delete().catchError().await();
+        }
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishFiles.class, () ->
+        {
+            runner.testGroup("getJavaPath(FileSystemEntry)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishFiles.getJavaPath(null),
+                        new PreConditionFailure("entry cannot be null."));
+                });
+
+                runner.test("with in-memory file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    test.assertNull(QubPublishFiles.getJavaPath(process.getCurrentFolder().getFile("abc.txt").await()));
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("abc.txt").await();
+                        file.setContentsAsString("abc").await();
+                        final java.nio.file.Path filePath = QubPublishFiles.getJavaPath(file);
+                        test.assertEqual(java.nio.file.Paths.get(temporaryFolder.toString()).resolve("abc.txt"), filePath);
+                        test.assertTrue(java.nio.file.Files.isRegularFile(filePath));
+                    });
+                });
+            });
+
+            runner.testGroup("toHexString(byte[])", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishFiles.toHexString(null),
+                        new PreConditionFailure("digest cannot be null."));
+                });
+
+                runner.test("with empty", (Test test) ->
+                {
+                    test.assertEqual("", QubPublishFiles.toHexString(new byte[0]));
+                });
+
+                runner.test("with bytes", (Test test) ->
+                {
+                    test.assertEqual("00017f80ff", QubPublishFiles.toHexString(new byte[] { 0, 1, 127, -128, -1 }));
+                });
+            });
+
+            runner.testGroup("getSHA256(byte[])", () ->
+            {
+                runner.test("with empty", (Test test) ->
+                {
+                    test.assertEqual("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", QubPublishFiles.getSHA256(new byte[0]));
+                });
+
+                runner.test("with \"abc\"", (Test test) ->
+                {
+                    test.assertEqual("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", QubPublishFiles.getSHA256(new byte[] { 97, 98, 99 }));
+                });
+            });
+
+            runner.testGroup("getSHA256(File)", () ->
+            {
+                runner.test("with non-existing file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File file = process.getCurrentFolder().getFile("abc.txt").await();
+                    test.assertThrows(() -> QubPublishFiles.getSHA256(file).await(),
+                        new FileNotFoundException(file));
+                });
+
+                runner.test("with existing file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File file = process.getCurrentFolder().getFile("abc.txt").await();
+                    file.setContentsAsString("abc").await();
+                    test.assertEqual("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", QubPublishFiles.getSHA256(file).await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File missingFile = temporaryFolder.getFile("missing.txt").await();
+                        test.assertThrows(() -> QubPublishFiles.getSHA256(missingFile).await(),
+                            new FileNotFoundException(missingFile));
+
+                        final File emptyFile = temporaryFolder.getFile("empty.txt").await();
+                        emptyFile.setContentsAsString("").await();
+                        test.assertEqual("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", QubPublishFiles.getSHA256(emptyFile).await());
+
+                        final File abcFile = temporaryFolder.getFile("abc.txt").await();
+                        abcFile.setContentsAsString("abc").await();
+                        test.assertEqual("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", QubPublishFiles.getSHA256(abcFile).await());
+
+                        final byte[] largeContents = new byte[3 * 1024 * 1024 + 7];
+                        for (int i = 0; i < largeContents.length; ++i)
+                        {
+                            largeContents[i] = (byte)i;
+                        }
+                        final File largeFile = temporaryFolder.getFile("large.bin").await();
+                        largeFile.setContents(largeContents).await();
+                        test.assertEqual(QubPublishFiles.getSHA256(largeContents), QubPublishFiles.getSHA256(largeFile).await());
+
+                        // Hashing a file doesn't keep it open, so it can be replaced and deleted.
+                        largeFile.setContentsAsString("abc").await();
+                        test.assertEqual("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", QubPublishFiles.getSHA256(largeFile).await());
+                        largeFile.delete().await();
+                        test.assertFalse(largeFile.exists().await());
+                    });
+                });
+            });
+
+            runner.testGroup("getByteCount(Folder)", () ->
+            {
+                runner.test("with non-existing folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder folder = process.getCurrentFolder().getFolder("folder").await();
+                    test.assertThrows(() -> QubPublishFiles.getByteCount(folder).await(),
+                        new FolderNotFoundException(folder));
+                });
+
+                runner.test("with nested files",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder folder = process.getCurrentFolder().getFolder("folder").await();
+                    folder.getFile("abc.txt").await().setContentsAsString("abc").await();
+                    folder.getFile("sub/de.txt").await().setContentsAsString("de").await();
+                    folder.getFolder("empty").await().create().await();
+                    test.assertEqual(5L, QubPublishFiles.getByteCount(folder).await());
+                });
+
+                runner.test("with hard-linked file on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final Folder folder = temporaryFolder.getFolder("folder").await();
+                        final File abcFile = folder.getFile("abc.txt").await();
+                        abcFile.setContentsAsString("abc").await();
+                        folder.getFile("de.txt").await().setContentsAsString("de").await();
+                        try
+                        {
+                            java.nio.file.Files.createLink(
+                                QubPublishFiles.getJavaPath(temporaryFolder.getFile("linked.txt").await()),
+                                QubPublishFiles.getJavaPath(abcFile));
+                            test.assertEqual(
+                                QubPublishFiles.hasLinkCounts(QubPublishFiles.getJavaPath(folder)) ? 2L : 5L,
+                                QubPublishFiles.getByteCount(folder).await());
+                        }
+                        catch (java.io.IOException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    });
+                });
+            });
+
+            runner.testGroup("getByteCount(File)", () ->
+            {
+                runner.test("with non-existing file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File file = process.getCurrentFolder().getFile("abc.txt").await();
+                    test.assertThrows(() -> QubPublishFiles.getByteCount(file).await(),
+                        new FileNotFoundException(file));
+                });
+
+                runner.test("with existing file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File file = process.getCurrentFolder().getFile("abc.txt").await();
+                    file.setContentsAsString("abc").await();
+                    test.assertEqual(3L, QubPublishFiles.getByteCount(file).await());
+                });
+            });
+
+            runner.testGroup("transfer(java.nio.file.Path,java.nio.file.Path)", () ->
+            {
+                runner.test("with null source", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishFiles.transfer(null, java.nio.file.Paths.get("target")),
+                        new PreConditionFailure("source cannot be null."));
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File sourceFile = temporaryFolder.getFile("source/a.jar").await();
+                        final byte[] contents = new byte[256 * 1024 + 3];
+                        for (int i = 0; i < contents.length; ++i)
+                        {
+                            contents[i] = (byte)(i * 31);
+                        }
+                        sourceFile.setContents(contents).await();
+                        final File targetFile = temporaryFolder.getFile("target/nested/a.jar").await();
+                        final File missingFile = temporaryFolder.getFile("source/missing.jar").await();
+                        try
+                        {
+                            QubPublishFiles.transfer(QubPublishFiles.getJavaPath(sourceFile), QubPublishFiles.getJavaPath(targetFile));
+                            test.assertEqual(contents, targetFile.getContents().await());
+
+                            // A longer existing target is truncated to the source's length.
+                            targetFile.setContents(new byte[contents.length * 2]).await();
+                            QubPublishFiles.transfer(QubPublishFiles.getJavaPath(sourceFile), QubPublishFiles.getJavaPath(targetFile));
+                            test.assertEqual(contents, targetFile.getContents().await());
+
+                            boolean missingSourceThrew = false;
+                            try
+                            {
+                                QubPublishFiles.transfer(QubPublishFiles.getJavaPath(missingFile), QubPublishFiles.getJavaPath(targetFile));
+                            }
+                            catch (java.nio.file.NoSuchFileException error)
+                            {
+                                missingSourceThrew = true;
+                            }
+                            test.assertTrue(missingSourceThrew);
+                            test.assertEqual(contents, targetFile.getContents().await());
+                        }
+                        catch (java.io.IOException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    });
+                });
+            });
+
+            runner.testGroup("setContentsAtomically(File,String)", () ->
+            {
+                runner.test("with in-memory file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File file = process.getCurrentFolder().getFile("a/b.json").await();
+                    QubPublishFiles.setContentsAtomically(file, "{}").await();
+                    test.assertEqual("{}", file.getContentsAsString().await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("a/b.json").await();
+                        QubPublishFiles.setContentsAtomically(file, "{\"version\":\"1\"}").await();
+                        test.assertEqual("{\"version\":\"1\"}", file.getContentsAsString().await());
+
+                        QubPublishFiles.setContentsAtomically(file, "{}").await();
+                        test.assertEqual("{}", file.getContentsAsString().await());
+                        test.assertEqual(Iterable.create(file), temporaryFolder.getFilesRecursively().await());
+                    });
+                });
+            });
+
+            runner.testGroup("setPrivateContents(File,String)", () ->
+            {
+                runner.test("with in-memory file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final File file = process.getCurrentFolder().getFile("a/b.token").await();
+                    QubPublishFiles.setPrivateContents(file, "abc").await();
+                    test.assertEqual("abc", file.getContentsAsString().await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File file = temporaryFolder.getFile("a/b.token").await();
+                        file.setContentsAsString("old").await();
+                        QubPublishFiles.setPrivateContents(file, "abc").await();
+                        test.assertEqual("abc", file.getContentsAsString().await());
+                        test.assertEqual(Iterable.create(file), temporaryFolder.getFilesRecursively().await());
+
+                        try
+                        {
+                            final java.nio.file.Path path = QubPublishFiles.getJavaPath(file);
+                            if (java.nio.file.Files.getFileStore(path).supportsFileAttributeView("posix"))
+                            {
+                                test.assertEqual("rw-------", java.nio.file.attribute.PosixFilePermissions.toString(java.nio.file.Files.getPosixFilePermissions(path)));
+                            }
+                        }
+                        catch (java.io.IOException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    });
+                });
+            });
+        });
+    }
+}
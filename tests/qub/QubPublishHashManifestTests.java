@@ -0,0 +1,95 @@
+package qub;
+
+public interface QubPublishHashManifestTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishHashManifest.class, () ->
+        {
+            runner.test("create()", (Test test) ->
+            {
+                final QubPublishHashManifest hashManifest = QubPublishHashManifest.create();
+                test.assertEqual(Iterable.create(), hashManifest.getFileNames());
+                test.assertEqual("{\"files\":[]}", hashManifest.toString());
+            });
+
+            runner.testGroup("set(String,String)", () ->
+            {
+                runner.test("with null fileName", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishHashManifest.create().set(null, "abc"),
+                        new PreConditionFailure("fileName cannot be null."));
+                });
+
+                runner.test("with empty sha256", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishHashManifest.create().set("a.jar", ""),
+                        new PreConditionFailure("sha256 cannot be empty."));
+                });
+
+                runner.test("with new and existing file names", (Test test) ->
+                {
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.create()
+                        .set("b.jar", "1")
+                        .set("a.jar", "2")
+                        .set("b.jar", "3");
+                    test.assertEqual(Iterable.create("b.jar", "a.jar"), hashManifest.getFileNames());
+                    test.assertEqual("3", hashManifest.getHash("b.jar"));
+                    test.assertEqual("2", hashManifest.getHash("a.jar"));
+                    test.assertNull(hashManifest.getHash("c.jar"));
+                });
+            });
+
+            runner.testGroup("toString()", () ->
+            {
+                runner.test("with files added out of order", (Test test) ->
+                {
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.create()
+                        .set("project.json", "1")
+                        .set("a.jar", "2");
+                    test.assertEqual("{\"files\":[{\"name\":\"a.jar\",\"sha256\":\"2\"},{\"name\":\"project.json\",\"sha256\":\"1\"}]}", hashManifest.toString());
+                });
+            });
+
+            runner.testGroup("parse(JSONObject)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishHashManifest.parse((JSONObject)null),
+                        new PreConditionFailure("json cannot be null."));
+                });
+
+                runner.test("with toJson() output", (Test test) ->
+                {
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.parse(QubPublishHashManifest.create()
+                        .set("a.jar", "2")
+                        .set("project.json", "1")
+                        .toJson())
+                        .await();
+                    test.assertEqual(Iterable.create("a.jar", "project.json"), hashManifest.getFileNames());
+                    test.assertEqual("2", hashManifest.getHash("a.jar"));
+                    test.assertEqual("1", hashManifest.getHash("project.json"));
+                });
+            });
+
+            runner.testGroup("save(Folder)", () ->
+            {
+                runner.test("with version folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectVersionFolder versionFolder = process.getQubFolder().await()
+                        .getProjectVersionFolder("me", "a", "1").await();
+                    QubPublishHashManifest.create()
+                        .set("a.jar", "2")
+                        .save(versionFolder)
+                        .await();
+
+                    final File manifestFile = QubPublishHashManifest.getManifestFile(versionFolder).await();
+                    test.assertEqual(versionFolder.getFile("project.hashes.json").await(), manifestFile);
+                    test.assertEqual("2", QubPublishHashManifest.parse(manifestFile).await().getHash("a.jar"));
+                });
+            });
+        });
+    }
+}
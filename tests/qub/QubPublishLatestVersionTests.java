@@ -0,0 +1,195 @@
+package qub;
+
+public interface QubPublishLatestVersionTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishLatestVersion.class, () ->
+        {
+            runner.testGroup("get(QubProjectFolder)", () ->
+            {
+                runner.test("with null projectFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLatestVersion.get(null),
+                        new PreConditionFailure("projectFolder cannot be null."));
+                });
+
+                runner.test("with no pointer file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    projectFolder.getProjectVersionFolder("10").await().create().await();
+
+                    final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).await();
+                    test.assertEqual(projectFolder.getProjectVersionFolder("10").await(), latestVersionFolder);
+                    test.assertFalse(QubPublishLatestVersion.getPointerFile(projectFolder).await().exists().await());
+                    test.assertFalse(projectFolder.getFile(QubPublishLatestVersion.fileName + ".lock").await().exists().await());
+                });
+
+                runner.test("with pointer file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    projectFolder.getProjectVersionFolder("10").await().create().await();
+                    QubPublishLatestVersion.getPointerFile(projectFolder).await()
+                        .setContentsAsString("{\"version\":\"2\"}")
+                        .await();
+
+                    final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).await();
+                    test.assertEqual(projectFolder.getProjectVersionFolder("2").await(), latestVersionFolder);
+                });
+
+                runner.test("with pointer file to deleted version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    QubPublishLatestVersion.getPointerFile(projectFolder).await()
+                        .setContentsAsString("{\"version\":\"3\"}")
+                        .await();
+
+                    final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).await();
+                    test.assertEqual(projectFolder.getProjectVersionFolder("2").await(), latestVersionFolder);
+                    test.assertEqual(
+                        "{\"version\":\"3\"}",
+                        QubPublishLatestVersion.getPointerFile(projectFolder).await().getContentsAsString().await());
+                });
+
+                runner.test("with invalid pointer file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    QubPublishLatestVersion.getPointerFile(projectFolder).await()
+                        .setContentsAsString("not json")
+                        .await();
+
+                    final QubProjectVersionFolder latestVersionFolder = QubPublishLatestVersion.get(projectFolder).await();
+                    test.assertEqual(projectFolder.getProjectVersionFolder("2").await(), latestVersionFolder);
+                });
+            });
+
+            runner.testGroup("set(QubProjectFolder,VersionNumber)", () ->
+            {
+                runner.test("with older version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("1").await().create().await();
+                    projectFolder.getProjectVersionFolder("5").await().create().await();
+
+                    QubPublishLatestVersion.set(projectFolder, VersionNumber.create().setMajor(5)).await();
+                    QubPublishLatestVersion.set(projectFolder, VersionNumber.create().setMajor(1)).await();
+                    test.assertEqual(
+                        "{\"version\":\"5\"}",
+                        QubPublishLatestVersion.getPointerFile(projectFolder).await().getContentsAsString().await());
+                });
+
+                runner.test("with concurrent publishes",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    final List<Thread> threads = List.create();
+                    for (int major = 1; major <= 10; ++major)
+                    {
+                        final VersionNumber version = VersionNumber.create().setMajor(major);
+                        projectFolder.getProjectVersionFolder(version).await().create().await();
+                        threads.add(new Thread(() -> QubPublishLatestVersion.set(projectFolder, version).await()));
+                    }
+                    for (final Thread thread : threads)
+                    {
+                        thread.start();
+                    }
+                    for (final Thread thread : threads)
+                    {
+                        try
+                        {
+                            thread.join();
+                        }
+                        catch (InterruptedException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    }
+
+                    test.assertEqual(
+                        "{\"version\":\"10\"}",
+                        QubPublishLatestVersion.getPointerFile(projectFolder).await().getContentsAsString().await());
+                });
+            });
+
+            runner.testGroup("repair(QubProjectFolder)", () ->
+            {
+                runner.test("with null projectFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLatestVersion.repair(null),
+                        new PreConditionFailure("projectFolder cannot be null."));
+                });
+
+                runner.test("with no pointer file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    projectFolder.getProjectVersionFolder("10").await().create().await();
+
+                    test.assertEqual(projectFolder.getProjectVersionFolder("10").await(), QubPublishLatestVersion.repair(projectFolder).await());
+                    test.assertEqual(
+                        "{\"version\":\"10\"}",
+                        QubPublishLatestVersion.getPointerFile(projectFolder).await().getContentsAsString().await());
+                });
+
+                runner.test("with pointer file to deleted version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    QubPublishLatestVersion.getPointerFile(projectFolder).await()
+                        .setContentsAsString("{\"version\":\"3\"}")
+                        .await();
+
+                    test.assertEqual(projectFolder.getProjectVersionFolder("2").await(), QubPublishLatestVersion.repair(projectFolder).await());
+                    test.assertEqual(
+                        "{\"version\":\"2\"}",
+                        QubPublishLatestVersion.getPointerFile(projectFolder).await().getContentsAsString().await());
+                });
+
+                runner.test("with pointer file to older version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder projectFolder = qubFolder.getProjectFolder("me", "my-project").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    projectFolder.getProjectVersionFolder("3").await().create().await();
+                    QubPublishLatestVersion.getPointerFile(projectFolder).await()
+                        .setContentsAsString("{\"version\":\"2\"}")
+                        .await();
+
+                    test.assertEqual(projectFolder.getProjectVersionFolder("3").await(), QubPublishLatestVersion.repair(projectFolder).await());
+                    test.assertEqual(
+                        "{\"version\":\"3\"}",
+                        QubPublishLatestVersion.getPointerFile(projectFolder).await().getContentsAsString().await());
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package qub;
+
+public interface QubPublishLauncherJarTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishLauncherJar.class, () ->
+        {
+            runner.testGroup("getFileName(String)", () ->
+            {
+                runner.test("with null project", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLauncherJar.getFileName(null),
+                        new PreConditionFailure("project cannot be null."));
+                });
+
+                runner.test("with empty project", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLauncherJar.getFileName(""),
+                        new PreConditionFailure("project cannot be empty."));
+                });
+
+                runner.test("with non-empty project", (Test test) ->
+                {
+                    test.assertEqual("my-project.launcher.jar", QubPublishLauncherJar.getFileName("my-project"));
+                });
+            });
+
+            runner.testGroup("getClassPathAttribute(QubFolder,QubProjectVersionFolder,Iterable<String>)", () ->
+            {
+                runner.test("with no classpath entries",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    test.assertEqual("", QubPublishLauncherJar.getClassPathAttribute(qubFolder, versionFolder, Iterable.create()));
+                });
+
+                runner.test("with classpath entries",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    test.assertEqual(
+                        "../../../../me/my-project/versions/1/my-project.jar ../../../../you/stuff/versions/7.3.1/stuff.jar",
+                        QubPublishLauncherJar.getClassPathAttribute(
+                            qubFolder,
+                            versionFolder,
+                            Iterable.create(
+                                "me/my-project/versions/1/my-project.jar",
+                                "you/stuff/versions/7.3.1/stuff.jar")));
+                });
+
+                runner.test("with a classpath entry that contains a space",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    test.assertEqual(
+                        "../../../../you/my%20stuff/versions/2/my%20stuff.jar",
+                        QubPublishLauncherJar.getClassPathAttribute(
+                            qubFolder,
+                            versionFolder,
+                            Iterable.create("you/my stuff/versions/2/my stuff.jar")));
+                });
+            });
+
+            runner.testGroup("getBytes(String,String)", () ->
+            {
+                runner.test("with null mainClass", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLauncherJar.getBytes(null, ""),
+                        new PreConditionFailure("mainClass cannot be null."));
+                });
+
+                runner.test("with null classPathAttribute", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLauncherJar.getBytes("A", null),
+                        new PreConditionFailure("classPathAttribute cannot be null."));
+                });
+
+                runner.test("with valid arguments", (Test test) ->
+                {
+                    final byte[] bytes = QubPublishLauncherJar.getBytes("A", "a.jar b.jar");
+                    try (final java.util.jar.JarInputStream jarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(bytes)))
+                    {
+                        final java.util.jar.Attributes attributes = jarStream.getManifest().getMainAttributes();
+                        test.assertEqual("1.0", attributes.getValue(java.util.jar.Attributes.Name.MANIFEST_VERSION));
+                        test.assertEqual("A", attributes.getValue(java.util.jar.Attributes.Name.MAIN_CLASS));
+                        test.assertEqual("a.jar b.jar", attributes.getValue(java.util.jar.Attributes.Name.CLASS_PATH));
+                        test.assertNull(jarStream.getNextJarEntry());
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+            });
+        });
+    }
+}
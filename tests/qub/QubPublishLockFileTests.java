@@ -0,0 +1,123 @@
+package qub;
+
+public interface QubPublishLockFileTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishLockFile.class, () ->
+        {
+            runner.test("create()", (Test test) ->
+            {
+                final QubPublishLockFile lockFile = QubPublishLockFile.create();
+                test.assertEqual(Iterable.create(), lockFile.getDependencies());
+                test.assertEqual(Iterable.create(), lockFile.getCompiledSourcesPaths());
+                test.assertEqual("{\"dependencies\":[]}", lockFile.toString());
+            });
+
+            runner.testGroup("resolve(QubFolder,Iterable<ProjectSignature>)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishLockFile.resolve(null, Iterable.create()),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with null dependencies",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishLockFile lockFile = QubPublishLockFile.resolve(qubFolder, null).await();
+                    test.assertEqual(Iterable.create(), lockFile.getDependencies());
+                });
+
+                runner.test("with dependencies without project.json files",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishLockFile lockFile = QubPublishLockFile.resolve(qubFolder,
+                        Iterable.create(
+                            ProjectSignature.create("me", "my-other-project", "5"),
+                            ProjectSignature.create("you", "stuff", "7.3.1")))
+                        .await();
+                    test.assertEqual(
+                        Iterable.create(
+                            ProjectSignature.create("you", "stuff", "7.3.1"),
+                            ProjectSignature.create("me", "my-other-project", "5")),
+                        lockFile.getDependencies());
+                    test.assertEqual(
+                        Iterable.create(
+                            "you/stuff/versions/7.3.1/stuff.jar",
+                            "me/my-other-project/versions/5/my-other-project.jar"),
+                        lockFile.getCompiledSourcesPaths());
+                });
+
+                runner.test("with transitive dependency in project.json",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "my-other-project", "5").await()
+                        .getProjectJSONFile().await()
+                        .setContentsAsString(
+                            ProjectJSON.create()
+                                .setPublisher("me")
+                                .setProject("my-other-project")
+                                .setVersion("5")
+                                .setJava(ProjectJSONJava.create()
+                                    .setDependencies(Iterable.create(ProjectSignature.create("you", "stuff", "7.3.1"))))
+                                .toString())
+                        .await();
+
+                    final QubPublishLockFile lockFile = QubPublishLockFile.resolve(qubFolder,
+                        Iterable.create(ProjectSignature.create("me", "my-other-project", "5")))
+                        .await();
+                    test.assertEqual(
+                        Iterable.create(
+                            ProjectSignature.create("me", "my-other-project", "5"),
+                            ProjectSignature.create("you", "stuff", "7.3.1")),
+                        lockFile.getDependencies());
+                });
+
+                runner.test("with transitive dependency in lock file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder dependencyVersionFolder = qubFolder.getProjectVersionFolder("me", "my-other-project", "5").await();
+                    QubPublishLockFile.create()
+                        .add(ProjectSignature.create("you", "stuff", "7.3.1"), "you/stuff/versions/7.3.1/stuff.jar")
+                        .save(dependencyVersionFolder)
+                        .await();
+
+                    final QubPublishLockFile lockFile = QubPublishLockFile.resolve(qubFolder,
+                        Iterable.create(ProjectSignature.create("me", "my-other-project", "5")))
+                        .await();
+                    test.assertEqual(
+                        Iterable.create(
+                            ProjectSignature.create("me", "my-other-project", "5"),
+                            ProjectSignature.create("you", "stuff", "7.3.1")),
+                        lockFile.getDependencies());
+                    test.assertEqual(
+                        Iterable.create(
+                            "me/my-other-project/versions/5/my-other-project.jar",
+                            "you/stuff/versions/7.3.1/stuff.jar"),
+                        lockFile.getCompiledSourcesPaths());
+                });
+            });
+
+            runner.testGroup("parse(JSONObject)", () ->
+            {
+                runner.test("with toJson() result", (Test test) ->
+                {
+                    final QubPublishLockFile lockFile = QubPublishLockFile.create()
+                        .add(ProjectSignature.create("you", "stuff", "7.3.1"), "you/stuff/versions/7.3.1/stuff.jar");
+                    final QubPublishLockFile parsedLockFile = QubPublishLockFile.parse(lockFile.toJson()).await();
+                    test.assertEqual(lockFile.getDependencies(), parsedLockFile.getDependencies());
+                    test.assertEqual(lockFile.getCompiledSourcesPaths(), parsedLockFile.getCompiledSourcesPaths());
+                });
+            });
+        });
+    }
+}
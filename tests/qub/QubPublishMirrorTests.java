@@ -0,0 +1,282 @@
+package qub;
+
+public interface QubPublishMirrorTests
+{
+    /**
+     * Create a published version folder of me/a that contains an a.jar file with the provided
+     * contents, and point the project's latest-version pointer at it.
+     */
+    static QubProjectVersionFolder createVersionFolder(QubFolder qubFolder, int version, String jarContents)
+    {
+        final QubProjectVersionFolder result = qubFolder.getProjectVersionFolder("me", "a", Integer.toString(version)).await();
+        result.getFile("a.jar").await().setContentsAsString(jarContents).await();
+        result.getProjectJSONFile().await().setContentsAsString("{\"publisher\":\"me\",\"project\":\"a\",\"version\":\"" + version + "\"}").await();
+        QubPublishLatestVersion.set(qubFolder.getProjectFolder("me", "a").await(), VersionNumber.create().setMajor(version)).await();
+        return result;
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishMirror.class, () ->
+        {
+            runner.testGroup("create(QubFolder,Folder)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishMirror.create(null, null),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with null mirrorFolder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    test.assertThrows(() -> QubPublishMirror.create(process.getQubFolder().await(), null),
+                        new PreConditionFailure("mirrorFolder cannot be null."));
+                });
+
+                runner.test("with valid arguments",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+                    final QubPublishMirror mirror = QubPublishMirror.create(qubFolder, mirrorFolder);
+                    test.assertSame(qubFolder, mirror.getQubFolder());
+                    test.assertSame(mirrorFolder, mirror.getMirrorFolder());
+                    test.assertEqual(QubPublishDelta.defaultBlockSize, mirror.getBlockSize());
+                    test.assertSame(mirror, mirror.setBlockSize(4));
+                    test.assertEqual(4, mirror.getBlockSize());
+                });
+            });
+
+            runner.testGroup("getPreviousVersionFolder(QubProjectVersionFolder)", () ->
+            {
+                runner.test("with empty mirror",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abc");
+                    final QubPublishMirror mirror = QubPublishMirror.create(qubFolder, process.getFileSystem().getFolder("/mirror/").await());
+                    test.assertNull(mirror.getPreviousVersionFolder(versionFolder).await());
+                });
+
+                runner.test("with version folders and no pointer",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 3, "abc");
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+                    for (final String version : Iterable.create("2", "10", "3"))
+                    {
+                        mirrorFolder.getFolder("me/a/versions/" + version).await().create().await();
+                    }
+                    final QubPublishMirror mirror = QubPublishMirror.create(qubFolder, mirrorFolder);
+                    test.assertEqual(mirrorFolder.getFolder("me/a/versions/10").await(), mirror.getPreviousVersionFolder(versionFolder).await());
+                });
+
+                runner.test("with pointer",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 3, "abc");
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+                    mirrorFolder.getFolder("me/a/versions/1").await().create().await();
+                    mirrorFolder.getFolder("me/a/versions/2").await().create().await();
+                    mirrorFolder.getFile("me/a/latest.json").await().setContentsAsString("{\"version\":\"1\"}").await();
+                    final QubPublishMirror mirror = QubPublishMirror.create(qubFolder, mirrorFolder);
+                    test.assertEqual(mirrorFolder.getFolder("me/a/versions/1").await(), mirror.getPreviousVersionFolder(versionFolder).await());
+                });
+            });
+
+            runner.testGroup("sync(QubProjectVersionFolder,File,QubPublishWorkers)", () ->
+            {
+                runner.test("with empty mirror",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abcdefgh");
+                    final File dependencyJarFile = qubFolder.getCompiledSourcesFile("me", "b", "5").await();
+                    dependencyJarFile.setContentsAsString("b").await();
+                    final File shortcutFile = qubFolder.getFile("a.cmd").await();
+                    shortcutFile.setContentsAsString("@echo OFF\njava -classpath %~dp0me/a/versions/1/a.jar;%~dp0" + dependencyJarFile.relativeTo(qubFolder) + " me.a.Program %*\n").await();
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+
+                    final QubPublishMirror.Summary summary;
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        summary = QubPublishMirror.create(qubFolder, mirrorFolder).setBlockSize(4)
+                            .sync(versionFolder, shortcutFile, workers)
+                            .await();
+                    }
+                    test.assertEqual(5, summary.getFileCount());
+                    test.assertEqual(summary.getByteCount(), summary.getWrittenByteCount());
+
+                    for (final File file : Iterable.create(
+                        versionFolder.getFile("a.jar").await(),
+                        versionFolder.getProjectJSONFile().await(),
+                        dependencyJarFile,
+                        qubFolder.getFile("me/a/latest.json").await(),
+                        shortcutFile))
+                    {
+                        test.assertEqual(
+                            file.getContentsAsString().await(),
+                            mirrorFolder.getFile(file.relativeTo(qubFolder)).await().getContentsAsString().await());
+                    }
+                });
+
+                runner.test("with launcher jar",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abcdefgh");
+                    versionFolder.getFile("a.launcher.jar").await().setContentsAsString("launcher").await();
+                    final QubProjectVersionFolder dependencyVersionFolder = qubFolder.getProjectVersionFolder("me", "b", "5").await();
+                    final File dependencyJarFile = dependencyVersionFolder.getCompiledSourcesFile().await();
+                    dependencyJarFile.setContentsAsString("b").await();
+                    QubPublishLockFile.create()
+                        .add(dependencyVersionFolder.getProjectSignature().await(), dependencyJarFile.relativeTo(qubFolder).toString())
+                        .save(versionFolder)
+                        .await();
+                    final File shortcutFile = qubFolder.getFile("a.cmd").await();
+                    shortcutFile.setContentsAsString("@echo OFF\njava -jar %~dp0me/a/versions/1/a.launcher.jar %*\n").await();
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        QubPublishMirror.create(qubFolder, mirrorFolder)
+                            .sync(versionFolder, shortcutFile, workers)
+                            .await();
+                    }
+                    test.assertEqual("launcher", mirrorFolder.getFile("me/a/versions/1/a.launcher.jar").await().getContentsAsString().await());
+                    test.assertEqual("b", mirrorFolder.getFile(dependencyJarFile.relativeTo(qubFolder)).await().getContentsAsString().await());
+                });
+
+                runner.test("with runtime image",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abcdefgh");
+                    final Folder runtimeImageFolder = qubFolder.getFolder("qub/publish-java/data/runtimes/abc").await();
+                    runtimeImageFolder.getFile("bin/java.exe").await().setContentsAsString("java.exe").await();
+                    runtimeImageFolder.getFile("bin/java").await().setContentsAsString("java").await();
+                    runtimeImageFolder.getFile("lib/modules").await().setContentsAsString("modules").await();
+                    final File shortcutFile = qubFolder.getFile("a.cmd").await();
+                    shortcutFile.setContentsAsString("@echo OFF\n%~dp0qub\\publish-java\\data\\runtimes\\abc\\bin\\java -classpath %~dp0me/a/versions/1/a.jar me.a.Program %*\n").await();
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        QubPublishMirror.create(qubFolder, mirrorFolder)
+                            .sync(versionFolder, shortcutFile, workers)
+                            .await();
+                    }
+                    for (final String runtimeImagePath : Iterable.create("bin/java.exe", "bin/java", "lib/modules"))
+                    {
+                        final File runtimeImageFile = runtimeImageFolder.getFile(runtimeImagePath).await();
+                        test.assertEqual(
+                            runtimeImageFile.getContentsAsString().await(),
+                            mirrorFolder.getFile(runtimeImageFile.relativeTo(qubFolder)).await().getContentsAsString().await());
+                    }
+                });
+
+                runner.test("with shared archive",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abcdefgh");
+                    final File archiveFile = qubFolder.getFile("me/a/archives/1.jsa").await();
+                    archiveFile.setContentsAsString("archive").await();
+                    final File shortcutFile = qubFolder.getFile("a.cmd").await();
+                    shortcutFile.setContentsAsString("@echo OFF\njava -Xlog:cds=off -XX:SharedArchiveFile=%~dp0me/a/archives/1.jsa -classpath %~dp0me/a/versions/1/a.jar me.a.Program %*\n").await();
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        QubPublishMirror.create(qubFolder, mirrorFolder)
+                            .sync(versionFolder, shortcutFile, workers)
+                            .await();
+                    }
+                    test.assertEqual(
+                        "@echo OFF\njava -classpath %~dp0me/a/versions/1/a.jar me.a.Program %*\n",
+                        mirrorFolder.getFile("a.cmd").await().getContentsAsString().await());
+                    test.assertFalse(mirrorFolder.fileExists("me/a/archives/1.jsa").await());
+                });
+
+                runner.test("with previous version in mirror",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final Folder mirrorFolder = process.getFileSystem().getFolder("/mirror/").await();
+                    final QubPublishMirror mirror = QubPublishMirror.create(qubFolder, mirrorFolder).setBlockSize(4);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        final QubProjectVersionFolder version1Folder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abcdefghijklmnop");
+                        mirror.sync(version1Folder, null, workers).await();
+
+                        final QubProjectVersionFolder version2Folder = QubPublishMirrorTests.createVersionFolder(qubFolder, 2, "abcdefghXXXXmnop");
+                        final long projectJsonByteCount = version2Folder.getProjectJSONFile().await().getContents().await().length;
+                        final long pointerByteCount = qubFolder.getFile("me/a/latest.json").await().getContents().await().length;
+                        final QubPublishMirror.Summary summary = mirror.sync(version2Folder, null, workers).await();
+
+                        test.assertEqual(3, summary.getFileCount());
+                        test.assertEqual(16 + projectJsonByteCount + pointerByteCount, summary.getByteCount());
+                        test.assertEqual(4 + projectJsonByteCount + pointerByteCount, summary.getWrittenByteCount());
+                        test.assertEqual("abcdefghXXXXmnop", mirrorFolder.getFile("me/a/versions/2/a.jar").await().getContentsAsString().await());
+                        test.assertEqual("abcdefghijklmnop", mirrorFolder.getFile("me/a/versions/1/a.jar").await().getContentsAsString().await());
+                        test.assertEqual("{\"version\":\"2\"}", mirrorFolder.getFile("me/a/latest.json").await().getContentsAsString().await());
+                    }
+                });
+
+                runner.test("with previous version in mirror on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubFolder qubFolder = QubFolder.get(temporaryFolder.getFolder("qub").await());
+                        final Folder mirrorFolder = temporaryFolder.getFolder("mirror").await();
+                        final QubPublishMirror mirror = QubPublishMirror.create(qubFolder, mirrorFolder).setBlockSize(4);
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                        {
+                            final QubProjectVersionFolder version1Folder = QubPublishMirrorTests.createVersionFolder(qubFolder, 1, "abcdefghijklmnop");
+                            mirror.sync(version1Folder, null, workers).await();
+                            final java.nio.file.Path mirrorJar1Path = QubPublishFiles.getJavaPath(mirrorFolder.getFile("me/a/versions/1/a.jar").await());
+                            test.assertEqual(
+                                java.nio.file.Files.getLastModifiedTime(QubPublishFiles.getJavaPath(version1Folder.getFile("a.jar").await())),
+                                java.nio.file.Files.getLastModifiedTime(mirrorJar1Path));
+
+                            // The mirror's previous jar matches the qub folder's, so only the
+                            // changed block is written.
+                            final QubProjectVersionFolder version2Folder = QubPublishMirrorTests.createVersionFolder(qubFolder, 2, "abcdefghXXXXmnop");
+                            final long projectJsonByteCount = QubPublishFiles.getByteCount(version2Folder.getProjectJSONFile().await()).await();
+                            final long pointerByteCount = QubPublishFiles.getByteCount(qubFolder.getFile("me/a/latest.json").await()).await();
+                            final QubPublishMirror.Summary summary2 = mirror.sync(version2Folder, null, workers).await();
+                            test.assertEqual(4 + projectJsonByteCount + pointerByteCount, summary2.getWrittenByteCount());
+                            test.assertEqual("abcdefghXXXXmnop", mirrorFolder.getFile("me/a/versions/2/a.jar").await().getContentsAsString().await());
+
+                            // The mirror's previous jar was changed in the mirror, so it can't be
+                            // compared without reading it, and the new jar is copied in full.
+                            final java.nio.file.Path mirrorJar2Path = QubPublishFiles.getJavaPath(mirrorFolder.getFile("me/a/versions/2/a.jar").await());
+                            java.nio.file.Files.setLastModifiedTime(mirrorJar2Path, java.nio.file.attribute.FileTime.fromMillis(0));
+                            final QubProjectVersionFolder version3Folder = QubPublishMirrorTests.createVersionFolder(qubFolder, 3, "abcdefghXXXXmnoZ");
+                            final QubPublishMirror.Summary summary3 = mirror.sync(version3Folder, null, workers).await();
+                            test.assertEqual(16 + projectJsonByteCount + pointerByteCount, summary3.getWrittenByteCount());
+                            test.assertEqual("abcdefghXXXXmnoZ", mirrorFolder.getFile("me/a/versions/3/a.jar").await().getContentsAsString().await());
+                        }
+                        catch (java.io.IOException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    });
+                });
+            });
+        });
+    }
+}
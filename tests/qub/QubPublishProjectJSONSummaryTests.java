@@ -0,0 +1,85 @@
+package qub;
+
+public interface QubPublishProjectJSONSummaryTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishProjectJSONSummary.class, () ->
+        {
+            runner.testGroup("parse(String)", () ->
+            {
+                final Action5<String,String,String,String,Iterable<ProjectSignature>> parseTest = (String text, String expectedPublisher, String expectedProject, String expectedVersion, Iterable<ProjectSignature> expectedDependencies) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(text), (Test test) ->
+                    {
+                        final QubPublishProjectJSONSummary summary = QubPublishProjectJSONSummary.parse(text).await();
+                        test.assertEqual(expectedPublisher, summary.getPublisher());
+                        test.assertEqual(expectedProject, summary.getProject());
+                        test.assertEqual(expectedVersion, summary.getVersion());
+                        test.assertEqual(expectedDependencies, summary.getDependencies());
+                    });
+                };
+
+                parseTest.run("{}", null, null, null, Iterable.create());
+                parseTest.run(" { } ", null, null, null, Iterable.create());
+                parseTest.run("{\"publisher\":\"me\",\"project\":\"a\",\"version\":\"1\"}", "me", "a", "1", Iterable.create());
+                parseTest.run("{\"publisher\":\"me\",\"project\":\"a\",\"version\":\"1\",\"java\":{}}", "me", "a", "1", Iterable.create());
+                parseTest.run("{\"publisher\":\"m\\u0065\",\"proj\\u0065ct\":\"a\\\"b\"}", "me", "a\"b", null, Iterable.create());
+                parseTest.run("{\"publisher\":null,\"project\":5,\"version\":[\"1\"]}", null, null, null, Iterable.create());
+                parseTest.run(
+                    "{\"description\":\"x }\",\"tags\":[{\"a\":[1,2]},\"]\"],\"publisher\":\"me\",\"project\":\"a\",\"version\":\"1\",\"java\":{\"mainClass\":\"A\",\"dependencies\":[{\"publisher\":\"you\",\"project\":\"stuff\",\"version\":\"7.3.1\",\"extra\":true},{\"publisher\":\"me\",\"project\":\"b\",\"version\":\"2\"}]}}",
+                    "me", "a", "1",
+                    Iterable.create(
+                        ProjectSignature.create("you", "stuff", "7.3.1"),
+                        ProjectSignature.create("me", "b", "2")));
+                parseTest.run(
+                    "{\"java\":{\"dependencies\":[{\"publisher\":\"you\",\"project\":\"stuff\",\"version\":\"7.3.1\"}]},\"publisher\":\"me\",\"project\":\"a\",\"version\":\"1\"}",
+                    "me", "a", "1",
+                    Iterable.create(ProjectSignature.create("you", "stuff", "7.3.1")));
+
+                // Everything after the needed properties is never read, so trailing garbage doesn't
+                // cause an error.
+                parseTest.run(
+                    "{\"publisher\":\"me\",\"project\":\"a\",\"version\":\"1\",\"java\":{\"dependencies\":[]} garbage",
+                    "me", "a", "1", Iterable.create());
+
+                final Action2<String,Throwable> parseErrorTest = (String text, Throwable expected) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(text), (Test test) ->
+                    {
+                        test.assertThrows(() -> QubPublishProjectJSONSummary.parse(text).await(), expected);
+                    });
+                };
+
+                parseErrorTest.run("", new ParseException("Expected '{' at index 0."));
+                parseErrorTest.run("[]", new ParseException("Expected '{' at index 0."));
+                parseErrorTest.run("{", new ParseException("Expected '\"' at index 1."));
+                parseErrorTest.run("{\"publisher\"", new ParseException("Expected ':' at index 12."));
+                parseErrorTest.run("{\"publisher\":\"me\"", new ParseException("Expected '}' at index 17."));
+                parseErrorTest.run("{\"publisher\":\"me", new ParseException("Expected '\"' at index 16."));
+                parseErrorTest.run("{\"publisher\":}", new ParseException("Expected a value at index 13."));
+            });
+
+            runner.test("parse(File)",
+                (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                (Test test, FakeDesktopProcess process) ->
+            {
+                final File projectJsonFile = process.getCurrentFolder().getFile("project.json").await();
+                final ProjectJSON projectJson = ProjectJSON.create()
+                    .setPublisher("me")
+                    .setProject("my-project")
+                    .setVersion("5")
+                    .setJava(ProjectJSONJava.create()
+                        .setMainClass("A")
+                        .setDependencies(Iterable.create(ProjectSignature.create("you", "stuff", "7.3.1"))));
+                projectJsonFile.setContentsAsString(projectJson.toString()).await();
+
+                final QubPublishProjectJSONSummary summary = QubPublishProjectJSONSummary.parse(projectJsonFile).await();
+                test.assertEqual(projectJson.getPublisher(), summary.getPublisher());
+                test.assertEqual(projectJson.getProject(), summary.getProject());
+                test.assertEqual(projectJson.getVersion().toString(), summary.getVersion());
+                test.assertEqual(projectJson.getJava().getDependencies(), summary.getDependencies());
+            });
+        });
+    }
+}
@@ -0,0 +1,290 @@
+package qub;
+
+public interface QubPublishPruneTests
+{
+    /**
+     * Create a published version folder whose project.json file has the provided dependencies.
+     */
+    static QubProjectVersionFolder createVersionFolder(QubFolder qubFolder, String publisher, String project, String version, ProjectSignature... dependencies)
+    {
+        final JSONArray dependenciesJson = JSONArray.create();
+        for (final ProjectSignature dependency : dependencies)
+        {
+            dependenciesJson.add(JSONObject.create()
+                .setString("publisher", dependency.getPublisher())
+                .setString("project", dependency.getProject())
+                .setString("version", dependency.getVersion().toString()));
+        }
+
+        final QubProjectVersionFolder result = qubFolder.getProjectVersionFolder(publisher, project, version).await();
+        result.getProjectJSONFile().await().setContentsAsString(JSONObject.create()
+            .setString("publisher", publisher)
+            .setString("project", project)
+            .setString("version", version)
+            .setObject("java", JSONObject.create()
+                .setArray("dependencies", dependenciesJson))
+            .toString())
+            .await();
+        return result;
+    }
+
+    /**
+     * Create a qub folder where me/a has versions 1 through 4, me/b has versions 1 and 2, version
+     * 2 of me/b depends on version 1 of me/a, and a shortcut uses version 2 of me/a. When the
+     * newest version of each project is kept, only version 3 of me/a and version 1 of me/b can be
+     * deleted.
+     */
+    static QubFolder createQubFolder(FakeDesktopProcess process)
+    {
+        final QubFolder result = process.getQubFolder().await();
+        for (final String version : Iterable.create("1", "2", "3", "4"))
+        {
+            QubPublishPruneTests.createVersionFolder(result, "me", "a", version);
+        }
+        QubPublishPruneTests.createVersionFolder(result, "me", "b", "1");
+        QubPublishPruneTests.createVersionFolder(result, "me", "b", "2",
+            ProjectSignature.create("me", "a", "1"));
+        result.getFile("a.cmd").await().setContentsAsString(
+            "@echo OFF\n" +
+            "java -classpath %~dp0me/a/versions/2/a.jar me.a.Program %*\n")
+            .await();
+        return result;
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishPrune.class, () ->
+        {
+            runner.testGroup("create(QubFolder,int)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishPrune.create(null, 1),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with 0 keepCount",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    test.assertThrows(() -> QubPublishPrune.create(process.getQubFolder().await(), 0),
+                        new PreConditionFailure("keepCount (0) must be greater than or equal to 1."));
+                });
+
+                runner.test("with 2 keepCount",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishPrune prune = QubPublishPrune.create(qubFolder, 2);
+                    test.assertSame(qubFolder, prune.getQubFolder());
+                    test.assertEqual(2, prune.getKeepCount());
+                    test.assertFalse(prune.getDryRun());
+                    test.assertSame(prune, prune.setDryRun(true));
+                    test.assertTrue(prune.getDryRun());
+                });
+            });
+
+            runner.testGroup("getShortcutPaths(String)", () ->
+            {
+                final Action2<String,Iterable<String>> getShortcutPathsTest = (String shortcutText, Iterable<String> expected) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(shortcutText), (Test test) ->
+                    {
+                        test.assertEqual(expected, QubPublishPrune.getShortcutPaths(shortcutText));
+                    });
+                };
+
+                getShortcutPathsTest.run("", Iterable.create());
+                getShortcutPathsTest.run("java -classpath a.jar me.a.Program %*", Iterable.create());
+                getShortcutPathsTest.run(
+                    "java -classpath %~dp0me/a/versions/2/a.jar;%~dp0me/b/versions/1/b.jar me.a.Program %*",
+                    Iterable.create("me/a/versions/2/a.jar", "me/b/versions/1/b.jar"));
+                getShortcutPathsTest.run(
+                    "%~dp0qub\\publish-java\\data\\runtimes\\abc\\bin\\java -XX:SharedArchiveFile=%~dp0me/a/versions/2/a.jsa -jar %~dp0me/a/versions/2/a.launcher.jar %*",
+                    Iterable.create("qub/publish-java/data/runtimes/abc/bin/java", "me/a/versions/2/a.jsa", "me/a/versions/2/a.launcher.jar"));
+            });
+
+            runner.testGroup("getVersionFoldersToDelete(QubPublishWorkers)", () ->
+            {
+                runner.test("with empty qub folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(Iterable.create(), QubPublishPrune.create(process.getQubFolder().await(), 1).getVersionFoldersToDelete(workers).await());
+                    }
+                });
+
+                runner.test("with dependencies and shortcut",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = QubPublishPruneTests.createQubFolder(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(
+                            Iterable.create(
+                                qubFolder.getProjectVersionFolder("me", "a", "3").await(),
+                                qubFolder.getProjectVersionFolder("me", "b", "1").await()),
+                            QubPublishPrune.create(qubFolder, 1).getVersionFoldersToDelete(workers).await());
+                    }
+                });
+
+                runner.test("with lock file closure",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    QubPublishPruneTests.createVersionFolder(qubFolder, "me", "a", "1");
+                    QubPublishPruneTests.createVersionFolder(qubFolder, "me", "a", "2");
+                    QubPublishPruneTests.createVersionFolder(qubFolder, "me", "b", "1");
+                    final QubProjectVersionFolder cVersionFolder = QubPublishPruneTests.createVersionFolder(qubFolder, "me", "c", "1");
+                    QubPublishLockFile.create()
+                        .add(ProjectSignature.create("me", "a", "1"), "me/a/versions/1/a.jar")
+                        .save(cVersionFolder)
+                        .await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(Iterable.create(), QubPublishPrune.create(qubFolder, 1).getVersionFoldersToDelete(workers).await());
+                    }
+                });
+
+                runner.test("with larger keepCount",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = QubPublishPruneTests.createQubFolder(process);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(Iterable.create(), QubPublishPrune.create(qubFolder, 3).getVersionFoldersToDelete(workers).await());
+                    }
+                });
+            });
+
+            runner.testGroup("run(CharacterWriteStream,QubPublishWorkers)", () ->
+            {
+                runner.test("with dry run",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = QubPublishPruneTests.createQubFolder(process);
+                    final QubProjectVersionFolder a3VersionFolder = qubFolder.getProjectVersionFolder("me", "a", "3").await();
+                    final QubProjectVersionFolder b1VersionFolder = qubFolder.getProjectVersionFolder("me", "b", "1").await();
+                    final long a3ByteCount = QubPublishFiles.getByteCount(a3VersionFolder).await();
+                    final long b1ByteCount = QubPublishFiles.getByteCount(b1VersionFolder).await();
+                    final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(0, QubPublishPrune.create(qubFolder, 1).setDryRun(true).run(output, workers));
+                    }
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Checking " + qubFolder + ", keeping the newest 1 version of each project...",
+                            "Would delete me/a/versions/3 (" + a3ByteCount + " bytes)",
+                            "Would delete me/b/versions/1 (" + b1ByteCount + " bytes)",
+                            "Would reclaim " + (a3ByteCount + b1ByteCount) + " bytes from 2 version folders."),
+                        output);
+                    test.assertTrue(a3VersionFolder.exists().await());
+                    test.assertTrue(b1VersionFolder.exists().await());
+                    test.assertEqual(0L, QubPublishDependentsIndex.getGeneration(qubFolder).await());
+                    test.assertFalse(QubPublishLatestVersion.getPointerFile(qubFolder.getProjectFolder("me", "a").await()).await().exists().await());
+                });
+
+                runner.test("with delete",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = QubPublishPruneTests.createQubFolder(process);
+                    final QubProjectVersionFolder a3VersionFolder = qubFolder.getProjectVersionFolder("me", "a", "3").await();
+                    final QubProjectVersionFolder b1VersionFolder = qubFolder.getProjectVersionFolder("me", "b", "1").await();
+                    final long a3ByteCount = QubPublishFiles.getByteCount(a3VersionFolder).await();
+                    final long b1ByteCount = QubPublishFiles.getByteCount(b1VersionFolder).await();
+                    final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(0, QubPublishPrune.create(qubFolder, 1).run(output, workers));
+                    }
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Pruning " + qubFolder + ", keeping the newest 1 version of each project...",
+                            "Deleted me/a/versions/3 (" + a3ByteCount + " bytes)",
+                            "Deleted me/b/versions/1 (" + b1ByteCount + " bytes)",
+                            "Reclaimed " + (a3ByteCount + b1ByteCount) + " bytes from 2 version folders."),
+                        output);
+                    test.assertFalse(a3VersionFolder.exists().await());
+                    test.assertFalse(b1VersionFolder.exists().await());
+                    for (final String version : Iterable.create("1", "2", "4"))
+                    {
+                        test.assertTrue(qubFolder.getProjectVersionFolder("me", "a", version).await().exists().await());
+                    }
+                    test.assertTrue(qubFolder.getProjectVersionFolder("me", "b", "2").await().exists().await());
+                    test.assertEqual(1L, QubPublishDependentsIndex.getGeneration(qubFolder).await());
+                    test.assertEqual(
+                        "{\"version\":\"4\"}",
+                        QubPublishLatestVersion.getPointerFile(qubFolder.getProjectFolder("me", "a").await()).await().getContentsAsString().await());
+                    test.assertEqual(
+                        "{\"version\":\"2\"}",
+                        QubPublishLatestVersion.getPointerFile(qubFolder.getProjectFolder("me", "b").await()).await().getContentsAsString().await());
+                });
+
+                final Action1<Boolean> blobStoreTest = (Boolean dryRun) ->
+                {
+                    runner.test("with blob store and dryRun " + dryRun, (Test test) ->
+                    {
+                        QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                        {
+                            final QubFolder qubFolder = QubFolder.get(temporaryFolder.getFolder("qub").await());
+                            final QubPublishBlobStore blobStore = QubPublishBlobStore.get(qubFolder).await();
+                            final File sharedFile = temporaryFolder.getFile("shared/a.jar").await();
+                            sharedFile.setContentsAsString("shared").await();
+                            final List<QubProjectVersionFolder> versionFolders = List.create();
+                            final List<File> uniqueBlobs = List.create();
+                            for (final String version : Iterable.create("1", "2", "3"))
+                            {
+                                final QubProjectVersionFolder versionFolder = QubPublishPruneTests.createVersionFolder(qubFolder, "me", "a", version);
+                                blobStore.link(sharedFile, versionFolder).await();
+                                final File uniqueFile = temporaryFolder.getFile(version + "/b.jar").await();
+                                uniqueFile.setContentsAsString("only " + version).await();
+                                blobStore.link(uniqueFile, versionFolder).await();
+                                uniqueBlobs.add(blobStore.getBlobFile(QubPublishFiles.getSHA256(uniqueFile).await()).await());
+                                versionFolders.add(versionFolder);
+                            }
+                            final File sharedBlob = blobStore.getBlobFile(QubPublishFiles.getSHA256(sharedFile).await()).await();
+                            final long a1ByteCount = QubPublishFiles.getByteCount(versionFolders.get(0)).await();
+                            final long a2ByteCount = QubPublishFiles.getByteCount(versionFolders.get(1)).await();
+                            final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+
+                            try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                            {
+                                test.assertEqual(0, QubPublishPrune.create(qubFolder, 1)
+                                    .setDryRun(dryRun)
+                                    .setBlobStore(blobStore)
+                                    .run(output, workers));
+                            }
+                            test.assertLinesEqual(
+                                Iterable.create(
+                                    (dryRun ? "Checking " : "Pruning ") + qubFolder + ", keeping the newest 1 version of each project...",
+                                    (dryRun ? "Would delete" : "Deleted") + " me/a/versions/2 (" + a2ByteCount + " bytes)",
+                                    (dryRun ? "Would delete" : "Deleted") + " me/a/versions/1 (" + a1ByteCount + " bytes)",
+                                    (dryRun ? "Would delete" : "Deleted") + " 2 unused blobs (12 bytes)",
+                                    (dryRun ? "Would reclaim " : "Reclaimed ") + (a1ByteCount + a2ByteCount + 12) + " bytes from 2 version folders."),
+                                output);
+                            test.assertEqual(dryRun, uniqueBlobs.get(0).exists().await());
+                            test.assertEqual(dryRun, uniqueBlobs.get(1).exists().await());
+                            test.assertTrue(uniqueBlobs.get(2).exists().await());
+                            test.assertTrue(sharedBlob.exists().await());
+                            test.assertEqual("shared", versionFolders.get(2).getFile("a.jar").await().getContentsAsString().await());
+                        });
+                    });
+                };
+                blobStoreTest.run(true);
+                blobStoreTest.run(false);
+            });
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package qub;
+
+public interface QubPublishQubFolderViewTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishQubFolderView.class, () ->
+        {
+            runner.testGroup("create(QubFolder,QubPublishWorkers)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        test.assertThrows(() -> QubPublishQubFolderView.create(null, workers),
+                            new PreConditionFailure("qubFolder cannot be null."));
+                    }
+                });
+
+                runner.test("with null workers",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    test.assertThrows(() -> QubPublishQubFolderView.create(qubFolder, null),
+                        new PreConditionFailure("workers cannot be null."));
+                });
+            });
+
+            runner.testGroup("getLockFile(QubProjectVersionFolder)", () ->
+            {
+                runner.test("with saved lock file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectVersionFolder versionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(qubFolder, workers);
+                        test.assertNull(qubFolderView.getLockFile(versionFolder));
+
+                        final QubPublishLockFile lockFile = QubPublishLockFile.create()
+                            .add(ProjectSignature.create("you", "stuff", "7.3.1"), "you/stuff/versions/7.3.1/stuff.jar");
+                        qubFolderView.saveLockFile(versionFolder, lockFile).await();
+                        test.assertSame(lockFile, qubFolderView.getLockFile(versionFolder));
+                        test.assertTrue(QubPublishLockFile.getLockFile(versionFolder).await().exists().await());
+                    }
+                });
+            });
+
+            runner.testGroup("updateDependents(String,String,VersionNumber,Iterable<ProjectSignature>)", () ->
+            {
+                runner.test("with multiple updates",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(qubFolder, workers);
+                        test.assertEqual(Iterable.create(),
+                            qubFolderView.updateDependents("me", "a", VersionNumber.create().setMajor(1), null).await());
+                        test.assertEqual(Iterable.create(),
+                            qubFolderView.updateDependents("me", "b", VersionNumber.create().setMajor(1),
+                                Iterable.create(ProjectSignature.create("me", "a", "1"))).await());
+                        test.assertEqual(Iterable.create(ProjectSignature.create("me", "b", "1")),
+                            qubFolderView.updateDependents("me", "a", VersionNumber.create().setMajor(2), null).await());
+
+                        final QubPublishDependentsIndex savedIndex = QubPublishDependentsIndex.parse(QubPublishDependentsIndex.getIndexFile(qubFolder).await()).await();
+                        test.assertEqual(Iterable.create(ProjectSignature.create("me", "b", "1")), savedIndex.getDependents("me", "a"));
+                    }
+                });
+
+                runner.test("with index changed by another publish",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    qubFolder.getProjectVersionFolder("me", "a", "1").await().create().await();
+                    qubFolder.getProjectVersionFolder("me", "b", "1").await().create().await();
+                    qubFolder.getProjectVersionFolder("me", "c", "1").await().create().await();
+                    final File indexFile = QubPublishDependentsIndex.getIndexFile(qubFolder).await();
+                    indexFile.getParentFolder().await().create().await();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(qubFolder, workers);
+                        qubFolderView.updateDependents("me", "a", VersionNumber.create().setMajor(1), null).await();
+                        QubPublishDependentsIndex.update(qubFolder, workers, "me", "c", VersionNumber.create().setMajor(1),
+                            Iterable.create(ProjectSignature.create("me", "a", "1")))
+                            .await();
+                        qubFolderView.updateDependents("me", "b", VersionNumber.create().setMajor(1),
+                            Iterable.create(ProjectSignature.create("me", "a", "1")))
+                            .await();
+
+                        test.assertEqual(
+                            Iterable.create(ProjectSignature.create("me", "b", "1"), ProjectSignature.create("me", "c", "1")),
+                            QubPublishDependentsIndex.parse(indexFile).await().getDependents("me", "a"));
+                        test.assertEqual(
+                            Iterable.create(ProjectSignature.create("me", "b", "1"), ProjectSignature.create("me", "c", "1")),
+                            qubFolderView.getDependents("me", "a").await());
+                    }
+                });
+            });
+
+            runner.testGroup("getDependents(String,String)", () ->
+            {
+                runner.test("with no index",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(qubFolder, workers);
+                        test.assertEqual(Iterable.create(), qubFolderView.getDependents("me", "a").await());
+                        test.assertTrue(QubPublishDependentsIndex.getIndexFile(qubFolder).await().exists().await());
+                    }
+                });
+
+                runner.test("after updates",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(qubFolder, workers);
+                        qubFolderView.updateDependents("me", "a", VersionNumber.create().setMajor(1), null).await();
+                        qubFolderView.updateDependents("me", "b", VersionNumber.create().setMajor(1),
+                            Iterable.create(ProjectSignature.create("me", "a", "1"))).await();
+                        test.assertEqual(Iterable.create(ProjectSignature.create("me", "b", "1")), qubFolderView.getDependents("me", "a").await());
+                        test.assertEqual(Iterable.create(), qubFolderView.getDependents("me", "b").await());
+                    }
+                });
+            });
+        });
+    }
+}
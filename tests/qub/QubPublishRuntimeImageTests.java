@@ -0,0 +1,80 @@
+package qub;
+
+public interface QubPublishRuntimeImageTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishRuntimeImage.class, () ->
+        {
+            runner.testGroup("create(Folder)", () ->
+            {
+                runner.test("with null runtimesFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishRuntimeImage.create(null),
+                        new PreConditionFailure("runtimesFolder cannot be null."));
+                });
+            });
+
+            runner.test("get(QubFolder)",
+                (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                (Test test, FakeDesktopProcess process) ->
+            {
+                final QubFolder qubFolder = process.getQubFolder().await();
+                final QubPublishRuntimeImage runtimeImage = QubPublishRuntimeImage.get(qubFolder).await();
+                test.assertEqual(
+                    qubFolder.getProjectFolder("qub", "publish-java").await().getProjectDataFolder().await().getFolder("runtimes").await(),
+                    runtimeImage.getRuntimesFolder());
+            });
+
+            runner.testGroup("parseModules(String)", () ->
+            {
+                final Action2<String,Iterable<String>> parseModulesTest = (String jdepsOutput, Iterable<String> expected) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(jdepsOutput), (Test test) ->
+                    {
+                        test.assertEqual(expected, QubPublishRuntimeImage.parseModules(jdepsOutput));
+                    });
+                };
+
+                parseModulesTest.run("", Iterable.create("java.base"));
+                parseModulesTest.run("java.base\n", Iterable.create("java.base"));
+                parseModulesTest.run("java.logging\n", Iterable.create("java.base", "java.logging"));
+                parseModulesTest.run("java.sql,java.base,java.logging\r\n", Iterable.create("java.base", "java.logging", "java.sql"));
+                parseModulesTest.run(" java.sql , java.sql ,,", Iterable.create("java.base", "java.sql"));
+            });
+
+            runner.testGroup("getKey(String,Iterable<String>)", () ->
+            {
+                runner.test("with the same JDK and modules", (Test test) ->
+                {
+                    final String key = QubPublishRuntimeImage.getKey("17.0.2", Iterable.create("java.base", "java.logging"));
+                    test.assertEqual(16, key.length());
+                    test.assertEqual(key, QubPublishRuntimeImage.getKey("17.0.2\n", Iterable.create("java.base", "java.logging")));
+                });
+
+                runner.test("with different modules", (Test test) ->
+                {
+                    test.assertNotEqual(
+                        QubPublishRuntimeImage.getKey("17.0.2", Iterable.create("java.base")),
+                        QubPublishRuntimeImage.getKey("17.0.2", Iterable.create("java.base", "java.logging")));
+                });
+
+                runner.test("with different JDKs", (Test test) ->
+                {
+                    test.assertNotEqual(
+                        QubPublishRuntimeImage.getKey("17.0.2", Iterable.create("java.base")),
+                        QubPublishRuntimeImage.getKey("21.0.1", Iterable.create("java.base")));
+                });
+            });
+
+            runner.test("getImageFolder(String)",
+                (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                (Test test, FakeDesktopProcess process) ->
+            {
+                final Folder runtimesFolder = process.getCurrentFolder().getFolder("runtimes").await();
+                final QubPublishRuntimeImage runtimeImage = QubPublishRuntimeImage.create(runtimesFolder);
+                test.assertEqual(runtimesFolder.getFolder("abc").await(), runtimeImage.getImageFolder("abc").await());
+            });
+        });
+    }
+}
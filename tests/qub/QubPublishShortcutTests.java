@@ -0,0 +1,219 @@
+package qub;
+
+public interface QubPublishShortcutTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishShortcut.class, () ->
+        {
+            runner.testGroup("create(QubFolder,String,String)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishShortcut.create(null, "foo", "A"),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+
+                runner.test("with empty name",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    test.assertThrows(() -> QubPublishShortcut.create(qubFolder, "", "A"),
+                        new PreConditionFailure("name cannot be empty."));
+                });
+
+                runner.test("with null mainClass",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    test.assertThrows(() -> QubPublishShortcut.create(qubFolder, "foo", null),
+                        new PreConditionFailure("mainClass cannot be null."));
+                });
+            });
+
+            runner.testGroup("getCommandLine()", () ->
+            {
+                runner.test("with one classpath entry",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar");
+                    test.assertEqual("java -classpath %~dp0me/foo/versions/1/foo.jar A %*", shortcut.getCommandLine());
+                });
+
+                runner.test("with multiple classpath entries and a shared archive",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .addClasspath("you/bar/versions/2/bar.jar")
+                        .setSharedArchive("me/foo/versions/1/foo.jsa");
+                    test.assertEqual(
+                        "java -Xlog:cds=off -XX:SharedArchiveFile=%~dp0me/foo/versions/1/foo.jsa -classpath %~dp0me/foo/versions/1/foo.jar;%~dp0you/bar/versions/2/bar.jar A %*",
+                        shortcut.getCommandLine());
+                });
+
+                runner.test("with a java runtime",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .setJavaRuntime("qub/publish-java/data/runtimes/abc");
+                    test.assertEqual(
+                        "%~dp0qub\\publish-java\\data\\runtimes\\abc\\bin\\java -classpath %~dp0me/foo/versions/1/foo.jar A %*",
+                        shortcut.getCommandLine());
+                });
+
+                runner.test("with a launcher jar and a shared archive",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .addClasspath("you/bar/versions/2/bar.jar")
+                        .setSharedArchive("me/foo/versions/1/foo.jsa")
+                        .setLauncherJar("me/foo/versions/1/foo.launcher.jar");
+                    test.assertEqual(
+                        "java -Xlog:cds=off -XX:SharedArchiveFile=%~dp0me/foo/versions/1/foo.jsa -jar %~dp0me/foo/versions/1/foo.launcher.jar %*",
+                        shortcut.getCommandLine());
+                });
+            });
+
+            runner.testGroup("removeSharedArchive(String)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishShortcut.removeSharedArchive(null),
+                        new PreConditionFailure("shortcutText cannot be null."));
+                });
+
+                runner.test("without a shared archive", (Test test) ->
+                {
+                    test.assertEqual(
+                        "@echo OFF\njava -classpath %~dp0me/foo/versions/1/foo.jar A %*\n",
+                        QubPublishShortcut.removeSharedArchive("@echo OFF\njava -classpath %~dp0me/foo/versions/1/foo.jar A %*\n"));
+                });
+
+                runner.test("with a shared archive", (Test test) ->
+                {
+                    test.assertEqual(
+                        "@echo OFF\njava -jar %~dp0me/foo/versions/1/foo.launcher.jar %*\n",
+                        QubPublishShortcut.removeSharedArchive("@echo OFF\njava -Xlog:cds=off -XX:SharedArchiveFile=%~dp0me/foo/archives/1.jsa -jar %~dp0me/foo/versions/1/foo.launcher.jar %*\n"));
+                });
+            });
+
+            runner.testGroup("getLaunchPath(String)", () ->
+            {
+                runner.test("with relative path",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A");
+                    String expectedPrefix = qubFolder.toString().replace('/', java.io.File.separatorChar);
+                    if (!expectedPrefix.endsWith(java.io.File.separator))
+                    {
+                        expectedPrefix += java.io.File.separator;
+                    }
+                    test.assertEqual(expectedPrefix + "me/foo/versions/1/foo.jar", shortcut.getLaunchPath("me/foo/versions/1/foo.jar"));
+                });
+            });
+
+            runner.testGroup("getTrainingArguments(File,Iterable<String>)", () ->
+            {
+                runner.test("with classpath entries",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File archiveFile = qubFolder.getFile("me/foo/versions/1/foo.jsa").await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .addClasspath("you/bar/versions/2/bar.jar");
+                    test.assertEqual(
+                        Iterable.create(
+                            "-XX:ArchiveClassesAtExit=" + archiveFile.toString(),
+                            "-classpath",
+                            qubFolder.getFile("me/foo/versions/1/foo.jar").await().toString() +
+                                java.io.File.pathSeparator +
+                                qubFolder.getFile("you/bar/versions/2/bar.jar").await().toString(),
+                            "A",
+                            "--help"),
+                        shortcut.getTrainingArguments(archiveFile, Iterable.create("--help")).await());
+                });
+
+                runner.test("with a launcher jar",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File archiveFile = qubFolder.getFile("me/foo/versions/1/foo.jsa").await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .setLauncherJar("me/foo/versions/1/foo.launcher.jar");
+                    test.assertEqual(
+                        Iterable.create(
+                            "-XX:ArchiveClassesAtExit=" + archiveFile.toString(),
+                            "-jar",
+                            qubFolder.getFile("me/foo/versions/1/foo.launcher.jar").await().toString(),
+                            "--help"),
+                        shortcut.getTrainingArguments(archiveFile, Iterable.create("--help")).await());
+                });
+            });
+
+            runner.testGroup("getVerificationArguments(File,Iterable<String>)", () ->
+            {
+                runner.test("with classpath entries",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File archiveFile = qubFolder.getFile("me/foo/archives/1.jsa").await();
+                    final QubPublishShortcut shortcut = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .addClasspath("you/bar/versions/2/bar.jar");
+                    test.assertEqual(
+                        Iterable.create(
+                            "-Xlog:class+load=info",
+                            "-XX:SharedArchiveFile=" + shortcut.getLaunchPath("me/foo/archives/1.jsa"),
+                            "-classpath",
+                            shortcut.getLaunchPath("me/foo/versions/1/foo.jar") +
+                                java.io.File.pathSeparator +
+                                shortcut.getLaunchPath("you/bar/versions/2/bar.jar"),
+                            "A",
+                            "--version"),
+                        shortcut.getVerificationArguments(archiveFile, Iterable.create("--version")).await());
+                });
+            });
+
+            runner.testGroup("save()", () ->
+            {
+                runner.test("with one classpath entry",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File shortcutFile = QubPublishShortcut.create(qubFolder, "foo", "A")
+                        .addClasspath("me/foo/versions/1/foo.jar")
+                        .save()
+                        .await();
+                    test.assertEqual(qubFolder.getFile("foo.cmd").await(), shortcutFile);
+                    test.assertEqual(
+                        Iterable.create(
+                            "@echo OFF",
+                            "java -classpath %~dp0me/foo/versions/1/foo.jar A %*"),
+                        Strings.getLines(shortcutFile.getContentsAsString().await()));
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package qub;
+
+public interface QubPublishStoredJarTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishStoredJar.class, () ->
+        {
+            runner.testGroup("isStored(byte[])", () ->
+            {
+                runner.test("with null jarBytes", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishStoredJar.isStored(null),
+                        new PreConditionFailure("jarBytes cannot be null."));
+                });
+
+                runner.test("with compressed jar", (Test test) ->
+                {
+                    test.assertFalse(QubPublishStoredJar.isStored(QubPublishUberJarTests.createJar("A.class", "a")));
+                });
+
+                runner.test("with stored jar", (Test test) ->
+                {
+                    test.assertTrue(QubPublishStoredJar.isStored(QubPublishUberJar.create("A").getBytes()));
+                });
+            });
+
+            runner.testGroup("store(byte[])", () ->
+            {
+                runner.test("with null jarBytes", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishStoredJar.store((byte[])null),
+                        new PreConditionFailure("jarBytes cannot be null."));
+                });
+
+                runner.test("with compressed jar", (Test test) ->
+                {
+                    final byte[] jarBytes = QubPublishUberJarTests.createJar(
+                        "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nMain-Class: A\n",
+                        "A.class", "a",
+                        "b/B.class", "b");
+                    final byte[] storedJarBytes = QubPublishStoredJar.store(jarBytes);
+                    test.assertTrue(QubPublishStoredJar.isStored(storedJarBytes));
+                    test.assertEqual(
+                        Iterable.create(
+                            "A.class: a",
+                            "b/B.class: b"),
+                        QubPublishUberJarTests.readJar(storedJarBytes));
+
+                    try (final java.util.jar.JarInputStream jarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(storedJarBytes)))
+                    {
+                        test.assertEqual("A", jarStream.getManifest().getMainAttributes().getValue(java.util.jar.Attributes.Name.MAIN_CLASS));
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+
+                runner.test("with stored jar", (Test test) ->
+                {
+                    final byte[] jarBytes = QubPublishUberJar.create("A").getBytes();
+                    test.assertSame(jarBytes, QubPublishStoredJar.store(jarBytes));
+                });
+            });
+
+            runner.testGroup("store(File,Folder)", () ->
+            {
+                runner.test("with null jarFile",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    test.assertThrows(() -> QubPublishStoredJar.store(null, process.getCurrentFolder()),
+                        new PreConditionFailure("jarFile cannot be null."));
+                });
+
+                runner.test("with non-existing jarFile",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File jarFile = currentFolder.getFile("outputs/a.jar").await();
+                    test.assertThrows(() -> QubPublishStoredJar.store(jarFile, currentFolder.getFolder("outputs/stored").await()).await(),
+                        new FileNotFoundException(jarFile));
+                });
+
+                runner.test("with compressed jarFile",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File jarFile = currentFolder.getFile("outputs/a.jar").await();
+                    jarFile.setContents(QubPublishUberJarTests.createJar("A.class", "a")).await();
+                    final Folder storedJarsFolder = currentFolder.getFolder("outputs/stored").await();
+
+                    final File storedJarFile = QubPublishStoredJar.store(jarFile, storedJarsFolder).await();
+                    test.assertEqual(storedJarsFolder.getFile("a.jar").await(), storedJarFile);
+                    test.assertEqual(
+                        Iterable.create("A.class: a"),
+                        QubPublishUberJarTests.readJar(storedJarFile.getContents().await()));
+                    test.assertFalse(QubPublishStoredJar.isStored(jarFile.getContents().await()));
+                });
+            });
+        });
+    }
+}
@@ -33,17 +33,38 @@ public interface QubPublishTests
                     test.assertEqual(-1, process.getExitCode());
                     test.assertLinesEqual(
                         Iterable.create(
-                            "Usage: qub-publish [[--folder=]<folder-to-publish>] [--packjson] [--testjson] [--coverage[=<None|Sources|Tests|All>]] [--buildjson] [--warnings=<show|error|hide>] [--verbose] [--profiler] [--help]",
+                            "Usage: qub-publish [[--folder=]<folder-to-publish>] [--packjson] [--testjson] [--coverage[=<None|Sources|Tests|All>]] [--buildjson] [--warnings=<show|error|hide>] [--workers=<count>] [--virtualthreads] [--blobstore] [--appcds] [--appcdsargs=<arguments>] [--batch] [--trace=<file>] [--launcherjar] [--uberjar] [--jlink] [--updatedependents] [--sourceroot=<folder>] [--watch] [--storedjars] [--mirror=<folders>] [--verify] [--prune=<count>] [--dryrun] [--daemon] [--usedaemon] [--daemonport=<port>] [--verbose] [--profiler] [--help]",
                             "  Used to published packaged source and compiled code to the qub folder.",
-                            "  --folder:      The folder to publish. Defaults to the current folder.",
-                            "  --packjson:    Whether or not to read and write a pack.json file. Defaults to true.",
-                            "  --testjson:    Whether or not to write the test results to a test.json file.",
-                            "  --coverage(c): Whether or not to collect code coverage information while running tests.",
-                            "  --buildjson:   Whether or not to read and write a build.json file. Defaults to true.",
-                            "  --warnings:    How to handle build warnings. Can be either \"show\", \"error\", or \"hide\". Defaults to \"show\".",
-                            "  --verbose(v):  Whether or not to show verbose logs.",
-                            "  --profiler:    Whether or not this application should pause before it is run to allow a profiler to be attached.",
-                            "  --help(?):     Show the help message for this application."),
+                            "  --folder:           The folder to publish. Defaults to the current folder.",
+                            "  --packjson:         Whether or not to read and write a pack.json file. Defaults to true.",
+                            "  --testjson:         Whether or not to write the test results to a test.json file.",
+                            "  --coverage(c):      Whether or not to collect code coverage information while running tests.",
+                            "  --buildjson:        Whether or not to read and write a build.json file. Defaults to true.",
+                            "  --warnings:         How to handle build warnings. Can be either \"show\", \"error\", or \"hide\". Defaults to \"show\".",
+                            "  --workers:          The number of workers to use for parallel qub folder operations. Defaults to the number of processors.",
+                            "  --virtualthreads:   Whether or not to run the workers on virtual threads, so that --workers can be set much higher than the number of processors when the qub folder is on a high-latency file system. Platform threads are used if the Java runtime doesn't support virtual threads. Defaults to false.",
+                            "  --blobstore:        Whether or not to store published jar files in a content-addressed blob store that version folders hard-link to. With --prune, also delete the blobs that no remaining version folder links to. Defaults to false.",
+                            "  --appcds:           Whether or not to do a training run of the published shortcut that creates a class data sharing archive for it to start with. Defaults to false.",
+                            "  --appcdsargs:       The space-separated arguments to pass to the published shortcut during the --appcds training run. Defaults to \"--help\".",
+                            "  --batch:            Whether or not to publish every project folder in the folder to publish, in dependency order. Defaults to false.",
+                            "  --trace:            The file to write a Chrome trace-event JSON file of the publish's phases to.",
+                            "  --launcherjar:      Whether or not to launch the published shortcut with a launcher jar whose manifest lists the shortcut's classpath. Defaults to false.",
+                            "  --uberjar:          Whether or not to launch the published shortcut with a single stored jar that merges the project's compiled jar with all of its dependency jars. Defaults to false.",
+                            "  --jlink:            Whether or not to launch the published shortcut with a shared jlink runtime image that only contains the modules that the project needs. Defaults to false.",
+                            "  --updatedependents: Whether or not to update, repack, and republish the projects that depend on the published project, in dependency order. Defaults to false.",
+                            "  --sourceroot:       The folder that contains the source folders of the projects to republish with --updatedependents. Defaults to the parent folder of the folder to publish.",
+                            "  --watch:            Whether or not to keep running after the publish and republish a new version whenever the sources, tests, or project.json of the folder to publish change. Defaults to false.",
+                            "  --storedjars:       Whether or not to publish the compiled jars with stored (uncompressed) entries so that they don't need to be inflated when they're loaded. Sources jars stay compressed. Defaults to false.",
+                            "  --mirror:           A comma-separated list of qub folders to copy the published version folder and shortcut to after the publish. Jars are delta-synced against the mirror's previous version of the project.",
+                            "  --verify:           Whether or not to verify the files of every published version folder against their recorded hashes instead of publishing. Defaults to false.",
+                            "  --prune:            Delete the published versions of each project except for the newest <count> versions, the versions that they depend on, and the versions that shortcuts use, instead of publishing.",
+                            "  --dryrun:           Whether or not --prune will only report the versions that it would delete and the bytes that it would reclaim. Defaults to false.",
+                            "  --daemon:           Whether or not to keep running as a daemon that publishes the requests that --usedaemon sends to it. Defaults to false.",
+                            "  --usedaemon:        Whether or not to send the publish to a running daemon instead of publishing in this process. Defaults to false.",
+                            "  --daemonport:       The local port that the daemon listens on. Defaults to 24721.",
+                            "  --verbose(v):       Whether or not to show verbose logs.",
+                            "  --profiler:         Whether or not this application should pause before it is run to allow a profiler to be attached.",
+                            "  --help(?):          Show the help message for this application."),
                         process.getOutputWriteStream());
                     test.assertLinesEqual(
                         Iterable.create(),
@@ -91,10 +112,94 @@ public interface QubPublishTests
                     test.assertNotNull(verbose);
                     test.assertFalse(verbose.isVerbose());
                     test.assertEqual(Warnings.Show, parameters.getWarnings());
+                    test.assertEqual(Runtime.getRuntime().availableProcessors(), parameters.getWorkers());
+                    test.assertFalse(parameters.getVirtualThreads());
+                    test.assertFalse(parameters.getBlobStore());
+                    test.assertFalse(parameters.getAppCDS());
+                    test.assertEqual(Iterable.create("--help"), parameters.getAppCDSArguments());
+                    test.assertFalse(parameters.getBatch());
+                    test.assertFalse(parameters.getTrace().isEnabled());
+                    test.assertFalse(parameters.getLauncherJar());
+                    test.assertFalse(parameters.getUberJar());
+                    test.assertFalse(parameters.getJlink());
+                    test.assertFalse(parameters.getUpdateDependents());
+                    test.assertNull(parameters.getSourceRoot());
+                    test.assertFalse(parameters.getWatch());
+                    test.assertFalse(parameters.getStoredJars());
+                    test.assertEqual(Iterable.create(), parameters.getMirrors());
+                    test.assertFalse(parameters.getVerify());
+                    test.assertNull(parameters.getPrune());
+                    test.assertFalse(parameters.getDryRun());
+                    test.assertFalse(parameters.getDaemon());
+                    test.assertFalse(parameters.getUseDaemon());
+                    test.assertEqual(QubPublishDaemon.defaultPort, parameters.getDaemonPort());
 
                     test.assertEqual("", process.getOutputWriteStream().getText().await());
                     test.assertEqual("", process.getErrorWriteStream().getText().await());
                 });
+
+                runner.test("with --trace",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess("--trace=outputs/trace.json")),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File qubBuildCompiledSourcesFile = qubFolder.getCompiledSourcesFile("qub", "build-java", "7").await();
+                    qubBuildCompiledSourcesFile.create().await();
+                    final File qubTestCompiledSourcesFile = qubFolder.getCompiledSourcesFile("qub", "test-java", "8").await();
+                    qubTestCompiledSourcesFile.create().await();
+
+                    process.getTypeLoader()
+                        .addTypeContainer(QubBuild.class, qubBuildCompiledSourcesFile)
+                        .addTypeContainer(QubTest.class, qubTestCompiledSourcesFile);
+
+                    final QubPublishParameters parameters = QubPublish.getParameters(process);
+                    test.assertNotNull(parameters);
+                    final QubPublishTrace trace = parameters.getTrace();
+                    test.assertTrue(trace.isEnabled());
+                    test.assertEqual(process.getCurrentFolder().getFile("outputs/trace.json").await(), trace.getTraceFile());
+                });
+
+                runner.test("with --appcdsargs",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess("--appcdsargs=--version --quiet")),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File qubBuildCompiledSourcesFile = qubFolder.getCompiledSourcesFile("qub", "build-java", "7").await();
+                    qubBuildCompiledSourcesFile.create().await();
+                    final File qubTestCompiledSourcesFile = qubFolder.getCompiledSourcesFile("qub", "test-java", "8").await();
+                    qubTestCompiledSourcesFile.create().await();
+
+                    process.getTypeLoader()
+                        .addTypeContainer(QubBuild.class, qubBuildCompiledSourcesFile)
+                        .addTypeContainer(QubTest.class, qubTestCompiledSourcesFile);
+
+                    final QubPublishParameters parameters = QubPublish.getParameters(process);
+                    test.assertNotNull(parameters);
+                    test.assertEqual(Iterable.create("--version", "--quiet"), parameters.getAppCDSArguments());
+                });
+
+                runner.test("with --mirror",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess("--mirror=mirror, /shared/qub")),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final File qubBuildCompiledSourcesFile = qubFolder.getCompiledSourcesFile("qub", "build-java", "7").await();
+                    qubBuildCompiledSourcesFile.create().await();
+                    final File qubTestCompiledSourcesFile = qubFolder.getCompiledSourcesFile("qub", "test-java", "8").await();
+                    qubTestCompiledSourcesFile.create().await();
+
+                    process.getTypeLoader()
+                        .addTypeContainer(QubBuild.class, qubBuildCompiledSourcesFile)
+                        .addTypeContainer(QubTest.class, qubTestCompiledSourcesFile);
+
+                    final QubPublishParameters parameters = QubPublish.getParameters(process);
+                    test.assertNotNull(parameters);
+                    test.assertEqual(
+                        Iterable.create(
+                            process.getCurrentFolder().getFolder("mirror").await(),
+                            process.getFileSystem().getFolder("/shared/qub").await()),
+                        parameters.getMirrors());
+                });
             });
 
             runner.testGroup("run(QubPublishParameters)", () ->
@@ -117,6 +222,8 @@ public interface QubPublishTests
                     final File projectJsonFile = currentFolder.getFile("project.json").await();
                     projectJsonFile.setContentsAsString(
                         ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
                             .setJava(ProjectJSONJava.create())
                             .toString());
                     final Folder outputsFolder = currentFolder.getFolder("outputs").await();
@@ -164,9 +271,82 @@ public interface QubPublishTests
                     test.assertEqual(1, exitCode);
                 });
 
+                runner.test("with project.json without a publisher",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString(
+                        ProjectJSON.create()
+                            .setProject("my-project")
+                            .setJava(ProjectJSONJava.create())
+                            .toString());
+                    final Folder outputsFolder = currentFolder.getFolder("outputs").await();
+                    currentFolder.getFile("sources/A.java").await().setContentsAsString("A.java source").await();
+                    final String jvmClassPath = "/fake-jvm-classpath";
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath);
+
+                    final int exitCode = QubPublish.run(parameters);
+
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "ERROR: The project.json file at " + Strings.escapeAndQuote(projectJsonFile.toString()) + " must have a publisher and a project to be published."),
+                        process.getOutputWriteStream());
+                    test.assertLinesEqual(
+                        Iterable.create(),
+                        process.getErrorWriteStream());
+                    test.assertEqual(1, exitCode);
+
+                    test.assertFalse(outputsFolder.fileExists("my-project.jar").await());
+                    test.assertFalse(qubFolder.fileExists("my-project.cmd").await());
+                });
+
                 runner.test("with already existing version folder",
                     (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
                     (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
+                            .setVersion("1")
+                            .setJava(ProjectJSONJava.create())
+                            .toString());
+                    final Folder outputsFolder = currentFolder.getFolder("outputs").await();
+                    final Folder sourcesFolder = currentFolder.getFolder("sources").await();
+                    final File aJavaFile = sourcesFolder.getFile("A.java").await();
+                    aJavaFile.setContentsAsString("A.java source").await();
+                    final String jvmClassPath = "/fake-jvm-classpath";
+                    final QubProjectVersionFolder projectVersionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    projectVersionFolder.create().await();
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath);
+
+                    final int exitCode = QubPublish.run(parameters);
+
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "ERROR: This package (me/my-project:1) can't be published because a package with that signature already exists."),
+                        process.getOutputWriteStream());
+                    test.assertLinesEqual(
+                        Iterable.create(),
+                        process.getErrorWriteStream());
+                    test.assertEqual(1, exitCode);
+
+                    test.assertFalse(projectVersionFolder.getCompiledSourcesFile().await().exists().await());
+                    test.assertFalse(projectVersionFolder.getSourcesFile().await().exists().await());
+                    test.assertFalse(projectVersionFolder.getProjectJSONFile().await().exists().await());
+                    test.assertFalse(qubFolder.fileExists("my-project.cmd").await());
+                    test.assertFalse(outputsFolder.fileExists("my-project.jar").await());
+                });
+
+                runner.test("with simple success scenario",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
                 {
                     final QubFolder qubFolder = process.getQubFolder().await();
                     final QubProjectFolder qubTestProjectFolder = qubFolder.getProjectFolder("qub", "test-java").await();
@@ -224,7 +404,6 @@ public interface QubPublishTests
                             .addContentFilePath(aClassFile.relativeTo(outputsFolder))
                             .setFunctionAutomatically());
                     final QubProjectVersionFolder projectVersionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
-                    projectVersionFolder.create().await();
                     final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath);
 
                     final int exitCode = QubPublish.run(parameters);
@@ -236,20 +415,42 @@ public interface QubPublishTests
                             "",
                             "Creating sources jar file...",
                             "Creating compiled sources jar file...",
-                            "ERROR: This package (me/my-project:1) can't be published because a package with that signature already exists."),
+                            "Publishing me/my-project@1..."
+                        ),
                         process.getOutputWriteStream());
                     test.assertLinesEqual(
                         Iterable.create(),
                         process.getErrorWriteStream());
-                    test.assertEqual(1, exitCode);
+                    test.assertEqual(0, exitCode);
 
-                    test.assertFalse(projectVersionFolder.getCompiledSourcesFile().await().exists().await());
-                    test.assertFalse(projectVersionFolder.getSourcesFile().await().exists().await());
-                    test.assertFalse(projectVersionFolder.getProjectJSONFile().await().exists().await());
+                    test.assertEqual(
+                        Iterable.create(
+                            "Content Files:",
+                            "A.class"),
+                        Strings.getLines(projectVersionFolder.getCompiledSourcesFile().await().getContentsAsString().await()));
+                    test.assertEqual(
+                        Iterable.create(
+                            "Content Files:",
+                            "A.java"),
+                        Strings.getLines(projectVersionFolder.getSourcesFile().await().getContentsAsString().await()));
+                    test.assertEqual(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
+                            .setVersion("1")
+                            .setJava(ProjectJSONJava.create())
+                            .toString(),
+                        projectVersionFolder.getProjectJSONFile().await().getContentsAsString().await());
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.parse(QubPublishHashManifest.getManifestFile(projectVersionFolder).await()).await();
+                    test.assertEqual(Iterable.create("my-project.jar", "my-project.sources.jar", "project.json", "project.lock.json"), QubPublishVerifyTests.getSortedFileNames(hashManifest));
+                    test.assertEqual(
+                        QubPublishFiles.getSHA256(projectVersionFolder.getCompiledSourcesFile().await()).await(),
+                        hashManifest.getHash("my-project.jar"));
+                    test.assertEqual(Iterable.create(), QubPublishVerify.verify(projectVersionFolder, hashManifest).await());
                     test.assertFalse(qubFolder.fileExists("my-project.cmd").await());
                 });
 
-                runner.test("with simple success scenario",
+                runner.test("with up-to-date outputs",
                     (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
                     (Test test, FakeDesktopProcess process) ->
                 {
@@ -311,6 +512,111 @@ public interface QubPublishTests
                     final QubProjectVersionFolder projectVersionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
                     final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath);
 
+                    test.assertEqual(0, QubPublish.run(parameters));
+                    projectVersionFolder.delete().await();
+
+                    final int exitCode = QubPublish.run(parameters);
+
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Compiling 1 file...",
+                            "Running tests...",
+                            "",
+                            "Creating sources jar file...",
+                            "Creating compiled sources jar file...",
+                            "Publishing me/my-project@1...",
+                            "Outputs are up to date.",
+                            "Publishing me/my-project@1..."),
+                        process.getOutputWriteStream());
+                    test.assertLinesEqual(
+                        Iterable.create(),
+                        process.getErrorWriteStream());
+                    test.assertEqual(0, exitCode);
+
+                    test.assertEqual(
+                        Iterable.create(
+                            "Content Files:",
+                            "A.class"),
+                        Strings.getLines(projectVersionFolder.getCompiledSourcesFile().await().getContentsAsString().await()));
+                    test.assertEqual(
+                        Iterable.create(
+                            "Content Files:",
+                            "A.java"),
+                        Strings.getLines(projectVersionFolder.getSourcesFile().await().getContentsAsString().await()));
+                    test.assertEqual(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
+                            .setVersion("1")
+                            .setJava(ProjectJSONJava.create())
+                            .toString(),
+                        projectVersionFolder.getProjectJSONFile().await().getContentsAsString().await());
+                    test.assertFalse(qubFolder.fileExists("my-project.cmd").await());
+                });
+
+                runner.test("with blobstore",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder qubTestProjectFolder = qubFolder.getProjectFolder("qub", "test-java").await();
+                    final File qubTestLogFile = qubTestProjectFolder.getProjectDataFolder().await()
+                        .getFile("logs/1.log").await();
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
+                            .setVersion("1")
+                            .setJava(ProjectJSONJava.create())
+                            .toString());
+                    final Folder outputsFolder = currentFolder.getFolder("outputs").await();
+                    final File aClassFile = outputsFolder.getFile("A.class").await();
+                    final Folder sourcesFolder = currentFolder.getFolder("sources").await();
+                    final File aJavaFile = sourcesFolder.getFile("A.java").await();
+                    aJavaFile.setContentsAsString("A.java source").await();
+                    final String jvmClassPath = "/fake-jvm-classpath";
+                    process.getProcessFactory()
+                        .add(new FakeJavacProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addVersion()
+                            .setVersionFunctionAutomatically("javac 14.0.1"))
+                        .add(new FakeJavacProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addOutputFolder(outputsFolder)
+                            .addXlintUnchecked()
+                            .addXlintDeprecation()
+                            .addClasspath(outputsFolder)
+                            .addSourceFile(aJavaFile.relativeTo(currentFolder))
+                            .setCompileFunctionAutomatically())
+                        .add(new FakeConsoleTestRunnerProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addClasspath(Iterable.create(outputsFolder.toString(), jvmClassPath))
+                            .addConsoleTestRunnerFullClassName()
+                            .addProfiler(false)
+                            .addVerbose(false)
+                            .addTestJson(true)
+                            .addLogFile(qubTestLogFile)
+                            .addOutputFolder(outputsFolder)
+                            .addCoverage(Coverage.None)
+                            .addFullClassNamesToTest(Iterable.create(aJavaFile.getNameWithoutFileExtension())))
+                        .add(new FakeJarProcessRun()
+                            .setWorkingFolder(sourcesFolder)
+                            .addCreate()
+                            .addJarFile("my-project.sources.jar")
+                            .addContentFilePath(aJavaFile.relativeTo(sourcesFolder))
+                            .setFunctionAutomatically())
+                        .add(new FakeJarProcessRun()
+                            .setWorkingFolder(outputsFolder)
+                            .addCreate()
+                            .addJarFile("my-project.jar")
+                            .addContentFilePath(aClassFile.relativeTo(outputsFolder))
+                            .setFunctionAutomatically());
+                    final QubProjectVersionFolder projectVersionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath)
+                        .setBlobStore(true);
+
                     final int exitCode = QubPublish.run(parameters);
 
                     test.assertLinesEqual(
@@ -347,6 +653,18 @@ public interface QubPublishTests
                             .toString(),
                         projectVersionFolder.getProjectJSONFile().await().getContentsAsString().await());
                     test.assertFalse(qubFolder.fileExists("my-project.cmd").await());
+
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.get(qubFolder).await();
+                    final File compiledSourcesFile = projectVersionFolder.getCompiledSourcesFile().await();
+                    final File compiledSourcesBlobFile = blobStore.getBlobFile(QubPublishFiles.getSHA256(compiledSourcesFile).await()).await();
+                    test.assertEqual(
+                        compiledSourcesFile.getContentsAsString().await(),
+                        compiledSourcesBlobFile.getContentsAsString().await());
+                    final File sourcesFile = projectVersionFolder.getSourcesFile().await();
+                    final File sourcesBlobFile = blobStore.getBlobFile(QubPublishFiles.getSHA256(sourcesFile).await()).await();
+                    test.assertEqual(
+                        sourcesFile.getContentsAsString().await(),
+                        sourcesBlobFile.getContentsAsString().await());
                 });
 
                 runner.test("with mainClass in project.json",
@@ -459,6 +777,130 @@ public interface QubPublishTests
                         Strings.getLines(qubFolder.getFileContentsAsString("my-project.cmd").await()));
                 });
 
+                runner.test("with mainClass and appcds",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder qubTestProjectFolder = qubFolder.getProjectFolder("qub", "test-java").await();
+                    final File qubTestLogFile = qubTestProjectFolder.getProjectDataFolder().await()
+                        .getFile("logs/1.log").await();
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
+                            .setVersion("1")
+                            .setJava(ProjectJSONJava.create()
+                                .setMainClass("A"))
+                            .toString());
+                    final Folder outputsFolder = currentFolder.getFolder("outputs").await();
+                    final File aClassFile = outputsFolder.getFile("A.class").await();
+                    final File manifestFile = outputsFolder.getFile("META-INF/MANIFEST.MF").await();
+                    final Folder sourcesFolder = currentFolder.getFolder("sources").await();
+                    final File aJavaFile = sourcesFolder.getFile("A.java").await();
+                    aJavaFile.setContentsAsString("A.java source").await();
+                    final String jvmClassPath = "/fake-jvm-classpath";
+                    final File archiveFile = qubFolder.getFile("me/my-project/archives/1.jsa").await();
+                    String qubFolderLaunchPath = qubFolder.toString().replace('/', java.io.File.separatorChar);
+                    if (!qubFolderLaunchPath.endsWith(java.io.File.separator))
+                    {
+                        qubFolderLaunchPath += java.io.File.separator;
+                    }
+                    process.getProcessFactory()
+                        .add(new FakeJavacProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addVersion()
+                            .setVersionFunctionAutomatically("javac 14.0.1"))
+                        .add(new FakeJavacProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addOutputFolder(outputsFolder)
+                            .addXlintUnchecked()
+                            .addXlintDeprecation()
+                            .addClasspath(outputsFolder)
+                            .addSourceFile(aJavaFile.relativeTo(currentFolder))
+                            .setCompileFunctionAutomatically())
+                        .add(new FakeConsoleTestRunnerProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addClasspath(Iterable.create(outputsFolder.toString(), jvmClassPath))
+                            .addConsoleTestRunnerFullClassName()
+                            .addProfiler(false)
+                            .addVerbose(false)
+                            .addTestJson(true)
+                            .addLogFile(qubTestLogFile)
+                            .addOutputFolder(outputsFolder)
+                            .addCoverage(Coverage.None)
+                            .addFullClassNamesToTest(Iterable.create(aJavaFile.getNameWithoutFileExtension())))
+                        .add(new FakeJarProcessRun()
+                            .setWorkingFolder(sourcesFolder)
+                            .addCreate()
+                            .addJarFile("my-project.sources.jar")
+                            .addContentFilePath(aJavaFile.relativeTo(sourcesFolder))
+                            .setFunctionAutomatically())
+                        .add(new FakeJarProcessRun()
+                            .setWorkingFolder(outputsFolder)
+                            .addCreate()
+                            .addJarFile("my-project.jar")
+                            .addManifestFile(manifestFile)
+                            .addContentFilePath(aClassFile.relativeTo(outputsFolder))
+                            .setFunctionAutomatically())
+                        .add(FakeProcessRun.get("java")
+                            .setWorkingFolder(qubFolder)
+                            .addArguments(
+                                "-XX:ArchiveClassesAtExit=" + qubFolderLaunchPath + "me/my-project/archives/1.jsa",
+                                "-classpath",
+                                qubFolderLaunchPath + "me/my-project/versions/1/my-project.jar",
+                                "A",
+                                "--version",
+                                "--quiet")
+                            .setFunction(() ->
+                            {
+                                archiveFile.setContentsAsString("fake archive").await();
+                            }))
+                        .add(FakeProcessRun.get("java")
+                            .setWorkingFolder(qubFolder)
+                            .addArguments(
+                                "-Xlog:class+load=info",
+                                "-XX:SharedArchiveFile=" + qubFolderLaunchPath + "me/my-project/archives/1.jsa",
+                                "-classpath",
+                                qubFolderLaunchPath + "me/my-project/versions/1/my-project.jar",
+                                "A",
+                                "--version",
+                                "--quiet")
+                            .setFunction((ByteWriteStream output) ->
+                            {
+                                CharacterToByteWriteStream.create(output).writeLine("[0.020s][info][class,load] A source: shared objects file").await();
+                            }));
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath)
+                        .setAppCDS(true)
+                        .setAppCDSArguments(Iterable.create("--version", "--quiet"));
+
+                    final int exitCode = QubPublish.run(parameters);
+
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Compiling 1 file...",
+                            "Running tests...",
+                            "",
+                            "Creating sources jar file...",
+                            "Creating compiled sources jar file...",
+                            "Publishing me/my-project@1...",
+                            "Creating class data sharing archive..."),
+                        process.getOutputWriteStream());
+                    test.assertLinesEqual(
+                        Iterable.create(),
+                        process.getErrorWriteStream());
+                    test.assertEqual(0, exitCode);
+
+                    test.assertEqual("fake archive", archiveFile.getContentsAsString().await());
+                    test.assertEqual(
+                        Iterable.create(
+                            "@echo OFF",
+                            "java -Xlog:cds=off -XX:SharedArchiveFile=%~dp0me/my-project/archives/1.jsa -classpath %~dp0me/my-project/versions/1/my-project.jar A %*"),
+                        Strings.getLines(qubFolder.getFileContentsAsString("my-project.cmd").await()));
+                });
+
                 runner.test("with mainClass and dependencies in project.json",
                     (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
                     (Test test, FakeDesktopProcess process) ->
@@ -586,6 +1028,155 @@ public interface QubPublishTests
                         Strings.getLines(qubFolder.getFileContentsAsString("my-project.cmd").await()));
                 });
 
+                runner.test("with mainClass, dependencies, and launcherjar",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubProjectFolder qubTestProjectFolder = qubFolder.getProjectFolder("qub", "test-java").await();
+                    final File qubTestLogFile = qubTestProjectFolder.getProjectDataFolder().await()
+                        .getFile("logs/1.log").await();
+                    final QubProjectVersionFolder projectVersionFolder = qubFolder.getProjectVersionFolder("me", "my-project", "1").await();
+                    final QubProjectVersionFolder meMyOtherProject5Folder = qubFolder.getProjectVersionFolder("me", "my-other-project", "5").await();
+                    meMyOtherProject5Folder.getCompiledSourcesFile().await().create().await();
+                    final QubProjectVersionFolder youStuff731Folder = qubFolder.getProjectVersionFolder("you", "stuff", "7.3.1").await();
+                    youStuff731Folder.getCompiledSourcesFile().await().create().await();
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString(
+                        ProjectJSON.create()
+                            .setPublisher(projectVersionFolder.getPublisherName().await())
+                            .setProject(projectVersionFolder.getProjectName().await())
+                            .setVersion(projectVersionFolder.getVersion().await())
+                            .setJava(ProjectJSONJava.create()
+                                .setMainClass("A")
+                                .setDependencies(Iterable.create(
+                                    meMyOtherProject5Folder.getProjectSignature().await(),
+                                    youStuff731Folder.getProjectSignature().await())))
+                            .toString());
+                    final Folder outputsFolder = currentFolder.getFolder("outputs").await();
+                    final File aClassFile = outputsFolder.getFile("A.class").await();
+                    final File manifestFile = outputsFolder.getFile("META-INF/MANIFEST.MF").await();
+                    final Folder sourcesFolder = currentFolder.getFolder("sources").await();
+                    final File aJavaFile = sourcesFolder.getFile("A.java").await();
+                    aJavaFile.setContentsAsString("A.java source").await();
+                    final String jvmClassPath = "/fake-jvm-classpath";
+                    process.getProcessFactory()
+                        .add(new FakeJavacProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addVersion()
+                            .setVersionFunctionAutomatically("javac 14.0.1"))
+                        .add(new FakeJavacProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addOutputFolder(outputsFolder)
+                            .addXlintUnchecked()
+                            .addXlintDeprecation()
+                            .addClasspath(Iterable.create(
+                                outputsFolder.toString(),
+                                meMyOtherProject5Folder.getCompiledSourcesFile().await().toString(),
+                                youStuff731Folder.getCompiledSourcesFile().await().toString()))
+                            .addSourceFile(aJavaFile.relativeTo(currentFolder))
+                            .setCompileFunctionAutomatically())
+                        .add(new FakeConsoleTestRunnerProcessRun()
+                            .setWorkingFolder(currentFolder)
+                            .addClasspath(Iterable.create(
+                                outputsFolder.toString(),
+                                youStuff731Folder.getCompiledSourcesFile().await().toString(),
+                                meMyOtherProject5Folder.getCompiledSourcesFile().await().toString(),
+                                jvmClassPath))
+                            .addConsoleTestRunnerFullClassName()
+                            .addProfiler(false)
+                            .addVerbose(false)
+                            .addTestJson(true)
+                            .addLogFile(qubTestLogFile)
+                            .addOutputFolder(outputsFolder)
+                            .addCoverage(Coverage.None)
+                            .addFullClassNamesToTest(Iterable.create(aJavaFile.getNameWithoutFileExtension())))
+                        .add(new FakeJarProcessRun()
+                            .setWorkingFolder(sourcesFolder)
+                            .addCreate()
+                            .addJarFile("my-project.sources.jar")
+                            .addContentFilePath(aJavaFile.relativeTo(sourcesFolder))
+                            .setFunctionAutomatically())
+                        .add(new FakeJarProcessRun()
+                            .setWorkingFolder(outputsFolder)
+                            .addCreate()
+                            .addJarFile("my-project.jar")
+                            .addManifestFile(manifestFile)
+                            .addContentFilePath(aClassFile.relativeTo(outputsFolder))
+                            .setFunctionAutomatically());
+                    final QubPublishParameters parameters = QubPublishTests.getParameters(process, jvmClassPath)
+                        .setLauncherJar(true);
+
+                    final int exitCode = QubPublish.run(parameters);
+
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Compiling 1 file...",
+                            "Running tests...",
+                            "",
+                            "Creating sources jar file...",
+                            "Creating compiled sources jar file...",
+                            "Publishing me/my-project@1..."),
+                        process.getOutputWriteStream());
+                    test.assertLinesEqual(
+                        Iterable.create(),
+                        process.getErrorWriteStream());
+                    test.assertEqual(0, exitCode);
+
+                    test.assertEqual(
+                        Iterable.create(
+                            "Manifest File:",
+                            "/outputs/META-INF/MANIFEST.MF",
+                            "",
+                            "Content Files:",
+                            "A.class"),
+                        Strings.getLines(projectVersionFolder.getCompiledSourcesFile().await().getContentsAsString().await()));
+                    test.assertEqual(
+                        Iterable.create(
+                            "Content Files:",
+                            "A.java"),
+                        Strings.getLines(projectVersionFolder.getSourcesFile().await().getContentsAsString().await()));
+                    test.assertEqual(
+                        ProjectJSON.create()
+                            .setPublisher("me")
+                            .setProject("my-project")
+                            .setVersion("1")
+                            .setJava(ProjectJSONJava.create()
+                                .setMainClass("A")
+                                .setDependencies(Iterable.create(
+                                    meMyOtherProject5Folder.getProjectSignature().await(),
+                                    youStuff731Folder.getProjectSignature().await())))
+                            .toString(),
+                        projectVersionFolder.getProjectJSONFile().await().getContentsAsString().await());
+                    test.assertEqual(
+                        Iterable.create(
+                            "@echo OFF",
+                            "java -jar %~dp0me/my-project/versions/1/my-project.launcher.jar %*"),
+                        Strings.getLines(qubFolder.getFileContentsAsString("my-project.cmd").await()));
+
+                    final byte[] launcherJarBytes = projectVersionFolder.getFile("my-project.launcher.jar").await().getContents().await();
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.parse(QubPublishHashManifest.getManifestFile(projectVersionFolder).await()).await();
+                    test.assertEqual(
+                        Iterable.create("my-project.jar", "my-project.launcher.jar", "my-project.sources.jar", "project.json", "project.lock.json"),
+                        QubPublishVerifyTests.getSortedFileNames(hashManifest));
+                    test.assertEqual(QubPublishFiles.getSHA256(launcherJarBytes), hashManifest.getHash("my-project.launcher.jar"));
+                    test.assertEqual(Iterable.create(), QubPublishVerify.verify(projectVersionFolder, hashManifest).await());
+                    try (final java.util.jar.JarInputStream launcherJarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(launcherJarBytes)))
+                    {
+                        final java.util.jar.Attributes attributes = launcherJarStream.getManifest().getMainAttributes();
+                        test.assertEqual("A", attributes.getValue(java.util.jar.Attributes.Name.MAIN_CLASS));
+                        test.assertEqual(
+                            "../../../../me/my-project/versions/1/my-project.jar ../../../../you/stuff/versions/7.3.1/stuff.jar ../../../../me/my-other-project/versions/5/my-other-project.jar",
+                            attributes.getValue(java.util.jar.Attributes.Name.CLASS_PATH));
+                        test.assertNull(launcherJarStream.getNextJarEntry());
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+
                 runner.test("with mainClass and transitive dependencies in project.json",
                     (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
                     (Test test, FakeDesktopProcess process) ->
@@ -729,6 +1320,12 @@ public interface QubPublishTests
                             "@echo OFF",
                             "java -classpath %~dp0me/my-project/versions/1/my-project.jar;%~dp0me/my-other-project/versions/5/my-other-project.jar;%~dp0you/stuff/versions/7.3.1/stuff.jar A %*"),
                         Strings.getLines(qubFolder.getFileContentsAsString("my-project.cmd").await()));
+                    test.assertEqual(
+                        Iterable.create(
+                            meMyOtherProject5Folder.getProjectSignature().await(),
+                            youStuff731Folder.getProjectSignature().await()),
+                        QubPublishLockFile.parse(QubPublishLockFile.getLockFile(projectVersionFolder).await()).await()
+                            .getDependencies());
                 });
 
                 runner.test("with mainClass and shortcutName in project.json",
@@ -943,6 +1540,10 @@ public interface QubPublishTests
                         Iterable.create(),
                         process.getErrorWriteStream());
                     test.assertEqual(0, exitCode);
+                    test.assertEqual(
+                        Iterable.create(ProjectSignature.create("me", "other-project", "5")),
+                        QubPublishDependentsIndex.parse(QubPublishDependentsIndex.getIndexFile(qubFolder).await()).await()
+                            .getDependents("me", "my-project"));
 
                     test.assertEqual(
                         Iterable.create(
@@ -0,0 +1,84 @@
+package qub;
+
+public interface QubPublishTraceTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishTrace.class, () ->
+        {
+            runner.test("create(File)", (Test test) ->
+            {
+                test.assertThrows(() -> QubPublishTrace.create(null),
+                    new PreConditionFailure("traceFile cannot be null."));
+            });
+
+            runner.test("disabled()", (Test test) ->
+            {
+                final QubPublishTrace trace = QubPublishTrace.disabled();
+                test.assertFalse(trace.isEnabled());
+                test.assertNull(trace.getTraceFile());
+
+                try (final QubPublishTrace.Span span = trace.start("a"))
+                {
+                    test.assertEqual("a", span.getName());
+                }
+                test.assertEqual(Iterable.create(), trace.getEvents());
+                trace.save().await();
+            });
+
+            runner.testGroup("start(String)", () ->
+            {
+                runner.test("with empty name",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishTrace trace = QubPublishTrace.create(process.getCurrentFolder().getFile("trace.json").await());
+                    test.assertThrows(() -> trace.start(""),
+                        new PreConditionFailure("name cannot be empty."));
+                });
+
+                runner.test("with nested spans",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishTrace trace = QubPublishTrace.create(process.getCurrentFolder().getFile("trace.json").await());
+                    try (final QubPublishTrace.Span outerSpan = trace.start("outer"))
+                    {
+                        try (final QubPublishTrace.Span innerSpan = trace.start("inner"))
+                        {
+                            test.assertFalse(innerSpan.isDisposed());
+                        }
+                        test.assertEqual(1, trace.getEvents().getCount());
+                    }
+
+                    final List<JSONObject> events = List.create();
+                    events.addAll(trace.getEvents());
+                    test.assertEqual(2, events.getCount());
+
+                    final JSONObject innerEvent = events.get(0);
+                    test.assertEqual("inner", innerEvent.getString("name").await());
+                    test.assertEqual("X", innerEvent.getString("ph").await());
+
+                    final JSONObject outerEvent = events.get(1);
+                    test.assertEqual("outer", outerEvent.getString("name").await());
+                    test.assertTrue(outerEvent.getNumber("ts").await() <= innerEvent.getNumber("ts").await());
+                    test.assertTrue(outerEvent.getNumber("dur").await() >= innerEvent.getNumber("dur").await());
+                });
+            });
+
+            runner.test("save()",
+                (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                (Test test, FakeDesktopProcess process) ->
+            {
+                final File traceFile = process.getCurrentFolder().getFile("trace.json").await();
+                final QubPublishTrace trace = QubPublishTrace.create(traceFile);
+                trace.start("a").dispose().await();
+                trace.save().await();
+
+                final JSONObject traceJson = JSON.parseObject(traceFile.getContentsAsString().await()).await();
+                test.assertEqual("ms", traceJson.getString("displayTimeUnit").await());
+                test.assertEqual(1, traceJson.getArray("traceEvents").await().getCount());
+            });
+        });
+    }
+}
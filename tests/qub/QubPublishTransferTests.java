@@ -0,0 +1,211 @@
+package qub;
+
+public interface QubPublishTransferTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishTransfer.class, () ->
+        {
+            runner.testGroup("create(Folder)", () ->
+            {
+                runner.test("with null", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishTransfer.create(null),
+                        new PreConditionFailure("targetFolder cannot be null."));
+                });
+            });
+
+            runner.testGroup("run(QubPublishWorkers)", () ->
+            {
+                runner.test("with no files",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder targetFolder = process.getCurrentFolder().getFolder("target").await();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        test.assertEqual(Iterable.create(), QubPublishTransfer.create(targetFolder).run(workers).await());
+                    }
+                });
+
+                runner.test("with existing files and missing optional artifact",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString("{}").await();
+                    final File jarFile = currentFolder.getFile("outputs/a.jar").await();
+                    jarFile.setContentsAsString("jar contents").await();
+                    final File testsJarFile = currentFolder.getFile("outputs/a.tests.jar").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        final Iterable<File> transferredFiles = QubPublishTransfer.create(targetFolder)
+                            .add(projectJsonFile)
+                            .addArtifact(jarFile)
+                            .addOptionalArtifact(testsJarFile)
+                            .run(workers)
+                            .await();
+                        test.assertEqual(
+                            Iterable.create(
+                                targetFolder.getFile("project.json").await(),
+                                targetFolder.getFile("a.jar").await()),
+                            transferredFiles);
+                    }
+                    test.assertEqual("{}", targetFolder.getFileContentsAsString("project.json").await());
+                    test.assertEqual("jar contents", targetFolder.getFileContentsAsString("a.jar").await());
+                    test.assertFalse(targetFolder.fileExists("a.tests.jar").await());
+                });
+
+                runner.test("with hash manifest",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File projectJsonFile = currentFolder.getFile("project.json").await();
+                    projectJsonFile.setContentsAsString("{}").await();
+                    final File jarFile = currentFolder.getFile("outputs/a.jar").await();
+                    jarFile.setContentsAsString("abc").await();
+                    final File testsJarFile = currentFolder.getFile("outputs/a.tests.jar").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.create();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        QubPublishTransfer.create(targetFolder)
+                            .setHashManifest(hashManifest)
+                            .add(projectJsonFile)
+                            .addArtifact(jarFile)
+                            .addOptionalArtifact(testsJarFile)
+                            .run(workers)
+                            .await();
+                    }
+                    test.assertEqual(Iterable.create("a.jar", "project.json"), QubPublishVerifyTests.getSortedFileNames(hashManifest));
+                    test.assertEqual("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hashManifest.getHash("a.jar"));
+                    test.assertEqual(QubPublishFiles.getSHA256(projectJsonFile).await(), hashManifest.getHash("project.json"));
+                    test.assertNull(hashManifest.getHash("a.tests.jar"));
+                });
+
+                runner.test("with hash manifest and blob store",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File jarFile = currentFolder.getFile("outputs/a.jar").await();
+                    jarFile.setContentsAsString("abc").await();
+                    final File testsJarFile = currentFolder.getFile("outputs/a.tests.jar").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+                    final QubPublishBlobStore blobStore = QubPublishBlobStore.create(currentFolder.getFolder("blobs").await());
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.create();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        final Iterable<File> transferredFiles = QubPublishTransfer.create(targetFolder)
+                            .setBlobStore(blobStore)
+                            .setHashManifest(hashManifest)
+                            .addArtifact(jarFile)
+                            .addOptionalArtifact(testsJarFile)
+                            .run(workers)
+                            .await();
+                        test.assertEqual(Iterable.create(targetFolder.getFile("a.jar").await()), transferredFiles);
+                    }
+                    final String hash = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+                    test.assertEqual(Iterable.create("a.jar"), QubPublishVerifyTests.getSortedFileNames(hashManifest));
+                    test.assertEqual(hash, hashManifest.getHash("a.jar"));
+                    test.assertEqual("abc", blobStore.getBlobFile(hash).await().getContentsAsString().await());
+                    test.assertEqual("abc", targetFolder.getFileContentsAsString("a.jar").await());
+                    test.assertFalse(targetFolder.fileExists("a.tests.jar").await());
+                });
+
+                runner.test("on disk with hash manifest and blob store", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File projectJsonFile = temporaryFolder.getFile("project.json").await();
+                        projectJsonFile.setContentsAsString("{}").await();
+                        final File jarFile = temporaryFolder.getFile("outputs/a.jar").await();
+                        jarFile.setContentsAsString("abc").await();
+                        final File sourcesJarFile = temporaryFolder.getFile("outputs/a.sources.jar").await();
+                        sourcesJarFile.setContentsAsString("sources").await();
+                        final File testsJarFile = temporaryFolder.getFile("outputs/a.tests.jar").await();
+                        final Folder targetFolder = temporaryFolder.getFolder("target").await();
+                        final QubPublishBlobStore blobStore = QubPublishBlobStore.create(temporaryFolder.getFolder("blobs").await());
+                        final QubPublishHashManifest hashManifest = QubPublishHashManifest.create();
+
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                        {
+                            final Iterable<File> transferredFiles = QubPublishTransfer.create(targetFolder)
+                                .setBlobStore(blobStore)
+                                .setHashManifest(hashManifest)
+                                .add(projectJsonFile)
+                                .addArtifact(jarFile)
+                                .add(sourcesJarFile)
+                                .addOptionalArtifact(testsJarFile)
+                                .run(workers)
+                                .await();
+                            test.assertEqual(
+                                Iterable.create(
+                                    targetFolder.getFile("project.json").await(),
+                                    targetFolder.getFile("a.jar").await(),
+                                    targetFolder.getFile("a.sources.jar").await()),
+                                transferredFiles);
+                        }
+                        test.assertEqual("{}", targetFolder.getFileContentsAsString("project.json").await());
+                        test.assertEqual("abc", targetFolder.getFileContentsAsString("a.jar").await());
+                        test.assertEqual("sources", targetFolder.getFileContentsAsString("a.sources.jar").await());
+                        test.assertFalse(targetFolder.fileExists("a.tests.jar").await());
+                        test.assertEqual(Iterable.create("a.jar", "a.sources.jar", "project.json"), QubPublishVerifyTests.getSortedFileNames(hashManifest));
+                        test.assertEqual(QubPublishBlobStoreTests.abcHash, hashManifest.getHash("a.jar"));
+                        test.assertEqual(QubPublishFiles.getSHA256(sourcesJarFile).await(), hashManifest.getHash("a.sources.jar"));
+
+                        // Only artifacts are published through the blob store.
+                        test.assertEqual(Iterable.create(blobStore.getBlobFile(QubPublishBlobStoreTests.abcHash).await()), blobStore.getBlobsFolder().getFilesRecursively().await());
+                        if (QubPublishBlobStoreTests.hasLinkCounts(temporaryFolder))
+                        {
+                            test.assertEqual(2, QubPublishBlobStoreTests.getLinkCount(targetFolder.getFile("a.jar").await()));
+                            test.assertEqual(1, QubPublishBlobStoreTests.getLinkCount(targetFolder.getFile("a.sources.jar").await()));
+                        }
+                    });
+                });
+
+                runner.test("on disk with missing required file", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final File jarFile = temporaryFolder.getFile("outputs/a.jar").await();
+                        final Folder targetFolder = temporaryFolder.getFolder("target").await();
+
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                        {
+                            test.assertThrows(() -> QubPublishTransfer.create(targetFolder)
+                                    .add(jarFile)
+                                    .run(workers)
+                                    .await(),
+                                new FileNotFoundException(jarFile));
+                        }
+                    });
+                });
+
+                runner.test("with missing required artifact",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final Folder currentFolder = process.getCurrentFolder();
+                    final File jarFile = currentFolder.getFile("outputs/a.jar").await();
+                    final Folder targetFolder = currentFolder.getFolder("target").await();
+
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                    {
+                        test.assertThrows(() -> QubPublishTransfer.create(targetFolder)
+                                .addArtifact(jarFile)
+                                .run(workers)
+                                .await(),
+                            new FileNotFoundException(jarFile));
+                    }
+                });
+            });
+        });
+    }
+}
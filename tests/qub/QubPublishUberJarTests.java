@@ -0,0 +1,253 @@
+package qub;
+
+public interface QubPublishUberJarTests
+{
+    /**
+     * Create the bytes of a compressed jar with the provided entry names and contents.
+     * @param entryNamesAndContents Alternating entry names and entry contents.
+     * @return The bytes of the jar.
+     */
+    static byte[] createJar(String... entryNamesAndContents)
+    {
+        final java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+        try (final java.util.jar.JarOutputStream jarStream = new java.util.jar.JarOutputStream(result))
+        {
+            for (int i = 0; i < entryNamesAndContents.length; i += 2)
+            {
+                jarStream.putNextEntry(new java.util.zip.ZipEntry(entryNamesAndContents[i]));
+                jarStream.write(entryNamesAndContents[i + 1].getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                jarStream.closeEntry();
+            }
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Read the entries of the provided jar bytes.
+     * @param jarBytes The bytes of the jar to read.
+     * @return An "<entry name>: <entry contents>" string for each entry of the jar, not including
+     * the manifest.
+     */
+    static Iterable<String> readJar(byte[] jarBytes)
+    {
+        final List<String> result = List.create();
+        try (final java.util.jar.JarInputStream jarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(jarBytes)))
+        {
+            java.util.jar.JarEntry entry = jarStream.getNextJarEntry();
+            while (entry != null)
+            {
+                if (entry.getMethod() != java.util.zip.ZipEntry.STORED)
+                {
+                    throw new RuntimeException(entry.getName() + " is not stored.");
+                }
+                result.add(entry.getName() + ": " + new String(jarStream.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8));
+                entry = jarStream.getNextJarEntry();
+            }
+        }
+        catch (java.io.IOException error)
+        {
+            throw Exceptions.asRuntime(error);
+        }
+        return result;
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishUberJar.class, () ->
+        {
+            runner.testGroup("create(String)", () ->
+            {
+                runner.test("with null mainClass", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishUberJar.create(null),
+                        new PreConditionFailure("mainClass cannot be null."));
+                });
+
+                runner.test("with empty mainClass", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishUberJar.create(""),
+                        new PreConditionFailure("mainClass cannot be empty."));
+                });
+
+                runner.test("with non-empty mainClass", (Test test) ->
+                {
+                    final QubPublishUberJar uberJar = QubPublishUberJar.create("A");
+                    test.assertEqual("A", uberJar.getMainClass());
+                    test.assertEqual(Iterable.create(), uberJar.getEntryNames());
+                    test.assertEqual(Iterable.create(), uberJar.getCollisions());
+                });
+            });
+
+            runner.testGroup("getFileName(String)", () ->
+            {
+                runner.test("with non-empty project", (Test test) ->
+                {
+                    test.assertEqual("my-project.uber.jar", QubPublishUberJar.getFileName("my-project"));
+                });
+            });
+
+            runner.testGroup("isExcluded(String)", () ->
+            {
+                final Action2<String,Boolean> isExcludedTest = (String entryName, Boolean expected) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(entryName), (Test test) ->
+                    {
+                        test.assertEqual(expected, QubPublishUberJar.isExcluded(entryName));
+                    });
+                };
+
+                isExcludedTest.run("A.class", false);
+                isExcludedTest.run("a/b/C.class", false);
+                isExcludedTest.run("META-INF/MANIFEST.MF", true);
+                isExcludedTest.run("META-INF/manifest.mf", true);
+                isExcludedTest.run("META-INF/SIGNER.SF", true);
+                isExcludedTest.run("META-INF/SIGNER.RSA", true);
+                isExcludedTest.run("META-INF/signer.dsa", true);
+                isExcludedTest.run("META-INF/LICENSE", false);
+                isExcludedTest.run("META-INF/services/a.B", false);
+                isExcludedTest.run("module-info.class", true);
+                isExcludedTest.run("META-INF/versions/11/module-info.class", true);
+            });
+
+            runner.testGroup("addJar(String,byte[])", () ->
+            {
+                runner.test("with one jar", (Test test) ->
+                {
+                    final QubPublishUberJar uberJar = QubPublishUberJar.create("A")
+                        .addJar("a.jar", QubPublishUberJarTests.createJar(
+                            "A.class", "a",
+                            "module-info.class", "module"))
+                        .await();
+                    test.assertEqual(Iterable.create("A.class"), uberJar.getEntryNames());
+                    test.assertEqual(Iterable.create(), uberJar.getCollisions());
+                });
+
+                runner.test("with identical entries in multiple jars", (Test test) ->
+                {
+                    final QubPublishUberJar uberJar = QubPublishUberJar.create("A")
+                        .addJar("a.jar", QubPublishUberJarTests.createJar("A.class", "a", "c/C.class", "c"))
+                        .await()
+                        .addJar("b.jar", QubPublishUberJarTests.createJar("B.class", "b", "c/C.class", "c"))
+                        .await();
+                    test.assertEqual(Iterable.create("A.class", "c/C.class", "B.class"), uberJar.getEntryNames());
+                    test.assertEqual(Iterable.create(), uberJar.getCollisions());
+                });
+
+                runner.test("with colliding classes", (Test test) ->
+                {
+                    final QubPublishUberJar uberJar = QubPublishUberJar.create("A")
+                        .addJar("a.jar", QubPublishUberJarTests.createJar("c/C.class", "1", "LICENSE", "x"))
+                        .await()
+                        .addJar("b.jar", QubPublishUberJarTests.createJar("c/C.class", "2", "LICENSE", "y"))
+                        .await();
+                    test.assertEqual(Iterable.create("c/C.class", "LICENSE"), uberJar.getEntryNames());
+
+                    int collisionCount = 0;
+                    for (final QubPublishUberJar.Collision collision : uberJar.getCollisions())
+                    {
+                        ++collisionCount;
+                        test.assertEqual("c/C.class", collision.getEntryName());
+                        test.assertEqual("a.jar", collision.getUsedJarName());
+                        test.assertEqual("b.jar", collision.getIgnoredJarName());
+                        test.assertEqual("c/C.class in b.jar is different from the one in a.jar, so it was ignored.", collision.toString());
+                    }
+                    test.assertEqual(1, collisionCount);
+                });
+
+                runner.test("with invalid jar bytes", (Test test) ->
+                {
+                    final QubPublishUberJar uberJar = QubPublishUberJar.create("A")
+                        .addJar("a.jar", new byte[] { 1, 2, 3 })
+                        .await();
+                    test.assertEqual(Iterable.create(), uberJar.getEntryNames());
+                });
+            });
+
+            runner.testGroup("getBytes()", () ->
+            {
+                runner.test("with no jars", (Test test) ->
+                {
+                    final byte[] bytes = QubPublishUberJar.create("A").getBytes();
+                    try (final java.util.jar.JarInputStream jarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(bytes)))
+                    {
+                        test.assertEqual("A", jarStream.getManifest().getMainAttributes().getValue(java.util.jar.Attributes.Name.MAIN_CLASS));
+                        test.assertNull(jarStream.getNextJarEntry());
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+
+                runner.test("with multiple jars", (Test test) ->
+                {
+                    final byte[] bytes = QubPublishUberJar.create("A")
+                        .addJar("a.jar", QubPublishUberJarTests.createJar(
+                            "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nMain-Class: Z\n",
+                            "A.class", "a",
+                            "META-INF/services/s.S", "a.Impl\n"))
+                        .await()
+                        .addJar("b.jar", QubPublishUberJarTests.createJar(
+                            "B.class", "b",
+                            "META-INF/services/s.S", "# comment\nb.Impl\na.Impl\n"))
+                        .await()
+                        .getBytes();
+                    test.assertEqual(
+                        Iterable.create(
+                            "A.class: a",
+                            "META-INF/services/s.S: a.Impl\nb.Impl\n",
+                            "B.class: b"),
+                        QubPublishUberJarTests.readJar(bytes));
+
+                    try (final java.util.jar.JarInputStream jarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(bytes)))
+                    {
+                        test.assertEqual("A", jarStream.getManifest().getMainAttributes().getValue(java.util.jar.Attributes.Name.MAIN_CLASS));
+                        test.assertNull(jarStream.getManifest().getMainAttributes().getValue(java.util.jar.Attributes.Name.MULTI_RELEASE));
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+
+                runner.test("with multi-release jar", (Test test) ->
+                {
+                    final QubPublishUberJar uberJar = QubPublishUberJar.create("A")
+                        .addJar("a.jar", QubPublishUberJarTests.createJar(
+                            "A.class", "a"))
+                        .await();
+                    test.assertFalse(uberJar.isMultiRelease());
+
+                    uberJar.addJar("b.jar", QubPublishUberJarTests.createJar(
+                            "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\nMulti-Release: true\n",
+                            "B.class", "b",
+                            "META-INF/versions/11/B.class", "b11"))
+                        .await();
+                    test.assertTrue(uberJar.isMultiRelease());
+
+                    final byte[] bytes = uberJar.getBytes();
+                    test.assertEqual(
+                        Iterable.create(
+                            "A.class: a",
+                            "B.class: b",
+                            "META-INF/versions/11/B.class: b11"),
+                        QubPublishUberJarTests.readJar(bytes));
+
+                    try (final java.util.jar.JarInputStream jarStream = new java.util.jar.JarInputStream(new java.io.ByteArrayInputStream(bytes)))
+                    {
+                        test.assertEqual("A", jarStream.getManifest().getMainAttributes().getValue(java.util.jar.Attributes.Name.MAIN_CLASS));
+                        test.assertEqual("true", jarStream.getManifest().getMainAttributes().getValue(java.util.jar.Attributes.Name.MULTI_RELEASE));
+                    }
+                    catch (java.io.IOException error)
+                    {
+                        throw Exceptions.asRuntime(error);
+                    }
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,206 @@
+package qub;
+
+public interface QubPublishVerifyTests
+{
+    /**
+     * Get the file names of the provided hash manifest in sorted order, since files that are
+     * transferred concurrently can be added to a manifest in any order.
+     * @param hashManifest The hash manifest to get the file names of.
+     * @return The sorted file names of the provided hash manifest.
+     */
+    static Iterable<String> getSortedFileNames(QubPublishHashManifest hashManifest)
+    {
+        final java.util.TreeSet<String> sortedFileNames = new java.util.TreeSet<>();
+        for (final String fileName : hashManifest.getFileNames())
+        {
+            sortedFileNames.add(fileName);
+        }
+
+        final List<String> result = List.create();
+        for (final String fileName : sortedFileNames)
+        {
+            result.add(fileName);
+        }
+        return result;
+    }
+
+    /**
+     * Create a published version folder with the provided file contents and a hash manifest
+     * that matches them.
+     */
+    static QubProjectVersionFolder createVersionFolder(QubFolder qubFolder, String publisher, String project, String version, String... fileNamesAndContents)
+    {
+        final QubProjectVersionFolder result = qubFolder.getProjectVersionFolder(publisher, project, version).await();
+        final QubPublishHashManifest hashManifest = QubPublishHashManifest.create();
+        for (int i = 0; i < fileNamesAndContents.length; i += 2)
+        {
+            final File file = result.getFile(fileNamesAndContents[i]).await();
+            file.setContentsAsString(fileNamesAndContents[i + 1]).await();
+            hashManifest.set(file.getName(), QubPublishFiles.getSHA256(file).await());
+        }
+        hashManifest.save(result).await();
+        return result;
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishVerify.class, () ->
+        {
+            runner.testGroup("create(QubFolder,File)", () ->
+            {
+                runner.test("with null qubFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishVerify.create(null, null),
+                        new PreConditionFailure("qubFolder cannot be null."));
+                });
+            });
+
+            runner.testGroup("get(QubFolder)", () ->
+            {
+                runner.test("with qub folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final QubPublishVerify verify = QubPublishVerify.get(qubFolder).await();
+                    test.assertSame(qubFolder, verify.getQubFolder());
+                    test.assertEqual(
+                        qubFolder.getProjectFolder("qub", "publish-java").await().getProjectDataFolder().await().getFile("verify.json").await(),
+                        verify.getCacheFile());
+                });
+            });
+
+            runner.testGroup("verify(QubProjectVersionFolder,QubPublishHashManifest)", () ->
+            {
+                runner.test("with matching files",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectVersionFolder versionFolder = QubPublishVerifyTests.createVersionFolder(process.getQubFolder().await(), "me", "a", "1",
+                        "project.json", "{}",
+                        "a.jar", "a");
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.parse(QubPublishHashManifest.getManifestFile(versionFolder).await()).await();
+                    test.assertEqual(Iterable.create(), QubPublishVerify.verify(versionFolder, hashManifest).await());
+                });
+
+                runner.test("with changed and missing files",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectVersionFolder versionFolder = QubPublishVerifyTests.createVersionFolder(process.getQubFolder().await(), "me", "a", "1",
+                        "project.json", "{}",
+                        "a.jar", "a",
+                        "a.sources.jar", "b");
+                    final File jarFile = versionFolder.getFile("a.jar").await();
+                    jarFile.setContentsAsString("").await();
+                    final File sourcesJarFile = versionFolder.getFile("a.sources.jar").await();
+                    sourcesJarFile.delete().await();
+                    final QubPublishHashManifest hashManifest = QubPublishHashManifest.parse(QubPublishHashManifest.getManifestFile(versionFolder).await()).await();
+                    test.assertEqual(
+                        Iterable.create(
+                            jarFile + " doesn't match its recorded hash.",
+                            sourcesJarFile + " is missing."),
+                        QubPublishVerify.verify(versionFolder, hashManifest).await());
+                });
+            });
+
+            runner.testGroup("getFingerprint(QubProjectVersionFolder,QubPublishHashManifest)", () ->
+            {
+                runner.test("with in-memory version folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectVersionFolder versionFolder = QubPublishVerifyTests.createVersionFolder(process.getQubFolder().await(), "me", "a", "1",
+                        "a.jar", "a");
+                    test.assertNull(QubPublishVerify.getFingerprint(versionFolder, QubPublishHashManifest.create().set("a.jar", "1")).await());
+                });
+            });
+
+            runner.testGroup("readCache()", () ->
+            {
+                runner.test("with no cache file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishVerify verify = QubPublishVerify.get(process.getQubFolder().await()).await();
+                    test.assertEqual(0, verify.readCache().await().getCount());
+                });
+
+                runner.test("with invalid cache file",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishVerify verify = QubPublishVerify.get(process.getQubFolder().await()).await();
+                    verify.getCacheFile().setContentsAsString("not json").await();
+                    test.assertEqual(0, verify.readCache().await().getCount());
+                });
+
+                runner.test("with writeCache() output",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubPublishVerify verify = QubPublishVerify.get(process.getQubFolder().await()).await();
+                    final Map<String,String> fingerprints = Map.create();
+                    fingerprints.set("me/b/versions/1", "2");
+                    fingerprints.set("me/a/versions/1", "1");
+                    verify.writeCache(fingerprints).await();
+
+                    final Map<String,String> cache = verify.readCache().await();
+                    test.assertEqual(2, cache.getCount());
+                    test.assertEqual("1", cache.get("me/a/versions/1").await());
+                    test.assertEqual("2", cache.get("me/b/versions/1").await());
+                });
+            });
+
+            runner.testGroup("run(CharacterWriteStream,QubPublishWorkers)", () ->
+            {
+                runner.test("with empty qub folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(0, QubPublishVerify.get(qubFolder).await().run(output, workers));
+                    }
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Verifying " + qubFolder + "...",
+                            "Verified 0 version folders: 0 unchanged since the last verify, 0 without a hash manifest, 0 problems."),
+                        output);
+                });
+
+                runner.test("with valid, corrupted, and unmanifested version folders",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubFolder qubFolder = process.getQubFolder().await();
+                    QubPublishVerifyTests.createVersionFolder(qubFolder, "me", "a", "1",
+                        "project.json", "{}",
+                        "a.jar", "a");
+                    final QubProjectVersionFolder corruptedVersionFolder = QubPublishVerifyTests.createVersionFolder(qubFolder, "me", "b", "1",
+                        "project.json", "{}",
+                        "b.jar", "b");
+                    final File corruptedFile = corruptedVersionFolder.getFile("b.jar").await();
+                    corruptedFile.setContentsAsString("b-truncated").await();
+                    qubFolder.getProjectVersionFolder("me", "c", "1").await()
+                        .getFile("project.json").await()
+                        .setContentsAsString("{}").await();
+
+                    final InMemoryCharacterToByteStream output = InMemoryCharacterToByteStream.create();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertEqual(1, QubPublishVerify.get(qubFolder).await().run(output, workers));
+                    }
+                    test.assertLinesEqual(
+                        Iterable.create(
+                            "Verifying " + qubFolder + "...",
+                            "ERROR: " + corruptedFile + " doesn't match its recorded hash.",
+                            "Verified 3 version folders: 0 unchanged since the last verify, 1 without a hash manifest, 1 problem."),
+                        output);
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,244 @@
+package qub;
+
+public interface QubPublishVersionReservationTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishVersionReservation.class, () ->
+        {
+            runner.testGroup("reserve(QubProjectFolder,VersionNumber)", () ->
+            {
+                runner.test("with null projectFolder", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishVersionReservation.reserve(null, null),
+                        new PreConditionFailure("projectFolder cannot be null."));
+                });
+
+                runner.test("with null version and no published versions",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, null).await();
+                    test.assertSame(projectFolder, reservation.getProjectFolder());
+                    test.assertEqual(VersionNumber.create().setMajor(1), reservation.getVersion());
+                    test.assertEqual(projectFolder.getFile("reservations/1.reserved").await(), reservation.getReservationFile());
+                    test.assertTrue(reservation.getReservationFile().exists().await());
+                    test.assertFalse(reservation.isDisposed());
+
+                    test.assertTrue(reservation.dispose().await());
+                    test.assertTrue(reservation.isDisposed());
+                    test.assertFalse(reservation.getReservationFile().exists().await());
+                    test.assertFalse(reservation.dispose().await());
+                });
+
+                runner.test("with null version and a published version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    projectFolder.getProjectVersionFolder("2").await().create().await();
+                    try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                    {
+                        test.assertEqual(VersionNumber.create().setMajor(3), reservation.getVersion());
+                    }
+                });
+
+                runner.test("with null version and a reserved next version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    try (final QubPublishVersionReservation reservation1 = QubPublishVersionReservation.reserve(projectFolder, null).await();
+                         final QubPublishVersionReservation reservation2 = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                    {
+                        test.assertEqual(VersionNumber.create().setMajor(1), reservation1.getVersion());
+                        test.assertEqual(VersionNumber.create().setMajor(2), reservation2.getVersion());
+                    }
+                });
+
+                runner.test("with published version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    projectFolder.getProjectVersionFolder("1").await().create().await();
+                    test.assertThrows(() -> QubPublishVersionReservation.reserve(projectFolder, VersionNumber.create().setMajor(1)).await(),
+                        new AlreadyExistsException("This package (me/a:1) can't be published because a package with that signature already exists."));
+                });
+
+                runner.test("with reserved version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, VersionNumber.create().setMajor(1)).await())
+                    {
+                        test.assertThrows(() -> QubPublishVersionReservation.reserve(projectFolder, VersionNumber.create().setMajor(1)).await(),
+                            new AlreadyExistsException("This package (me/a:1) can't be published because another publish has already reserved that version."));
+                    }
+                });
+
+                runner.test("with stale reserved version",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    final VersionNumber version = VersionNumber.create().setMajor(1);
+                    QubPublishVersionReservation.getReservationFile(projectFolder, version).await()
+                        .setContentsAsString(QubPublishVersionReservation.createReservationJson().setNumber("created", 0).toString())
+                        .await();
+                    try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, version).await())
+                    {
+                        test.assertEqual(version, reservation.getVersion());
+                        test.assertFalse(QubPublishVersionReservation.isStale(reservation.getReservationFile().getContentsAsString().await()));
+                    }
+                });
+            });
+
+            runner.testGroup("reserve(QubProjectFolder,VersionNumber) on disk", () ->
+            {
+                runner.test("with reserved version", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubProjectFolder projectFolder = QubFolder.get(temporaryFolder).getProjectFolder("me", "a").await();
+                        final VersionNumber version = VersionNumber.create().setMajor(1);
+                        try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, version).await())
+                        {
+                            test.assertTrue(reservation.getReservationFile().exists().await());
+                            test.assertThrows(() -> QubPublishVersionReservation.reserve(projectFolder, version).await(),
+                                new AlreadyExistsException("This package (me/a:1) can't be published because another publish has already reserved that version."));
+                            try (final QubPublishVersionReservation nextReservation = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                            {
+                                test.assertEqual(VersionNumber.create().setMajor(2), nextReservation.getVersion());
+                            }
+                        }
+                        test.assertFalse(QubPublishVersionReservation.getReservationFile(projectFolder, version).await().exists().await());
+                    });
+                });
+
+                runner.test("with stale reserved version", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubProjectFolder projectFolder = QubFolder.get(temporaryFolder).getProjectFolder("me", "a").await();
+                        final VersionNumber version = VersionNumber.create().setMajor(1);
+                        final File reservationFile = QubPublishVersionReservation.getReservationFile(projectFolder, version).await();
+                        reservationFile.setContentsAsString(QubPublishVersionReservation.createReservationJson().setNumber("created", 0).toString()).await();
+                        try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, version).await())
+                        {
+                            test.assertEqual(version, reservation.getVersion());
+                            test.assertEqual(reservationFile, reservation.getReservationFile());
+                            test.assertFalse(QubPublishVersionReservation.isStale(reservationFile.getContentsAsString().await()));
+
+                            // The stale reservation file was moved aside and discarded, not left behind.
+                            test.assertEqual(Iterable.create(reservationFile), reservationFile.getParentFolder().await().getFiles().await());
+                        }
+                    });
+                });
+            });
+
+            runner.testGroup("isStale(String)", () ->
+            {
+                final Action2<String,Boolean> isStaleTest = (String reservationText, Boolean expected) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(reservationText), (Test test) ->
+                    {
+                        test.assertEqual(expected, QubPublishVersionReservation.isStale(reservationText));
+                    });
+                };
+
+                isStaleTest.run("", false);
+                isStaleTest.run("{", false);
+                isStaleTest.run("{}", false);
+                isStaleTest.run("{\"pid\":1,\"host\":\"not-this-host.example\",\"created\":0}", true);
+                isStaleTest.run(QubPublishVersionReservation.createReservationJson().toString(), false);
+                isStaleTest.run(QubPublishVersionReservation.createReservationJson().setNumber("pid", Long.MAX_VALUE).toString(), true);
+            });
+
+            runner.testGroup("commit()", () ->
+            {
+                runner.test("with in-memory file system",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    final QubProjectFolder projectFolder = process.getQubFolder().await().getProjectFolder("me", "a").await();
+                    try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                    {
+                        final QubProjectVersionFolder versionFolder = reservation.getVersionFolder().await();
+                        final Folder stagingFolder = reservation.getStagingFolder().await();
+                        test.assertEqual(versionFolder, stagingFolder);
+                        stagingFolder.getFile("a.jar").await().setContentsAsString("abc").await();
+
+                        test.assertEqual(versionFolder, reservation.commit().await());
+                        test.assertEqual("abc", versionFolder.getFile("a.jar").await().getContentsAsString().await());
+                    }
+                    test.assertTrue(projectFolder.getProjectVersionFolder("1").await().exists().await());
+                });
+
+                runner.test("on disk", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubProjectFolder projectFolder = QubFolder.get(temporaryFolder).getProjectFolder("me", "a").await();
+                        try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                        {
+                            final QubProjectVersionFolder versionFolder = reservation.getVersionFolder().await();
+                            final Folder stagingFolder = reservation.getStagingFolder().await();
+                            test.assertNotEqual(versionFolder, stagingFolder);
+                            test.assertEqual(projectFolder.getFolder(QubPublishVersionReservation.stagingFolderName).await(), stagingFolder.getParentFolder().await());
+                            stagingFolder.getFile("a.jar").await().setContentsAsString("abc").await();
+                            test.assertFalse(versionFolder.exists().await());
+
+                            test.assertEqual(versionFolder, reservation.commit().await());
+                            test.assertEqual("abc", versionFolder.getFile("a.jar").await().getContentsAsString().await());
+                            test.assertFalse(stagingFolder.exists().await());
+                            test.assertEqual(versionFolder, reservation.getStagingFolder().await());
+                        }
+                        test.assertTrue(projectFolder.getProjectVersionFolder("1").await().exists().await());
+                        test.assertEqual("abc", projectFolder.getProjectVersionFolder("1").await().getFile("a.jar").await().getContentsAsString().await());
+                    });
+                });
+
+                runner.test("on disk with version folder created by another publish", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubProjectFolder projectFolder = QubFolder.get(temporaryFolder).getProjectFolder("me", "a").await();
+                        final Folder stagingFolder;
+                        try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                        {
+                            stagingFolder = reservation.getStagingFolder().await();
+                            stagingFolder.getFile("a.jar").await().setContentsAsString("abc").await();
+                            reservation.getVersionFolder().await().getFile("b.jar").await().setContentsAsString("def").await();
+
+                            test.assertThrows(() -> reservation.commit().await(),
+                                new AlreadyExistsException("This package (me/a:1) can't be published because a package with that signature already exists."));
+                        }
+                        test.assertFalse(stagingFolder.exists().await());
+                        final QubProjectVersionFolder versionFolder = projectFolder.getProjectVersionFolder("1").await();
+                        test.assertFalse(versionFolder.getFile("a.jar").await().exists().await());
+                        test.assertEqual("def", versionFolder.getFile("b.jar").await().getContentsAsString().await());
+                    });
+                });
+
+                runner.test("on disk without commit", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final QubProjectFolder projectFolder = QubFolder.get(temporaryFolder).getProjectFolder("me", "a").await();
+                        final Folder stagingFolder;
+                        try (final QubPublishVersionReservation reservation = QubPublishVersionReservation.reserve(projectFolder, null).await())
+                        {
+                            stagingFolder = reservation.getStagingFolder().await();
+                            stagingFolder.getFile("a.jar").await().setContentsAsString("abc").await();
+                        }
+                        test.assertFalse(stagingFolder.exists().await());
+                        test.assertFalse(projectFolder.getProjectVersionFolder("1").await().exists().await());
+                    });
+                });
+            });
+        });
+    }
+}
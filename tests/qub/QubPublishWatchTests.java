@@ -0,0 +1,219 @@
+package qub;
+
+public interface QubPublishWatchTests
+{
+    /**
+     * Create a folder to publish on disk that has a sources folder with one source file in it.
+     */
+    static Folder createFolderToPublish(Folder temporaryFolder)
+    {
+        final Folder result = temporaryFolder.getFolder("project").await();
+        result.getFile("project.json").await().setContentsAsString("{}").await();
+        result.getFile("sources/qub/A.java").await().setContentsAsString("class A {}").await();
+        return result;
+    }
+
+    /**
+     * Get the number of times that the provided path appears in the provided changed paths.
+     */
+    static int getCount(Iterable<String> changedPaths, String path)
+    {
+        int result = 0;
+        for (final String changedPath : changedPaths)
+        {
+            if (changedPath.equals(path))
+            {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run the provided action on a new thread after the provided number of milliseconds.
+     */
+    static Thread startAfter(long milliseconds, Action0 action)
+    {
+        final Thread result = new Thread(() ->
+        {
+            try
+            {
+                Thread.sleep(milliseconds);
+            }
+            catch (InterruptedException error)
+            {
+                throw Exceptions.asRuntime(error);
+            }
+            action.run();
+        });
+        result.setDaemon(true);
+        result.start();
+        return result;
+    }
+
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishWatch.class, () ->
+        {
+            runner.testGroup("create(Folder)", () ->
+            {
+                runner.test("with null folderToPublish", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishWatch.create(null),
+                        new PreConditionFailure("folderToPublish cannot be null."));
+                });
+
+                runner.test("with in-memory folder",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    test.assertThrows(() -> QubPublishWatch.create(process.getCurrentFolder()).await(),
+                        new UnsupportedOperationException("Only folders on the local file system can be watched."));
+                });
+            });
+
+            runner.testGroup("isWatched(String)", () ->
+            {
+                final Action2<String,Boolean> isWatchedTest = (String relativePath, Boolean expected) ->
+                {
+                    runner.test("with " + Strings.escapeAndQuote(relativePath), (Test test) ->
+                    {
+                        test.assertEqual(expected, QubPublishWatch.isWatched(relativePath));
+                    });
+                };
+
+                isWatchedTest.run("", false);
+                isWatchedTest.run("project.json", true);
+                isWatchedTest.run("pack.json", false);
+                isWatchedTest.run("build.json", false);
+                isWatchedTest.run("sources", true);
+                isWatchedTest.run("sources/qub/A.java", true);
+                isWatchedTest.run("sourcesA.java", false);
+                isWatchedTest.run("tests", true);
+                isWatchedTest.run("tests/qub/ATests.java", true);
+                isWatchedTest.run("outputs", false);
+                isWatchedTest.run("outputs/my-project.jar", false);
+                isWatchedTest.run(".git/index", false);
+            });
+
+            runner.testGroup("waitForChanges()", () ->
+            {
+                runner.test("with edited source file", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final Folder folderToPublish = QubPublishWatchTests.createFolderToPublish(temporaryFolder);
+                        try (final QubPublishWatch watch = QubPublishWatch.create(folderToPublish).await())
+                        {
+                            watch.setQuietMilliseconds(100);
+                            folderToPublish.getFile("sources/qub/A.java").await().setContentsAsString("class A { int b; }").await();
+
+                            final Iterable<String> changedPaths = watch.waitForChanges().await();
+                            test.assertEqual(1, QubPublishWatchTests.getCount(changedPaths, "sources/qub/A.java"));
+                        }
+                    });
+                });
+
+                runner.test("with unwatched file and project.json", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final Folder folderToPublish = QubPublishWatchTests.createFolderToPublish(temporaryFolder);
+                        try (final QubPublishWatch watch = QubPublishWatch.create(folderToPublish).await())
+                        {
+                            watch.setQuietMilliseconds(100);
+                            folderToPublish.getFile("build.json").await().setContentsAsString("{}").await();
+                            folderToPublish.getFile("project.json").await().setContentsAsString("{\"version\":\"2\"}").await();
+
+                            final Iterable<String> changedPaths = watch.waitForChanges().await();
+                            test.assertEqual(1, QubPublishWatchTests.getCount(changedPaths, "project.json"));
+                            test.assertEqual(0, QubPublishWatchTests.getCount(changedPaths, "build.json"));
+                        }
+                    });
+                });
+
+                runner.test("with new subfolder", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final Folder folderToPublish = QubPublishWatchTests.createFolderToPublish(temporaryFolder);
+                        try (final QubPublishWatch watch = QubPublishWatch.create(folderToPublish).await())
+                        {
+                            watch.setQuietMilliseconds(100);
+                            folderToPublish.getFolder("sources/qub/sub").await().create().await();
+
+                            final Iterable<String> createdPaths = watch.waitForChanges().await();
+                            test.assertEqual(1, QubPublishWatchTests.getCount(createdPaths, "sources/qub/sub"));
+
+                            // The new subfolder is watched too, so changes inside it are reported.
+                            folderToPublish.getFile("sources/qub/sub/B.java").await().setContentsAsString("class B {}").await();
+
+                            final Iterable<String> changedPaths = watch.waitForChanges().await();
+                            test.assertEqual(1, QubPublishWatchTests.getCount(changedPaths, "sources/qub/sub/B.java"));
+                        }
+                    });
+                });
+
+                runner.test("with changes inside the quiet period", (Test test) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final Folder folderToPublish = QubPublishWatchTests.createFolderToPublish(temporaryFolder);
+                        try (final QubPublishWatch watch = QubPublishWatch.create(folderToPublish).await())
+                        {
+                            watch.setQuietMilliseconds(1000);
+                            folderToPublish.getFile("sources/qub/A.java").await().setContentsAsString("class A { int b; }").await();
+                            final Thread secondChange = QubPublishWatchTests.startAfter(100, () ->
+                            {
+                                folderToPublish.getFile("tests/qub/ATests.java").await().setContentsAsString("class ATests {}").await();
+                            });
+
+                            final Iterable<String> changedPaths = watch.waitForChanges().await();
+                            test.assertEqual(1, QubPublishWatchTests.getCount(changedPaths, "sources/qub/A.java"));
+                            test.assertEqual(1, QubPublishWatchTests.getCount(changedPaths, "tests"));
+                            secondChange.join();
+                        }
+                        catch (InterruptedException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                    });
+                });
+            });
+
+            runner.testGroup("run(QubPublishParameters,QubPublishQubFolderView)", () ->
+            {
+                runner.test("with dispose while waiting",
+                    (TestResources resources) -> Tuple.create(resources.createFakeDesktopProcess()),
+                    (Test test, FakeDesktopProcess process) ->
+                {
+                    QubPublishFilesTests.withTemporaryFolder((Folder temporaryFolder) ->
+                    {
+                        final Folder folderToPublish = QubPublishWatchTests.createFolderToPublish(temporaryFolder);
+                        final QubPublishParameters parameters = QubPublishTests.getParameters(process);
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(1))
+                        {
+                            final QubPublishQubFolderView qubFolderView = QubPublishQubFolderView.create(parameters.getQubFolder(), workers);
+                            final QubPublishWatch watch = QubPublishWatch.create(folderToPublish).await();
+                            final QubPublishBackground<Integer> running = QubPublishBackground.start(() -> watch.run(parameters, qubFolderView));
+                            Thread.sleep(200);
+                            test.assertFalse(running.isDone());
+
+                            test.assertTrue(watch.dispose().await());
+                            test.assertEqual(0, running.join().await());
+                            test.assertTrue(watch.isDisposed());
+                        }
+                        catch (InterruptedException error)
+                        {
+                            throw Exceptions.asRuntime(error);
+                        }
+                        test.assertLinesEqual(
+                            Iterable.create(
+                                "Watching " + folderToPublish + " for changes..."),
+                            process.getOutputWriteStream());
+                    });
+                });
+            });
+        });
+    }
+}
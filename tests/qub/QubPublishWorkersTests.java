@@ -0,0 +1,162 @@
+package qub;
+
+public interface QubPublishWorkersTests
+{
+    static void test(TestRunner runner)
+    {
+        runner.testGroup(QubPublishWorkers.class, () ->
+        {
+            runner.testGroup("create(int)", () ->
+            {
+                runner.test("with 0", (Test test) ->
+                {
+                    test.assertThrows(() -> QubPublishWorkers.create(0),
+                        new PreConditionFailure("workerCount (0) must be greater than or equal to 1."));
+                });
+
+                runner.test("with 3", (Test test) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(3))
+                    {
+                        test.assertEqual(3, workers.getWorkerCount());
+                        test.assertFalse(workers.isDisposed());
+                    }
+                });
+            });
+
+            runner.testGroup("create(int,boolean)", () ->
+            {
+                runner.test("with 3 and false", (Test test) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(3, false))
+                    {
+                        test.assertEqual(3, workers.getWorkerCount());
+                        test.assertFalse(workers.getVirtualThreads());
+                    }
+                });
+
+                runner.test("with 1 and true", (Test test) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(1, true))
+                    {
+                        test.assertEqual(1, workers.getWorkerCount());
+                        test.assertFalse(workers.getVirtualThreads());
+                    }
+                });
+
+                runner.test("with 3 and true", (Test test) ->
+                {
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(3, true))
+                    {
+                        test.assertEqual(3, workers.getWorkerCount());
+                        test.assertEqual(Runtime.version().feature() >= 21, workers.getVirtualThreads());
+                    }
+                });
+            });
+
+            runner.testGroup("map(Iterable<T>,Function1<T,TResult>)", () ->
+            {
+                final Action2<Integer,Boolean> mapTest = (Integer workerCount, Boolean virtualThreads) ->
+                {
+                    runner.test("with " + workerCount + " worker(s)" + (virtualThreads ? " on virtual threads" : ""), (Test test) ->
+                    {
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(workerCount, virtualThreads))
+                        {
+                            final Iterable<Integer> result = workers.map(Iterable.create(5, 4, 3, 2, 1),
+                                (Integer value) -> value * 10)
+                                .await();
+                            test.assertEqual(Iterable.create(50, 40, 30, 20, 10), result);
+                        }
+                    });
+
+                    runner.test("with " + workerCount + " worker(s)" + (virtualThreads ? " on virtual threads" : "") + " and a failing function", (Test test) ->
+                    {
+                        try (final QubPublishWorkers workers = QubPublishWorkers.create(workerCount, virtualThreads))
+                        {
+                            test.assertThrows(() -> workers.map(Iterable.create(1, 2, 3),
+                                    (Integer value) ->
+                                    {
+                                        if (value == 2)
+                                        {
+                                            throw new NotFoundException("2");
+                                        }
+                                        return value;
+                                    })
+                                    .await(),
+                                new NotFoundException("2"));
+                        }
+                    });
+                };
+
+                mapTest.run(1, false);
+                mapTest.run(4, false);
+                mapTest.run(4, true);
+
+                runner.test("with more values than virtual thread workers", (Test test) ->
+                {
+                    final java.util.concurrent.atomic.AtomicInteger running = new java.util.concurrent.atomic.AtomicInteger();
+                    final java.util.concurrent.atomic.AtomicInteger maximumRunning = new java.util.concurrent.atomic.AtomicInteger();
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2, true))
+                    {
+                        final Iterable<Integer> result = workers.map(Iterable.create(1, 2, 3, 4, 5, 6, 7, 8),
+                            (Integer value) ->
+                            {
+                                maximumRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                                try
+                                {
+                                    Thread.sleep(5);
+                                }
+                                catch (InterruptedException error)
+                                {
+                                    throw Exceptions.asRuntime(error);
+                                }
+                                running.decrementAndGet();
+                                return value;
+                            })
+                            .await();
+                        test.assertEqual(Iterable.create(1, 2, 3, 4, 5, 6, 7, 8), result);
+                    }
+                    test.assertTrue(maximumRunning.get() <= 2);
+                });
+
+                runner.test("with a failing function while an earlier function is still running", (Test test) ->
+                {
+                    final java.util.concurrent.CountDownLatch neverReleased = new java.util.concurrent.CountDownLatch(1);
+                    try (final QubPublishWorkers workers = QubPublishWorkers.create(2))
+                    {
+                        test.assertThrows(() -> workers.map(Iterable.create(1, 2),
+                                (Integer value) ->
+                                {
+                                    if (value == 2)
+                                    {
+                                        throw new NotFoundException("2");
+                                    }
+                                    try
+                                    {
+                                        neverReleased.await();
+                                    }
+                                    catch (InterruptedException error)
+                                    {
+                                        throw Exceptions.asRuntime(error);
+                                    }
+                                    return value;
+                                })
+                                .await(),
+                            new NotFoundException("2"));
+                    }
+                });
+            });
+
+            runner.testGroup("dispose()", () ->
+            {
+                runner.test("with not disposed", (Test test) ->
+                {
+                    final QubPublishWorkers workers = QubPublishWorkers.create(2);
+                    test.assertTrue(workers.dispose().await());
+                    test.assertTrue(workers.isDisposed());
+                    test.assertFalse(workers.dispose().await());
+                });
+            });
+        });
+    }
+}